@@ -0,0 +1,50 @@
+package com.ik.urlshortener.benchmark;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ik.urlshortener.cache.KnownKeyFilter;
+import com.ik.urlshortener.cache.RedirectCache;
+import com.ik.urlshortener.keygen.HashKeyGenerator;
+import com.ik.urlshortener.keygen.KeyGenerator;
+import com.ik.urlshortener.metrics.UrlShortenerMetrics;
+import com.ik.urlshortener.resilience.CircuitBreaker;
+import com.ik.urlshortener.service.UrlShortenerService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+
+/**
+ * Wires the service by hand for the benchmarks, without starting a Spring context.
+ * 
+ */
+
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static UrlShortenerService service(InMemoryUrlMappingStore urlMappingStore, long cacheWeight) {
+        KeyGenerator keyGenerator = new HashKeyGenerator(HashKeyGenerator.KeyEncoding.BASE62, 8);
+        UrlShortenerService service = new UrlShortenerService();
+        ReflectionTestUtils.setField(service, "urlMappingStore", urlMappingStore);
+        ReflectionTestUtils.setField(service, "redirectCache", new RedirectCache(cacheWeight, Duration.ofSeconds(30)));
+        ReflectionTestUtils.setField(service, "keyGenerator", keyGenerator);
+        ReflectionTestUtils.setField(service, "metrics", new UrlShortenerMetrics(new SimpleMeterRegistry(), "hash"));
+        ReflectionTestUtils.setField(service, "keyFilter", new KnownKeyFilter(true, 1_000_000, 0.01));
+        // Disabled, so it adds no bookkeeping to the measured calls
+        ReflectionTestUtils.setField(service, "circuitBreaker", new CircuitBreaker(false, 50, 0.5, Duration.ofMillis(250), Duration.ofSeconds(5)));
+        return service;
+    }
+
+    /**
+     * Shortens {@code count} distinct URLs and returns their keys.
+     */
+    static String[] preload(UrlShortenerService service, int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = service.shortenUrl("https://www.example.com/articles/" + i + "?utm_source=benchmark");
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,62 @@
+package com.ik.urlshortener.benchmark;
+
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+import com.ik.urlshortener.repository.UrlMappingStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Heap-backed stand-in for the Redis store, so the benchmarks measure the service and web
+ * layers rather than the network. Reads are lock-free, unlike the test stand-in of a shard,
+ * so that they do not serialize the benchmark threads.
+ * 
+ */
+
+public class InMemoryUrlMappingStore implements UrlMappingStore {
+
+    private final ConcurrentMap<String, String> mappings = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, String> reverseIndex = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized String claim(UrlClaim claim) {
+        String knownKey = claim.urlDigest() != null ? reverseIndex.get(claim.urlDigest()) : null;
+        if (knownKey != null) {
+            return knownKey;
+        }
+        for (String candidateKey : claim.candidateKeys()) {
+            String existing = mappings.putIfAbsent(candidateKey, claim.longUrl());
+            if (existing == null || existing.equals(claim.longUrl())) {
+                if (claim.urlDigest() != null) {
+                    reverseIndex.put(claim.urlDigest(), candidateKey);
+                }
+                return candidateKey;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public StoredUrl findStoredUrl(String shortUrlKey) {
+        return StoredUrl.of(mappings.get(shortUrlKey));
+    }
+
+    @Override
+    public List<StoredUrl> findStoredUrls(List<String> shortUrlKeys) {
+        List<StoredUrl> storedUrls = new ArrayList<>(shortUrlKeys.size());
+        for (String shortUrlKey : shortUrlKeys) {
+            storedUrls.add(StoredUrl.of(mappings.get(shortUrlKey)));
+        }
+        return storedUrls;
+    }
+
+    @Override
+    public void scanKeys(Consumer<String> action) {
+        mappings.keySet().forEach(action);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ik.urlshortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ik.urlshortener.keygen.HashKeyGenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key generation cost: the per-thread MD5/base62 encoder against the original
+ * MessageDigest.getInstance plus Integer.toHexString implementation. Run with
+ * {@code -prof gc} to compare the allocation per key.
+ * 
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyGeneratorBenchmark {
+
+    @Param({"HEX", "BASE62"})
+    private HashKeyGenerator.KeyEncoding encoding;
+
+    private HashKeyGenerator keyGenerator;
+
+    private final String longUrl = "https://www.example.com/articles/2024/10/some-long-article-title?utm_source=newsletter";
+
+    @Setup
+    public void setUp() {
+        keyGenerator = new HashKeyGenerator(encoding, encoding == HashKeyGenerator.KeyEncoding.HEX ? 6 : 8);
+    }
+
+    // All five candidate keys, as computed for every shorten
+    @Benchmark
+    public List<String> candidateKeys() {
+        return keyGenerator.candidateKeys(longUrl);
+    }
+
+    // The original implementation, kept as the baseline for a single key
+    @Benchmark
+    public String legacyShortUrlKey() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        byte[] hash = digest.digest(longUrl.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            String hex = Integer.toHexString(0xff & hash[i]);
+            if (hex.length() == 1) hexString.append('0');
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ik.urlshortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.web.servlet.setup.StandaloneMockMvcBuilder;
+
+import com.ik.urlshortener.analytics.ClickBuffer;
+import com.ik.urlshortener.controller.RedirectFastPathFilter;
+import com.ik.urlshortener.controller.RedirectPolicy;
+import com.ik.urlshortener.controller.UrlShortenerController;
+import com.ik.urlshortener.service.UrlShortenerService;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end dispatch through Spring MVC (DispatcherServlet, argument resolution, message
+ * conversion) for the redirect and shorten endpoints, without a network socket. With fastPath,
+ * redirects of keys in the redirect cache, which after warm-up is all of them, are answered by
+ * RedirectFastPathFilter instead; -prof gc reports the allocation per redirect as
+ * gc.alloc.rate.norm.
+ * 
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlShortenerControllerBenchmark {
+
+    @Param({"false", "true"})
+    private boolean analytics;
+
+    @Param({"false", "true"})
+    private boolean fastPath;
+
+    private MockMvc mockMvc;
+
+    private String[] keys;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        UrlShortenerService service = Fixtures.service(new InMemoryUrlMappingStore(), 64L << 20);
+        keys = Fixtures.preload(service, 10_000);
+
+        // Clicks pile up in the buffer (no flusher runs), bounded by the 10,000 keys
+        ClickBuffer clickBuffer = new ClickBuffer(analytics, 100_000, 1.0);
+        RedirectPolicy redirectPolicy = new RedirectPolicy(302, Duration.ZERO);
+
+        UrlShortenerController controller = new UrlShortenerController();
+        ReflectionTestUtils.setField(controller, "urlShortenerService", service);
+        ReflectionTestUtils.setField(controller, "baseUrl", "http://localhost");
+        ReflectionTestUtils.setField(controller, "clickBuffer", clickBuffer);
+        ReflectionTestUtils.setField(controller, "redirectPolicy", redirectPolicy);
+        StandaloneMockMvcBuilder builder = MockMvcBuilders.standaloneSetup(controller);
+        if (fastPath) {
+            RedirectFastPathFilter filter = new RedirectFastPathFilter();
+            ReflectionTestUtils.setField(filter, "urlShortenerService", service);
+            ReflectionTestUtils.setField(filter, "clickBuffer", clickBuffer);
+            ReflectionTestUtils.setField(filter, "redirectPolicy", redirectPolicy);
+            builder.addFilters(filter);
+        }
+        mockMvc = builder.build();
+    }
+
+    @Benchmark
+    public MvcResult redirect() throws Exception {
+        String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        return mockMvc.perform(MockMvcRequestBuilders.get("/" + key)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult shorten() throws Exception {
+        String body = "{\"longUrl\":\"https://www.example.com/new/" + sequence.incrementAndGet() + "\"}";
+        return mockMvc.perform(MockMvcRequestBuilders.post("/shorten")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body)).andReturn();
+    }
+}
@@ -0,0 +1,63 @@
+package com.ik.urlshortener.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ik.urlshortener.service.UrlShortenerService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service-level cost of shortenUrl and getLongUrl against the in-memory store stand-in.
+ * A cache weight of 0 disables the redirect cache, so every lookup reaches the repository.
+ * 
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlShortenerServiceBenchmark {
+
+    @Param({"0", "67108864"})
+    private long cacheWeight;
+
+    @Param({"10000"})
+    private int mappings;
+
+    private UrlShortenerService service;
+
+    private String[] keys;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        service = Fixtures.service(new InMemoryUrlMappingStore(), cacheWeight);
+        keys = Fixtures.preload(service, mappings);
+    }
+
+    // Every call shortens a URL that has not been seen before
+    @Benchmark
+    public String shortenUrl() {
+        return service.shortenUrl("https://www.example.com/new/" + sequence.incrementAndGet());
+    }
+
+    @Benchmark
+    public String getLongUrl() {
+        return service.getLongUrl(keys[ThreadLocalRandom.current().nextInt(keys.length)]);
+    }
+}
@@ -0,0 +1,347 @@
+package com.ik.urlshortener.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ik.urlshortener.UrlShortenerApplication;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load test of the redirect and shorten endpoints, and a performance regression check
+ * against a stored baseline. Requests are started at a fixed arrival rate whether or not earlier
+ * ones have completed, and each latency is measured from the time its request was due rather
+ * than from when it was sent, so a stalled server shows up in the percentiles instead of slowing
+ * the load down (no coordinated omission). Of the arrivals, the shorten ratio are POST /shorten
+ * of new URLs and the rest GET /{key}, with keys drawn from a Zipf distribution over the
+ * preloaded keys, as clicks on real links are. Latencies are recorded in an HDR histogram per
+ * endpoint, and the random choices are seeded, so runs are repeatable.
+ *
+ * Options (all optional):
+ *   --app=embedded  starts the service in this JVM on the embedded engine in a temporary
+ *                   directory, no Redis needed; --app=redis starts it against --redis=host:port;
+ *                   --app=none tests the instance at --base-url=http://localhost:8080
+ *   --app-properties=name=value,...  extra properties of the service started here
+ *   --rate=300  --shorten-ratio=0.05  --keys=10000  --zipf-exponent=1.0  --seed=42
+ *   --duration=30s  --warmup=20s  --max-in-flight=1000
+ *   --output=target/load-test  results.json and an .hgrm percentile distribution per endpoint
+ *   --baseline=src/jmh/load-test-baseline.json  --tolerance=0.2  --p99-slack=1ms
+ *   --max-error-rate=0.001  --update-baseline=false
+ * With a baseline, the run fails (exit status 1) when the p99 of an endpoint is above the
+ * baseline p99 by more than the tolerance plus the slack, its throughput is below the baseline
+ * by more than the tolerance, or more than the maximum error rate of its requests failed.
+ * Requests that find max-in-flight requests outstanding are not sent and count as errors. The
+ * service under test should not rate limit the shortens; the one started here does not.
+ *
+ */
+
+public final class OpenModelLoadTest {
+
+    private static final long HIGHEST_LATENCY_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final Map<String, String> options;
+
+    // HTTP/1.1 over a pool of connections, as browsers reach the service, without h2c upgrade attempts
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private OpenModelLoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new OpenModelLoadTest(RedirectLoadTest.parseOptions(args)).run());
+    }
+
+    private int run() throws Exception {
+        String app = option("app", "embedded");
+        ConfigurableApplicationContext context = app.equals("none") ? null : startApp(app);
+        try {
+            String baseUrl = context == null ? option("base-url", "http://localhost:8080")
+                    : "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            awaitUp(baseUrl);
+            ObjectNode results = measure(baseUrl);
+            return check(results);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startApp(String app) throws IOException {
+        List<String> args = new ArrayList<>(List.of("--server.port=0", "--url.shortener.rate-limit.enabled=false"));
+        SpringApplication application = new SpringApplication(UrlShortenerApplication.class);
+        if (app.equals("embedded")) {
+            application.setAdditionalProfiles("embedded");
+            Path directory = Files.createTempDirectory("load-test");
+            directory.toFile().deleteOnExit();
+            args.add("--url.shortener.embedded.directory=" + directory);
+        } else if (app.equals("redis")) {
+            String[] hostAndPort = option("redis", "localhost:6379").split(":");
+            args.add("--spring.data.redis.host=" + hostAndPort[0]);
+            args.add("--spring.data.redis.port=" + hostAndPort[1]);
+        } else {
+            throw new IllegalArgumentException("Expected --app=embedded, redis or none but got: " + app);
+        }
+        String appProperties = option("app-properties", "");
+        if (!appProperties.isEmpty()) {
+            Arrays.stream(appProperties.split(",")).map(property -> "--" + property.trim()).forEach(args::add);
+        }
+        return application.run(args.toArray(new String[0]));
+    }
+
+    /**
+     * Waits for /ping to report UP, which it does once the redirect cache is warm.
+     */
+    private void awaitUp(String baseUrl) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (System.nanoTime() < deadline) {
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/ping")).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException(baseUrl + "/ping did not report UP within 60 s");
+    }
+
+    private ObjectNode measure(String baseUrl) throws Exception {
+        int keyCount = Integer.parseInt(option("keys", "10000"));
+        double rate = Double.parseDouble(option("rate", "300"));
+        double shortenRatio = Double.parseDouble(option("shorten-ratio", "0.05"));
+        double zipfExponent = Double.parseDouble(option("zipf-exponent", "1.0"));
+        int seed = Integer.parseInt(option("seed", "42"));
+        Duration warmup = RedirectLoadTest.duration(option("warmup", "20s"));
+        Duration duration = RedirectLoadTest.duration(option("duration", "30s"));
+        Semaphore inFlight = new Semaphore(Integer.parseInt(option("max-in-flight", "1000")));
+
+        String[] keys = RedirectLoadTest.preload(client, baseUrl, keyCount);
+        ZipfSampler sampler = new ZipfSampler(keys.length, zipfExponent);
+        Random random = new Random(seed);
+        Endpoint redirect = new Endpoint("redirect");
+        Endpoint shorten = new Endpoint("shorten");
+
+        long intervalNanos = (long) (1e9 / rate);
+        long warmupArrivals = (long) (warmup.toNanos() / 1e9 * rate);
+        long arrivals = warmupArrivals + (long) (duration.toNanos() / 1e9 * rate);
+        System.out.printf("Offering %.0f requests/s (%.0f%% shortens) for %s after a %s warm-up, over %d keys with Zipf exponent %.2f%n",
+                rate, shortenRatio * 100, duration, warmup, keys.length, zipfExponent);
+
+        long start = System.nanoTime();
+        for (long arrival = 0; arrival < arrivals; arrival++) {
+            long due = start + arrival * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = arrival >= warmupArrivals;
+            if (random.nextDouble() < shortenRatio) {
+                String body = "{\"longUrl\":\"https://www.example.com/load/" + seed + "/" + arrival + "\"}";
+                send(shorten, measured, due, inFlight, HttpRequest.newBuilder(URI.create(baseUrl + "/shorten"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body)), 200);
+            } else {
+                send(redirect, measured, due, inFlight, HttpRequest.newBuilder(URI.create(baseUrl + "/" + keys[sampler.next(random)]))
+                        .GET(), 0);
+            }
+        }
+        long measuredNanos = System.nanoTime() - start - warmupArrivals * intervalNanos;
+        // Let the last requests complete; they are part of the measurement
+        inFlight.acquire(Integer.parseInt(option("max-in-flight", "1000")));
+
+        ObjectNode settings = objectMapper.createObjectNode()
+                .put("app", option("app", "embedded"))
+                .put("rate", rate)
+                .put("shortenRatio", shortenRatio)
+                .put("keys", keys.length)
+                .put("zipfExponent", zipfExponent)
+                .put("seed", seed)
+                .put("duration", duration.toString());
+        ObjectNode results = objectMapper.createObjectNode();
+        results.set("settings", settings);
+        ObjectNode endpoints = results.putObject("endpoints");
+
+        Path output = Path.of(option("output", "target/load-test"));
+        Files.createDirectories(output);
+        System.out.printf("%-10s %10s %12s %10s %10s %10s %10s %10s %8s%n",
+                "endpoint", "requests", "requests/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        for (Endpoint endpoint : List.of(redirect, shorten)) {
+            Histogram histogram = endpoint.latencies.getIntervalHistogram();
+            long errors = endpoint.errors.get();
+            double throughput = histogram.getTotalCount() * 1e9 / measuredNanos;
+            System.out.printf("%-10s %10d %12.0f %10.2f %10.2f %10.2f %10.2f %10.2f %8d%n", endpoint.name,
+                    histogram.getTotalCount() + errors, throughput, percentile(histogram, 50), percentile(histogram, 90),
+                    percentile(histogram, 99), percentile(histogram, 99.9), RedirectLoadTest.millis(histogram.getMaxValue()), errors);
+            endpoints.putObject(endpoint.name)
+                    .put("requests", histogram.getTotalCount() + errors)
+                    .put("throughput", Math.round(throughput * 10) / 10.0)
+                    .put("p50Ms", percentile(histogram, 50))
+                    .put("p99Ms", percentile(histogram, 99))
+                    .put("p999Ms", percentile(histogram, 99.9))
+                    .put("maxMs", RedirectLoadTest.millis(histogram.getMaxValue()))
+                    .put("errors", errors);
+            try (PrintStream out = new PrintStream(Files.newOutputStream(output.resolve(endpoint.name + ".hgrm")))) {
+                histogram.outputPercentileDistribution(out, 1e6);
+            }
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(output.resolve("results.json").toFile(), results);
+        return results;
+    }
+
+    private void send(Endpoint endpoint, boolean measured, long due, Semaphore inFlight, HttpRequest.Builder request,
+                      int expectedStatus) {
+        if (!inFlight.tryAcquire()) {
+            if (measured) {
+                endpoint.errors.incrementAndGet();
+            }
+            return;
+        }
+        client.sendAsync(request.timeout(Duration.ofSeconds(10)).build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, failure) -> {
+                    long latency = System.nanoTime() - due;
+                    inFlight.release();
+                    if (!measured) {
+                        return;
+                    }
+                    // Redirects may answer with any of the redirect statuses
+                    boolean ok = response != null && (expectedStatus != 0 ? response.statusCode() == expectedStatus
+                            : response.statusCode() >= 300 && response.statusCode() < 400);
+                    if (ok) {
+                        endpoint.latencies.recordValue(Math.min(latency, HIGHEST_LATENCY_NANOS));
+                    } else {
+                        endpoint.errors.incrementAndGet();
+                    }
+                });
+    }
+
+    /**
+     * Compares the results with the baseline, or stores them as the new baseline.
+     *
+     * @return the exit status, 1 if an endpoint regressed
+     */
+    private int check(ObjectNode results) throws IOException {
+        Path baselineFile = Path.of(option("baseline", "src/jmh/load-test-baseline.json"));
+        if (Boolean.parseBoolean(option("update-baseline", "false"))) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(baselineFile.toFile(), results);
+            System.out.println("Stored the results as the baseline in " + baselineFile);
+            return 0;
+        }
+        if (!Files.exists(baselineFile)) {
+            System.out.println("No baseline at " + baselineFile + ", record one with --update-baseline=true");
+            return 0;
+        }
+        JsonNode baseline = objectMapper.readTree(baselineFile.toFile());
+        if (!baseline.get("settings").equals(results.get("settings"))) {
+            System.out.println("FAILED: the baseline was recorded with " + baseline.get("settings")
+                    + ", re-record it with --update-baseline=true for " + results.get("settings"));
+            return 1;
+        }
+
+        double tolerance = Double.parseDouble(option("tolerance", "0.2"));
+        double p99SlackMillis = RedirectLoadTest.millis(RedirectLoadTest.duration(option("p99-slack", "1ms")).toNanos());
+        double maxErrorRate = Double.parseDouble(option("max-error-rate", "0.001"));
+        List<String> regressions = new ArrayList<>();
+        baseline.get("endpoints").fields().forEachRemaining(expected -> {
+            String name = expected.getKey();
+            JsonNode actual = results.get("endpoints").get(name);
+            double p99Limit = expected.getValue().get("p99Ms").asDouble() * (1 + tolerance) + p99SlackMillis;
+            if (actual.get("p99Ms").asDouble() > p99Limit) {
+                regressions.add(String.format("%s p99 %.2f ms is above %.2f ms", name, actual.get("p99Ms").asDouble(), p99Limit));
+            }
+            double throughputLimit = expected.getValue().get("throughput").asDouble() * (1 - tolerance);
+            if (actual.get("throughput").asDouble() < throughputLimit) {
+                regressions.add(String.format("%s throughput %.0f/s is below %.0f/s", name, actual.get("throughput").asDouble(), throughputLimit));
+            }
+            if (actual.get("errors").asLong() > maxErrorRate * actual.get("requests").asLong()) {
+                regressions.add(String.format("%s had %d errors in %d requests", name, actual.get("errors").asLong(), actual.get("requests").asLong()));
+            }
+        });
+        if (!regressions.isEmpty()) {
+            regressions.forEach(regression -> System.out.println("FAILED: " + regression));
+            return 1;
+        }
+        System.out.println("Within " + Math.round(tolerance * 100) + "% of the baseline in " + baselineFile);
+        return 0;
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private static double percentile(Histogram histogram, double percentile) {
+        return RedirectLoadTest.millis(histogram.getValueAtPercentile(percentile));
+    }
+
+    private static final class Endpoint {
+
+        private final String name;
+
+        // Nanosecond latencies up to a minute, to 3 significant digits
+        private final Recorder latencies = new Recorder(HIGHEST_LATENCY_NANOS, 3);
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Draws ranks 0..n-1 with probability proportional to 1 / (rank + 1)^exponent, by binary
+     * search of the cumulative distribution.
+     */
+    static final class ZipfSampler {
+
+        private final double[] cumulative;
+
+        ZipfSampler(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int rank = 0; rank < n; rank++) {
+                sum += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < n; rank++) {
+                cumulative[rank] /= sum;
+            }
+        }
+
+        int next(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+}
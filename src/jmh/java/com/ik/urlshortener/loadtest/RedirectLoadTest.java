@@ -0,0 +1,252 @@
+package com.ik.urlshortener.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-model redirect load test against a running instance. Each step keeps a fixed number of
+ * clients issuing GET /{key} back to back for a while and reports the redirect rate and latency
+ * percentiles, so the highest rate whose p99 stays within the target can be read off the steps.
+ *
+ * Options (all optional):
+ *   --base-url=http://localhost:8080  --keys=10000  --concurrency=50,100,200,400,800
+ *   --duration=20s  --warmup=5s  --p99-target=50ms
+ *   --redis=localhost:6379 --redis-pause=20ms --redis-pause-every=200ms
+ * The redis options stall Redis with CLIENT PAUSE at a fixed interval, to reproduce latency spikes
+ * from the data store.
+ *
+ */
+
+public final class RedirectLoadTest {
+
+    private final Map<String, String> options;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private RedirectLoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new RedirectLoadTest(parseOptions(args)).run();
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private void run() throws Exception {
+        String baseUrl = option("base-url", "http://localhost:8080");
+        String[] keys = preload(client, baseUrl, Integer.parseInt(option("keys", "10000")));
+        Duration duration = duration(option("duration", "20s"));
+        Duration warmup = duration(option("warmup", "5s"));
+        long p99Target = duration(option("p99-target", "50ms")).toNanos();
+
+        Thread staller = startRedisStaller();
+        try {
+            System.out.printf("%-12s %12s %10s %10s %10s %10s %8s%n",
+                    "concurrency", "redirects/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+            double sustainable = 0;
+            for (String level : option("concurrency", "50,100,200,400,800").split(",")) {
+                int concurrency = Integer.parseInt(level.trim());
+                step(baseUrl, keys, concurrency, warmup);
+                Result result = step(baseUrl, keys, concurrency, duration);
+                System.out.printf("%-12d %12.0f %10.2f %10.2f %10.2f %10.2f %8d%n", concurrency, result.rate,
+                        millis(result.percentile(0.50)), millis(result.percentile(0.99)),
+                        millis(result.percentile(0.999)), millis(result.percentile(1.0)), result.errors);
+                if (result.percentile(0.99) <= p99Target && result.errors == 0) {
+                    sustainable = Math.max(sustainable, result.rate);
+                }
+            }
+            System.out.printf("Max sustainable rate with p99 <= %.0f ms: %.0f redirects/s%n", millis(p99Target), sustainable);
+        } finally {
+            if (staller != null) {
+                staller.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Shortens the test URLs through the batch endpoint and returns their keys.
+     */
+    static String[] preload(HttpClient client, String baseUrl, int count) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"longUrl\":\"https://www.example.com/load/").append(i).append("\"}");
+        }
+        body.append(']');
+
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/shorten/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        List<String> keys = new ArrayList<>(count);
+        try (MappingIterator<JsonNode> results = new ObjectMapper().readerFor(JsonNode.class).readValues(response.body())) {
+            while (results.hasNext()) {
+                JsonNode result = results.next();
+                if (result.hasNonNull("shortUrl")) {
+                    String shortUrl = result.get("shortUrl").asText();
+                    keys.add(shortUrl.substring(shortUrl.lastIndexOf('/') + 1));
+                }
+            }
+        }
+        if (keys.isEmpty()) {
+            throw new IllegalStateException("No keys were created: " + response.statusCode() + " " + response.body());
+        }
+        return keys.toArray(new String[0]);
+    }
+
+    private Result step(String baseUrl, String[] keys, int concurrency, Duration duration)
+            throws InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<Callable<long[]>> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(() -> redirectUntil(baseUrl, keys, deadline, errors));
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long started = System.nanoTime();
+        List<Future<long[]>> recorded;
+        try {
+            recorded = clients.invokeAll(workers);
+        } finally {
+            clients.shutdown();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        long[][] latencies = new long[recorded.size()][];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = recorded.get(i).get();
+        }
+        long[] sorted = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(sorted, sorted.length * 1e9 / elapsed, errors.get());
+    }
+
+    /**
+     * Issues redirects back to back until the deadline and returns the latency of each successful one.
+     */
+    private long[] redirectUntil(String baseUrl, String[] keys, long deadline, AtomicLong errors) throws InterruptedException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        while (System.nanoTime() < deadline) {
+            String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/" + key))
+                        .timeout(Duration.ofSeconds(10)).GET().build(), HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 302) {
+                    errors.incrementAndGet();
+                    continue;
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /**
+     * Pauses all Redis clients for --redis-pause every --redis-pause-every, until interrupted.
+     */
+    private Thread startRedisStaller() {
+        String redis = options.get("redis");
+        if (redis == null) {
+            return null;
+        }
+        String[] hostAndPort = redis.split(":");
+        long pauseMillis = duration(option("redis-pause", "20ms")).toMillis();
+        long everyMillis = duration(option("redis-pause-every", "200ms")).toMillis();
+        Thread staller = new Thread(() -> {
+            try (Socket socket = new Socket(hostAndPort[0], Integer.parseInt(hostAndPort[1]))) {
+                OutputStream out = socket.getOutputStream();
+                String timeout = Long.toString(pauseMillis);
+                byte[] command = ("*3\r\n$6\r\nCLIENT\r\n$5\r\nPAUSE\r\n$" + timeout.length() + "\r\n" + timeout + "\r\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+                byte[] reply = new byte[64];
+                while (!Thread.currentThread().isInterrupted()) {
+                    out.write(command);
+                    out.flush();
+                    socket.getInputStream().read(reply);
+                    Thread.sleep(everyMillis);
+                }
+            } catch (IOException e) {
+                System.err.println("Redis staller stopped: " + e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "redis-staller");
+        staller.setDaemon(true);
+        staller.start();
+        return staller;
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofMillis(Long.parseLong(value));
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private record Result(long[] sortedLatencies, double rate, long errors) {
+
+        long percentile(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))];
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.ik.urlshortener.analytics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory click counters, recorded on every redirect and drained by {@link ClickFlusher}.
+ *  - counters are LongAdders in a ConcurrentHashMap, so recording a click for a known key is
+ *    a lookup and a striped increment: it never blocks and never waits on Redis
+ *  - drained counters are reset in place, so a click racing with a flush is counted in this
+ *    flush or the next one, not lost
+ *  - the buffer holds at most max-keys keys; clicks for new keys beyond that are dropped and
+ *    counted, instead of growing the heap while Redis is unavailable
+ *  - below a sample rate of 1, clicks are sampled and counted with the inverse weight
+ *
+ */
+
+@Component
+public class ClickBuffer implements MeterBinder {
+
+    static final String DIRECT = "direct";
+
+    static final String OTHER = "other";
+
+    // Distinct referrer hosts kept per key between flushes, the rest are counted as "other"
+    static final int MAX_REFERRERS = 32;
+
+    // Flushes a key may stay idle before its counters are removed from the buffer
+    private static final int IDLE_FLUSHES = 2;
+
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    private final ConcurrentHashMap<String, KeyClicks> buffer = new ConcurrentHashMap<>();
+
+    private final LongAdder droppedClicks = new LongAdder();
+
+    // The boxed current hour, shared by all clicks within the hour to avoid boxing per click
+    private volatile Long currentHour = 0L;
+
+    private final boolean enabled;
+
+    private final int maxKeys;
+
+    private final double sampleRate;
+
+    private final long sampleWeight;
+
+    public ClickBuffer(@Value("${url.shortener.analytics.enabled:true}") boolean enabled,
+                       @Value("${url.shortener.analytics.max-keys:100000}") int maxKeys,
+                       @Value("${url.shortener.analytics.sample-rate:1.0}") double sampleRate) {
+        if (sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Click sample rate must be in (0, 1]: " + sampleRate);
+        }
+        this.enabled = enabled;
+        this.maxKeys = maxKeys;
+        this.sampleRate = sampleRate;
+        this.sampleWeight = Math.round(1 / sampleRate);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counts a click on a short URL key. Safe to call from any number of request threads.
+     *
+     * @param shortUrlKey
+     * @param referrer the Referer header, may be null
+     */
+
+    public void record(String shortUrlKey, String referrer) {
+        record(shortUrlKey, referrer, System.currentTimeMillis());
+    }
+
+    void record(String shortUrlKey, String referrer, long timeMillis) {
+        if (!enabled || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        KeyClicks clicks = buffer.get(shortUrlKey);
+        if (clicks == null) {
+            if (buffer.size() >= maxKeys) {
+                droppedClicks.add(sampleWeight);
+                return;
+            }
+            clicks = buffer.computeIfAbsent(shortUrlKey, key -> new KeyClicks());
+        }
+        clicks.add(hour(timeMillis), referrerHost(referrer), sampleWeight);
+    }
+
+    /**
+     * Takes the clicks counted since the last drain and resets the counters. Keys idle for a
+     * few drains are removed.
+     *
+     * @return
+     */
+
+    public List<ClickDelta> drain() {
+        List<ClickDelta> deltas = new ArrayList<>();
+        for (Map.Entry<String, KeyClicks> entry : buffer.entrySet()) {
+            KeyClicks clicks = entry.getValue();
+            ClickDelta delta = clicks.drain(entry.getKey());
+            if (delta != null) {
+                deltas.add(delta);
+            } else if (++clicks.idleFlushes >= IDLE_FLUSHES) {
+                // A click recorded between the drain and the removal is lost, which is rare and acceptable
+                buffer.remove(entry.getKey(), clicks);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Puts back clicks that could not be flushed, so they are retried with the next flush.
+     *
+     * @param deltas
+     */
+
+    public void restore(List<ClickDelta> deltas) {
+        for (ClickDelta delta : deltas) {
+            KeyClicks clicks = buffer.get(delta.shortUrlKey());
+            if (clicks == null) {
+                if (buffer.size() >= maxKeys) {
+                    droppedClicks.add(delta.clicks());
+                    continue;
+                }
+                clicks = buffer.computeIfAbsent(delta.shortUrlKey(), key -> new KeyClicks());
+            }
+            clicks.restore(delta);
+        }
+    }
+
+    /**
+     * Clicks counted for the key that have not been flushed yet, without resetting them.
+     *
+     * @param shortUrlKey
+     * @return null if there are none
+     */
+
+    public ClickDelta pending(String shortUrlKey) {
+        KeyClicks clicks = buffer.get(shortUrlKey);
+        ClickDelta snapshot = clicks != null ? clicks.snapshot(shortUrlKey) : null;
+        return snapshot != null && snapshot.clicks() != 0 ? snapshot : null;
+    }
+
+    public long getDroppedClicks() {
+        return droppedClicks.sum();
+    }
+
+    /**
+     * Publishes the dropped clicks and the number of keys waiting to be flushed, which grows
+     * while the flush cannot keep up.
+     *
+     * @param registry
+     */
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("urlshortener.clicks.dropped", droppedClicks, LongAdder::sum)
+                .description("Clicks dropped because the click buffer was full")
+                .register(registry);
+        Gauge.builder("urlshortener.clicks.buffered.keys", buffer, Map::size)
+                .description("Short URL keys with clicks waiting to be flushed")
+                .register(registry);
+    }
+
+    private Long hour(long timeMillis) {
+        Long hour = currentHour;
+        if (hour != timeMillis / MILLIS_PER_HOUR) {
+            hour = timeMillis / MILLIS_PER_HOUR;
+            currentHour = hour;
+        }
+        return hour;
+    }
+
+    /**
+     * The host of a Referer header without allocating a URI, "direct" when absent.
+     */
+    static String referrerHost(String referrer) {
+        if (referrer == null || referrer.isEmpty()) {
+            return DIRECT;
+        }
+        int start = referrer.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < referrer.length()) {
+            char c = referrer.charAt(end);
+            if (c == '/' || c == '?' || c == '#' || c == ':') {
+                break;
+            }
+            end++;
+        }
+        return end > start ? referrer.substring(start, end).toLowerCase(Locale.ROOT) : OTHER;
+    }
+
+    /**
+     * Counters of one key.
+     */
+    private static final class KeyClicks {
+
+        private final LongAdder total = new LongAdder();
+        private final ConcurrentHashMap<Long, LongAdder> hours = new ConcurrentHashMap<>(2);
+        private final ConcurrentHashMap<String, LongAdder> referrers = new ConcurrentHashMap<>(4);
+
+        // Only touched by the flushing thread
+        private int idleFlushes;
+
+        private void add(Long hour, String referrer, long weight) {
+            total.add(weight);
+            counter(hours, hour).add(weight);
+            if (referrers.size() >= MAX_REFERRERS && !referrers.containsKey(referrer)) {
+                referrer = OTHER;
+            }
+            counter(referrers, referrer).add(weight);
+        }
+
+        private void restore(ClickDelta delta) {
+            total.add(delta.clicks());
+            delta.hourlyClicks().forEach((hour, clicks) -> counter(hours, hour).add(clicks));
+            delta.referrerClicks().forEach((referrer, clicks) -> counter(referrers, referrer).add(clicks));
+        }
+
+        private ClickDelta drain(String shortUrlKey) {
+            long clicks = total.sumThenReset();
+            if (clicks == 0) {
+                return null;
+            }
+            idleFlushes = 0;
+            return new ClickDelta(shortUrlKey, clicks, drain(hours), drain(referrers));
+        }
+
+        private ClickDelta snapshot(String shortUrlKey) {
+            Map<Long, Long> hourlyClicks = new HashMap<>();
+            hours.forEach((hour, clicks) -> hourlyClicks.put(hour, clicks.sum()));
+            Map<String, Long> referrerClicks = new HashMap<>();
+            referrers.forEach((referrer, clicks) -> referrerClicks.put(referrer, clicks.sum()));
+            return new ClickDelta(shortUrlKey, total.sum(), hourlyClicks, referrerClicks);
+        }
+
+        private static <K> Map<K, Long> drain(ConcurrentHashMap<K, LongAdder> counters) {
+            Map<K, Long> drained = new HashMap<>();
+            for (Map.Entry<K, LongAdder> entry : counters.entrySet()) {
+                long clicks = entry.getValue().sumThenReset();
+                if (clicks != 0) {
+                    drained.put(entry.getKey(), clicks);
+                } else {
+                    counters.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            return drained;
+        }
+
+        private static <K> LongAdder counter(ConcurrentHashMap<K, LongAdder> counters, K key) {
+            LongAdder counter = counters.get(key);
+            return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.ik.urlshortener.analytics;
+
+import java.util.Map;
+
+/**
+ * Clicks counted for one short URL key since the last flush.
+ *
+ * @param shortUrlKey
+ * @param clicks total clicks
+ * @param hourlyClicks clicks per hour, keyed by hours since the epoch (UTC)
+ * @param referrerClicks clicks per referrer host, "direct" when there was no referrer
+ */
+
+public record ClickDelta(String shortUrlKey, long clicks, Map<Long, Long> hourlyClicks, Map<String, Long> referrerClicks) {
+}
@@ -0,0 +1,63 @@
+package com.ik.urlshortener.analytics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.RedisClickStatsStore;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.List;
+
+/**
+ * Periodically drains the {@link ClickBuffer} and adds the counts to Redis in pipelined batches,
+ * on the scheduler thread, never on a request thread. Clicks that fail to flush are put back
+ * into the buffer and retried with the next flush.
+ *
+ */
+
+@Component
+@ConditionalOnProperty(name = "url.shortener.analytics.enabled", havingValue = "true", matchIfMissing = true)
+public class ClickFlusher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickFlusher.class);
+
+    @Autowired
+    private ClickBuffer clickBuffer;
+
+    @Autowired
+    private RedisClickStatsStore clickStatsStore;
+
+    @Value("${url.shortener.analytics.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${url.shortener.analytics.flush-interval-ms:1000}",
+            initialDelayString = "${url.shortener.analytics.flush-interval-ms:1000}")
+    public void flush() {
+        List<ClickDelta> deltas = clickBuffer.drain();
+        for (int start = 0; start < deltas.size(); start += batchSize) {
+            List<ClickDelta> batch = deltas.subList(start, Math.min(start + batchSize, deltas.size()));
+            try {
+                clickStatsStore.add(batch);
+            } catch (RuntimeException e) {
+                // Keep the remaining clicks for the next flush rather than losing them
+                List<ClickDelta> unflushed = deltas.subList(start, deltas.size());
+                logger.warn("Unable to flush clicks for {} short URL keys, retrying with the next flush: {}",
+                        unflushed.size(), e.getMessage());
+                clickBuffer.restore(unflushed);
+                return;
+            }
+        }
+        logger.debug("Flushed clicks for {} short URL keys", deltas.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,193 @@
+package com.ik.urlshortener.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlMappingStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Warms the redirect cache of a new instance with the keys that were hot before, so that a
+ * scale-out does not send every redirect of the new instances to Redis at once.
+ *  - every snapshot interval, a warm instance saves the keys its redirect cache ranks hottest
+ *    (by Caffeine's frequency sketch) as the hot-key snapshot: in Redis, shared by every
+ *    instance, or in the log directory with the embedded engine
+ *  - on startup, before /ping reports UP and readiness turns to ACCEPTING_TRAFFIC, the top-N
+ *    keys of the snapshot are read in batches, one pipelined call each, into the redirect cache
+ *  - warm-up gives up at the timeout, or when the snapshot or the store cannot be read, and the
+ *    instance starts cold rather than not at all
+ *
+ */
+
+@Component
+@ConditionalOnWebApplication
+@ConditionalOnProperty(name = "url.shortener.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+    // Snapshots nobody has refreshed for this long are dropped from Redis
+    private static final Duration SNAPSHOT_TTL = Duration.ofDays(7);
+
+    @Autowired
+    private RedirectCache redirectCache;
+
+    @Autowired
+    private UrlMappingStore urlMappingStore;
+
+    @Autowired(required = false)
+    private StringRedisTemplate redisTemplate;
+
+    private final int topN;
+
+    private final int batchSize;
+
+    private final Duration timeout;
+
+    private final String snapshotKey;
+
+    // Where the embedded engine keeps the snapshot, null to keep it in Redis
+    private final Path snapshotFile;
+
+    private volatile boolean warm;
+
+    public CacheWarmer(@Value("${url.shortener.warmup.top-n:10000}") int topN,
+                       @Value("${url.shortener.warmup.batch-size:1000}") int batchSize,
+                       @Value("${url.shortener.warmup.timeout:30s}") Duration timeout,
+                       @Value("${url.shortener.warmup.snapshot-key:hot-keys}") String snapshotKey,
+                       @Value("${url.shortener.storage.engine:redis}") String storageEngine,
+                       @Value("${url.shortener.embedded.directory:data}") Path directory) {
+        if (topN < 0 || batchSize < 1) {
+            throw new IllegalArgumentException("Warm-up needs top-n of 0 or more and a positive batch size: " + topN + ", " + batchSize);
+        }
+        this.topN = topN;
+        this.batchSize = batchSize;
+        this.timeout = timeout;
+        this.snapshotKey = snapshotKey;
+        this.snapshotFile = "embedded".equals(storageEngine) ? directory.resolve(snapshotKey) : null;
+    }
+
+    /**
+     * Whether warm-up is over, successful or not.
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Loads the hot keys of the snapshot into the redirect cache. Runs before the application
+     * is marked ready, so the readiness state only turns to ACCEPTING_TRAFFIC afterwards.
+     *
+     * @return the number of keys loaded
+     */
+
+    @EventListener(ApplicationReadyEvent.class)
+    public int warmUp() {
+        long startedAt = System.nanoTime();
+        int loaded = 0;
+        try {
+            List<String> hotKeys = readSnapshot();
+            for (int from = 0; from < hotKeys.size(); from += batchSize) {
+                if (System.nanoTime() - startedAt > timeout.toNanos()) {
+                    logger.warn("Cache warm-up timed out after {} of {} hot keys", from, hotKeys.size());
+                    break;
+                }
+                List<String> batch = hotKeys.subList(from, Math.min(from + batchSize, hotKeys.size()));
+                List<StoredUrl> storedUrls = urlMappingStore.findStoredUrls(batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    // Keys that have gone since the snapshot are left to the negative cache
+                    if (storedUrls.get(i) != null) {
+                        redirectCache.put(batch.get(i), storedUrls.get(i));
+                        loaded++;
+                    }
+                }
+            }
+            logger.info("Warmed the redirect cache with {} hot keys in {} ms", loaded, (System.nanoTime() - startedAt) / 1_000_000);
+        } catch (RuntimeException e) {
+            // Whatever the store or the snapshot fails with, a cold start beats none
+            logger.warn("Cache warm-up failed, starting cold: {}", e.toString());
+        } finally {
+            warm = true;
+        }
+        return loaded;
+    }
+
+    /**
+     * Saves the hottest keys of the redirect cache as the snapshot. Instances that are still
+     * warming up, or have seen no traffic, leave the snapshot alone.
+     */
+    @Scheduled(fixedDelayString = "${url.shortener.warmup.snapshot-interval-ms:300000}",
+            initialDelayString = "${url.shortener.warmup.snapshot-interval-ms:300000}")
+    public void saveSnapshot() {
+        if (!warm) {
+            return;
+        }
+        List<String> hotKeys = redirectCache.hottestKeys(topN);
+        if (hotKeys.isEmpty()) {
+            return;
+        }
+        try {
+            writeSnapshot(String.join("\n", hotKeys));
+            logger.debug("Saved a snapshot of {} hot keys", hotKeys.size());
+        } catch (DataAccessException | UncheckedIOException e) {
+            logger.warn("Unable to save the hot-key snapshot: {}", e.getMessage());
+        }
+    }
+
+    private List<String> readSnapshot() {
+        String snapshot;
+        if (snapshotFile != null) {
+            try {
+                snapshot = Files.readString(snapshotFile);
+            } catch (NoSuchFileException e) {
+                snapshot = null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            snapshot = redisTemplate != null ? redisTemplate.opsForValue().get(snapshotKey) : null;
+        }
+        if (snapshot == null || snapshot.isEmpty()) {
+            return List.of();
+        }
+        List<String> hotKeys = Arrays.asList(snapshot.split("\n"));
+        return hotKeys.subList(0, Math.min(topN, hotKeys.size()));
+    }
+
+    private void writeSnapshot(String snapshot) {
+        if (snapshotFile == null) {
+            if (redisTemplate != null) {
+                redisTemplate.opsForValue().set(snapshotKey, snapshot, SNAPSHOT_TTL);
+            }
+            return;
+        }
+        try {
+            // Replaced in one step, so a crash never leaves half a snapshot
+            Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            Files.writeString(temporary, snapshot);
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
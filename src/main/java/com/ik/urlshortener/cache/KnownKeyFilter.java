@@ -0,0 +1,221 @@
+package com.ik.urlshortener.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.UrlMappingStore;
+import com.ik.urlshortener.util.Hashing;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter of every short URL key in the data store, so that lookups of keys that were
+ * never created (scanners, bots, /favicon.ico) are answered with a 404 without a Redis call.
+ *  - the bits live in a long[] (an AtomicLongArray, so adds from request threads never lock);
+ *    at the default 1% false positive rate that is about 1.2 bytes per key
+ *  - a negative answer is definite, a positive one means the data store has to be asked
+ *  - the filter answers "maybe" to everything until it has been built from the data store, and
+ *    again from the moment it may have missed keys until it is rebuilt
+ *  - each rebuild is sized for twice the keys found, so the false positive rate stays near its
+ *    target as the keyspace grows
+ *
+ * Keys created on this node are added right after they are claimed; keys created on other nodes
+ * arrive through {@link KnownKeyFilterSync}.
+ *
+ */
+
+@Component
+public class KnownKeyFilter implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnownKeyFilter.class);
+
+    private final boolean enabled;
+
+    private final long expectedKeys;
+
+    private final double falsePositiveRate;
+
+    private volatile Bits bits;
+
+    // The filter being rebuilt, if any; keys added meanwhile go into both
+    private volatile Bits building;
+
+    private volatile boolean ready;
+
+    // Bumped whenever keys may have been missed, so that a rebuild started before that cannot mark the filter ready
+    private final AtomicInteger epoch = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public KnownKeyFilter(@Value("${url.shortener.key-filter.enabled:true}") boolean enabled,
+                          @Value("${url.shortener.key-filter.expected-keys:1000000}") long expectedKeys,
+                          @Value("${url.shortener.key-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("url.shortener.key-filter.false-positive-rate must be within (0, 1), got " + falsePositiveRate);
+        }
+        this.enabled = enabled;
+        this.expectedKeys = Math.max(1, expectedKeys);
+        this.falsePositiveRate = falsePositiveRate;
+        this.bits = new Bits(this.expectedKeys, falsePositiveRate);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Whether the key may exist. False only if the filter is built and the key was never added.
+     *
+     * @param shortUrlKey
+     * @return
+     */
+
+    public boolean mightContain(String shortUrlKey) {
+        if (!ready) {
+            return true;
+        }
+        if (bits.mightContain(hash(shortUrlKey))) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void add(String shortUrlKey) {
+        long hash = hash(shortUrlKey);
+        // Read building before bits: a rebuild publishes bits before it clears building, so a key
+        // that finds no rebuild in progress goes into the filter the rebuild swapped in
+        Bits rebuilt = building;
+        bits.add(hash);
+        if (rebuilt != null) {
+            rebuilt.add(hash);
+        }
+    }
+
+    /**
+     * Stops answering "no" until the next rebuild, because keys may have been created without
+     * being added, e.g. while the subscription to new keys was down.
+     */
+    public void invalidate() {
+        epoch.incrementAndGet();
+        ready = false;
+    }
+
+    /**
+     * Builds a new filter from every key of the data store and swaps it in. Keys added while the
+     * scan runs are added to both filters, so none is lost with the swap.
+     *
+     * @param urlMappingStore
+     * @return the number of keys scanned
+     */
+
+    public synchronized long rebuild(UrlMappingStore urlMappingStore) {
+        int startEpoch = epoch.get();
+        long startedAt = System.nanoTime();
+
+        Bits rebuilt = new Bits(Math.max(expectedKeys, 2 * bits.keys.get()), falsePositiveRate);
+        building = rebuilt;
+        try {
+            urlMappingStore.scanKeys(key -> rebuilt.add(hash(key)));
+            bits = rebuilt;
+        } finally {
+            building = null;
+        }
+        ready = epoch.get() == startEpoch;
+
+        logger.info("Rebuilt the known key filter from {} keys in {} ms ({} KB, ready: {})", rebuilt.keys.get(),
+                (System.nanoTime() - startedAt) / 1_000_000, rebuilt.words.length() / 128, ready);
+        return rebuilt.keys.get();
+    }
+
+    /**
+     * Publishes the rejected lookups, whether the filter is answering, and its size in keys.
+     *
+     * @param registry
+     */
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("urlshortener.keyfilter.rejected", rejected, LongAdder::sum)
+                .description("Lookups answered as not found by the known key filter, without a data store call")
+                .register(registry);
+        Gauge.builder("urlshortener.keyfilter.ready", this, filter -> filter.ready ? 1 : 0)
+                .description("Whether the known key filter is built and answering")
+                .register(registry);
+        Gauge.builder("urlshortener.keyfilter.keys", this, filter -> filter.bits.keys.get())
+                .description("Keys added to the known key filter since it was built")
+                .register(registry);
+    }
+
+    /**
+     * The two 32-bit halves of the hash drive the double hashing of the probes.
+     */
+    static long hash(String shortUrlKey) {
+        return Hashing.hash64(shortUrlKey);
+    }
+
+    /**
+     * The bit array and probe count of one filter, sized for a number of keys and a false
+     * positive rate: m = -n ln(p) / ln(2)^2 bits and k = m / n ln(2) probes.
+     */
+    static final class Bits {
+
+        private final AtomicLongArray words;
+
+        private final long bitCount;
+
+        private final int probes;
+
+        // Approximate, counts keys added twice twice
+        private final AtomicLong keys = new AtomicLong();
+
+        Bits(long expectedKeys, double falsePositiveRate) {
+            long bitsNeeded = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bitsNeeded + 63) >>> 6));
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = (long) wordCount << 6;
+            this.probes = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * Math.log(2)));
+        }
+
+        void add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= probes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = words.get(word);
+                while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                    current = words.get(word);
+                }
+            }
+            keys.incrementAndGet();
+        }
+
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= probes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.ik.urlshortener.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.ShardedUrlMappingStore;
+import com.ik.urlshortener.repository.UrlMappingStore;
+
+import jakarta.annotation.PreDestroy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the {@link KnownKeyFilter} of this node in step with the data store.
+ *  - the claim script publishes every new key on the key channel in the same atomic step that
+ *    writes it, so each node subscribed to the channel adds keys created anywhere
+ *  - Pub/Sub drops messages while a subscriber is disconnected, so every (re)subscription
+ *    stops the filter from answering "no" and rebuilds it from a SCAN of the keyspace
+ *  - the filter is also rebuilt periodically, which resizes it as the keyspace grows
+ *
+ * Rebuilds run on a background thread. While one is running, or if Redis is unavailable, the
+ * filter answers "maybe" and lookups go to the data store as before. The embedded storage
+ * engine does not need the filter, since its misses never leave the process.
+ *
+ * With sharding, each node publishes the keys it stores, so there is one subscription per node.
+ *
+ */
+
+@Component
+@ConditionalOnExpression("${url.shortener.key-filter.enabled:true} and '${url.shortener.storage.engine:redis}' == 'redis'")
+public class KnownKeyFilterSync implements MessageListener, SubscriptionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnownKeyFilterSync.class);
+
+    private final KnownKeyFilter keyFilter;
+
+    private final UrlMappingStore urlMappingStore;
+
+    private final List<RedisMessageListenerContainer> listenerContainers;
+
+    // Delay between attempts to subscribe while Redis is unavailable
+    private static final long SUBSCRIBE_RETRY_SECONDS = 5;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "known-key-filter-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Set while a rebuild is queued or running, so that bursts of triggers cause a single rebuild
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    public KnownKeyFilterSync(KnownKeyFilter keyFilter,
+                              UrlMappingStore urlMappingStore,
+                              RedisConnectionFactory connectionFactory,
+                              @Value("${url.shortener.key-filter.channel:url-shortener:keys}") String channel) {
+        this.keyFilter = keyFilter;
+        this.urlMappingStore = urlMappingStore;
+        List<RedisConnectionFactory> connectionFactories = urlMappingStore instanceof ShardedUrlMappingStore shardedStore
+                ? shardedStore.getConnectionFactories()
+                : List.of(connectionFactory);
+        this.listenerContainers = connectionFactories.stream()
+                .map(nodeConnectionFactory -> listenerContainer(nodeConnectionFactory, channel))
+                .toList();
+    }
+
+    private RedisMessageListenerContainer listenerContainer(RedisConnectionFactory connectionFactory, String channel) {
+        RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+        listenerContainer.afterPropertiesSet();
+        return listenerContainer;
+    }
+
+    /**
+     * Subscribes once the application is up, in the background and retrying until Redis is
+     * available; the first subscription triggers the first build.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        for (RedisMessageListenerContainer listenerContainer : listenerContainers) {
+            executor.execute(() -> startListening(listenerContainer));
+        }
+    }
+
+    private void startListening(RedisMessageListenerContainer listenerContainer) {
+        try {
+            listenerContainer.start();
+        } catch (RuntimeException e) {
+            logger.warn("Unable to subscribe to new keys, retrying in {} s: {}", SUBSCRIBE_RETRY_SECONDS, e.getMessage());
+            listenerContainer.stop();
+            executor.schedule(() -> startListening(listenerContainer), SUBSCRIBE_RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        keyFilter.add(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        // Keys published before this subscription (or while it was down) were missed
+        keyFilter.invalidate();
+        requestRebuild();
+    }
+
+    @Override
+    public void onChannelUnsubscribed(byte[] channel, long count) {
+        keyFilter.invalidate();
+    }
+
+    @Scheduled(fixedDelayString = "${url.shortener.key-filter.rebuild-interval-ms:3600000}",
+            initialDelayString = "${url.shortener.key-filter.rebuild-interval-ms:3600000}")
+    public void requestRebuild() {
+        if (!rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::rebuild);
+        } catch (RejectedExecutionException e) {
+            rebuildPending.set(false);
+        }
+    }
+
+    private void rebuild() {
+        rebuildPending.set(false);
+        try {
+            keyFilter.rebuild(urlMappingStore);
+        } catch (RuntimeException e) {
+            // Retried with the next resubscription or periodic rebuild; until then lookups go to the data store
+            logger.warn("Unable to rebuild the known key filter: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        executor.shutdownNow();
+        for (RedisMessageListenerContainer listenerContainer : listenerContainers) {
+            listenerContainer.destroy();
+        }
+    }
+}
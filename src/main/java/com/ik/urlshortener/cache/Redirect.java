@@ -0,0 +1,39 @@
+package com.ik.urlshortener.cache;
+
+import com.ik.urlshortener.repository.StoredUrl;
+
+import java.net.URI;
+
+/**
+ * A redirect as held by the {@link RedirectCache}: the stored URL along with the value of its
+ * Location header, validated and encoded once when the mapping is loaded rather than on every
+ * redirect.
+ *
+ * @param storedUrl the URL and its expiry
+ * @param location  the US-ASCII Location header value, the URL itself unless it needed encoding,
+ *                  or null if the URL is not a valid URI
+ */
+
+public record Redirect(StoredUrl storedUrl, String location) {
+
+    /**
+     * The redirect of a stored URL, or null for a null URL.
+     */
+    public static Redirect of(StoredUrl storedUrl) {
+        if (storedUrl == null) {
+            return null;
+        }
+        String location;
+        try {
+            location = URI.create(storedUrl.longUrl()).toASCIIString();
+        } catch (IllegalArgumentException e) {
+            location = null;
+        }
+        // Share the URL's characters in the common case of a URL that is already plain ASCII
+        return new Redirect(storedUrl, storedUrl.longUrl().equals(location) ? storedUrl.longUrl() : location);
+    }
+
+    public String longUrl() {
+        return storedUrl.longUrl();
+    }
+}
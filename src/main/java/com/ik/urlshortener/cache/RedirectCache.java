@@ -0,0 +1,251 @@
+package com.ik.urlshortener.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ik.urlshortener.repository.StoredUrl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * In-process read-through cache that sits in front of the data store for redirects.
+ *  - mappings never change once created, so hits are kept until evicted, or until the link
+ *    expires for expiring links
+ *  - unknown keys are cached as misses for a short time only
+ *  - each hit holds its {@link Redirect}, so the Location header is encoded once per load
+ *    and cache hits can be answered without touching the URL again
+ *  - eviction is bounded by weight (roughly the bytes held) and uses Caffeine's
+ *    frequency-aware W-TinyLFU policy, so a burst of one-off keys cannot flush the hot set
+ *
+ */
+
+@Component
+public class RedirectCache implements MeterBinder {
+
+    // Approximate per-entry overhead (node, key/value headers, Optional, Redirect) counted into the weight
+    static final int ENTRY_OVERHEAD = 112;
+
+    private final Cache<String, Optional<Redirect>> cache;
+
+    public RedirectCache(@Value("${url.shortener.cache.maximum-weight:67108864}") long maximumWeight,
+                         @Value("${url.shortener.cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String key, Optional<Redirect> value) -> weigh(key, value))
+                .expireAfter(new HitOrMissExpiry(negativeTtl.toNanos()))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the redirect for the key, calling the loader only on a cache miss. A null
+     * result from the loader is remembered as a miss for the negative TTL.
+     *
+     * @param shortUrlKey
+     * @param loader
+     * @return the redirect or null if the key is unknown
+     */
+
+    public Redirect get(String shortUrlKey, Function<String, StoredUrl> loader) {
+        return cache.get(shortUrlKey, key -> Optional.ofNullable(Redirect.of(loader.apply(key)))).orElse(null);
+    }
+
+    /**
+     * Returns the redirect for the key if it is cached as a hit, without loading it. Keys that
+     * are not cached, or cached as misses, are not counted, so that the lookup that follows for
+     * them counts once.
+     *
+     * @param shortUrlKey
+     * @return the redirect, or null unless the key is cached as a hit
+     */
+
+    public Redirect getHit(String shortUrlKey) {
+        Optional<Redirect> peeked = cache.policy().getIfPresentQuietly(shortUrlKey);
+        if (peeked == null || peeked.isEmpty()) {
+            return null;
+        }
+        // Counted as a hit and towards the key's frequency
+        Optional<Redirect> cached = cache.getIfPresent(shortUrlKey);
+        return cached != null ? cached.orElse(null) : null;
+    }
+
+    /**
+     * Returns the long URLs for all the keys, in the order given. Keys missing from the cache are
+     * loaded with one call to the loader, which returns the long URL of each key it was given, or
+     * null where the key is unknown. Unknown keys map to null and are remembered as misses.
+     *
+     * @param shortUrlKeys
+     * @param loader
+     * @return
+     */
+
+    public Map<String, String> getAll(Collection<String> shortUrlKeys, Function<List<String>, List<StoredUrl>> loader) {
+        Map<String, Optional<Redirect>> cached = cache.getAll(shortUrlKeys, missingKeys -> {
+            List<String> keys = new ArrayList<>(missingKeys);
+            List<StoredUrl> storedUrls = loader.apply(keys);
+            Map<String, Optional<Redirect>> loaded = new HashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                loaded.put(keys.get(i), Optional.ofNullable(Redirect.of(storedUrls.get(i))));
+            }
+            return loaded;
+        });
+
+        Map<String, String> longUrls = new LinkedHashMap<>();
+        for (String shortUrlKey : shortUrlKeys) {
+            longUrls.put(shortUrlKey, cached.getOrDefault(shortUrlKey, Optional.empty()).map(Redirect::longUrl).orElse(null));
+        }
+        return longUrls;
+    }
+
+    /**
+     * Looks the key up without loading it, for callers that load from the data store themselves
+     * (the reactive service).
+     *
+     * @param shortUrlKey
+     * @return null if nothing is cached, an empty Optional if the key is cached as unknown
+     */
+
+    public Optional<String> getIfPresent(String shortUrlKey) {
+        Optional<Redirect> cached = cache.getIfPresent(shortUrlKey);
+        return cached != null ? cached.map(Redirect::longUrl) : null;
+    }
+
+    /**
+     * Records the result of a lookup, replacing whatever is cached for the same key. A null URL
+     * is remembered as a miss for the negative TTL.
+     *
+     * @param shortUrlKey
+     * @param storedUrl
+     */
+
+    public void put(String shortUrlKey, StoredUrl storedUrl) {
+        cache.put(shortUrlKey, Optional.ofNullable(Redirect.of(storedUrl)));
+    }
+
+    /**
+     * Forgets whatever is cached for the key, so the next lookup goes to the data store.
+     *
+     * @param shortUrlKey
+     */
+
+    public void invalidate(String shortUrlKey) {
+        cache.invalidate(shortUrlKey);
+    }
+
+    /**
+     * The cached keys that map to a URL, hottest first as ranked by the eviction policy's
+     * frequency sketch, for the warm-up snapshot.
+     *
+     * @param limit the most keys to return
+     * @return
+     */
+
+    public List<String> hottestKeys(int limit) {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.hottest(entries -> entries
+                        .filter(entry -> entry.getValue().isPresent())
+                        .limit(limit)
+                        .map(Map.Entry::getKey)
+                        .toList()))
+                .orElse(List.of());
+    }
+
+    /**
+     * Hit, miss and eviction counters along with the current occupancy, for sizing the cache.
+     *
+     * @return
+     */
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("hitCount", stats.hitCount());
+        response.put("missCount", stats.missCount());
+        response.put("hitRate", stats.hitRate());
+        response.put("evictionCount", stats.evictionCount());
+        response.put("evictionWeight", stats.evictionWeight());
+        response.put("estimatedSize", cache.estimatedSize());
+        response.put("weightedSize", cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L));
+        return response;
+    }
+
+    /**
+     * Publishes the cache counters as cache.gets (result=hit|miss), cache.evictions and cache.size
+     * with cache=redirect, from which the hit ratio is derived.
+     *
+     * @param registry
+     */
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "redirect");
+    }
+
+    private static int weigh(String key, Optional<Redirect> value) {
+        // Strings on the heap are 1 byte per char for Latin-1 content, which URLs almost always are
+        return ENTRY_OVERHEAD + key.length() + value.map(RedirectCache::weigh).orElse(0);
+    }
+
+    private static int weigh(Redirect redirect) {
+        int weight = redirect.longUrl().length();
+        // The location is a string of its own only where the URL needed encoding
+        if (redirect.location() != null && redirect.location() != redirect.longUrl()) {
+            weight += redirect.location().length();
+        }
+        return weight;
+    }
+
+    /**
+     * Hits expire with their link, if ever, misses expire after the negative TTL.
+     */
+    private static final class HitOrMissExpiry implements Expiry<String, Optional<Redirect>> {
+
+        private final long negativeTtlNanos;
+
+        private HitOrMissExpiry(long negativeTtlNanos) {
+            this.negativeTtlNanos = negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<Redirect> value, long currentTime) {
+            if (value.isEmpty()) {
+                return negativeTtlNanos;
+            }
+            StoredUrl storedUrl = value.get().storedUrl();
+            if (!storedUrl.expires()) {
+                return Long.MAX_VALUE;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, storedUrl.expiresAt() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<Redirect> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<Redirect> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.ik.urlshortener.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.lettuce.core.metrics.MicrometerOptions;
+
+/**
+ * Per-command Redis latency from Lettuce, published as lettuce.command.completion and
+ * lettuce.command.firstresponse timers (tagged with the command and the Redis node). Spring
+ * Boot records them without histograms by default; with histograms on, Redis percentiles can
+ * be told apart from the request percentiles in Prometheus.
+ *
+ */
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MicrometerOptions micrometerOptions() {
+        return MicrometerOptions.builder().histogram(true).build();
+    }
+}
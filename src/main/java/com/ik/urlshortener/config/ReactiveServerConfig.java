@@ -0,0 +1,32 @@
+package com.ik.urlshortener.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Runs the reactive stack on Reactor Netty with a fixed number of event-loop threads. Declared
+ * here because Spring Boot would otherwise pick Tomcat, which is on the classpath for the servlet
+ * stack.
+ *
+ */
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveServerConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(
+            @Value("${url.shortener.reactive.event-loop-threads:0}") int eventLoopThreads) {
+        int threads = eventLoopThreads > 0 ? eventLoopThreads : Runtime.getRuntime().availableProcessors();
+        LoopResources loops = LoopResources.create("url-shortener-http", 1, threads, true);
+
+        NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory();
+        factory.addServerCustomizers(server -> server.runOn(loops));
+        return factory;
+    }
+}
@@ -0,0 +1,122 @@
+package com.ik.urlshortener.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.analytics.ClickBuffer;
+import com.ik.urlshortener.cache.CacheWarmer;
+import com.ik.urlshortener.service.ReactiveUrlShortenerService;
+
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * WebFlux counterpart of {@link UrlShortenerController}, active when the application runs as a
+ * reactive web application (the reactive profile). Batch shortening, bulk resolve and click
+ * stats are only offered by the servlet stack; clicks are counted by both.
+ *
+ */
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUrlShortenerController {
+
+    @Autowired
+    private ReactiveUrlShortenerService urlShortenerService;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUrlShortenerController.class);
+
+    @Autowired
+    private ClickBuffer clickBuffer;
+
+    // Absent when warm-up is disabled
+    @Autowired(required = false)
+    private CacheWarmer cacheWarmer;
+
+    @Value("${url.shortener.base-url}")
+    private String baseUrl;
+
+    // Endpoint to shorten a URL
+    @PostMapping("/shorten")
+    public Mono<ResponseEntity<Map<String, String>>> shortenUrl(@RequestBody Map<String, String> request) {
+        String longUrl = request.get("longUrl");
+        logger.debug("Received request to shorten URL: {}", longUrl);
+        return urlShortenerService.shortenUrl(longUrl).map(shortUrlKey -> {
+            // Use the configured base URL
+            String shortUrl = baseUrl + "/" + shortUrlKey;
+
+            Map<String, String> response = new HashMap<>();
+            response.put("shortUrl", shortUrl);
+
+            logger.debug("Shortened URL: {} to {}", longUrl, shortUrl);
+            return ResponseEntity.ok(response);
+        });
+    }
+
+    // Health check URL
+    @GetMapping("/ping")
+    public ResponseEntity<Map<String, String>> healthCheck() {
+        Map<String, String> response = new HashMap<>();
+        if (cacheWarmer != null && !cacheWarmer.isWarm()) {
+            response.put("status", "WARMING_UP");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        response.put("status", "UP");
+        return ResponseEntity.ok(response);
+    }
+
+    // Default homepage endpoint
+    @GetMapping("/")
+    public ResponseEntity<Map<String, String>> homePage() {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Welcome to the URL Shortener Service!");
+        response.put("usage", "Use POST /shorten with a JSON body containing 'longUrl' to shorten a URL.");
+        return ResponseEntity.ok(response);
+    }
+
+    // Redirect cache counters, used to size the local cache
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(urlShortenerService.getCacheStats());
+    }
+
+    // Endpoint to redirect to the original URL
+    @GetMapping("/{shortUrlKey}")
+    public Mono<ResponseEntity<Void>> redirectToLongUrl(@PathVariable String shortUrlKey,
+                                                        @RequestHeader(value = HttpHeaders.REFERER, required = false) String referrer) {
+        logger.debug("Received request to redirect short URL: {}", shortUrlKey);
+        return urlShortenerService.getLongUrl(shortUrlKey)
+                .map(longUrl -> {
+                    clickBuffer.record(shortUrlKey, referrer); // Counted in memory, never blocks the event loop
+                    logger.debug("Redirecting to long URL: {}", longUrl);
+                    return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(longUrl)).<Void>build();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    logger.debug("Short URL key not found: {}", shortUrlKey);
+                    return ResponseEntity.notFound().build();
+                }));
+    }
+
+    // Shed load while Redis cannot keep up, instead of queueing requests behind it
+    @ExceptionHandler(ReactiveUrlShortenerService.OverloadedException.class)
+    public ResponseEntity<Void> overloaded(ReactiveUrlShortenerService.OverloadedException e) {
+        logger.debug("Shedding request: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+}
@@ -0,0 +1,92 @@
+package com.ik.urlshortener.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+
+import com.ik.urlshortener.analytics.ClickBuffer;
+import com.ik.urlshortener.cache.Redirect;
+import com.ik.urlshortener.service.UrlShortenerService;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Answers redirects of keys held by the redirect cache in the servlet filter chain, ahead of
+ * Spring MVC: no handler lookup, argument resolution, ResponseEntity or URI parsing, only the
+ * status and the precomputed Location and Cache-Control headers. Everything else, including keys
+ * that are not cached yet, goes on to the controller, whose lookup fills the cache.
+ *
+ */
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "url.shortener.redirect.fast-path.enabled", havingValue = "true", matchIfMissing = true)
+public class RedirectFastPathFilter extends OncePerRequestFilter {
+
+    // The pattern of the redirect endpoint, reported to the HTTP server metrics
+    private static final String PATTERN = "/{shortUrlKey}";
+
+    @Autowired
+    private UrlShortenerService urlShortenerService;
+
+    @Autowired
+    private ClickBuffer clickBuffer;
+
+    @Autowired
+    private RedirectPolicy redirectPolicy;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String shortUrlKey = shortUrlKey(request);
+        Redirect redirect = shortUrlKey != null ? urlShortenerService.getCachedRedirect(shortUrlKey) : null;
+        if (redirect == null || redirect.location() == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        clickBuffer.record(shortUrlKey, request.getHeader(HttpHeaders.REFERER));
+        ServerHttpObservationFilter.findObservationContext(request).ifPresent(context -> context.setPathPattern(PATTERN));
+        response.setStatus(redirectPolicy.getStatus());
+        response.setHeader(HttpHeaders.LOCATION, redirect.location());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, redirectPolicy.cacheControl(redirect.storedUrl()));
+        response.setContentLength(0);
+    }
+
+    /**
+     * The key of a GET or HEAD request for a single path segment of letters and digits.
+     *
+     * @param request
+     * @return the key, or null for any other request
+     */
+
+    public static String shortUrlKey(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return null;
+        }
+        String uri = request.getRequestURI();
+        int start = request.getContextPath().length() + 1;
+        if (uri.length() <= start || uri.charAt(start - 1) != '/') {
+            return null;
+        }
+        for (int i = start; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'A' || c > 'Z') && (c < 'a' || c > 'z')) {
+                return null;
+            }
+        }
+        return uri.substring(start);
+    }
+}
@@ -0,0 +1,67 @@
+package com.ik.urlshortener.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import com.ik.urlshortener.repository.StoredUrl;
+
+import java.time.Duration;
+
+/**
+ * How redirects are answered: with a 302 (Found) by default, or a 301, 307 or 308, and with the
+ * Cache-Control header that decides whether browsers and CDNs may answer repeat clicks.
+ *  - with a max-age of 0, redirects carry "no-cache", so every click reaches the service and is
+ *    counted, also for a 301 that browsers would otherwise cache for good
+ *  - with a max-age above 0 they carry "public, max-age=N", capped at the time left for expiring
+ *    links; repeat clicks answered by a cache are not counted
+ *
+ */
+
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RedirectPolicy {
+
+    private final int status;
+
+    private final long maxAgeSeconds;
+
+    // The header of links that never expire, built once
+    private final String cacheControl;
+
+    public RedirectPolicy(@Value("${url.shortener.redirect.status:302}") int status,
+                          @Value("${url.shortener.redirect.cache-max-age:0s}") Duration maxAge) {
+        if (status != 301 && status != 302 && status != 307 && status != 308) {
+            throw new IllegalArgumentException("Redirect status must be 301, 302, 307 or 308: " + status);
+        }
+        if (maxAge.isNegative()) {
+            throw new IllegalArgumentException("Redirect cache max-age must not be negative: " + maxAge);
+        }
+        this.status = status;
+        this.maxAgeSeconds = maxAge.toSeconds();
+        this.cacheControl = cacheControl(maxAgeSeconds);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * The Cache-Control header of a redirect to the URL.
+     *
+     * @param storedUrl
+     * @return
+     */
+
+    public String cacheControl(StoredUrl storedUrl) {
+        if (!storedUrl.expires() || maxAgeSeconds == 0) {
+            return cacheControl;
+        }
+        long secondsLeft = Math.max(0, (storedUrl.expiresAt() - System.currentTimeMillis()) / 1000);
+        return secondsLeft >= maxAgeSeconds ? cacheControl : cacheControl(secondsLeft);
+    }
+
+    private static String cacheControl(long maxAgeSeconds) {
+        return maxAgeSeconds > 0 ? "public, max-age=" + maxAgeSeconds : "no-cache";
+    }
+}
@@ -2,20 +2,51 @@ package com.ik.urlshortener.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ik.urlshortener.analytics.ClickBuffer;
+import com.ik.urlshortener.cache.CacheWarmer;
+import com.ik.urlshortener.cache.Redirect;
+import com.ik.urlshortener.resilience.AdmissionFilter;
+import com.ik.urlshortener.resilience.CircuitBreaker;
+import com.ik.urlshortener.resilience.RateLimiter;
+import com.ik.urlshortener.service.ClickStatsService;
 import com.ik.urlshortener.service.UrlShortenerService;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -25,6 +56,7 @@ import java.util.Map;
  */
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UrlShortenerController {
 
     @Autowired
@@ -32,68 +64,279 @@ public class UrlShortenerController {
 
     private static final Logger logger = LoggerFactory.getLogger(UrlShortenerController.class);
 
+    @Autowired
+    private ClickBuffer clickBuffer;
+
+    @Autowired
+    private ClickStatsService clickStatsService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RedirectPolicy redirectPolicy;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    // Absent when warm-up is disabled
+    @Autowired(required = false)
+    private CacheWarmer cacheWarmer;
+
     @Value("${url.shortener.base-url}")
     private String baseUrl;
 
-    // Endpoint to shorten a URL
+    @Value("${url.shortener.batch.size:500}")
+    private int batchSize;
+
+    @Value("${url.shortener.resolve.max-keys:1000}")
+    private int resolveMaxKeys;
+
+    @Value("${url.shortener.redis.circuit-breaker.open-duration:5s}")
+    private Duration circuitOpenDuration;
+
+    private static final TypeReference<Map<String, String>> BATCH_ITEM = new TypeReference<>() {};
+
+    // Endpoint to shorten a URL. The link expires at "expiresAt" (an ISO-8601 instant) or after
+    // "expiresIn" (a duration such as 3600, in seconds, 12h or P30D) when either is given
     @PostMapping("/shorten")
     public ResponseEntity<Map<String, String>> shortenUrl(@RequestBody Map<String, String> request) {
         String longUrl = request.get("longUrl");
-        logger.info("Received request to shorten URL: {}", longUrl);
+        logger.debug("Received request to shorten URL: {}", longUrl);
+        Instant expiresAt;
+        try {
+            expiresAt = expiresAt(request.get("expiresAt"), request.get("expiresIn"));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid expiry: " + e.getMessage()));
+        }
+
+        String shortUrlKey;
         try {
-            String shortUrlKey = urlShortenerService.shortenUrl(longUrl);
+            shortUrlKey = urlShortenerService.shortenUrl(longUrl, expiresAt);
+        } catch (IllegalArgumentException e) {
+            // A link the data store cannot hold, such as an expiring link on the bucketed storage layout
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        // Use the configured base URL
+        String shortUrl = baseUrl + "/" + shortUrlKey;
+
+        Map<String, String> response = new HashMap<>();
+        response.put("shortUrl", shortUrl);
+        if (expiresAt != null) {
+            response.put("expiresAt", expiresAt.toString());
+        }
 
-            // Use the configured base URL
-            String shortUrl = baseUrl + "/" + shortUrlKey;
+        logger.debug("Shortened URL: {} to {}", longUrl, shortUrl);
 
-            Map<String, String> response = new HashMap<>();
-            response.put("shortUrl", shortUrl);
+        return ResponseEntity.ok(response);
+    }
 
-            logger.info("Shortened URL: {} to {}", longUrl, shortUrl);
+    // Endpoint to shorten a batch of URLs, sent as a JSON array or as NDJSON. The input is read
+    // and shortened in chunks, and results are streamed back as NDJSON in the same order. Each
+    // chunk after the first takes another token from the client's rate limit; once the client
+    // runs out, a last line reports the rate limit and the rest of the batch is left unread
+    @PostMapping(value = "/shorten/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public void shortenUrls(InputStream requestBody, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        // Set by the admission filter, which charged the first chunk
+        String client = (String) request.getAttribute(AdmissionFilter.CLIENT_ATTRIBUTE);
 
-            return ResponseEntity.ok(response);
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("Error while shortening URL: {}", longUrl, e);
-            return ResponseEntity.status(500).build();
+        int total = 0;
+        try (MappingIterator<Map<String, String>> requests = objectMapper.readerFor(BATCH_ITEM).readValues(requestBody);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+
+            List<String> chunk = new ArrayList<>(batchSize);
+            while (requests.hasNextValue()) {
+                chunk.add(requests.nextValue().get("longUrl"));
+                if (chunk.size() == batchSize) {
+                    if (total > 0 && !chargeChunk(generator, client)) {
+                        logger.debug("Stopped a batch after {} URLs at the rate limit of {}", total, client);
+                        return;
+                    }
+                    writeBatchResults(generator, chunk);
+                    total += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                if (total > 0 && !chargeChunk(generator, client)) {
+                    logger.debug("Stopped a batch after {} URLs at the rate limit of {}", total, client);
+                    return;
+                }
+                writeBatchResults(generator, chunk);
+                total += chunk.size();
+            }
         }
+        logger.debug("Shortened a batch of {} URLs", total);
     }
 
-    // Health check URL
+    /**
+     * Takes a token for a further chunk of a batch, or writes the rate limit line that ends the
+     * batch once the client has none left.
+     *
+     * @param generator
+     * @param client the rate limit client, or null if the request was not rate limited
+     * @return whether the chunk may be shortened
+     */
+
+    private boolean chargeChunk(JsonGenerator generator, String client) throws IOException {
+        if (client == null) {
+            return true;
+        }
+        long waitNanos = rateLimiter.tryAcquire(client);
+        if (waitNanos <= 0) {
+            return true;
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("error", "Rate limit exceeded");
+        // Whole seconds, rounded up, as in Retry-After
+        result.put("retryAfter", String.valueOf(Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000)));
+        generator.writeObject(result);
+        generator.writeRaw('\n');
+        return false;
+    }
+
+    /**
+     * The expiry of a link to shorten, in whole milliseconds as stored, or null for a link that
+     * never expires.
+     */
+    private static Instant expiresAt(String expiresAt, String expiresIn) {
+        if (expiresAt != null && expiresIn != null) {
+            throw new IllegalArgumentException("give either expiresAt or expiresIn");
+        }
+        Instant expiry;
+        if (expiresAt != null) {
+            expiry = Instant.parse(expiresAt);
+        } else if (expiresIn != null) {
+            expiry = Instant.now().plus(DurationStyle.detectAndParse(expiresIn, ChronoUnit.SECONDS));
+        } else {
+            return null;
+        }
+        if (!expiry.isAfter(Instant.now())) {
+            throw new IllegalArgumentException(expiry + " is not in the future");
+        }
+        return expiry.truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private void writeBatchResults(JsonGenerator generator, List<String> longUrls) throws IOException {
+        List<String> validUrls = new ArrayList<>(longUrls.size());
+        for (String longUrl : longUrls) {
+            if (longUrl != null) {
+                validUrls.add(longUrl);
+            }
+        }
+        Iterator<String> shortUrlKeys = urlShortenerService.shortenUrls(validUrls).iterator();
+
+        for (String longUrl : longUrls) {
+            Map<String, String> result = new LinkedHashMap<>();
+            result.put("longUrl", longUrl);
+            if (longUrl == null) {
+                result.put("error", "Missing longUrl");
+            } else {
+                String shortUrlKey = shortUrlKeys.next();
+                if (shortUrlKey != null) {
+                    result.put("shortUrl", baseUrl + "/" + shortUrlKey);
+                } else {
+                    result.put("error", "Unable to generate unique short URL key");
+                }
+            }
+            generator.writeObject(result);
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+
+    // Endpoint to resolve many short URL keys at once, up to the configured number of keys.
+    // Unknown keys are returned with a null URL
+    @PostMapping("/resolve")
+    public ResponseEntity<Map<String, String>> resolveShortUrlKeys(@RequestBody List<String> shortUrlKeys) {
+        logger.debug("Received request to resolve {} short URL keys", shortUrlKeys.size());
+        if (shortUrlKeys.size() > resolveMaxKeys) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + resolveMaxKeys + " keys can be resolved at once"));
+        }
+        return ResponseEntity.ok(urlShortenerService.getLongUrls(new LinkedHashSet<>(shortUrlKeys)));
+    }
+
+    // Health check URL. Reports WARMING_UP with a 503 until the redirect cache is warm, so load
+    // balancers only send traffic to a new instance once it can answer from its cache
     @GetMapping("/ping")
     public ResponseEntity<Map<String, String>> healthCheck() {
-        logger.info("Health check endpoint called.");
+        logger.debug("Health check endpoint called.");
         
         Map<String, String> response = new HashMap<>();
+        if (cacheWarmer != null && !cacheWarmer.isWarm()) {
+            response.put("status", "WARMING_UP");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
         response.put("status", "UP");
         
-        logger.info("Health check status: {}", response.get("status"));
+        logger.debug("Health check status: {}", response.get("status"));
         return ResponseEntity.ok(response);
     }
 
     // Default homepage endpoint
     @GetMapping("/")
     public ResponseEntity<Map<String, String>> homePage() {
-        logger.info("Default homepage accessed.");
+        logger.debug("Default homepage accessed.");
         
         Map<String, String> response = new HashMap<>();
         response.put("message", "Welcome to the URL Shortener Service!");
         response.put("usage", "Use POST /shorten with a JSON body containing 'longUrl' to shorten a URL.");
 
-        logger.info("Homepage response: {}", response);
+        logger.debug("Homepage response: {}", response);
         return ResponseEntity.ok(response);
     }
 
-    // Endpoint to redirect to the original URL
+    // Redirect cache counters, used to size the local cache
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(urlShortenerService.getCacheStats());
+    }
+
+    // Click counts of a short URL, in total, per hour and per referrer host. Not found while
+    // analytics is disabled, when no clicks are counted or stored
+    @GetMapping("/{shortUrlKey}/stats")
+    public ResponseEntity<Map<String, Object>> clickStats(@PathVariable String shortUrlKey) {
+        if (!clickBuffer.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (urlShortenerService.getLongUrl(shortUrlKey) == null) {
+            logger.debug("Short URL key not found: {}", shortUrlKey);
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(clickStatsService.getClickStats(shortUrlKey));
+    }
+
+    // Endpoint to redirect to the original URL. Keys already in the redirect cache are usually
+    // answered by RedirectFastPathFilter before they get here
     @GetMapping("/{shortUrlKey}")
-    public ResponseEntity<Void> redirectToLongUrl(@PathVariable String shortUrlKey) {
-        logger.info("Received request to redirect short URL: {}", shortUrlKey);
-        String longUrl = urlShortenerService.getLongUrl(shortUrlKey);
-        if (longUrl != null) {
-            logger.info("Redirecting to long URL: {}", longUrl);
-            return ResponseEntity.status(302).location(URI.create(longUrl)).build();
+    public ResponseEntity<Void> redirectToLongUrl(@PathVariable String shortUrlKey,
+                                                  @RequestHeader(value = HttpHeaders.REFERER, required = false) String referrer) {
+        logger.debug("Received request to redirect short URL: {}", shortUrlKey);
+        Redirect redirect = urlShortenerService.getRedirect(shortUrlKey);
+        if (redirect != null) {
+            clickBuffer.record(shortUrlKey, referrer); // Counted in memory, flushed to Redis in the background
+            logger.debug("Redirecting to long URL: {}", redirect.longUrl());
+            // A URL that is not a valid URI fails in URI.create
+            String location = redirect.location() != null ? redirect.location() : URI.create(redirect.longUrl()).toASCIIString();
+            return ResponseEntity.status(redirectPolicy.getStatus())
+                    .header(HttpHeaders.LOCATION, location)
+                    .header(HttpHeaders.CACHE_CONTROL, redirectPolicy.cacheControl(redirect.storedUrl()))
+                    .build();
         } else {
-            logger.warn("Short URL key not found: {}", shortUrlKey);
+            logger.debug("Short URL key not found: {}", shortUrlKey);
             return ResponseEntity.notFound().build();
         }
     }
+
+    // Fail fast while Redis is unavailable, instead of holding the request thread until it times out
+    @ExceptionHandler(CircuitBreaker.OpenException.class)
+    public ResponseEntity<Void> redisUnavailable(CircuitBreaker.OpenException e) {
+        logger.debug("Rejecting request: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, circuitOpenDuration.toSeconds())))
+                .build();
+    }
 }
@@ -0,0 +1,565 @@
+package com.ik.urlshortener.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded, persistent key-value store: an append-only log file plus an in-memory
+ * {@link LogIndex} per record type from key to the offset of its latest record.
+ *
+ * Record layout, big-endian:
+ *
+ *   int crc | byte type | short key length | int value length | key (UTF-8) | value (UTF-8)
+ *
+ * where the CRC-32C covers everything after it. Type 0 marks the end of the log.
+ *  - writes append to the log file under a single writer lock, and are forced to disk before
+ *    returning unless fsync is off; the file grows in preallocated chunks
+ *  - reads are lock-free: an index lookup and a read from the memory-mapped file, which never
+ *    touches the file channel, so compaction can close the channel of a generation that
+ *    readers may still hold
+ *  - on open, the log is replayed to rebuild the indexes; replay stops at the first record
+ *    that fails its CRC (a write torn by a crash), and the tail from there on is discarded
+ *  - compaction copies the latest record of every key into the next generation of the log
+ *    file and swaps it in, dropping records that were superseded
+ *
+ */
+
+public final class AppendOnlyLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppendOnlyLog.class);
+
+    static final int HEADER_SIZE = 11;
+
+    private static final byte END = 0;
+
+    // The file is grown in steps of this size; the unused tail reads as zeros, i.e. END
+    static final long GROWTH = 16L << 20;
+
+    // The mapping is split into chunks of this size, within the limit of a single MappedByteBuffer
+    private static final long CHUNK = 1L << 30;
+
+    private static final int MAX_VALUE_LENGTH = 16 << 20;
+
+    // Each chunk maps this much of the next one as well, so that every record lies within the
+    // chunk it starts in
+    private static final long CHUNK_OVERLAP = HEADER_SIZE + 0xFFFF + MAX_VALUE_LENGTH;
+
+    private static final Pattern FILE_NAME = Pattern.compile("urls-(\\d+)\\.log");
+
+    private final Path directory;
+
+    private final boolean fsync;
+
+    private final FileChannel lockChannel;
+
+    private final FileLock lock;
+
+    private final int types;
+
+    private final long chunkSize;
+
+    // The log file with its indexes, swapped as a whole by compaction
+    private volatile Generation generation;
+
+    // Writes block on disk I/O (fsync, compaction), so use a lock that does not pin virtual threads
+    private final ReentrantLock writerLock = new ReentrantLock();
+
+    // Guarded by the writer lock
+    private long deadBytes;
+
+    private AppendOnlyLog(Path directory, boolean fsync, int types, long chunkSize) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve("LOCK"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by this process
+            acquired = null;
+        }
+        this.lock = acquired;
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("The log in " + directory + " is in use by another process");
+        }
+        this.types = types;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Opens the log in the directory, creating it if needed, and replays it.
+     *
+     * @param directory
+     * @param fsync force every write to disk before it returns
+     * @param types number of record types, numbered from 1
+     * @return
+     */
+
+    public static AppendOnlyLog open(Path directory, boolean fsync, int types) {
+        return open(directory, fsync, types, CHUNK);
+    }
+
+    static AppendOnlyLog open(Path directory, boolean fsync, int types, long chunkSize) {
+        try {
+            AppendOnlyLog log = new AppendOnlyLog(directory, fsync, types, chunkSize);
+            log.recover();
+            return log;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open the log in " + directory, e);
+        }
+    }
+
+    /**
+     * The value of the latest record for the key, or null if there is none.
+     *
+     * @param type
+     * @param key
+     * @return
+     */
+
+    public String get(byte type, String key) {
+        Generation current = generation;
+        long offset = current.indexes[type].get(LogIndex.hash(key), candidate -> keyEquals(current, candidate, key));
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer header = current.read(offset, HEADER_SIZE);
+        int keyLength = Short.toUnsignedInt(header.getShort(5));
+        int valueLength = header.getInt(7);
+        return decode(current.read(offset + HEADER_SIZE + keyLength, valueLength));
+    }
+
+    /**
+     * Appends records in one write, so that they reach the disk together.
+     *
+     * @param records
+     */
+
+    public void append(List<Record> records) {
+        writerLock.lock();
+        try {
+            Generation current = generation;
+            ByteBuffer buffer = encode(records);
+            long offset = current.end;
+            try {
+                current.ensureCapacity(offset + buffer.remaining() + HEADER_SIZE);
+                while (buffer.hasRemaining()) {
+                    current.channel.write(buffer, offset + buffer.position());
+                }
+                if (fsync) {
+                    current.channel.force(false);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to append to " + current.file, e);
+            }
+            for (Record record : records) {
+                index(current, record.type(), record.key(), offset);
+                offset += record.size();
+            }
+            current.end = offset;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the key, as if it had no record, and counts its record as dead. Nothing is
+     * written, so the removal only lasts until the log is opened again; callers use it for
+     * records that they will recognize as dead on replay, such as expired ones.
+     *
+     * @param type
+     * @param key
+     * @return whether the key had a record
+     */
+
+    public boolean remove(byte type, String key) {
+        writerLock.lock();
+        try {
+            Generation current = generation;
+            long previous = current.indexes[type].remove(LogIndex.hash(key), candidate -> keyEquals(current, candidate, key));
+            if (previous < 0) {
+                return false;
+            }
+            deadBytes += recordSize(current, previous);
+            return true;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Streams the key of every record of the type, latest records only.
+     *
+     * @param type
+     * @param action
+     */
+
+    public void forEachKey(byte type, Consumer<String> action) {
+        Generation current = generation;
+        current.indexes[type].forEachOffset(offset -> {
+            ByteBuffer header = current.read(offset, HEADER_SIZE);
+            action.accept(decode(current.read(offset + HEADER_SIZE, Short.toUnsignedInt(header.getShort(5)))));
+        });
+    }
+
+    public int size(byte type) {
+        return generation.indexes[type].size();
+    }
+
+    public long getLogBytes() {
+        writerLock.lock();
+        try {
+            return generation.end;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Bytes of records that were superseded and would be dropped by compaction.
+     */
+    public long getDeadBytes() {
+        writerLock.lock();
+        try {
+            return deadBytes;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the latest record of every key into the next generation of the log file and
+     * swaps it in. Writers wait meanwhile; readers keep reading the previous generation until
+     * the swap, and afterwards from its mapping, which outlives its channel.
+     */
+    public void compact() {
+        writerLock.lock();
+        try {
+            Generation current = generation;
+            long startedAt = System.nanoTime();
+            Path compactedFile = directory.resolve("urls-" + (current.number + 1) + ".log");
+            Path tempFile = directory.resolve(compactedFile.getFileName() + ".tmp");
+            try {
+                Generation compacted = new Generation(current.number + 1, tempFile,
+                        Math.max(GROWTH, current.end - deadBytes + GROWTH), types, chunkSize);
+                long[] position = {0};
+                for (int type = 1; type <= types; type++) {
+                    current.indexes[type].forEachOffset(offset -> {
+                        long size = recordSize(current, offset);
+                        ByteBuffer record = current.read(offset, (int) size);
+                        try {
+                            while (record.hasRemaining()) {
+                                compacted.channel.write(record, position[0] + record.position());
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        position[0] += size;
+                    });
+                }
+                compacted.channel.force(false);
+                compacted.end = position[0];
+                Files.move(tempFile, compactedFile, StandardCopyOption.ATOMIC_MOVE);
+                compacted.file = compactedFile;
+
+                // Index the copies by replaying them; every key occurs once, so nothing is dead
+                long compactedEnd = replay(compacted);
+                long before = current.end;
+                generation = compacted;
+                deadBytes = 0;
+                current.channel.close();
+                Files.deleteIfExists(current.file);
+                logger.info("Compacted the log from {} to {} bytes in {} ms", before, compactedEnd,
+                        (System.nanoTime() - startedAt) / 1_000_000);
+            } catch (IOException | UncheckedIOException e) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // Removed on the next open
+                }
+                throw new IllegalStateException("Unable to compact the log in " + directory, e);
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public void sync() {
+        writerLock.lock();
+        try {
+            try {
+                generation.channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        writerLock.lock();
+        try {
+            try {
+                Generation current = generation;
+                current.channel.force(false);
+                current.channel.close();
+                lock.release();
+                lockChannel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to close the log in " + directory, e);
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Opens the latest generation of the log file, removes older ones and leftovers of an
+     * interrupted compaction, and replays it.
+     */
+    private void recover() throws IOException {
+        long latest = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    latest = Math.max(latest, Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher matcher = FILE_NAME.matcher(name);
+                if (name.endsWith(".tmp") || (matcher.matches() && Long.parseLong(matcher.group(1)) != latest)) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        long startedAt = System.nanoTime();
+        Generation recovered = new Generation(latest, directory.resolve("urls-" + latest + ".log"), GROWTH, types, chunkSize);
+        recovered.end = replay(recovered);
+        long fileSize = recovered.channel.size();
+        if (recovered.end + HEADER_SIZE <= fileSize && recovered.read(recovered.end + 4, 1).get(0) != END) {
+            // A torn record: cut it off, so that the next append is followed by zeros again
+            logger.warn("Discarding a torn record at offset {} of {}", recovered.end, recovered.file);
+            recovered.channel.truncate(recovered.end);
+            recovered.map(0);
+            recovered.ensureCapacity(fileSize);
+        }
+        generation = recovered;
+        logger.info("Replayed {} bytes of {} in {} ms", recovered.end, recovered.file,
+                (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    /**
+     * Indexes every valid record from the start of the file and returns the offset after the last one.
+     */
+    private long replay(Generation source) {
+        long offset = 0;
+        long capacity = source.capacity;
+        CRC32C crc = new CRC32C();
+        while (offset + HEADER_SIZE <= capacity) {
+            ByteBuffer header = source.read(offset, HEADER_SIZE);
+            byte type = header.get(4);
+            if (type == END) {
+                break;
+            }
+            int keyLength = Short.toUnsignedInt(header.getShort(5));
+            int valueLength = header.getInt(7);
+            long size = (long) HEADER_SIZE + keyLength + valueLength;
+            if (type < 0 || type > types || valueLength < 0 || valueLength > MAX_VALUE_LENGTH || offset + size > capacity) {
+                break;
+            }
+            ByteBuffer body = source.read(offset + 4, (int) size - 4);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != header.getInt(0)) {
+                break;
+            }
+            String key = decode(source.read(offset + HEADER_SIZE, keyLength));
+            long recordOffset = offset;
+            long previous = source.indexes[type].put(LogIndex.hash(key), recordOffset,
+                    candidate -> keyEquals(source, candidate, key));
+            if (previous >= 0) {
+                deadBytes += recordSize(source, previous);
+            }
+            offset += size;
+        }
+        return offset;
+    }
+
+    private void index(Generation current, byte type, String key, long offset) {
+        long previous = current.indexes[type].put(LogIndex.hash(key), offset, candidate -> keyEquals(current, candidate, key));
+        if (previous >= 0) {
+            deadBytes += recordSize(current, previous);
+        }
+    }
+
+    private static long recordSize(Generation generation, long offset) {
+        ByteBuffer header = generation.read(offset, HEADER_SIZE);
+        return (long) HEADER_SIZE + Short.toUnsignedInt(header.getShort(5)) + header.getInt(7);
+    }
+
+    private static boolean keyEquals(Generation generation, long offset, String key) {
+        ByteBuffer header = generation.read(offset, HEADER_SIZE);
+        int keyLength = Short.toUnsignedInt(header.getShort(5));
+        byte[] expected = key.getBytes(StandardCharsets.UTF_8);
+        return keyLength == expected.length && generation.read(offset + HEADER_SIZE, keyLength).equals(ByteBuffer.wrap(expected));
+    }
+
+    private static ByteBuffer encode(List<Record> records) {
+        int size = 0;
+        for (Record record : records) {
+            size += record.size();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32C crc = new CRC32C();
+        for (Record record : records) {
+            int start = buffer.position();
+            buffer.position(start + 4)
+                    .put(record.type())
+                    .putShort((short) record.keyBytes().length)
+                    .putInt(record.valueBytes().length)
+                    .put(record.keyBytes())
+                    .put(record.valueBytes());
+            crc.reset();
+            crc.update(buffer.array(), start + 4, buffer.position() - start - 4);
+            buffer.putInt(start, (int) crc.getValue());
+        }
+        return buffer.flip();
+    }
+
+    private static String decode(ByteBuffer bytes) {
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), StandardCharsets.UTF_8);
+        }
+        byte[] copy = new byte[bytes.remaining()];
+        bytes.get(copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A record to append. Keys are at most 65535 bytes long in UTF-8, values at most 16 MB.
+     */
+    public record Record(byte type, String key, String value, byte[] keyBytes, byte[] valueBytes) {
+
+        public Record(byte type, String key, String value) {
+            this(type, key, value, key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+            if (keyBytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("Key longer than 65535 bytes");
+            }
+            if (valueBytes.length > MAX_VALUE_LENGTH) {
+                throw new IllegalArgumentException("Value longer than " + MAX_VALUE_LENGTH + " bytes");
+            }
+        }
+
+        int size() {
+            return HEADER_SIZE + keyBytes.length + valueBytes.length;
+        }
+    }
+
+    /**
+     * One log file with its read-only mapping, in overlapping chunks, and the indexes into it.
+     */
+    private static final class Generation {
+
+        private final long number;
+
+        private Path file;
+
+        private final FileChannel channel;
+
+        private final LogIndex[] indexes;
+
+        private final long chunkSize;
+
+        private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+        private volatile long capacity;
+
+        // Offset after the last record, written under the log's writer lock
+        private long end;
+
+        Generation(long number, Path file, long minimumCapacity, int types, long chunkSize) throws IOException {
+            this.number = number;
+            this.file = file;
+            this.chunkSize = chunkSize;
+            this.indexes = new LogIndex[types + 1];
+            for (int type = 1; type <= types; type++) {
+                indexes[type] = new LogIndex();
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ensureCapacity(Math.max(minimumCapacity, channel.size()));
+        }
+
+        /**
+         * Grows the file in steps of {@link #GROWTH} to hold at least the given size, and maps it.
+         */
+        void ensureCapacity(long size) throws IOException {
+            if (size <= capacity) {
+                return;
+            }
+            long fileSize = channel.size();
+            if (fileSize < size) {
+                fileSize = (size + GROWTH - 1) / GROWTH * GROWTH;
+                // Writing the last byte extends the file sparsely, the gap reads as zeros
+                channel.write(ByteBuffer.wrap(new byte[1]), fileSize - 1);
+            }
+            map(fileSize);
+        }
+
+        void map(long fileSize) throws IOException {
+            if (fileSize == 0) {
+                fileSize = channel.size();
+            }
+            int chunkCount = (int) ((fileSize + chunkSize - 1) / chunkSize);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long start = i * chunkSize;
+                mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize + CHUNK_OVERLAP, fileSize - start));
+            }
+            chunks = mapped;
+            capacity = fileSize;
+        }
+
+        /**
+         * The bytes at the offset, from the chunk they start in.
+         */
+        ByteBuffer read(long offset, int length) {
+            int chunk = (int) (offset / chunkSize);
+            int start = (int) (offset % chunkSize);
+            MappedByteBuffer[] mapped = chunks;
+            if (chunk >= mapped.length || start + length > mapped[chunk].limit()) {
+                throw new IllegalStateException("Read past the end of " + file);
+            }
+            return mapped[chunk].slice(start, length);
+        }
+    }
+}
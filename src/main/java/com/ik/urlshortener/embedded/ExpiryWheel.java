@@ -0,0 +1,154 @@
+package com.ik.urlshortener.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Hashed timing wheel of key expiries, for expiring millions of keys without ever scanning them.
+ *  - time is cut into ticks, and a key is filed in the slot of the tick it expires in, modulo
+ *    the number of slots; expiries more than one turn of the wheel ahead share the slot
+ *  - advancing the wheel visits only the slots of the ticks that passed, hands over the keys
+ *    whose tick has come and keeps the rest for a later turn, so each tick costs about the
+ *    number of keys divided by the number of slots
+ *  - keys are held as UTF-8 bytes next to their expiry in per-slot arrays, about 40 bytes per
+ *    key for short keys
+ *
+ * Keys are handed over up to one tick late, and a key that was scheduled twice is handed over
+ * twice, so callers check that the expiry they are given is still the key's current one.
+ *
+ */
+
+public final class ExpiryWheel {
+
+    private final long tickMillis;
+
+    private final Slot[] slots;
+
+    // The next tick to be processed
+    private long currentTick;
+
+    private int size;
+
+    public ExpiryWheel(Duration tick, int slotCount, long now) {
+        if (tick.toMillis() < 1 || slotCount < 1) {
+            throw new IllegalArgumentException("An expiry wheel needs a tick of at least 1 ms and at least one slot");
+        }
+        this.tickMillis = tick.toMillis();
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot();
+        }
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * Files the key to be handed over once its expiry has passed.
+     *
+     * @param key
+     * @param expiresAt in epoch milliseconds
+     */
+
+    public synchronized void schedule(String key, long expiresAt) {
+        // Expiries that have already passed go into the slot processed next
+        long tick = Math.max(expiresAt / tickMillis, currentTick);
+        slots[(int) (tick % slots.length)].add(key.getBytes(StandardCharsets.UTF_8), expiresAt);
+        size++;
+    }
+
+    /**
+     * Processes the ticks that have passed by now, handing over and forgetting every key that
+     * expired in them.
+     *
+     * @param now in epoch milliseconds
+     * @param expired called with each expired key and the expiry it was scheduled with
+     * @return the number of keys handed over
+     */
+
+    public synchronized int advance(long now, ObjLongConsumer<String> expired) {
+        long nowTick = now / tickMillis;
+        int count = 0;
+        if (nowTick - currentTick >= slots.length) {
+            // More than a full turn has passed, so every slot is due once
+            for (Slot slot : slots) {
+                count += slot.expire(nowTick - 1, tickMillis, expired);
+            }
+        } else {
+            for (long tick = currentTick; tick < nowTick; tick++) {
+                count += slots[(int) (tick % slots.length)].expire(tick, tickMillis, expired);
+            }
+        }
+        currentTick = Math.max(currentTick, nowTick);
+        size -= count;
+        return count;
+    }
+
+    /**
+     * Keys waiting to expire.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        for (Slot slot : slots) {
+            slot.clear();
+        }
+        size = 0;
+    }
+
+    private static final class Slot {
+
+        private static final byte[][] NO_KEYS = new byte[0][];
+
+        private static final long[] NO_EXPIRIES = new long[0];
+
+        private byte[][] keys = NO_KEYS;
+
+        private long[] expiries = NO_EXPIRIES;
+
+        private int count;
+
+        void add(byte[] key, long expiresAt) {
+            if (count == keys.length) {
+                int capacity = Math.max(4, count * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                expiries = Arrays.copyOf(expiries, capacity);
+            }
+            keys[count] = key;
+            expiries[count] = expiresAt;
+            count++;
+        }
+
+        /**
+         * Hands over the keys that expire in or before the tick and compacts the others to the front.
+         */
+        int expire(long tick, long tickMillis, ObjLongConsumer<String> expired) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (expiries[i] / tickMillis <= tick) {
+                    expired.accept(new String(keys[i], StandardCharsets.UTF_8), expiries[i]);
+                } else {
+                    keys[kept] = keys[i];
+                    expiries[kept] = expiries[i];
+                    kept++;
+                }
+            }
+            int handedOver = count - kept;
+            Arrays.fill(keys, kept, count, null);
+            count = kept;
+            if (count < keys.length / 4 && keys.length > 16) {
+                keys = Arrays.copyOf(keys, Math.max(4, count * 2));
+                expiries = Arrays.copyOf(expiries, keys.length);
+            }
+            return handedOver;
+        }
+
+        void clear() {
+            keys = NO_KEYS;
+            expiries = NO_EXPIRIES;
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.ik.urlshortener.embedded;
+
+import com.ik.urlshortener.util.Hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash index from a key to the offset of its latest record in the log.
+ *  - each slot holds the 64-bit hash of the key and the record offset, in two long[] arrays,
+ *    about 23 bytes per key at the maximum load factor, and no key objects on the heap
+ *  - equal hashes are told apart by reading the key back from the log, so the caller passes
+ *    a predicate that checks the key of the record at an offset
+ *  - linear probing, doubling the table at a load factor of 0.7
+ *  - a removed key leaves its hash in the slot with the offset set to REMOVED, so probes go on
+ *    past it; such slots are dropped when the table is next rebuilt
+ *
+ * There is a single writer (the log holds its lock while writing) and any number of lock-free
+ * readers: a slot's offset is written before its hash is published with release semantics,
+ * and a grown table is swapped in through a volatile field once it is complete.
+ *
+ */
+
+final class LogIndex {
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private static final double MAX_LOAD = 0.7;
+
+    private static final long EMPTY = 0;
+
+    private static final long REMOVED = -1;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    private int size;
+
+    // Slots in use, including removed ones
+    private int used;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The offset of the record for the key, or -1 if the key is not indexed.
+     */
+    long get(long hash, LongPredicate keyMatches) {
+        Table current = table;
+        for (int slot = current.slot(hash); ; slot = (slot + 1) & current.mask) {
+            long slotHash = (long) SLOTS.getAcquire(current.hashes, slot);
+            if (slotHash == EMPTY) {
+                return -1;
+            }
+            if (slotHash == hash) {
+                long offset = (long) SLOTS.getAcquire(current.offsets, slot);
+                if (offset != REMOVED && keyMatches.test(offset)) {
+                    return offset;
+                }
+            }
+        }
+    }
+
+    /**
+     * Points the key at a new record. Callers must hold the writer lock.
+     *
+     * @return the offset of the record this replaces, or -1 if the key is new
+     */
+    long put(long hash, long offset, LongPredicate keyMatches) {
+        Table current = table;
+        for (int slot = current.slot(hash); ; slot = (slot + 1) & current.mask) {
+            long slotHash = current.hashes[slot];
+            if (slotHash == EMPTY) {
+                current.offsets[slot] = offset;
+                SLOTS.setRelease(current.hashes, slot, hash);
+                size++;
+                if (++used > current.hashes.length * MAX_LOAD) {
+                    // Double the table unless removed slots make up much of the load
+                    table = current.rebuild(size > current.hashes.length * MAX_LOAD / 2 ? current.hashes.length << 1 : current.hashes.length);
+                    used = size;
+                }
+                return -1;
+            }
+            if (slotHash == hash && current.offsets[slot] != REMOVED && keyMatches.test(current.offsets[slot])) {
+                long previous = current.offsets[slot];
+                SLOTS.setRelease(current.offsets, slot, offset);
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Removes the key. Callers must hold the writer lock.
+     *
+     * @return the offset of the record it pointed at, or -1 if the key is not indexed
+     */
+    long remove(long hash, LongPredicate keyMatches) {
+        Table current = table;
+        for (int slot = current.slot(hash); ; slot = (slot + 1) & current.mask) {
+            long slotHash = current.hashes[slot];
+            if (slotHash == EMPTY) {
+                return -1;
+            }
+            if (slotHash == hash && current.offsets[slot] != REMOVED && keyMatches.test(current.offsets[slot])) {
+                long previous = current.offsets[slot];
+                SLOTS.setRelease(current.offsets, slot, REMOVED);
+                size--;
+                return previous;
+            }
+        }
+    }
+
+    void forEachOffset(LongConsumer action) {
+        Table current = table;
+        for (int slot = 0; slot < current.hashes.length; slot++) {
+            if ((long) SLOTS.getAcquire(current.hashes, slot) != EMPTY) {
+                long offset = (long) SLOTS.getAcquire(current.offsets, slot);
+                if (offset != REMOVED) {
+                    action.accept(offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * The hash a key is indexed by; never 0, which marks an empty slot.
+     */
+    static long hash(String key) {
+        long hash = Hashing.hash64(key);
+        return hash != EMPTY ? hash : 1;
+    }
+
+    private static final class Table {
+
+        private final long[] hashes;
+
+        private final long[] offsets;
+
+        private final int mask;
+
+        Table(int capacity) {
+            this.hashes = new long[capacity];
+            this.offsets = new long[capacity];
+            this.mask = capacity - 1;
+        }
+
+        int slot(long hash) {
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        Table rebuild(int capacity) {
+            Table grown = new Table(capacity);
+            for (int i = 0; i < hashes.length; i++) {
+                if (hashes[i] != EMPTY && offsets[i] != REMOVED) {
+                    int slot = grown.slot(hashes[i]);
+                    while (grown.hashes[slot] != EMPTY) {
+                        slot = (slot + 1) & grown.mask;
+                    }
+                    grown.hashes[slot] = hashes[i];
+                    grown.offsets[slot] = offsets[i];
+                }
+            }
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ik.urlshortener.keygen;
+
+/**
+ * Base62 encoding of non-negative numbers using the URL-safe alphabet [0-9A-Za-z].
+ * 
+ */
+
+public final class Base62 {
+
+    static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    static final int BASE = ALPHABET.length;
+
+    // 11 digits hold any non-negative long
+    private static final int MAX_LENGTH = 11;
+
+    private Base62() {
+    }
+
+    /**
+     * Encodes the value with the shortest possible number of digits.
+     * 
+     * @param value a non-negative number
+     * @return
+     */
+
+    public static String encode(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot encode a negative value: " + value);
+        }
+        char[] buffer = new char[MAX_LENGTH];
+        int position = MAX_LENGTH;
+        do {
+            buffer[--position] = ALPHABET[(int) (value % BASE)];
+            value /= BASE;
+        } while (value > 0);
+        return new String(buffer, position, MAX_LENGTH - position);
+    }
+}
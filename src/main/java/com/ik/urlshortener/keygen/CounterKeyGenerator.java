@@ -0,0 +1,134 @@
+package com.ik.urlshortener.keygen;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates keys from a cluster-wide counter kept in Redis. Each node leases a block of ids
+ * with a single INCRBY and hands them out locally as base62 keys, so keys are unique without
+ * hashing, collision checks or a round trip per request.
+ * 
+ */
+
+@Component
+@ConditionalOnProperty(name = "url.shortener.keygen.strategy", havingValue = "counter")
+public class CounterKeyGenerator implements KeyGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CounterKeyGenerator.class);
+
+    public static final String SEQUENCE_KEY = "UrlMapping:sequence";
+
+    // 62^6: counter keys start at 7 characters, clear of hash keys of up to 6 characters (the
+    // default length) left by the hash strategy. Longer hash keys share the key space; a counter
+    // key that is already taken then fails its claim rather than overwriting the mapping
+    public static final long ID_OFFSET = 56_800_235_584L;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final int blockSize;
+
+    // Refills do a network call, so use a lock that does not pin virtual threads
+    private final ReentrantLock leaseLock = new ReentrantLock();
+
+    private volatile IdBlock currentBlock = IdBlock.EMPTY;
+
+    public CounterKeyGenerator(StringRedisTemplate redisTemplate,
+                               @Value("${url.shortener.keygen.block-size:1000}") int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.redisTemplate = redisTemplate;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public List<String> candidateKeys(String longUrl) {
+        return List.of(Base62.encode(ID_OFFSET + nextId()));
+    }
+
+    long nextId() {
+        while (true) {
+            IdBlock block = currentBlock;
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return id;
+            }
+            leaseNextBlock(block);
+        }
+    }
+
+    private void leaseNextBlock(IdBlock exhausted) {
+        leaseLock.lock();
+        try {
+            // Another thread may have leased a block while we waited for the lock
+            if (currentBlock == exhausted) {
+                Long end = redisTemplate.opsForValue().increment(SEQUENCE_KEY, blockSize);
+                if (end == null) {
+                    throw new IllegalStateException("Unable to lease an id block from " + SEQUENCE_KEY);
+                }
+                currentBlock = new IdBlock(end - blockSize, end);
+                logger.debug("Leased id block [{}, {})", end - blockSize, end);
+            }
+        } finally {
+            leaseLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the counter: every id below it has been leased by some node.
+     *
+     * @param redisTemplate
+     * @return the counter, or 0 if no id was ever leased
+     */
+
+    public static long readSequence(StringRedisTemplate redisTemplate) {
+        String sequence = redisTemplate.opsForValue().get(SEQUENCE_KEY);
+        return sequence != null ? Long.parseLong(sequence) : 0;
+    }
+
+    /**
+     * Raises the counter to at least the given value, so that ids below it, such as those of
+     * imported keys, are never leased again. Never lowers it; a concurrent lease may leave it
+     * higher than asked, which only skips ids.
+     *
+     * @param redisTemplate
+     * @param atLeast
+     * @return the counter afterwards
+     */
+
+    public static long raiseSequence(StringRedisTemplate redisTemplate, long atLeast) {
+        long current = readSequence(redisTemplate);
+        if (current >= atLeast) {
+            return current;
+        }
+        Long raised = redisTemplate.opsForValue().increment(SEQUENCE_KEY, atLeast - current);
+        if (raised == null) {
+            throw new IllegalStateException("Unable to raise " + SEQUENCE_KEY);
+        }
+        return raised;
+    }
+
+    /**
+     * A leased range of ids [start, end) that is handed out without further coordination.
+     */
+    private static final class IdBlock {
+
+        static final IdBlock EMPTY = new IdBlock(0, 0);
+
+        final AtomicLong next;
+        final long end;
+
+        IdBlock(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.ik.urlshortener.keygen;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.util.ScratchPool;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates keys from the MD5 hash of the long URL, encoded as hex or base62 with a configurable
+ * length. Keys can collide, so the hash of the URL is followed by the hashes of the URL with a
+ * counter appended.
+ *
+ * The digest and all scratch buffers are reused from a small pool (not a ThreadLocal, which would
+ * be recreated for every request on virtual threads), so generating a key allocates nothing but
+ * the resulting String.
+ *
+ */
+
+@Component
+@ConditionalOnProperty(name = "url.shortener.keygen.strategy", havingValue = "hash", matchIfMissing = true)
+public class HashKeyGenerator implements KeyGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashKeyGenerator.class);
+
+    static final int MAX_ATTEMPTS = 5;  // Define a max number of attempts to handle collisions
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int MD5_LENGTH = 16;
+
+    private static final ScratchPool<Buffers> BUFFERS = new ScratchPool<>(Buffers::new);
+
+    private final KeyEncoding encoding;
+
+    private final int length;
+
+    public HashKeyGenerator(@Value("${url.shortener.keygen.encoding:hex}") KeyEncoding encoding,
+                            @Value("${url.shortener.keygen.length:6}") int length) {
+        if (length < 1 || length > encoding.maxLength) {
+            throw new IllegalArgumentException("Key length for " + encoding + " keys must be between 1 and "
+                    + encoding.maxLength + ": " + length);
+        }
+        this.encoding = encoding;
+        this.length = length;
+    }
+
+    @Override
+    public List<String> candidateKeys(String longUrl) {
+        Buffers buffers = BUFFERS.acquire();
+        try {
+            int urlLength = buffers.encodeUtf8(longUrl);
+
+            List<String> candidateKeys = new ArrayList<>(MAX_ATTEMPTS);
+            candidateKeys.add(getShortUrlKey(buffers, urlLength));
+            for (int attempts = 1; attempts < MAX_ATTEMPTS; attempts++) {
+                // Append a counter to avoid collisions, directly after the URL bytes
+                candidateKeys.add(getShortUrlKey(buffers, buffers.appendDigits(urlLength, attempts)));
+            }
+            return candidateKeys;
+        } finally {
+            BUFFERS.release(buffers);
+        }
+    }
+
+    /**
+     * This is the method responsible for generating a short key of the configured encoding and length.
+     *
+     * @param longUrl
+     * @return
+     */
+
+    String getShortUrlKey(String longUrl) {
+        Buffers buffers = BUFFERS.acquire();
+        try {
+            return getShortUrlKey(buffers, buffers.encodeUtf8(longUrl));
+        } finally {
+            BUFFERS.release(buffers);
+        }
+    }
+
+    private String getShortUrlKey(Buffers buffers, int inputLength) {
+        byte[] hash = buffers.digest(inputLength);
+        char[] key = buffers.key;
+        if (encoding == KeyEncoding.HEX) {
+            for (int i = 0; i < length; i++) {
+                int b = hash[i >> 1];
+                key[i] = HEX_DIGITS[(i & 1) == 0 ? (b >> 4) & 0xf : b & 0xf];
+            }
+        } else {
+            // The first 8 bytes as an unsigned number, written least significant digit last
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (hash[i] & 0xff);
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                key[i] = Base62.ALPHABET[(int) Long.remainderUnsigned(value, Base62.BASE)];
+                value = Long.divideUnsigned(value, Base62.BASE);
+            }
+        }
+        String shortUrlKey = new String(key, 0, length);
+        logger.debug("Generated short URL key: {}", shortUrlKey);
+        return shortUrlKey;
+    }
+
+    /**
+     * How the hash is turned into key characters.
+     */
+    public enum KeyEncoding {
+        // 4 bits per character, up to the full 128-bit hash
+        HEX(32),
+        // ~5.95 bits per character, taken from the first 64 bits of the hash
+        BASE62(10);
+
+        final int maxLength;
+
+        KeyEncoding(int maxLength) {
+            this.maxLength = maxLength;
+        }
+    }
+
+    /**
+     * Pooled digest and scratch space, reused across keys and attempts.
+     */
+    private static final class Buffers {
+
+        private final MessageDigest digest;
+        private final byte[] hash = new byte[MD5_LENGTH];
+        private final char[] key = new char[KeyEncoding.HEX.maxLength];
+        private byte[] input = new byte[256];
+
+        private Buffers() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to support MD5
+                throw new IllegalStateException("MD5 digest is not available", e);
+            }
+        }
+
+        private byte[] digest(int inputLength) {
+            try {
+                digest.update(input, 0, inputLength);
+                digest.digest(hash, 0, MD5_LENGTH);
+                return hash;
+            } catch (DigestException e) {
+                throw new IllegalStateException("Unable to compute MD5 digest", e);
+            }
+        }
+
+        /**
+         * Encodes the string as UTF-8 into the input buffer, the same bytes as
+         * {@code String.getBytes(UTF_8)} would produce, and returns the byte count.
+         */
+        private int encodeUtf8(String value) {
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                ensureCapacity(length + 4);
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    input[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    input[length++] = (byte) (0xc0 | (c >> 6));
+                    input[length++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    input[length++] = (byte) (0xf0 | (codePoint >> 18));
+                    input[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    input[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    input[length++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    input[length++] = '?'; // Unpaired surrogate, replaced like the JDK encoder does
+                } else {
+                    input[length++] = (byte) (0xe0 | (c >> 12));
+                    input[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    input[length++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            return length;
+        }
+
+        /**
+         * Writes the decimal digits of a positive number after the first offset bytes and
+         * returns the new input length.
+         */
+        private int appendDigits(int offset, int number) {
+            int digits = stringSize(number);
+            ensureCapacity(offset + digits);
+            for (int i = offset + digits - 1; i >= offset; i--) {
+                input[i] = (byte) ('0' + number % 10);
+                number /= 10;
+            }
+            return offset + digits;
+        }
+
+        private static int stringSize(int number) {
+            int digits = 1;
+            while (number >= 10) {
+                number /= 10;
+                digits++;
+            }
+            return digits;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > input.length) {
+                byte[] grown = new byte[Math.max(capacity, input.length * 2)];
+                System.arraycopy(input, 0, grown, 0, input.length);
+                input = grown;
+            }
+        }
+    }
+}
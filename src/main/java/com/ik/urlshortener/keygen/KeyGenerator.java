@@ -0,0 +1,21 @@
+package com.ik.urlshortener.keygen;
+
+import java.util.List;
+
+/**
+ * Strategy for generating short URL keys. The active strategy is chosen with the
+ * {@code url.shortener.keygen.strategy} property.
+ * 
+ */
+
+public interface KeyGenerator {
+
+    /**
+     * Returns the short URL keys to try for the long URL, in probing order. Strategies that
+     * can collide return several candidates, strategies that hand out unique keys return one.
+     * 
+     * @param longUrl
+     * @return
+     */
+    List<String> candidateKeys(String longUrl);
+}
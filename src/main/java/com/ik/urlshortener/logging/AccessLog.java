@@ -0,0 +1,101 @@
+package com.ik.urlshortener.logging;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One structured line per request, in key=value form, written to the "access" logger:
+ *
+ *   method=GET path=/e149be status=302 duration_ms=0.412 client=10.0.0.7 referer=https://news.example.com/
+ *
+ * The "access" logger writes through a bounded asynchronous appender (see logback-spring.xml),
+ * so request threads only enqueue the line and never wait on the console; lines are dropped
+ * when the queue is full. Below a sample rate of 1 only that share of requests is logged,
+ * except server errors, which are always logged. Long URLs are never logged.
+ *
+ */
+
+@Component
+@ConditionalOnProperty(name = "url.shortener.access-log.enabled", havingValue = "true")
+public class AccessLog {
+
+    private static final Logger accessLogger = LoggerFactory.getLogger("access");
+
+    private static final String NONE = "-";
+
+    private final double sampleRate;
+
+    public AccessLog(@Value("${url.shortener.access-log.sample-rate:1.0}") double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("url.shortener.access-log.sample-rate must be within [0, 1], got " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Whether a request with the given status should be logged, decided after the request
+     * completed so that server errors are never sampled out.
+     *
+     * @param status
+     * @return
+     */
+
+    public boolean sampled(int status) {
+        return status >= 500 || sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * Logs a completed request, if it is sampled and the "access" logger is enabled.
+     *
+     * @param method
+     * @param path
+     * @param status
+     * @param durationNanos
+     * @param client remote address, may be null
+     * @param referrer Referer header, may be null
+     */
+
+    public void log(String method, String path, int status, long durationNanos, String client, String referrer) {
+        if (accessLogger.isInfoEnabled() && sampled(status)) {
+            accessLogger.info(format(method, path, status, durationNanos, client, referrer));
+        }
+    }
+
+    static String format(String method, String path, int status, long durationNanos, String client, String referrer) {
+        StringBuilder line = new StringBuilder(128)
+                .append("method=").append(method)
+                .append(" path=").append(path)
+                .append(" status=").append(status)
+                .append(" duration_ms=");
+        long micros = durationNanos / 1000;
+        line.append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            line.append(fraction < 10 ? "00" : "0");
+        }
+        line.append(fraction)
+                .append(" client=").append(valueOrNone(client))
+                .append(" referer=").append(valueOrNone(referrer));
+        return line.toString();
+    }
+
+    /**
+     * The value without whitespace, which would break the key=value form, or "-" when absent.
+     */
+    private static String valueOrNone(String value) {
+        if (value == null || value.isEmpty()) {
+            return NONE;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isWhitespace(value.charAt(i))) {
+                return value.replaceAll("\\s", "%20");
+            }
+        }
+        return value;
+    }
+}
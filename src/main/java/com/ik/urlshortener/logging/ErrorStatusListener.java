@@ -0,0 +1,66 @@
+package com.ik.urlshortener.logging;
+
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.spi.LifeCycle;
+import ch.qos.logback.core.status.Status;
+import ch.qos.logback.core.status.StatusListener;
+import ch.qos.logback.core.util.StatusPrinter2;
+
+import java.io.PrintStream;
+
+/**
+ * Logback status listener that prints only errors to stderr, such as an appender that fails to
+ * start or to write. Registering any listener stops Spring Boot from dumping every status
+ * message when there are warnings, and Boot's own included defaults.xml raises deprecation
+ * warnings on every start with newer logback versions, so those stay quiet while errors still
+ * show, including the ones raised before the listener was registered.
+ *
+ */
+
+public class ErrorStatusListener extends ContextAwareBase implements StatusListener, LifeCycle {
+
+    private final StatusPrinter2 statusPrinter = new StatusPrinter2();
+
+    private PrintStream out = System.err;
+
+    private volatile boolean started;
+
+    @Override
+    public void addStatusEvent(Status status) {
+        if (started && status.getLevel() == Status.ERROR) {
+            print(status);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (context != null) {
+            for (Status status : context.getStatusManager().getCopyOfStatusList()) {
+                if (status.getLevel() == Status.ERROR) {
+                    print(status);
+                }
+            }
+        }
+        started = true;
+    }
+
+    @Override
+    public void stop() {
+        started = false;
+    }
+
+    @Override
+    public boolean isStarted() {
+        return started;
+    }
+
+    void setPrintStream(PrintStream out) {
+        this.out = out;
+    }
+
+    private void print(Status status) {
+        StringBuilder line = new StringBuilder();
+        statusPrinter.buildStr(line, "", status);
+        out.print(line);
+    }
+}
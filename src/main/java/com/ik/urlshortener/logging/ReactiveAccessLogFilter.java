@@ -0,0 +1,48 @@
+package com.ik.urlshortener.logging;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.InetSocketAddress;
+
+/**
+ * WebFlux counterpart of {@link AccessLogFilter}, logging on the event loop once the response
+ * has completed; the line is only handed to the asynchronous appender.
+ *
+ */
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnProperty(name = "url.shortener.access-log.enabled", havingValue = "true")
+public class ReactiveAccessLogFilter implements WebFilter {
+
+    @Autowired
+    private AccessLog accessLog;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            ServerHttpRequest request = exchange.getRequest();
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            int statusCode = status != null ? status.value() : signal == SignalType.ON_ERROR ? 500 : 200;
+            InetSocketAddress client = request.getRemoteAddress();
+            accessLog.log(request.getMethod().name(), request.getPath().value(), statusCode, System.nanoTime() - start, client != null ? client.getHostString() : null,
+                    request.getHeaders().getFirst(HttpHeaders.REFERER));
+        });
+    }
+}
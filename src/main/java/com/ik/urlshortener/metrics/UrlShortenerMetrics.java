@@ -0,0 +1,113 @@
+package com.ik.urlshortener.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The meters of the shortening and redirect hot paths, registered once up front so recording
+ * is a field access and never a registry lookup. Tags only take a handful of fixed values
+ * (outcome, key generation strategy); short URL keys and URLs are never used as tags.
+ *
+ *  - urlshortener.shorten        timer, outcome=created|exhausted|error
+ *  - urlshortener.shorten.attempts  summary of the candidate key that was claimed (1 = no collision)
+ *  - urlshortener.shorten.exhausted counter of shortenings that ran out of candidate keys
+ *  - urlshortener.lookup         timer of getLongUrl, result=found|not_found
+ *  - urlshortener.keygen         timer of candidate key generation, strategy=hash|counter
+ *
+ * Each URL of a batch is recorded as a shortening of its own, timed with the whole batch.
+ * Timers publish percentile histograms, so percentiles can be aggregated across instances.
+ *
+ */
+
+@Component
+public class UrlShortenerMetrics {
+
+    private final Timer shortenCreated;
+
+    private final Timer shortenExhausted;
+
+    private final Timer shortenError;
+
+    private final DistributionSummary shortenAttempts;
+
+    private final Counter shortenExhaustedCount;
+
+    private final Timer lookupFound;
+
+    private final Timer lookupNotFound;
+
+    private final Timer keyGeneration;
+
+    public UrlShortenerMetrics(MeterRegistry registry,
+                               @Value("${url.shortener.keygen.strategy:hash}") String keyGenerationStrategy) {
+        this.shortenCreated = shortenTimer(registry, "created");
+        this.shortenExhausted = shortenTimer(registry, "exhausted");
+        this.shortenError = shortenTimer(registry, "error");
+        this.shortenAttempts = DistributionSummary.builder("urlshortener.shorten.attempts")
+                .description("Candidate keys probed until one could be claimed")
+                .serviceLevelObjectives(1, 2, 3, 4, 5)
+                .register(registry);
+        this.shortenExhaustedCount = Counter.builder("urlshortener.shorten.exhausted")
+                .description("Shortenings that failed because every candidate key was taken")
+                .register(registry);
+        this.lookupFound = lookupTimer(registry, "found");
+        this.lookupNotFound = lookupTimer(registry, "not_found");
+        this.keyGeneration = Timer.builder("urlshortener.keygen")
+                .description("Generation of the candidate keys of a URL")
+                .tag("strategy", keyGenerationStrategy)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public Timer keyGeneration() {
+        return keyGeneration;
+    }
+
+    /**
+     * Records a successful shortening and the position of the claimed key among the candidates.
+     *
+     * @param sample started when the shortening started
+     * @param attempts 1-based position of the claimed key, 0 if it was not among the candidates
+     */
+
+    public void shortened(Timer.Sample sample, int attempts) {
+        sample.stop(shortenCreated);
+        if (attempts > 0) {
+            shortenAttempts.record(attempts);
+        }
+    }
+
+    public void shortenExhausted(Timer.Sample sample) {
+        sample.stop(shortenExhausted);
+        shortenExhaustedCount.increment();
+    }
+
+    public void shortenFailed(Timer.Sample sample) {
+        sample.stop(shortenError);
+    }
+
+    public void lookedUp(Timer.Sample sample, boolean found) {
+        sample.stop(found ? lookupFound : lookupNotFound);
+    }
+
+    private static Timer shortenTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("urlshortener.shorten")
+                .description("Shortening of a URL, including the claim in Redis")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer lookupTimer(MeterRegistry registry, String result) {
+        return Timer.builder("urlshortener.lookup")
+                .description("Lookup of the long URL of a short URL key, through the redirect cache")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -17,4 +17,5 @@ public class UrlMapping {
     @Id
     private String id;      // The short URL key
     private String longUrl; // The original long URL
+    private Long expiresAt; // When the link expires, in epoch milliseconds, or null for never
 }
\ No newline at end of file
@@ -0,0 +1,220 @@
+package com.ik.urlshortener.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.embedded.AppendOnlyLog;
+import com.ik.urlshortener.embedded.ExpiryWheel;
+
+import jakarta.annotation.PreDestroy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * {@link UrlMappingStore} on the embedded {@link AppendOnlyLog}, for running without a Redis
+ * server (url.shortener.storage.engine=embedded). Mappings and reverse index entries are two
+ * record types of the same log. Claims are serialized by a lock, which makes them atomic just
+ * like the Redis claim script; lookups are lock-free reads of the memory-mapped log.
+ *
+ * Expiring mappings carry their expiry ahead of the URL in the record, so nothing else has to be
+ * written for them to expire: lookups and claims treat a mapping as gone once its expiry has
+ * passed, and an {@link ExpiryWheel} sweeps expired mappings out of the index, after which
+ * compaction drops their records. On open, mappings that expired meanwhile are swept right away.
+ *
+ * The log is only used by one process at a time, so this engine serves a single instance.
+ *
+ */
+
+@Repository
+@ConditionalOnProperty(name = "url.shortener.storage.engine", havingValue = "embedded")
+public class EmbeddedUrlMappingStore implements UrlMappingStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedUrlMappingStore.class);
+
+    static final byte MAPPING = 1;
+
+    static final byte REVERSE = 2;
+
+    // Marks a mapping record whose value starts with its expiry: NUL, epoch milliseconds, NUL, URL
+    private static final char EXPIRING = '\0';
+
+    private final AppendOnlyLog log;
+
+    private final double compactionThreshold;
+
+    private final ExpiryWheel expiryWheel;
+
+    // Claims append to the log, which may wait for an fsync, so use a lock that does not pin virtual threads
+    private final ReentrantLock claimLock = new ReentrantLock();
+
+    public EmbeddedUrlMappingStore(@Value("${url.shortener.embedded.directory:data}") Path directory,
+                                   @Value("${url.shortener.embedded.fsync:true}") boolean fsync,
+                                   @Value("${url.shortener.embedded.compaction-threshold:0.5}") double compactionThreshold,
+                                   @Value("${url.shortener.embedded.expiry-tick-ms:1000}") long expiryTickMillis,
+                                   @Value("${url.shortener.embedded.expiry-slots:3600}") int expirySlots) {
+        this.log = AppendOnlyLog.open(directory, fsync, REVERSE);
+        this.compactionThreshold = compactionThreshold;
+        this.expiryWheel = new ExpiryWheel(Duration.ofMillis(expiryTickMillis), expirySlots, System.currentTimeMillis());
+        scheduleExpiries();
+        logger.info("Opened the embedded store in {} with {} mappings, {} of them expiring",
+                directory.toAbsolutePath(), log.size(MAPPING), expiryWheel.size());
+    }
+
+    @Override
+    public String claim(UrlClaim claim) {
+        claimLock.lock();
+        try {
+            if (claim.urlDigest() != null) {
+                String knownKey = log.get(REVERSE, claim.urlDigest());
+                if (knownKey != null) {
+                    return knownKey;
+                }
+            }
+            long now = System.currentTimeMillis();
+            for (String candidateKey : claim.candidateKeys()) {
+                StoredUrl existing = find(candidateKey, now);
+                if (existing == null || (existing.longUrl().equals(claim.longUrl()) && existing.expires() == claim.expires())) {
+                    // The mapping and its reverse entry are written, and reach the disk, together
+                    List<AppendOnlyLog.Record> records = new ArrayList<>(2);
+                    if (existing == null) {
+                        records.add(new AppendOnlyLog.Record(MAPPING, candidateKey, encode(claim.longUrl(), claim.expiresAt())));
+                        if (claim.expires()) {
+                            expiryWheel.schedule(candidateKey, claim.expiresAt());
+                        }
+                    }
+                    if (claim.urlDigest() != null) {
+                        records.add(new AppendOnlyLog.Record(REVERSE, claim.urlDigest(), candidateKey));
+                    }
+                    if (!records.isEmpty()) {
+                        log.append(records);
+                    }
+                    return candidateKey;
+                }
+            }
+            return null;
+        } finally {
+            claimLock.unlock();
+        }
+    }
+
+    @Override
+    public StoredUrl findStoredUrl(String shortUrlKey) {
+        return find(shortUrlKey, System.currentTimeMillis());
+    }
+
+    @Override
+    public List<StoredUrl> findStoredUrls(List<String> shortUrlKeys) {
+        long now = System.currentTimeMillis();
+        List<StoredUrl> storedUrls = new ArrayList<>(shortUrlKeys.size());
+        for (String shortUrlKey : shortUrlKeys) {
+            storedUrls.add(find(shortUrlKey, now));
+        }
+        return storedUrls;
+    }
+
+    /**
+     * Streams the keys of the mappings, including expired ones the sweeper has yet to remove.
+     */
+    @Override
+    public void scanKeys(Consumer<String> action) {
+        log.forEachKey(MAPPING, action);
+    }
+
+    /**
+     * Removes the mappings that have expired since the last sweep from the index, visiting only
+     * the slots of the expiry wheel that have come due.
+     */
+    @Scheduled(fixedDelayString = "${url.shortener.embedded.expiry-tick-ms:1000}",
+            initialDelayString = "${url.shortener.embedded.expiry-tick-ms:1000}")
+    public void sweepExpired() {
+        claimLock.lock();
+        try {
+            int expired = expiryWheel.advance(System.currentTimeMillis(), (shortUrlKey, expiresAt) -> {
+                StoredUrl storedUrl = decode(log.get(MAPPING, shortUrlKey));
+                // Unless the key was claimed again after it expired
+                if (storedUrl != null && storedUrl.expiresAt() == expiresAt) {
+                    log.remove(MAPPING, shortUrlKey);
+                }
+            });
+            if (expired > 0) {
+                logger.debug("Swept {} expired mappings", expired);
+            }
+        } finally {
+            claimLock.unlock();
+        }
+    }
+
+    private StoredUrl find(String shortUrlKey, long now) {
+        StoredUrl storedUrl = decode(log.get(MAPPING, shortUrlKey));
+        return storedUrl != null && !storedUrl.isExpired(now) ? storedUrl : null;
+    }
+
+    /**
+     * Files every expiring mapping with the expiry wheel; the ones that already expired are
+     * swept by the first advance of the wheel.
+     */
+    private void scheduleExpiries() {
+        log.forEachKey(MAPPING, shortUrlKey -> {
+            StoredUrl storedUrl = decode(log.get(MAPPING, shortUrlKey));
+            if (storedUrl.expires()) {
+                expiryWheel.schedule(shortUrlKey, storedUrl.expiresAt());
+            }
+        });
+        sweepExpired();
+    }
+
+    /**
+     * The value of a mapping record. URLs that start with the marker get one too, with no expiry.
+     */
+    static String encode(String longUrl, long expiresAt) {
+        if (expiresAt == StoredUrl.NEVER && (longUrl.isEmpty() || longUrl.charAt(0) != EXPIRING)) {
+            return longUrl;
+        }
+        return EXPIRING + Long.toString(expiresAt) + EXPIRING + longUrl;
+    }
+
+    static StoredUrl decode(String value) {
+        if (value == null || value.isEmpty() || value.charAt(0) != EXPIRING) {
+            return StoredUrl.of(value);
+        }
+        int end = value.indexOf(EXPIRING, 1);
+        return new StoredUrl(value.substring(end + 1), Long.parseLong(value, 1, end, 10));
+    }
+
+    /**
+     * Compacts the log once superseded records make up more than the compaction threshold of it.
+     */
+    @Scheduled(fixedDelayString = "${url.shortener.embedded.compaction-interval-ms:600000}",
+            initialDelayString = "${url.shortener.embedded.compaction-interval-ms:600000}")
+    public void compactIfNeeded() {
+        long logBytes = log.getLogBytes();
+        if (logBytes > 0 && log.getDeadBytes() > logBytes * compactionThreshold) {
+            log.compact();
+        }
+    }
+
+    public void compact() {
+        log.compact();
+    }
+
+    /**
+     * Expiring mappings waiting in the expiry wheel.
+     */
+    public int getPendingExpiries() {
+        return expiryWheel.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        log.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.ik.urlshortener.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link RedisUrlMappingStore} for the reactive web stack. Keys,
+ * layouts and the claim script are shared with the blocking store, so both stacks read and write
+ * the same data.
+ *
+ */
+
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRedisUrlMappingStore {
+
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    private final RedisUrlMappingStore layout;
+
+    public ReactiveRedisUrlMappingStore(ReactiveStringRedisTemplate reactiveRedisTemplate, RedisUrlMappingStore layout) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.layout = layout;
+    }
+
+    /**
+     * Same as {@link UrlMappingStore#claim}, completing empty when every candidate key is taken.
+     *
+     * @param claim
+     * @return
+     */
+
+    public Mono<String> claim(UrlClaim claim) {
+        List<String> keysAndArgs = layout.claimKeysAndArgs(claim);
+        int keyCount = claim.candidateKeys().size() + 2;
+        List<String> keys = keysAndArgs.subList(0, keyCount);
+        List<String> args = keysAndArgs.subList(keyCount, keysAndArgs.size());
+
+        return reactiveRedisTemplate.execute(RedisUrlMappingStore.CLAIM_SCRIPT, keys, args).next();
+    }
+
+    /**
+     * Same as {@link UrlMappingStore#findStoredUrl}, completing empty when the key is unknown.
+     * In the STRING layout the expiry is read with a PTTL sent along with the GET.
+     *
+     * @param shortUrlKey
+     * @return
+     */
+
+    public Mono<StoredUrl> findStoredUrl(String shortUrlKey) {
+        String key = layout.storageKey(shortUrlKey);
+        switch (layout.getLayout()) {
+            case STRING:
+                return Mono.zip(reactiveRedisTemplate.opsForValue().get(key), reactiveRedisTemplate.getExpire(key))
+                        // getExpire reads a key without expiry as a zero duration
+                        .map(found -> new StoredUrl(found.getT1(),
+                                found.getT2().isZero() ? StoredUrl.NEVER : System.currentTimeMillis() + found.getT2().toMillis()));
+            case BUCKETED:
+                return reactiveRedisTemplate.<String, String>opsForHash().get(key, shortUrlKey).map(StoredUrl::of);
+            default:
+                return reactiveRedisTemplate.<String, String>opsForHash()
+                        .multiGet(key, List.of(RedisUrlMappingStore.LONG_URL, RedisUrlMappingStore.EXPIRES_AT))
+                        .filter(fields -> fields.get(0) != null)
+                        .map(fields -> new StoredUrl(fields.get(0), fields.get(1) != null ? Long.parseLong(fields.get(1)) : StoredUrl.NEVER));
+        }
+    }
+}
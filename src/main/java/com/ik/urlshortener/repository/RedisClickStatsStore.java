@@ -0,0 +1,114 @@
+package com.ik.urlshortener.repository;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.ik.urlshortener.analytics.ClickDelta;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Click counts in Redis, one hash per short URL key for the total and the hourly counts
+ * ({@code clicks:<key>}, fields {@code total} and {@code h:yyyyMMddHH} in UTC) and one for the
+ * referrer hosts ({@code clicks:<key>:ref}). Counts only ever grow through HINCRBY, so flushes
+ * from any number of instances add up.
+ *
+ */
+
+@Repository
+public class RedisClickStatsStore {
+
+    static final String KEY_PREFIX = "clicks:";
+
+    static final String REFERRER_SUFFIX = ":ref";
+
+    static final String TOTAL_FIELD = "total";
+
+    static final String HOUR_FIELD_PREFIX = "h:";
+
+    private static final DateTimeFormatter HOUR_FIELD = DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+
+    private static final byte[] TOTAL = bytes(TOTAL_FIELD);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisClickStatsStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Adds the deltas to the stored counts, in one pipelined round trip.
+     *
+     * @param deltas
+     */
+
+    public void add(List<ClickDelta> deltas) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ClickDelta delta : deltas) {
+                add(connection, delta);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * The stored counts of a key.
+     *
+     * @param shortUrlKey
+     * @return total clicks, clicks per hour (hours since the epoch) and clicks per referrer host
+     */
+
+    public ClickDelta find(String shortUrlKey) {
+        Map<Object, Object> counts = redisTemplate.opsForHash().entries(KEY_PREFIX + shortUrlKey);
+        Map<Object, Object> referrers = redisTemplate.opsForHash().entries(KEY_PREFIX + shortUrlKey + REFERRER_SUFFIX);
+
+        long total = 0;
+        Map<Long, Long> hourlyClicks = new TreeMap<>();
+        for (Map.Entry<Object, Object> count : counts.entrySet()) {
+            String field = (String) count.getKey();
+            long clicks = Long.parseLong((String) count.getValue());
+            if (field.equals(TOTAL_FIELD)) {
+                total = clicks;
+            } else if (field.startsWith(HOUR_FIELD_PREFIX)) {
+                hourlyClicks.put(toHour(field.substring(HOUR_FIELD_PREFIX.length())), clicks);
+            }
+        }
+        Map<String, Long> referrerClicks = new LinkedHashMap<>();
+        referrers.forEach((referrer, clicks) -> referrerClicks.put((String) referrer, Long.parseLong((String) clicks)));
+        return new ClickDelta(shortUrlKey, total, hourlyClicks, referrerClicks);
+    }
+
+    private void add(RedisConnection connection, ClickDelta delta) {
+        byte[] key = bytes(KEY_PREFIX + delta.shortUrlKey());
+        connection.hashCommands().hIncrBy(key, TOTAL, delta.clicks());
+        for (Map.Entry<Long, Long> hour : delta.hourlyClicks().entrySet()) {
+            connection.hashCommands().hIncrBy(key, bytes(HOUR_FIELD_PREFIX + toField(hour.getKey())), hour.getValue());
+        }
+        byte[] referrerKey = bytes(KEY_PREFIX + delta.shortUrlKey() + REFERRER_SUFFIX);
+        for (Map.Entry<String, Long> referrer : delta.referrerClicks().entrySet()) {
+            connection.hashCommands().hIncrBy(referrerKey, bytes(referrer.getKey()), referrer.getValue());
+        }
+    }
+
+    static String toField(long hour) {
+        return HOUR_FIELD.format(Instant.ofEpochSecond(hour * 3600));
+    }
+
+    static long toHour(String field) {
+        return LocalDateTime.parse(field, HOUR_FIELD).toEpochSecond(ZoneOffset.UTC) / 3600;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
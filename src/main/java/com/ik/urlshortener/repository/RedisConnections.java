@@ -0,0 +1,65 @@
+package com.ik.urlshortener.repository;
+
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisConfiguration;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.resource.ClientResources;
+
+/**
+ * Connections to Redis nodes beyond spring.data.redis (shards, replicas), made with its
+ * credentials, database and command timeout and sharing its Lettuce event loops and command
+ * metrics.
+ *
+ */
+
+final class RedisConnections {
+
+    private RedisConnections() {
+    }
+
+    /**
+     * Parses a node listed as host:port.
+     */
+    static RedisNode node(String hostAndPort) {
+        int separator = hostAndPort.lastIndexOf(':');
+        if (separator < 1) {
+            throw new IllegalArgumentException("Redis nodes are listed as host:port, got " + hostAndPort);
+        }
+        return new RedisNode(hostAndPort.substring(0, separator), Integer.parseInt(hostAndPort.substring(separator + 1)));
+    }
+
+    /**
+     * A started connection factory for the configuration.
+     *
+     * @param configuration
+     * @param readFrom which nodes reads go to, or null for the default
+     * @param redisProperties
+     * @param clientResources
+     * @return
+     */
+
+    static <C extends RedisConfiguration & RedisConfiguration.WithPassword & RedisConfiguration.WithDatabaseIndex> LettuceConnectionFactory connect(
+            C configuration, ReadFrom readFrom, RedisProperties redisProperties, ClientResources clientResources) {
+        configuration.setDatabase(redisProperties.getDatabase());
+        configuration.setUsername(redisProperties.getUsername());
+        configuration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder clientConfiguration =
+                LettuceClientConfiguration.builder().clientResources(clientResources);
+        if (redisProperties.getTimeout() != null) {
+            clientConfiguration.commandTimeout(redisProperties.getTimeout());
+        }
+        if (readFrom != null) {
+            clientConfiguration.readFrom(readFrom);
+        }
+
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration, clientConfiguration.build());
+        connectionFactory.afterPropertiesSet();
+        return connectionFactory;
+    }
+}
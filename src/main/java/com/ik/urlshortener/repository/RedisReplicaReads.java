@@ -0,0 +1,62 @@
+package com.ik.urlshortener.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.resource.ClientResources;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.Arrays;
+
+/**
+ * Connection that {@link RedisUrlMappingStore} reads mappings through when read replicas of the
+ * spring.data.redis primary are listed in url.shortener.redis.replicas. Reads go where
+ * url.shortener.redis.read-from says, by default to a replica and to the primary only while no
+ * replica is reachable. Claims and every other command keep using the primary connection.
+ *
+ */
+
+@Component
+@ConditionalOnExpression("'${url.shortener.redis.replicas:}' != ''")
+public class RedisReplicaReads {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisReplicaReads.class);
+
+    private final LettuceConnectionFactory connectionFactory;
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisReplicaReads(@Value("${url.shortener.redis.replicas}") String replicas,
+                             @Value("${url.shortener.redis.read-from:replicaPreferred}") String readFrom,
+                             RedisProperties redisProperties,
+                             ClientResources clientResources) {
+        RedisStaticMasterReplicaConfiguration configuration =
+                new RedisStaticMasterReplicaConfiguration(redisProperties.getHost(), redisProperties.getPort());
+        Arrays.stream(replicas.split(",")).map(String::trim).filter(replica -> !replica.isEmpty()).forEach(replica -> {
+            RedisNode node = RedisConnections.node(replica);
+            configuration.node(node.getHost(), node.getPort());
+        });
+        this.connectionFactory = RedisConnections.connect(configuration, ReadFrom.valueOf(readFrom), redisProperties, clientResources);
+        this.redisTemplate = new StringRedisTemplate(connectionFactory);
+        logger.info("Reading mappings from {} ({})", replicas, readFrom);
+    }
+
+    public StringRedisTemplate getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionFactory.destroy();
+    }
+}
@@ -0,0 +1,427 @@
+package com.ik.urlshortener.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import com.ik.urlshortener.model.UrlMapping;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Redis implementation of {@link UrlMappingStore}, for any of the {@link StorageLayout}s. In the
+ * HASH layout mappings are written exactly like the {@code @RedisHash} entity, so they stay
+ * readable through {@link UrlMappingRepository}. The reverse index from URL digest to short URL
+ * key follows the same layout: plain strings, or small hashes for BUCKETED.
+ *
+ * Expiring mappings are given a native Redis expiry, so Redis removes them itself, and the HASH
+ * layout also keeps the expiry in an expiresAt field and leaves them out of the keyspace set.
+ * Hash fields cannot expire on their own before Redis 7.4, so the BUCKETED layout rejects them.
+ *
+ * This bean serves a single Redis node; with url.shortener.sharding.nodes set, one instance per
+ * node makes up a {@link ShardedUrlMappingStore} instead.
+ * 
+ */
+
+@Repository
+@ConditionalOnExpression("'${url.shortener.storage.engine:redis}' == 'redis' and '${url.shortener.sharding.nodes:}' == ''")
+public class RedisUrlMappingStore implements UrlMappingShard {
+
+    static final String KEYSPACE = "UrlMapping";
+
+    static final String STRING_PREFIX = "u:";
+
+    static final String BUCKET_PREFIX = "ub:";
+
+    static final String REVERSE_STRING_PREFIX = "r:";
+
+    static final String REVERSE_BUCKET_PREFIX = "rb:";
+
+    static final String LONG_URL = "longUrl";
+
+    private static final byte[] LONG_URL_FIELD = LONG_URL.getBytes(StandardCharsets.UTF_8);
+
+    static final String EXPIRES_AT = "expiresAt";
+
+    private static final byte[] EXPIRES_AT_FIELD = EXPIRES_AT.getBytes(StandardCharsets.UTF_8);
+
+    static final RedisScript<String> CLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/claim-url-mapping.lua"), String.class);
+
+    // Keys per SCAN call, and buckets per pipelined HKEYS batch, when streaming all keys
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final StorageLayout layout;
+
+    private final int buckets;
+
+    // Channel the claim script publishes new keys on, empty to not publish them
+    @Value("${url.shortener.key-filter.channel:url-shortener:keys}")
+    String keyChannel = "";
+
+    // Connection to the read replicas, when url.shortener.redis.replicas lists any
+    @Autowired(required = false)
+    private RedisReplicaReads replicaReads;
+
+    public RedisUrlMappingStore(StringRedisTemplate redisTemplate,
+                                @Value("${url.shortener.storage.layout:hash}") StorageLayout layout,
+                                @Value("${url.shortener.storage.buckets:131072}") int buckets) {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("Bucket count must be positive: " + buckets);
+        }
+        this.redisTemplate = redisTemplate;
+        this.layout = layout;
+        this.buckets = buckets;
+    }
+
+    public StorageLayout getLayout() {
+        return layout;
+    }
+
+    RedisConnectionFactory getConnectionFactory() {
+        return redisTemplate.getConnectionFactory();
+    }
+
+    @Override
+    public String claim(UrlClaim claim) {
+        List<String> keysAndArgs = claimKeysAndArgs(claim);
+        int keyCount = claim.candidateKeys().size() + 2;
+        List<String> keys = keysAndArgs.subList(0, keyCount);
+        Object[] args = keysAndArgs.subList(keyCount, keysAndArgs.size()).toArray();
+
+        // EVALSHA with a fallback to EVAL, so this is one round trip once the script is cached
+        return redisTemplate.execute(CLAIM_SCRIPT, keys, args);
+    }
+
+    @Override
+    public List<String> claimAll(List<UrlClaim> claims) {
+        byte[] sha = CLAIM_SCRIPT.getSha1().getBytes(StandardCharsets.UTF_8);
+        byte[] script = CLAIM_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+
+        // Make sure the script is cached first, a NOSCRIPT error cannot be retried inside a pipeline
+        redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(script));
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (UrlClaim claim : claims) {
+                evalClaim(connection, sha, claim);
+            }
+            return null;
+        });
+        return toStrings(results);
+    }
+
+    /**
+     * Reads through the replicas when there are any. A replica may not have a mapping created a
+     * moment ago yet, so a miss there is read again from the primary rather than reported.
+     */
+    @Override
+    public StoredUrl findStoredUrl(String shortUrlKey) {
+        StoredUrl storedUrl = replicaReads != null ? findStoredUrls(replicaReads.getRedisTemplate(), List.of(shortUrlKey)).get(0) : null;
+        return storedUrl != null ? storedUrl : findStoredUrls(redisTemplate, List.of(shortUrlKey)).get(0);
+    }
+
+    @Override
+    public List<StoredUrl> findStoredUrls(List<String> shortUrlKeys) {
+        if (replicaReads == null) {
+            return findStoredUrls(redisTemplate, shortUrlKeys);
+        }
+        List<StoredUrl> storedUrls = findStoredUrls(replicaReads.getRedisTemplate(), shortUrlKeys);
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < storedUrls.size(); i++) {
+            if (storedUrls.get(i) == null) {
+                misses.add(i);
+            }
+        }
+        if (!misses.isEmpty()) {
+            List<StoredUrl> fromPrimary = findStoredUrls(redisTemplate, misses.stream().map(shortUrlKeys::get).toList());
+            for (int i = 0; i < misses.size(); i++) {
+                storedUrls.set(misses.get(i), fromPrimary.get(i));
+            }
+        }
+        return storedUrls;
+    }
+
+    /**
+     * One pipeline; in the STRING layout each GET is followed by a PTTL for the expiry, the HASH
+     * layout keeps it in a field of the mapping.
+     */
+    @SuppressWarnings("unchecked")
+    private List<StoredUrl> findStoredUrls(StringRedisTemplate template, List<String> shortUrlKeys) {
+        List<Object> results = template.executePipelined((RedisCallback<Object>) connection -> {
+            for (String shortUrlKey : shortUrlKeys) {
+                read(connection, shortUrlKey);
+            }
+            return null;
+        });
+        long now = System.currentTimeMillis();
+        List<StoredUrl> storedUrls = new ArrayList<>(shortUrlKeys.size());
+        switch (layout) {
+            case STRING:
+                for (int i = 0; i < results.size(); i += 2) {
+                    String longUrl = (String) results.get(i);
+                    long ttl = (Long) results.get(i + 1);
+                    storedUrls.add(longUrl != null ? new StoredUrl(longUrl, ttl >= 0 ? now + ttl : StoredUrl.NEVER) : null);
+                }
+                break;
+            case BUCKETED:
+                for (Object result : results) {
+                    storedUrls.add(StoredUrl.of((String) result));
+                }
+                break;
+            default:
+                for (Object result : results) {
+                    List<String> fields = (List<String>) result;
+                    String expiresAt = fields.get(1);
+                    storedUrls.add(fields.get(0) != null
+                            ? new StoredUrl(fields.get(0), expiresAt != null ? Long.parseLong(expiresAt) : StoredUrl.NEVER)
+                            : null);
+                }
+        }
+        return storedUrls;
+    }
+
+    @Override
+    public List<String> findKeysForDigests(List<String> urlDigests) {
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String urlDigest : urlDigests) {
+                readReverse(connection, urlDigest);
+            }
+            return null;
+        });
+        return toStrings(results);
+    }
+
+    /**
+     * SETNX (HSETNX for BUCKETED) of every entry in one pipeline, then a second pipeline reading
+     * back the entries that were already set.
+     */
+    @Override
+    public List<String> putKeysForDigests(List<String> urlDigests, List<String> shortUrlKeys) {
+        List<Object> written = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < urlDigests.size(); i++) {
+                byte[] key = bytes(reverseKey(urlDigests.get(i)));
+                byte[] value = bytes(shortUrlKeys.get(i));
+                if (layout == StorageLayout.BUCKETED) {
+                    connection.hashCommands().hSetNX(key, bytes(urlDigests.get(i)), value);
+                } else {
+                    connection.stringCommands().setNX(key, value);
+                }
+            }
+            return null;
+        });
+
+        List<String> pointedKeys = new ArrayList<>(shortUrlKeys);
+        List<Integer> taken = new ArrayList<>();
+        for (int i = 0; i < written.size(); i++) {
+            if (!Boolean.TRUE.equals(written.get(i))) {
+                taken.add(i);
+            }
+        }
+        if (!taken.isEmpty()) {
+            List<Object> existing = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i : taken) {
+                    readReverse(connection, urlDigests.get(i));
+                }
+                return null;
+            });
+            for (int i = 0; i < taken.size(); i++) {
+                pointedKeys.set(taken.get(i), (String) existing.get(i));
+            }
+        }
+        return pointedKeys;
+    }
+
+    @Override
+    public void deleteMappings(List<String> shortUrlKeys) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String shortUrlKey : shortUrlKeys) {
+                byte[] key = bytes(storageKey(shortUrlKey));
+                switch (layout) {
+                    case STRING:
+                        connection.keyCommands().del(key);
+                        break;
+                    case BUCKETED:
+                        connection.hashCommands().hDel(key, bytes(shortUrlKey));
+                        break;
+                    default:
+                        connection.keyCommands().del(key);
+                        connection.setCommands().sRem(bytes(KEYSPACE), bytes(shortUrlKey));
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Walks the keyspace with SCAN, so memory use stays constant whatever the number of keys.
+     * In the BUCKETED layout the fields of each batch of buckets are read with pipelined HKEYS.
+     */
+    @Override
+    public void scanKeys(Consumer<String> action) {
+        switch (layout) {
+            case STRING:
+                scan(STRING_PREFIX + "*", DataType.STRING, key -> action.accept(key.substring(STRING_PREFIX.length())));
+                break;
+            case BUCKETED:
+                List<String> bucketKeys = new ArrayList<>(SCAN_BATCH_SIZE);
+                scan(BUCKET_PREFIX + "*", DataType.HASH, bucketKey -> {
+                    bucketKeys.add(bucketKey);
+                    if (bucketKeys.size() == SCAN_BATCH_SIZE) {
+                        scanBuckets(bucketKeys, action);
+                        bucketKeys.clear();
+                    }
+                });
+                scanBuckets(bucketKeys, action);
+                break;
+            default:
+                scan(KEYSPACE + ":*", DataType.HASH, key -> action.accept(key.substring(KEYSPACE.length() + 1)));
+        }
+    }
+
+    private void scan(String pattern, DataType type, Consumer<String> action) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).type(type).count(SCAN_BATCH_SIZE).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            cursor.forEachRemaining(action);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void scanBuckets(List<String> bucketKeys, Consumer<String> action) {
+        if (bucketKeys.isEmpty()) {
+            return;
+        }
+        List<Object> fields = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String bucketKey : bucketKeys) {
+                connection.hashCommands().hKeys(bytes(bucketKey));
+            }
+            return null;
+        });
+        for (Object bucketFields : fields) {
+            ((Set<String>) bucketFields).forEach(action);
+        }
+    }
+
+    /**
+     * The Redis key that holds the mapping of a short URL key in the configured layout.
+     */
+    String storageKey(String shortUrlKey) {
+        switch (layout) {
+            case STRING:
+                return STRING_PREFIX + shortUrlKey;
+            case BUCKETED:
+                return BUCKET_PREFIX + bucket(shortUrlKey);
+            default:
+                return KEYSPACE + ":" + shortUrlKey;
+        }
+    }
+
+    /**
+     * The Redis key of the reverse index entry for a normalized URL digest. In the BUCKETED layout
+     * the digest is the field within that key.
+     */
+    String reverseKey(String urlDigest) {
+        switch (layout) {
+            case STRING:
+                return REVERSE_STRING_PREFIX + urlDigest;
+            case BUCKETED:
+                return REVERSE_BUCKET_PREFIX + bucket(urlDigest);
+            default:
+                return KEYSPACE + ":idx:" + urlDigest;
+        }
+    }
+
+    /**
+     * String.hashCode is fixed by the language spec, so bucket assignment is stable across
+     * nodes and restarts. The multiply spreads consecutive keys over the buckets.
+     */
+    int bucket(String shortUrlKey) {
+        return Math.floorMod(shortUrlKey.hashCode() * 0x9E3779B9, buckets);
+    }
+
+    private void read(RedisConnection connection, String shortUrlKey) {
+        byte[] key = bytes(storageKey(shortUrlKey));
+        switch (layout) {
+            case STRING:
+                connection.stringCommands().get(key);
+                connection.keyCommands().pTtl(key);
+                break;
+            case BUCKETED:
+                connection.hashCommands().hGet(key, bytes(shortUrlKey));
+                break;
+            default:
+                connection.hashCommands().hMGet(key, LONG_URL_FIELD, EXPIRES_AT_FIELD);
+        }
+    }
+
+    private byte[] readReverse(RedisConnection connection, String urlDigest) {
+        byte[] key = bytes(reverseKey(urlDigest));
+        if (layout == StorageLayout.BUCKETED) {
+            return connection.hashCommands().hGet(key, bytes(urlDigest));
+        }
+        return connection.stringCommands().get(key);
+    }
+
+    private void evalClaim(RedisConnection connection, byte[] sha, UrlClaim claim) {
+        List<String> keysAndArgs = claimKeysAndArgs(claim);
+        byte[][] encoded = new byte[keysAndArgs.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = bytes(keysAndArgs.get(i));
+        }
+        connection.scriptingCommands().evalSha(sha, ReturnType.VALUE, claim.candidateKeys().size() + 2, encoded);
+    }
+
+    /**
+     * Keys followed by arguments for the claim script, see claim-url-mapping.lua for the layout.
+     */
+    List<String> claimKeysAndArgs(UrlClaim claim) {
+        if (claim.expires() && layout == StorageLayout.BUCKETED) {
+            throw new IllegalArgumentException("Expiring links need the hash or string storage layout");
+        }
+        List<String> candidateKeys = claim.candidateKeys();
+        String urlDigest = claim.urlDigest() != null ? claim.urlDigest() : "";
+
+        List<String> keysAndArgs = new ArrayList<>(2 * candidateKeys.size() + 8);
+        keysAndArgs.add(KEYSPACE);
+        keysAndArgs.add(reverseKey(urlDigest));
+        for (String candidateKey : candidateKeys) {
+            keysAndArgs.add(storageKey(candidateKey));
+        }
+        keysAndArgs.add(claim.longUrl());
+        keysAndArgs.add(layout.scriptName());
+        keysAndArgs.add(UrlMapping.class.getName());
+        keysAndArgs.add(urlDigest);
+        keysAndArgs.add(keyChannel);
+        keysAndArgs.add(String.valueOf(claim.expiresAt()));
+        keysAndArgs.addAll(candidateKeys);
+        return keysAndArgs;
+    }
+
+    private static List<String> toStrings(List<Object> results) {
+        List<String> values = new ArrayList<>(results.size());
+        for (Object result : results) {
+            values.add((String) result);
+        }
+        return values;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+package com.ik.urlshortener.repository;
+
+import com.ik.urlshortener.util.Hashing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Consistent hash ring that places short URL keys and URL digests on the Redis nodes of a
+ * sharded deployment.
+ *  - every node is hashed onto the ring at a number of points (virtual nodes), and a key belongs
+ *    to the node of the first point at or after the hash of the key, wrapping around
+ *  - adding a node to N nodes moves only about 1/(N+1) of the keys, all of them to the new node;
+ *    removing one moves only its own keys
+ *  - at 160 points per node the busiest node holds within about 15% of the mean
+ *  - placement depends on nothing but the node names and the key, so every instance agrees on
+ *    it as long as the nodes are listed by the same names everywhere
+ *
+ */
+
+public final class ShardRing {
+
+    private final List<String> nodes;
+
+    // Hashes of the points, sorted, and the index of the node each one belongs to
+    private final long[] points;
+
+    private final int[] owners;
+
+    public ShardRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A shard ring needs at least one node");
+        }
+        if (new HashSet<>(nodes).size() != nodes.size()) {
+            throw new IllegalArgumentException("Shard nodes must be distinct: " + nodes);
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes per shard must be positive: " + virtualNodes);
+        }
+        this.nodes = List.copyOf(nodes);
+
+        List<long[]> ring = new ArrayList<>(nodes.size() * virtualNodes);
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                ring.add(new long[] {Hashing.hash64(nodes.get(node) + "#" + point), node});
+            }
+        }
+        // Ties are broken by node, so that every instance builds the same ring
+        ring.sort(Comparator.<long[]>comparingLong(point -> point[0]).thenComparingLong(point -> point[1]));
+
+        this.points = new long[ring.size()];
+        this.owners = new int[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            points[i] = ring.get(i)[0];
+            owners[i] = (int) ring.get(i)[1];
+        }
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * The index, within {@link #getNodes()}, of the node a key belongs to.
+     *
+     * @param key
+     * @return
+     */
+
+    public int shardOf(String key) {
+        int point = Arrays.binarySearch(points, Hashing.hash64(key));
+        if (point < 0) {
+            point = -point - 1;
+        }
+        return owners[point == points.length ? 0 : point];
+    }
+
+    public String nodeOf(String key) {
+        return nodes.get(shardOf(key));
+    }
+}
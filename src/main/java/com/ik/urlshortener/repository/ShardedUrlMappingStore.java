@@ -0,0 +1,410 @@
+package com.ik.urlshortener.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.lettuce.core.resource.ClientResources;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * {@link UrlMappingStore} that spreads the mappings over several Redis nodes
+ * (url.shortener.sharding.nodes), placing each short URL key and each URL digest by a
+ * {@link ShardRing}.
+ *  - a claim whose digest and candidate keys all live on one node is the usual single atomic
+ *    script call; otherwise the reverse index is read on the digest's node, the candidates are
+ *    probed node by node, and the reverse index entry is written last, if no concurrent claim of
+ *    the same URL wrote one first (whose key is then returned instead)
+ *  - batches are grouped by node and sent as one pipeline per node, with the nodes called in
+ *    parallel, so a batch costs about as many round trips as on a single node
+ *
+ * Client-side sharding rather than Redis Cluster: the claim script touches the keyspace set, the
+ * reverse index entry and every candidate key at once, which Cluster rejects across hash slots.
+ *
+ * While keys are moved after a change of nodes (url.shortener.sharding.previous-nodes, see
+ * ShardRebalanceTool), lookups that miss on a key's node fall back to the node that held it
+ * before, and claims treat a candidate held there as taken.
+ *
+ */
+
+@Repository
+@ConditionalOnExpression("'${url.shortener.storage.engine:redis}' == 'redis' and '${url.shortener.sharding.nodes:}' != ''")
+public class ShardedUrlMappingStore implements UrlMappingStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedUrlMappingStore.class);
+
+    private final ShardRing ring;
+
+    // The node of each ring index
+    private final UrlMappingShard[] shards;
+
+    // The ring before the last change of nodes, while its keys are being moved; null otherwise
+    private final ShardRing previousRing;
+
+    private final UrlMappingShard[] previousShards;
+
+    // Every node of both rings, each once
+    private final Map<String, UrlMappingShard> nodes;
+
+    // Runs the per-node pipelines of a batch in parallel
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-pipeline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ShardedUrlMappingStore(@Value("${url.shortener.sharding.nodes}") String nodes,
+                                  @Value("${url.shortener.sharding.previous-nodes:}") String previousNodes,
+                                  @Value("${url.shortener.sharding.virtual-nodes:160}") int virtualNodes,
+                                  @Value("${url.shortener.storage.layout:hash}") StorageLayout layout,
+                                  @Value("${url.shortener.storage.buckets:131072}") int buckets,
+                                  @Value("${url.shortener.key-filter.channel:url-shortener:keys}") String keyChannel,
+                                  RedisProperties redisProperties,
+                                  ClientResources clientResources) {
+        this(connect(nodeList(nodes), nodeList(previousNodes), layout, buckets, keyChannel, redisProperties, clientResources),
+                nodeList(nodes), nodeList(previousNodes), virtualNodes);
+        logger.info("Sharding mappings over {} Redis nodes{}", ring.size(),
+                previousRing != null ? ", moving keys from " + previousRing.getNodes() : "");
+    }
+
+    /**
+     * @param nodes every node of both rings by name
+     * @param ringNodes the nodes the keys are placed on
+     * @param previousRingNodes the nodes before the last change, or empty when no keys are being moved
+     * @param virtualNodes points per node on the ring
+     */
+    public ShardedUrlMappingStore(Map<String, UrlMappingShard> nodes, List<String> ringNodes,
+                                  List<String> previousRingNodes, int virtualNodes) {
+        this.nodes = nodes;
+        this.ring = new ShardRing(ringNodes, virtualNodes);
+        this.shards = ringNodes.stream().map(nodes::get).toArray(UrlMappingShard[]::new);
+        if (previousRingNodes.isEmpty()) {
+            this.previousRing = null;
+            this.previousShards = null;
+        } else {
+            this.previousRing = new ShardRing(previousRingNodes, virtualNodes);
+            this.previousShards = previousRingNodes.stream().map(nodes::get).toArray(UrlMappingShard[]::new);
+        }
+    }
+
+    public ShardRing getRing() {
+        return ring;
+    }
+
+    public ShardRing getPreviousRing() {
+        return previousRing;
+    }
+
+    public UrlMappingShard getShard(String node) {
+        return nodes.get(node);
+    }
+
+    /**
+     * The connections of every node, e.g. to subscribe to the keys published by each of them.
+     *
+     * @return
+     */
+
+    public List<RedisConnectionFactory> getConnectionFactories() {
+        List<RedisConnectionFactory> connectionFactories = new ArrayList<>();
+        for (UrlMappingShard shard : nodes.values()) {
+            if (shard instanceof RedisUrlMappingStore redisShard) {
+                connectionFactories.add(redisShard.getConnectionFactory());
+            }
+        }
+        return connectionFactories;
+    }
+
+    @Override
+    public String claim(UrlClaim claim) {
+        if (previousRing == null) {
+            int shard = claim.urlDigest() != null ? ring.shardOf(claim.urlDigest()) : -1;
+            for (String candidateKey : claim.candidateKeys()) {
+                int candidateShard = ring.shardOf(candidateKey);
+                if (shard == -1) {
+                    shard = candidateShard;
+                } else if (shard != candidateShard) {
+                    return claimAll(List.of(claim)).get(0);
+                }
+            }
+            return shard != -1 ? shards[shard].claim(claim) : null;
+        }
+        return claimWhileMoving(claim);
+    }
+
+    /**
+     * Claims in three steps, each one pipeline per node: reverse index lookups, rounds of probing
+     * (every pending claim sends its next run of candidates that live on one node) and the
+     * reverse index entries of the new mappings. Most claims are settled by the first round.
+     */
+    @Override
+    public List<String> claimAll(List<UrlClaim> claims) {
+        if (previousRing != null) {
+            List<String> claimedKeys = new ArrayList<>(claims.size());
+            for (UrlClaim claim : claims) {
+                claimedKeys.add(claimWhileMoving(claim));
+            }
+            return claimedKeys;
+        }
+
+        String[] claimedKeys = new String[claims.size()];
+        boolean[] known = new boolean[claims.size()];
+
+        List<Integer> withDigest = new ArrayList<>();
+        for (int i = 0; i < claims.size(); i++) {
+            if (claims.get(i).urlDigest() != null) {
+                withDigest.add(i);
+            }
+        }
+        inParallel(groupByShard(withDigest, i -> ring.shardOf(claims.get(i).urlDigest())), (shard, indexes) -> {
+            List<String> knownKeys = shards[shard].findKeysForDigests(indexes.stream().map(i -> claims.get(i).urlDigest()).toList());
+            for (int j = 0; j < indexes.size(); j++) {
+                claimedKeys[indexes.get(j)] = knownKeys.get(j);
+                known[indexes.get(j)] = knownKeys.get(j) != null;
+            }
+        });
+
+        int[] nextCandidate = new int[claims.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < claims.size(); i++) {
+            if (!known[i] && !claims.get(i).candidateKeys().isEmpty()) {
+                pending.add(i);
+            }
+        }
+        while (!pending.isEmpty()) {
+            int[] runEnd = new int[claims.size()];
+            inParallel(groupByShard(pending, i -> ring.shardOf(claims.get(i).candidateKeys().get(nextCandidate[i]))), (shard, indexes) -> {
+                List<UrlClaim> runs = new ArrayList<>(indexes.size());
+                for (int i : indexes) {
+                    List<String> candidateKeys = claims.get(i).candidateKeys();
+                    int end = nextCandidate[i] + 1;
+                    while (end < candidateKeys.size() && ring.shardOf(candidateKeys.get(end)) == shard) {
+                        end++;
+                    }
+                    runEnd[i] = end;
+                    runs.add(claims.get(i).forCandidates(candidateKeys.subList(nextCandidate[i], end)));
+                }
+                List<String> runKeys = shards[shard].claimAll(runs);
+                for (int j = 0; j < indexes.size(); j++) {
+                    claimedKeys[indexes.get(j)] = runKeys.get(j);
+                }
+            });
+
+            List<Integer> stillPending = new ArrayList<>();
+            for (int i : pending) {
+                nextCandidate[i] = runEnd[i];
+                if (claimedKeys[i] == null && nextCandidate[i] < claims.get(i).candidateKeys().size()) {
+                    stillPending.add(i);
+                }
+            }
+            pending = stillPending;
+        }
+
+        List<Integer> newMappings = new ArrayList<>();
+        for (int i : withDigest) {
+            if (!known[i] && claimedKeys[i] != null) {
+                newMappings.add(i);
+            }
+        }
+        inParallel(groupByShard(newMappings, i -> ring.shardOf(claims.get(i).urlDigest())), (shard, indexes) -> {
+            List<String> pointedKeys = shards[shard].putKeysForDigests(
+                    indexes.stream().map(i -> claims.get(i).urlDigest()).toList(),
+                    indexes.stream().map(i -> claimedKeys[i]).toList());
+            for (int j = 0; j < indexes.size(); j++) {
+                claimedKeys[indexes.get(j)] = pointedKeys.get(j);
+            }
+        });
+        return Arrays.asList(claimedKeys);
+    }
+
+    /**
+     * One candidate at a time, checking the node that held the candidate before the change of
+     * nodes first, so a key that is yet to be moved is never claimed for another URL.
+     */
+    private String claimWhileMoving(UrlClaim claim) {
+        String urlDigest = claim.urlDigest();
+        if (urlDigest != null) {
+            String knownKey = findKeyForDigest(urlDigest);
+            if (knownKey != null) {
+                return knownKey;
+            }
+        }
+        for (String candidateKey : claim.candidateKeys()) {
+            UrlMappingShard shard = shards[ring.shardOf(candidateKey)];
+            UrlMappingShard previousShard = previousShards[previousRing.shardOf(candidateKey)];
+            String claimedKey;
+            StoredUrl movingUrl = previousShard != shard ? previousShard.findStoredUrl(candidateKey) : null;
+            if (movingUrl != null) {
+                boolean reusable = movingUrl.longUrl().equals(claim.longUrl()) && movingUrl.expires() == claim.expires();
+                claimedKey = reusable ? candidateKey : null;
+            } else {
+                claimedKey = shard.claim(claim.forCandidates(List.of(candidateKey)));
+            }
+            if (claimedKey != null) {
+                return urlDigest != null
+                        ? shards[ring.shardOf(urlDigest)].putKeysForDigests(List.of(urlDigest), List.of(claimedKey)).get(0)
+                        : claimedKey;
+            }
+        }
+        return null;
+    }
+
+    private String findKeyForDigest(String urlDigest) {
+        UrlMappingShard shard = shards[ring.shardOf(urlDigest)];
+        String knownKey = shard.findKeysForDigests(List.of(urlDigest)).get(0);
+        UrlMappingShard previousShard = previousShards[previousRing.shardOf(urlDigest)];
+        if (knownKey == null && previousShard != shard) {
+            knownKey = previousShard.findKeysForDigests(List.of(urlDigest)).get(0);
+        }
+        return knownKey;
+    }
+
+    @Override
+    public StoredUrl findStoredUrl(String shortUrlKey) {
+        UrlMappingShard shard = shards[ring.shardOf(shortUrlKey)];
+        StoredUrl storedUrl = shard.findStoredUrl(shortUrlKey);
+        if (storedUrl == null && previousRing != null) {
+            UrlMappingShard previousShard = previousShards[previousRing.shardOf(shortUrlKey)];
+            if (previousShard != shard) {
+                storedUrl = previousShard.findStoredUrl(shortUrlKey);
+            }
+        }
+        return storedUrl;
+    }
+
+    @Override
+    public List<StoredUrl> findStoredUrls(List<String> shortUrlKeys) {
+        StoredUrl[] storedUrls = new StoredUrl[shortUrlKeys.size()];
+        List<Integer> all = new ArrayList<>(shortUrlKeys.size());
+        for (int i = 0; i < shortUrlKeys.size(); i++) {
+            all.add(i);
+        }
+        inParallel(groupByShard(all, i -> ring.shardOf(shortUrlKeys.get(i))),
+                (shard, indexes) -> findInto(shards[shard], shortUrlKeys, indexes, storedUrls));
+
+        if (previousRing != null) {
+            List<Integer> moving = new ArrayList<>();
+            for (int i = 0; i < storedUrls.length; i++) {
+                String shortUrlKey = shortUrlKeys.get(i);
+                if (storedUrls[i] == null && previousShards[previousRing.shardOf(shortUrlKey)] != shards[ring.shardOf(shortUrlKey)]) {
+                    moving.add(i);
+                }
+            }
+            inParallel(groupByShard(moving, i -> previousRing.shardOf(shortUrlKeys.get(i))),
+                    (shard, indexes) -> findInto(previousShards[shard], shortUrlKeys, indexes, storedUrls));
+        }
+        return Arrays.asList(storedUrls);
+    }
+
+    private static void findInto(UrlMappingShard shard, List<String> shortUrlKeys, List<Integer> indexes, StoredUrl[] storedUrls) {
+        List<StoredUrl> found = shard.findStoredUrls(indexes.stream().map(shortUrlKeys::get).toList());
+        for (int j = 0; j < indexes.size(); j++) {
+            storedUrls[indexes.get(j)] = found.get(j);
+        }
+    }
+
+    /**
+     * Scans node after node. While keys are being moved the nodes of both rings are scanned, so a
+     * key may be reported twice.
+     */
+    @Override
+    public void scanKeys(Consumer<String> action) {
+        for (UrlMappingShard shard : nodes.values()) {
+            shard.scanKeys(action);
+        }
+    }
+
+    private static Map<Integer, List<Integer>> groupByShard(List<Integer> indexes, IntUnaryOperator shardOf) {
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i : indexes) {
+            groups.computeIfAbsent(shardOf.applyAsInt(i), shard -> new ArrayList<>()).add(i);
+        }
+        return groups;
+    }
+
+    /**
+     * Runs the work of each node on its own thread, the last one on the calling thread, and
+     * waits for all of them.
+     */
+    private void inParallel(Map<Integer, List<Integer>> groups, BiConsumer<Integer, List<Integer>> work) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(groups.size());
+        Iterator<Map.Entry<Integer, List<Integer>>> iterator = groups.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, List<Integer>> group = iterator.next();
+            if (iterator.hasNext()) {
+                futures.add(CompletableFuture.runAsync(() -> work.accept(group.getKey(), group.getValue()), executor));
+            } else {
+                work.accept(group.getKey(), group.getValue());
+            }
+        }
+        try {
+            futures.forEach(CompletableFuture::join);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static List<String> nodeList(String nodes) {
+        return Arrays.stream(nodes.split(",")).map(String::trim).filter(node -> !node.isEmpty()).toList();
+    }
+
+    /**
+     * A {@link RedisUrlMappingStore} for every node.
+     */
+    private static Map<String, UrlMappingShard> connect(List<String> nodes, List<String> previousNodes,
+                                                        StorageLayout layout, int buckets, String keyChannel,
+                                                        RedisProperties redisProperties, ClientResources clientResources) {
+        Map<String, UrlMappingShard> shards = new LinkedHashMap<>();
+        for (String node : new LinkedHashSet<>(concat(nodes, previousNodes))) {
+            RedisNode redisNode = RedisConnections.node(node);
+            LettuceConnectionFactory connectionFactory = RedisConnections.connect(
+                    new RedisStandaloneConfiguration(redisNode.getHost(), redisNode.getPort()), null, redisProperties, clientResources);
+            RedisUrlMappingStore shard = new RedisUrlMappingStore(new StringRedisTemplate(connectionFactory), layout, buckets);
+            shard.keyChannel = keyChannel;
+            shards.put(node, shard);
+        }
+        return shards;
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+        for (RedisConnectionFactory connectionFactory : getConnectionFactories()) {
+            if (connectionFactory instanceof LettuceConnectionFactory lettuceConnectionFactory) {
+                lettuceConnectionFactory.destroy();
+            }
+        }
+    }
+}
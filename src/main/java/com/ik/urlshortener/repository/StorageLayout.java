@@ -0,0 +1,24 @@
+package com.ik.urlshortener.repository;
+
+/**
+ * How URL mappings are laid out in Redis, chosen with {@code url.shortener.storage.layout}.
+ *  - HASH: one hash per key ({@code UrlMapping:<key>}) plus the {@code UrlMapping} keyspace set,
+ *    the layout of the {@code @RedisHash} entity
+ *  - STRING: one plain string value per key ({@code u:<key>}), no index set
+ *  - BUCKETED: keys spread over a fixed number of small hashes ({@code ub:<bucket>}) that Redis
+ *    keeps listpack-encoded, which is the most compact layout
+ *
+ */
+
+public enum StorageLayout {
+    HASH,
+    STRING,
+    BUCKETED;
+
+    /**
+     * The name the claim script uses for this layout.
+     */
+    String scriptName() {
+        return name().toLowerCase();
+    }
+}
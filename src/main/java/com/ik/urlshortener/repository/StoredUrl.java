@@ -0,0 +1,28 @@
+package com.ik.urlshortener.repository;
+
+/**
+ * A long URL as found in the data store, with the time its mapping expires.
+ *
+ * @param longUrl   the URL to redirect to
+ * @param expiresAt when the mapping expires, in epoch milliseconds, or {@link #NEVER}
+ */
+
+public record StoredUrl(String longUrl, long expiresAt) {
+
+    public static final long NEVER = 0;
+
+    /**
+     * A mapping that never expires, or null for a null URL.
+     */
+    public static StoredUrl of(String longUrl) {
+        return longUrl != null ? new StoredUrl(longUrl, NEVER) : null;
+    }
+
+    public boolean expires() {
+        return expiresAt != NEVER;
+    }
+
+    public boolean isExpired(long now) {
+        return expires() && expiresAt <= now;
+    }
+}
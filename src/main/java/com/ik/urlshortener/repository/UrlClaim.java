@@ -0,0 +1,45 @@
+package com.ik.urlshortener.repository;
+
+import java.util.List;
+
+/**
+ * A request to map a long URL to one of its candidate short URL keys.
+ *
+ * @param longUrl       the URL to redirect to, stored as given
+ * @param urlDigest     digest of the normalized URL for the reverse index, or null to skip the
+ *                      reverse lookup and write (used when copying existing mappings)
+ * @param candidateKeys short URL keys to try, in order
+ * @param expiresAt     when a new mapping expires, in epoch milliseconds, or {@link StoredUrl#NEVER}.
+ *                      Expiring claims bypass the reverse index, so a URL that was shortened for good
+ *                      never gets an expiring key back, and they only reuse a candidate that already
+ *                      holds an expiring mapping of the same URL
+ */
+
+public record UrlClaim(String longUrl, String urlDigest, List<String> candidateKeys, long expiresAt) {
+
+    public UrlClaim {
+        if (expiresAt != StoredUrl.NEVER && urlDigest != null) {
+            throw new IllegalArgumentException("Expiring claims bypass the reverse index");
+        }
+    }
+
+    public UrlClaim(String longUrl, String urlDigest, List<String> candidateKeys) {
+        this(longUrl, urlDigest, candidateKeys, StoredUrl.NEVER);
+    }
+
+    public boolean expires() {
+        return expiresAt != StoredUrl.NEVER;
+    }
+
+    /**
+     * The same claim limited to some of its candidate keys and without the reverse index, as
+     * probed on one node of a sharded store.
+     *
+     * @param candidateKeys
+     * @return
+     */
+
+    public UrlClaim forCandidates(List<String> candidateKeys) {
+        return new UrlClaim(longUrl, null, candidateKeys, expiresAt);
+    }
+}
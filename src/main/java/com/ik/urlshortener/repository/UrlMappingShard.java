@@ -0,0 +1,39 @@
+package com.ik.urlshortener.repository;
+
+import java.util.List;
+
+/**
+ * One node of a {@link ShardedUrlMappingStore}. On top of the {@link UrlMappingStore} operations,
+ * which a node runs atomically for the keys it holds, it exposes the reverse index on its own,
+ * since a URL digest and the candidate keys of its URL usually live on different nodes, and
+ * removal of mappings that were moved to another node.
+ *
+ */
+
+public interface UrlMappingShard extends UrlMappingStore {
+
+    /**
+     * Looks up the short URL keys the reverse index holds for many URL digests, in a single round
+     * trip where the data store supports it.
+     *
+     * @param urlDigests
+     * @return the key of each digest, or null where the digest is unknown
+     */
+    List<String> findKeysForDigests(List<String> urlDigests);
+
+    /**
+     * Points each URL digest at its short URL key, unless the digest already points at a key.
+     *
+     * @param urlDigests
+     * @param shortUrlKeys the key for each digest
+     * @return the key each digest points at afterwards, the existing one where there was one
+     */
+    List<String> putKeysForDigests(List<String> urlDigests, List<String> shortUrlKeys);
+
+    /**
+     * Removes the mappings of the keys.
+     *
+     * @param shortUrlKeys
+     */
+    void deleteMappings(List<String> shortUrlKeys);
+}
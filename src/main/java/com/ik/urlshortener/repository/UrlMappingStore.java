@@ -0,0 +1,92 @@
+package com.ik.urlshortener.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Data access for the URL mappings used by the service: atomic claims plus single and batched
+ * reads, independent of how the mappings are laid out in the data store. Mappings may expire,
+ * after which they read as unknown and their keys are free to be claimed again.
+ * 
+ */
+
+public interface UrlMappingStore {
+
+    /**
+     * Maps the long URL to the key the reverse index already holds for its digest, or else to
+     * the first candidate key that is either free or already maps to the same long URL. Lookup,
+     * probing and writing the mapping and its reverse index entry happen in one atomic step, so
+     * two concurrent requests can never both claim the same key.
+     * 
+     * @param claim
+     * @return the claimed key, or null if every candidate maps to a different long URL
+     */
+    String claim(UrlClaim claim);
+
+    /**
+     * Claims keys for a batch of long URLs, with the same guarantees as {@link #claim} for
+     * each URL. Implementations should send the whole batch in a handful of round trips.
+     * 
+     * @param claims
+     * @return the claimed key of each claim, or null where every candidate was taken
+     */
+    default List<String> claimAll(List<UrlClaim> claims) {
+        List<String> claimedKeys = new ArrayList<>(claims.size());
+        for (UrlClaim claim : claims) {
+            claimedKeys.add(claim(claim));
+        }
+        return claimedKeys;
+    }
+
+    /**
+     * Looks up the long URL of a key along with its expiry.
+     * 
+     * @param shortUrlKey
+     * @return the stored URL, or null if the key is unknown or has expired
+     */
+    StoredUrl findStoredUrl(String shortUrlKey);
+
+    /**
+     * Looks up the long URLs of many keys at once along with their expiry, in a single round trip
+     * where the data store supports it.
+     * 
+     * @param shortUrlKeys
+     * @return the stored URL of each key, or null where the key is unknown or has expired
+     */
+    List<StoredUrl> findStoredUrls(List<String> shortUrlKeys);
+
+    /**
+     * Looks up the long URL of a key.
+     * 
+     * @param shortUrlKey
+     * @return the long URL, or null if the key is unknown or has expired
+     */
+    default String findLongUrl(String shortUrlKey) {
+        StoredUrl storedUrl = findStoredUrl(shortUrlKey);
+        return storedUrl != null ? storedUrl.longUrl() : null;
+    }
+
+    /**
+     * Looks up the long URLs of many keys at once, in a single round trip where the data store
+     * supports it.
+     * 
+     * @param shortUrlKeys
+     * @return the long URL of each key, or null where the key is unknown or has expired
+     */
+    default List<String> findLongUrls(List<String> shortUrlKeys) {
+        List<String> longUrls = new ArrayList<>(shortUrlKeys.size());
+        for (StoredUrl storedUrl : findStoredUrls(shortUrlKeys)) {
+            longUrls.add(storedUrl != null ? storedUrl.longUrl() : null);
+        }
+        return longUrls;
+    }
+
+    /**
+     * Streams every short URL key in the data store, without loading them all at once. Keys
+     * created while the scan runs may or may not be included.
+     * 
+     * @param action called once for each key
+     */
+    void scanKeys(Consumer<String> action);
+}
@@ -0,0 +1,161 @@
+package com.ik.urlshortener.resilience;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.ik.urlshortener.controller.RedirectFastPathFilter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control ahead of everything else that handles a request, so that rejected requests
+ * cost neither a Spring MVC dispatch nor a Redis call.
+ *  - POST /shorten and /shorten/batch take a token from the client's {@link RateLimiter} bucket,
+ *    and get a 429 with Retry-After when it is empty; the client is left in a request attribute
+ *    so that a batch can be charged for its further chunks as it streams
+ *  - redirects and shortens each run inside a {@link Bulkhead} of their own, so a flood of
+ *    shortens cannot hold every request thread while redirects wait; a request that finds its
+ *    bulkhead full gets a 503 with Retry-After
+ *
+ * Clients are told apart by their API key header if the key is one of the configured API keys,
+ * or else by IP address, so that a client cannot get fresh buckets by making up keys.
+ *
+ */
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdmissionFilter extends OncePerRequestFilter implements MeterBinder {
+
+    // Request attribute holding the rate limit client of an admitted shorten
+    public static final String CLIENT_ATTRIBUTE = AdmissionFilter.class.getName() + ".client";
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    private final Bulkhead redirectBulkhead;
+
+    private final Bulkhead shortenBulkhead;
+
+    private final String clientHeader;
+
+    private final Set<String> apiKeys;
+
+    private final LongAdder rateLimited = new LongAdder();
+
+    public AdmissionFilter(@Value("${url.shortener.bulkhead.redirect.max-concurrent:1000}") int redirectMaxConcurrent,
+                           @Value("${url.shortener.bulkhead.shorten.max-concurrent:100}") int shortenMaxConcurrent,
+                           @Value("${url.shortener.rate-limit.client-header:X-API-Key}") String clientHeader,
+                           @Value("${url.shortener.rate-limit.api-keys:}") String[] apiKeys) {
+        this.redirectBulkhead = new Bulkhead("redirect", redirectMaxConcurrent);
+        this.shortenBulkhead = new Bulkhead("shorten", shortenMaxConcurrent);
+        this.clientHeader = clientHeader;
+        this.apiKeys = Arrays.stream(apiKeys).map(String::trim).filter(key -> !key.isEmpty()).collect(Collectors.toSet());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Bulkhead bulkhead;
+        if (isShorten(request)) {
+            String client = client(request);
+            long waitNanos = rateLimiter.tryAcquire(client);
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, waitNanos);
+                return;
+            }
+            request.setAttribute(CLIENT_ATTRIBUTE, client);
+            bulkhead = shortenBulkhead;
+        } else if (RedirectFastPathFilter.shortUrlKey(request) != null) {
+            bulkhead = redirectBulkhead;
+        } else {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (!bulkhead.tryEnter()) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            bulkhead.exit();
+        }
+    }
+
+    private static boolean isShorten(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return false;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.equals("/shorten") || path.equals("/shorten/batch");
+    }
+
+    private String client(HttpServletRequest request) {
+        String apiKey = request.getHeader(clientHeader);
+        return apiKey != null && apiKeys.contains(apiKey) ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterNanos) {
+        response.setStatus(status.value());
+        // Whole seconds, rounded up
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfterNanos + 999_999_999) / 1_000_000_000)));
+        response.setContentLength(0);
+    }
+
+    Bulkhead getRedirectBulkhead() {
+        return redirectBulkhead;
+    }
+
+    Bulkhead getShortenBulkhead() {
+        return shortenBulkhead;
+    }
+
+    /**
+     * Publishes the requests turned away, by reason, and the requests in each bulkhead.
+     *
+     * @param registry
+     */
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("urlshortener.admission.rejected", rateLimited, LongAdder::sum)
+                .description("Requests turned away before reaching the service")
+                .tags("reason", "rate-limit", "endpoint", "shorten")
+                .register(registry);
+        for (Bulkhead bulkhead : new Bulkhead[] {redirectBulkhead, shortenBulkhead}) {
+            FunctionCounter.builder("urlshortener.admission.rejected", bulkhead, Bulkhead::getRejected)
+                    .description("Requests turned away before reaching the service")
+                    .tags("reason", "bulkhead", "endpoint", bulkhead.getName())
+                    .register(registry);
+            Gauge.builder("urlshortener.bulkhead.active", bulkhead, Bulkhead::getActive)
+                    .description("Requests in progress within the bulkhead")
+                    .tag("bulkhead", bulkhead.getName())
+                    .register(registry);
+        }
+    }
+}
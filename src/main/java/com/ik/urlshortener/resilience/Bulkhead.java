@@ -0,0 +1,67 @@
+package com.ik.urlshortener.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limit on the requests of one kind in progress at once, so that a flood of one kind cannot take
+ * every request thread (or every Redis connection slot) from the others. A request that finds
+ * the bulkhead full is turned away at once rather than queued.
+ *
+ */
+
+public final class Bulkhead {
+
+    private final String name;
+
+    private final int maxConcurrent;
+
+    private final Semaphore permits;
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name
+     * @param maxConcurrent the requests allowed in progress at once, or 0 for no limit
+     */
+    public Bulkhead(String name, int maxConcurrent) {
+        if (maxConcurrent < 0) {
+            throw new IllegalArgumentException("Bulkhead " + name + " needs a limit of 0 (none) or more: " + maxConcurrent);
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Enters the bulkhead if there is room, in which case the caller must {@link #exit()} once done.
+     *
+     * @return whether the request may go ahead
+     */
+
+    public boolean tryEnter() {
+        if (permits == null || permits.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void exit() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    public int getActive() {
+        return permits != null ? maxConcurrent - permits.availablePermits() : 0;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,203 @@
+package com.ik.urlshortener.resilience;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around the data store calls of request threads, so that a slow or failing
+ * Redis makes requests fail fast instead of tying up every request thread until the command
+ * timeout.
+ *  - CLOSED: calls go through; the outcome of the last window-size calls is kept, and a call
+ *    that failed with a {@link DataAccessException} or took longer than the slow call duration
+ *    counts against Redis
+ *  - OPEN: once the failure rate threshold of a full window counts against Redis, calls are
+ *    rejected with an {@link OpenException} for the open duration, without calling Redis
+ *  - HALF_OPEN: after that a single probe call goes through and closes the circuit again, or
+ *    reopens it if it also fails or is slow
+ *
+ * Redirects served from the local cache never reach the breaker, so hot keys keep redirecting
+ * while it is open.
+ *
+ */
+
+@Component
+public class CircuitBreaker implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean enabled;
+
+    private final double failureRateThreshold;
+
+    private final long slowCallNanos;
+
+    private final long openNanos;
+
+    // Outcome of the last calls while closed, true where the call failed or was slow
+    private final boolean[] window;
+
+    private int position;
+
+    private int recorded;
+
+    private int badCalls;
+
+    private volatile State state = State.CLOSED;
+
+    private volatile long openUntil;
+
+    // Set while the probe call of the half-open state is running
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public CircuitBreaker(@Value("${url.shortener.redis.circuit-breaker.enabled:true}") boolean enabled,
+                          @Value("${url.shortener.redis.circuit-breaker.window-size:50}") int windowSize,
+                          @Value("${url.shortener.redis.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                          @Value("${url.shortener.redis.circuit-breaker.slow-call-duration:250ms}") Duration slowCallDuration,
+                          @Value("${url.shortener.redis.circuit-breaker.open-duration:5s}") Duration openDuration) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Circuit breaker window size must be positive: " + windowSize);
+        }
+        this.enabled = enabled;
+        this.window = new boolean[windowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Duration getOpenDuration() {
+        return Duration.ofNanos(openNanos);
+    }
+
+    /**
+     * Runs the data store call unless the circuit is open.
+     *
+     * @param action
+     * @return the result of the call
+     * @throws OpenException without running the call while the circuit is open
+     */
+
+    public <T> T call(Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        boolean probe = acquirePermission();
+        long startedAt = System.nanoTime();
+        try {
+            T result = action.get();
+            record(probe, System.nanoTime() - startedAt > slowCallNanos);
+            return result;
+        } catch (DataAccessException e) {
+            record(probe, true);
+            throw e;
+        } catch (RuntimeException e) {
+            // Not a Redis failure; Redis answered
+            record(probe, false);
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether the call is the probe of the half-open state
+     */
+    private boolean acquirePermission() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return false;
+        }
+        if ((current == State.OPEN && System.nanoTime() - openUntil < 0) || !probing.compareAndSet(false, true)) {
+            rejected.increment();
+            throw new OpenException("The Redis circuit is open");
+        }
+        state = State.HALF_OPEN;
+        return true;
+    }
+
+    private synchronized void record(boolean probe, boolean bad) {
+        if (probe) {
+            if (bad) {
+                open("the probe call failed or was slow");
+            } else {
+                close();
+            }
+            probing.set(false);
+            return;
+        }
+        if (state != State.CLOSED) {
+            // A call that started before the circuit opened
+            return;
+        }
+        if (recorded == window.length && window[position]) {
+            badCalls--;
+        }
+        window[position] = bad;
+        if (bad) {
+            badCalls++;
+        }
+        position = (position + 1) % window.length;
+        recorded = Math.min(recorded + 1, window.length);
+        if (recorded == window.length && badCalls >= failureRateThreshold * window.length) {
+            open(badCalls + " of the last " + window.length + " calls failed or were slow");
+        }
+    }
+
+    private void open(String reason) {
+        openUntil = System.nanoTime() + openNanos;
+        state = State.OPEN;
+        logger.warn("Opening the Redis circuit for {} ms: {}", openNanos / 1_000_000, reason);
+    }
+
+    private void close() {
+        position = 0;
+        recorded = 0;
+        badCalls = 0;
+        state = State.CLOSED;
+        logger.info("Closed the Redis circuit");
+    }
+
+    /**
+     * Publishes the state (0 closed, 1 open, 2 half-open) and the rejected calls.
+     *
+     * @param registry
+     */
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("urlshortener.circuit.state", this, breaker -> breaker.state.ordinal())
+                .description("State of the Redis circuit breaker: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        FunctionCounter.builder("urlshortener.circuit.rejected", rejected, LongAdder::sum)
+                .description("Data store calls rejected without calling Redis while the circuit was open")
+                .register(registry);
+    }
+
+    /**
+     * Raised instead of calling Redis while the circuit is open, so callers can fail fast.
+     */
+    public static final class OpenException extends RuntimeException {
+
+        public OpenException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.ik.urlshortener.resilience;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket per client (API key or IP address) in front of the shorten endpoints, so that one
+ * misbehaving integration cannot flood Redis with claims.
+ *  - each client may make up to the burst of requests at once, refilled at the rate per second
+ *  - a bucket is kept as a single number, the theoretical arrival time of the client's next
+ *    request (GCRA), updated with a compare-and-set, so admitting a request takes no lock
+ *  - buckets live in a bounded concurrent map and are forgotten once idle long enough to be full
+ *    again, which is indistinguishable from a new bucket
+ *  - with the redis scope every instance shares the buckets through an atomic script instead,
+ *    so the limit holds across instances; the script runs behind the {@link CircuitBreaker}, and
+ *    while Redis cannot be reached or the circuit is open the local buckets decide
+ *
+ */
+
+@Component
+public class RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+
+    static final RedisScript<Long> RATE_LIMIT_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rate-limit.lua"), Long.class);
+
+    public enum Scope { LOCAL, REDIS }
+
+    private final boolean enabled;
+
+    private final Scope scope;
+
+    private final long intervalNanos;
+
+    private final int burst;
+
+    // Nanos a bucket takes to fill up from empty
+    private final long fillNanos;
+
+    private final Cache<String, AtomicLong> buckets;
+
+    @Autowired(required = false)
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired(required = false)
+    private CircuitBreaker circuitBreaker;
+
+    public RateLimiter(@Value("${url.shortener.rate-limit.enabled:true}") boolean enabled,
+                       @Value("${url.shortener.rate-limit.scope:local}") Scope scope,
+                       @Value("${url.shortener.rate-limit.requests-per-second:20}") double requestsPerSecond,
+                       @Value("${url.shortener.rate-limit.burst:40}") int burst,
+                       @Value("${url.shortener.rate-limit.max-clients:100000}") long maxClients) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate limit needs a positive rate and burst: " + requestsPerSecond + "/s, " + burst);
+        }
+        this.enabled = enabled;
+        this.scope = scope;
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000 / requestsPerSecond));
+        this.burst = burst;
+        this.fillNanos = intervalNanos * burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(fillNanos))
+                .build();
+    }
+
+    /**
+     * Takes a token from the client's bucket.
+     *
+     * @param client the API key or IP address of the client
+     * @return 0 if the request is admitted, otherwise the nanos until the client may try again
+     */
+
+    public long tryAcquire(String client) {
+        if (!enabled) {
+            return 0;
+        }
+        if (scope == Scope.REDIS && redisTemplate != null) {
+            try {
+                Long waitMicros = circuitBreaker != null ? circuitBreaker.call(() -> tryAcquireInRedis(client)) : tryAcquireInRedis(client);
+                return waitMicros != null ? waitMicros * 1000 : 0;
+            } catch (DataAccessException | CircuitBreaker.OpenException e) {
+                logger.debug("Falling back to the local rate limit: {}", e.getMessage());
+            }
+        }
+        return tryAcquireLocally(client, System.nanoTime());
+    }
+
+    private Long tryAcquireInRedis(String client) {
+        return redisTemplate.execute(RATE_LIMIT_SCRIPT, List.of("rl:" + client),
+                String.valueOf(Math.max(1, intervalNanos / 1000)), String.valueOf(burst));
+    }
+
+    long tryAcquireLocally(String client, long now) {
+        AtomicLong bucket = buckets.get(client, key -> new AtomicLong(now));
+        while (true) {
+            long arrival = bucket.get();
+            // A bucket whose arrival time has passed is full
+            long nextArrival = (arrival - now < 0 ? now : arrival) + intervalNanos;
+            long wait = nextArrival - now - fillNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, nextArrival)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ik.urlshortener.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.ik.urlshortener.analytics.ClickBuffer;
+import com.ik.urlshortener.analytics.ClickDelta;
+import com.ik.urlshortener.repository.RedisClickStatsStore;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This Spring bean will be responsible for reporting the clicks on a short URL: the counts
+ * flushed to Redis plus the clicks of this instance that are still waiting to be flushed.
+ *
+ */
+
+@Service
+public class ClickStatsService {
+
+    @Autowired
+    private RedisClickStatsStore clickStatsStore;
+
+    @Autowired
+    private ClickBuffer clickBuffer;
+
+    /**
+     * This is the method responsible for fetching the click stats of a short URL key.
+     *
+     * @param shortUrlKey
+     * @return total clicks, clicks per hour (UTC) and clicks per referrer host
+     */
+
+    public Map<String, Object> getClickStats(String shortUrlKey) {
+        ClickDelta stored = clickStatsStore.find(shortUrlKey);
+        ClickDelta pending = clickBuffer.pending(shortUrlKey);
+
+        long clicks = stored.clicks();
+        Map<Long, Long> hourlyClicks = new TreeMap<>(stored.hourlyClicks());
+        Map<String, Long> referrerClicks = new LinkedHashMap<>(stored.referrerClicks());
+        if (pending != null) {
+            clicks += pending.clicks();
+            pending.hourlyClicks().forEach((hour, count) -> hourlyClicks.merge(hour, count, Long::sum));
+            pending.referrerClicks().forEach((referrer, count) -> referrerClicks.merge(referrer, count, Long::sum));
+        }
+
+        Map<String, Long> hourly = new LinkedHashMap<>();
+        hourlyClicks.forEach((hour, count) -> hourly.put(Instant.ofEpochSecond(hour * 3600).toString(), count));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("shortUrlKey", shortUrlKey);
+        response.put("clicks", clicks);
+        response.put("hourlyClicks", hourly);
+        response.put("referrers", referrerClicks);
+        return response;
+    }
+}
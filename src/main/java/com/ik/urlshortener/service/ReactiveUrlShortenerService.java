@@ -0,0 +1,172 @@
+package com.ik.urlshortener.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.cache.KnownKeyFilter;
+import com.ik.urlshortener.cache.RedirectCache;
+import com.ik.urlshortener.keygen.KeyGenerator;
+import com.ik.urlshortener.metrics.UrlShortenerMetrics;
+import com.ik.urlshortener.repository.ReactiveRedisUrlMappingStore;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+
+import io.micrometer.core.instrument.Timer;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking counterpart of {@link UrlShortenerService} for the reactive web stack, with the
+ * same key generation, reverse index and redirect cache.
+ *
+ * Nothing here blocks, so a few event-loop threads serve every request. Instead of queueing
+ * without bound when Redis slows down, at most max-in-flight Redis calls are outstanding at a
+ * time and each one is given up after the Redis timeout; requests beyond that fail fast with
+ * an {@link OverloadedException}. Cache hits are served regardless.
+ *
+ */
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUrlShortenerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUrlShortenerService.class);
+
+    private final ReactiveRedisUrlMappingStore urlMappingStore;
+
+    private final RedirectCache redirectCache;
+
+    private final KeyGenerator keyGenerator;
+
+    private final UrlShortenerMetrics metrics;
+
+    private final KnownKeyFilter keyFilter;
+
+    private final int maxInFlight;
+
+    private final Duration redisTimeout;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ReactiveUrlShortenerService(ReactiveRedisUrlMappingStore urlMappingStore,
+                                       RedirectCache redirectCache,
+                                       KeyGenerator keyGenerator,
+                                       UrlShortenerMetrics metrics,
+                                       KnownKeyFilter keyFilter,
+                                       @Value("${url.shortener.reactive.max-in-flight:10000}") int maxInFlight,
+                                       @Value("${url.shortener.reactive.redis-timeout:500ms}") Duration redisTimeout) {
+        this.urlMappingStore = urlMappingStore;
+        this.redirectCache = redirectCache;
+        this.keyGenerator = keyGenerator;
+        this.metrics = metrics;
+        this.keyFilter = keyFilter;
+        this.maxInFlight = maxInFlight;
+        this.redisTimeout = redisTimeout;
+    }
+
+    /**
+     * Same as {@link UrlShortenerService#shortenUrl}, failing with an IllegalStateException when
+     * every candidate key is taken.
+     *
+     * @param longUrl
+     * @return
+     */
+
+    public Mono<String> shortenUrl(String longUrl) {
+        logger.debug("Attempting to shorten URL: {}", longUrl);
+        Timer.Sample sample = Timer.start();
+        UrlClaim claim = UrlShortenerService.toClaim(longUrl, StoredUrl.NEVER, keyGenerator, metrics);
+        return limited(urlMappingStore.claim(claim))
+                .doOnNext(shortUrlKey -> {
+                    keyFilter.add(shortUrlKey);
+                    redirectCache.invalidate(shortUrlKey);
+                    metrics.shortened(sample, claim.candidateKeys().indexOf(shortUrlKey) + 1);
+                    logger.debug("Short URL key {} is mapped to long URL {}", shortUrlKey, longUrl);
+                })
+                .doOnError(e -> metrics.shortenFailed(sample))
+                .switchIfEmpty(Mono.defer(() -> {
+                    metrics.shortenExhausted(sample);
+                    int attempts = claim.candidateKeys().size();
+                    logger.error("Unable to generate unique short URL key after {} attempts for long URL: {}", attempts, longUrl);
+                    return Mono.error(new IllegalStateException("Unable to generate unique short URL key after " + attempts + " attempts."));
+                }));
+    }
+
+    /**
+     * Same as {@link UrlShortenerService#getLongUrl}, completing empty when the key is unknown.
+     * Keys the known key filter has never seen are rejected right away; found and unknown keys
+     * are both cached, so only cache misses reach Redis.
+     *
+     * @param shortUrlKey
+     * @return
+     */
+
+    public Mono<String> getLongUrl(String shortUrlKey) {
+        logger.debug("Fetching long URL for short URL key: {}", shortUrlKey);
+        Timer.Sample sample = Timer.start();
+        if (!keyFilter.mightContain(shortUrlKey)) {
+            metrics.lookedUp(sample, false);
+            return Mono.empty();
+        }
+        Optional<String> cached = redirectCache.getIfPresent(shortUrlKey);
+        if (cached != null) {
+            metrics.lookedUp(sample, cached.isPresent());
+            return Mono.justOrEmpty(cached);
+        }
+        return limited(urlMappingStore.findStoredUrl(shortUrlKey))
+                .doOnSuccess(storedUrl -> {
+                    if (storedUrl == null) {
+                        logger.debug("No long URL found for short URL key: {}", shortUrlKey);
+                    }
+                    redirectCache.put(shortUrlKey, storedUrl);
+                    metrics.lookedUp(sample, storedUrl != null);
+                })
+                .map(StoredUrl::longUrl);
+    }
+
+    /**
+     * Hit, miss and eviction counters of the local redirect cache.
+     *
+     * @return
+     */
+
+    public Map<String, Object> getCacheStats() {
+        return redirectCache.stats();
+    }
+
+    /**
+     * Runs a Redis call within the in-flight limit and the Redis timeout.
+     */
+    private <T> Mono<T> limited(Mono<T> redisCall) {
+        return Mono.defer(() -> {
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                return Mono.error(new OverloadedException("More than " + maxInFlight + " Redis calls in flight"));
+            }
+            return redisCall
+                    .timeout(redisTimeout)
+                    .onErrorMap(TimeoutException.class,
+                            e -> new OverloadedException("Redis did not answer within " + redisTimeout.toMillis() + " ms"))
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * Raised instead of waiting when Redis cannot keep up, so callers can shed the request.
+     */
+    public static final class OverloadedException extends RuntimeException {
+
+        public OverloadedException(String message) {
+            super(message);
+        }
+    }
+}
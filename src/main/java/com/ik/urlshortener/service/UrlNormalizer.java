@@ -0,0 +1,112 @@
+package com.ik.urlshortener.service;
+
+import com.ik.urlshortener.util.ScratchPool;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Normalizes long URLs so that trivially different spellings of the same URL are shortened to
+ * the same key, and digests them for the reverse index. Normalization
+ *  - lower-cases the scheme and host
+ *  - drops the default port of http and https
+ *  - drops the trailing slash of the path
+ * Paths, queries and fragments are otherwise kept byte for byte. Strings that do not parse as
+ * hierarchical URIs are only trimmed.
+ * 
+ */
+
+public final class UrlNormalizer {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // 128 bits of SHA-256 keep reverse index entries short while making collisions impractical
+    private static final int DIGEST_BYTES = 16;
+
+    private static final ScratchPool<MessageDigest> SHA_256 = new ScratchPool<>(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 digest is not available", e);
+        }
+    });
+
+    private UrlNormalizer() {
+    }
+
+    public static String normalize(String longUrl) {
+        String trimmed = longUrl.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+        if (uri.isOpaque() || uri.getScheme() == null || uri.getRawAuthority() == null) {
+            return trimmed;
+        }
+
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(trimmed.length());
+        normalized.append(scheme).append("://");
+        if (uri.getHost() == null) {
+            // Registry-based authority, keep it as it is
+            normalized.append(uri.getRawAuthority());
+        } else {
+            if (uri.getRawUserInfo() != null) {
+                normalized.append(uri.getRawUserInfo()).append('@');
+            }
+            normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+            if (uri.getPort() != -1 && !isDefaultPort(scheme, uri.getPort())) {
+                normalized.append(':').append(uri.getPort());
+            }
+        }
+
+        String path = uri.getRawPath();
+        if (path != null && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path != null) {
+            normalized.append(path);
+        }
+        if (uri.getRawQuery() != null) {
+            normalized.append('?').append(uri.getRawQuery());
+        }
+        if (uri.getRawFragment() != null) {
+            normalized.append('#').append(uri.getRawFragment());
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Hex digest of a normalized URL, used as the key of the reverse index.
+     * 
+     * @param normalizedUrl
+     * @return
+     */
+
+    public static String digest(String normalizedUrl) {
+        MessageDigest sha256 = SHA_256.acquire();
+        byte[] hash;
+        try {
+            hash = sha256.digest(normalizedUrl.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            SHA_256.release(sha256);
+        }
+        char[] hex = new char[DIGEST_BYTES * 2];
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static boolean isDefaultPort(String scheme, int port) {
+        return (port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"));
+    }
+}
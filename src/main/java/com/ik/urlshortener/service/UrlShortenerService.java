@@ -5,18 +5,31 @@ import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.ik.urlshortener.model.UrlMapping;
-import com.ik.urlshortener.repository.UrlMappingRepository;
+import com.ik.urlshortener.cache.KnownKeyFilter;
+import com.ik.urlshortener.cache.Redirect;
+import com.ik.urlshortener.cache.RedirectCache;
+import com.ik.urlshortener.keygen.KeyGenerator;
+import com.ik.urlshortener.metrics.UrlShortenerMetrics;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+import com.ik.urlshortener.repository.UrlMappingStore;
+import com.ik.urlshortener.resilience.CircuitBreaker;
 
-import java.util.Optional;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This Spring bean will be responsible for all the logic needed for
  *  - shortening of the URL
  *  - detecting collision and resolving while shortening
+ *  - returning the existing key when the same URL is shortened again
+ *  - links that expire at a given time
  *  - retrieval of correct URL when short URL is supplied
  *  - identify if the supplied URL is invalid or not generated through the app
  * 
@@ -26,83 +39,136 @@ import java.security.NoSuchAlgorithmException;
 public class UrlShortenerService {
 
     @Autowired
-    private UrlMappingRepository urlMappingRepository;
+    private UrlMappingStore urlMappingStore;
+
+    @Autowired
+    private RedirectCache redirectCache;
+
+    @Autowired
+    private KeyGenerator keyGenerator;
+
+    @Autowired
+    private UrlShortenerMetrics metrics;
+
+    @Autowired
+    private KnownKeyFilter keyFilter;
+
+    @Autowired
+    private CircuitBreaker circuitBreaker;
 
     private static final Logger logger = LoggerFactory.getLogger(UrlShortenerService.class);
 
     /**
      * This is the method responsible for shortening the URL. It ensures that the short URL is unique
-     * and handles any collisions that may happen gracefully.
+     * and handles any collisions that may happen gracefully. A URL that was shortened before, in any
+     * trivially different spelling, gets its existing key back from the reverse index. Otherwise the
+     * configured key generator supplies the candidate keys and the data store probes them and writes
+     * the mapping, all in one atomic round trip.
      * 
      * @param longUrl
      * @return
-     * @throws NoSuchAlgorithmException
      */
 
-    public String shortenUrl(String longUrl) throws NoSuchAlgorithmException {
-        logger.info("Attempting to shorten URL: {}", longUrl);
-        
-        // Generate a hash of the URL
-        String shortUrlKey = getShortUrlKey(longUrl);
-
-        int attempts = 0;
-        final int maxAttempts = 5;  // Define a max number of attempts to handle collisions
-
-        // Loop to resolve collisions
-        while (attempts < maxAttempts) {
-            logger.debug("Checking for collision with short URL key: {}", shortUrlKey);
-            Optional<UrlMapping> existingMapping = urlMappingRepository.findById(shortUrlKey);
-
-            if (existingMapping.isPresent()) {
-                // Check if it maps to the same URL
-                if (existingMapping.get().getLongUrl().equals(longUrl)) {
-                    logger.info("Short URL already exists for the same long URL: {}", longUrl);
-                    return shortUrlKey;
-                } else {
-                    // If it's a different URL, resolve the collision by modifying the longUrl (or key)
-                    logger.warn("Collision detected: short URL key {} already exists but maps to a different long URL", shortUrlKey);
-                    attempts++;
-                    shortUrlKey = getShortUrlKey(longUrl + attempts); // Append a counter to avoid collisions
-                }
-            } else {
-                // If the key doesn't exist, save the mapping
-                UrlMapping urlMapping = new UrlMapping();
-                urlMapping.setId(shortUrlKey);
-                urlMapping.setLongUrl(longUrl);
-                urlMappingRepository.save(urlMapping);
-                logger.info("Successfully created short URL key {} for long URL {}", shortUrlKey, longUrl);
-                return shortUrlKey;
-            }
+    public String shortenUrl(String longUrl) {
+        return shortenUrl(longUrl, null);
+    }
+
+    /**
+     * Same as {@link #shortenUrl(String)}, for a link that stops redirecting at the given time.
+     * Expiring links get a key of their own rather than the key of an earlier, longer lived link
+     * of the same URL; shortening the same URL with the same expiry again returns the same key.
+     * 
+     * @param longUrl
+     * @param expiresAt when the link expires, or null for never
+     * @return
+     */
+
+    public String shortenUrl(String longUrl, Instant expiresAt) {
+        logger.debug("Attempting to shorten URL: {}", longUrl);
+        Timer.Sample sample = Timer.start();
+        if (expiresAt != null && !expiresAt.isAfter(Instant.now())) {
+            throw new IllegalArgumentException("The expiry of a link must lie in the future: " + expiresAt);
+        }
+
+        UrlClaim claim;
+        String shortUrlKey;
+        try {
+            claim = toClaim(longUrl, expiresAt != null ? expiresAt.toEpochMilli() : StoredUrl.NEVER, keyGenerator, metrics);
+            shortUrlKey = claim(claim);
+        } catch (RuntimeException e) {
+            metrics.shortenFailed(sample);
+            throw e;
+        }
+        if (shortUrlKey != null) {
+            // Drop any cached miss; the key may hold an earlier spelling of the URL, so don't cache this one
+            keyFilter.add(shortUrlKey);
+            redirectCache.invalidate(shortUrlKey);
+            metrics.shortened(sample, claim.candidateKeys().indexOf(shortUrlKey) + 1);
+            logger.debug("Short URL key {} is mapped to long URL {}", shortUrlKey, longUrl);
+            return shortUrlKey;
         }
 
         // If we exhausted all attempts, throw an exception (or handle accordingly)
-        logger.error("Unable to generate unique short URL key after {} attempts for long URL: {}", maxAttempts, longUrl);
-        throw new IllegalStateException("Unable to generate unique short URL key after " + maxAttempts + " attempts.");
+        metrics.shortenExhausted(sample);
+        int attempts = claim.candidateKeys().size();
+        logger.error("Unable to generate unique short URL key after {} attempts for long URL: {}", attempts, longUrl);
+        throw new IllegalStateException("Unable to generate unique short URL key after " + attempts + " attempts.");
     }
 
     /**
-     * This is the method responsible for generating a 6-character short key.
+     * This is the method responsible for shortening a batch of URLs. Keys for the whole batch are
+     * claimed through a single pipelined call to the data store instead of one round trip per URL.
      * 
-     * @param longUrl
-     * @return
-     * @throws NoSuchAlgorithmException
+     * @param longUrls
+     * @return the short URL key of each long URL, or null where no unique key could be generated
      */
 
-    private String getShortUrlKey(String longUrl) throws NoSuchAlgorithmException {
-        logger.debug("Generating short URL key for long URL: {}", longUrl);
-        MessageDigest digest = MessageDigest.getInstance("MD5");
-        byte[] hash = digest.digest(longUrl.getBytes(StandardCharsets.UTF_8));
-
-        // Convert hash bytes to a hex string and take the first 6 characters
-        StringBuilder hexString = new StringBuilder();
-        for (int i = 0; i < 3; i++) { // First 3 bytes = 6 hex chars
-            String hex = Integer.toHexString(0xff & hash[i]);
-            if (hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
+    public List<String> shortenUrls(List<String> longUrls) {
+        logger.debug("Attempting to shorten a batch of {} URLs", longUrls.size());
+        // Every URL of the batch is recorded with the duration of the whole batch
+        Timer.Sample sample = Timer.start();
+
+        List<UrlClaim> claims = new ArrayList<>(longUrls.size());
+        List<String> shortUrlKeys;
+        try {
+            for (String longUrl : longUrls) {
+                claims.add(toClaim(longUrl, StoredUrl.NEVER, keyGenerator, metrics));
+            }
+            shortUrlKeys = circuitBreaker.call(() -> urlMappingStore.claimAll(claims));
+        } catch (RuntimeException e) {
+            for (int i = 0; i < longUrls.size(); i++) {
+                metrics.shortenFailed(sample);
+            }
+            throw e;
         }
-        String shortUrlKey = hexString.toString();
-        logger.debug("Generated short URL key: {}", shortUrlKey);
-        return shortUrlKey;
+        for (int i = 0; i < shortUrlKeys.size(); i++) {
+            String shortUrlKey = shortUrlKeys.get(i);
+            if (shortUrlKey != null) {
+                keyFilter.add(shortUrlKey);
+                redirectCache.invalidate(shortUrlKey);
+                metrics.shortened(sample, claims.get(i).candidateKeys().indexOf(shortUrlKey) + 1);
+            } else {
+                metrics.shortenExhausted(sample);
+                logger.error("Unable to generate unique short URL key after {} attempts for long URL: {}",
+                        claims.get(i).candidateKeys().size(), longUrls.get(i));
+            }
+        }
+        return shortUrlKeys;
+    }
+
+    /**
+     * Candidate keys are generated from the normalized URL, so that spellings of the same URL
+     * start probing at the same key; the URL itself is stored as given. Those of an expiring link
+     * are generated from the URL along with its expiry, and it skips the reverse index.
+     */
+    static UrlClaim toClaim(String longUrl, long expiresAt, KeyGenerator keyGenerator, UrlShortenerMetrics metrics) {
+        String normalizedUrl = UrlNormalizer.normalize(longUrl);
+        if (expiresAt != StoredUrl.NEVER) {
+            List<String> candidateKeys = metrics.keyGeneration().record(() -> keyGenerator.candidateKeys(normalizedUrl + " expires " + expiresAt));
+            return new UrlClaim(longUrl, null, candidateKeys, expiresAt);
+        }
+        List<String> candidateKeys = metrics.keyGeneration().record(() -> keyGenerator.candidateKeys(normalizedUrl));
+        return new UrlClaim(longUrl, UrlNormalizer.digest(normalizedUrl), candidateKeys);
     }
 
     /**
@@ -113,12 +179,100 @@ public class UrlShortenerService {
      */
 
     public String getLongUrl(String shortUrlKey) {
-        logger.info("Fetching long URL for short URL key: {}", shortUrlKey);
-        return urlMappingRepository.findById(shortUrlKey)
-                .map(UrlMapping::getLongUrl)
-                .orElseGet(() -> {
-                    logger.warn("No long URL found for short URL key: {}", shortUrlKey);
-                    return null;
-                });
+        Redirect redirect = getRedirect(shortUrlKey);
+        return redirect != null ? redirect.longUrl() : null;
+    }
+
+    /**
+     * This is the method responsible for fetching the redirect of a short URL key.
+     * Keys the known key filter has never seen are rejected right away; the rest go through the
+     * local redirect cache, so only cache misses reach the data store. While the Redis circuit is
+     * open, cache hits are still served and misses fail fast.
+     * 
+     * @param shortUrlKey
+     * @return the redirect, or null if the key is unknown
+     */
+
+    public Redirect getRedirect(String shortUrlKey) {
+        logger.debug("Fetching long URL for short URL key: {}", shortUrlKey);
+        Timer.Sample sample = Timer.start();
+        if (!keyFilter.mightContain(shortUrlKey)) {
+            metrics.lookedUp(sample, false);
+            return null;
+        }
+        Redirect redirect = redirectCache.get(shortUrlKey, key -> {
+            StoredUrl storedUrl = circuitBreaker.call(() -> urlMappingStore.findStoredUrl(key));
+            if (storedUrl == null) {
+                logger.debug("No long URL found for short URL key: {}", key);
+            }
+            return storedUrl;
+        });
+        metrics.lookedUp(sample, redirect != null);
+        return redirect;
+    }
+
+    /**
+     * Returns the redirect of a short URL key only if the local redirect cache holds it, for the
+     * redirect fast path. Nothing is counted unless it is found, so that a key looked up with
+     * {@link #getRedirect(String)} afterwards counts once.
+     * 
+     * @param shortUrlKey
+     * @return the cached redirect, or null
+     */
+
+    public Redirect getCachedRedirect(String shortUrlKey) {
+        Timer.Sample sample = Timer.start();
+        Redirect redirect = redirectCache.getHit(shortUrlKey);
+        if (redirect != null) {
+            metrics.lookedUp(sample, true);
+        }
+        return redirect;
+    }
+
+    /**
+     * This is the method responsible for fetching the URLs of many short URL keys at once. Keys found
+     * in the local redirect cache are served from it and the rest are fetched with a single batched
+     * call to the data store.
+     * 
+     * @param shortUrlKeys
+     * @return the long URL of each key in the given order, null where the key is unknown
+     */
+
+    public Map<String, String> getLongUrls(Collection<String> shortUrlKeys) {
+        logger.debug("Fetching long URLs for {} short URL keys", shortUrlKeys.size());
+        List<String> knownKeys = new ArrayList<>(shortUrlKeys.size());
+        for (String shortUrlKey : shortUrlKeys) {
+            if (keyFilter.mightContain(shortUrlKey)) {
+                knownKeys.add(shortUrlKey);
+            }
+        }
+        if (knownKeys.size() == shortUrlKeys.size()) {
+            return redirectCache.getAll(shortUrlKeys, this::findStoredUrls);
+        }
+
+        Map<String, String> found = redirectCache.getAll(knownKeys, this::findStoredUrls);
+        Map<String, String> longUrls = new LinkedHashMap<>();
+        for (String shortUrlKey : shortUrlKeys) {
+            longUrls.put(shortUrlKey, found.get(shortUrlKey));
+        }
+        return longUrls;
+    }
+
+    private String claim(UrlClaim claim) {
+        return circuitBreaker.call(() -> urlMappingStore.claim(claim));
+    }
+
+    private List<StoredUrl> findStoredUrls(List<String> shortUrlKeys) {
+        return circuitBreaker.call(() -> urlMappingStore.findStoredUrls(shortUrlKeys));
+    }
+
+    /**
+     * Hit, miss and eviction counters of the local redirect cache.
+     * 
+     * @return
+     */
+
+    public Map<String, Object> getCacheStats() {
+        return redirectCache.stats();
     }
 }
@@ -0,0 +1,148 @@
+package com.ik.urlshortener.tools;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.keygen.CounterKeyGenerator;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlMappingStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes every mapping of the configured store to a file, for backups and for moving mappings
+ * to another environment with {@link MappingImportTool}:
+ *
+ *   java -jar urlshortener.jar --spring.main.web-application-type=none --url.shortener.tool=export-mappings \
+ *        --url.shortener.transfer.file=mappings.bin.gz --url.shortener.transfer.format=binary
+ *
+ * The keyspace is walked with SCAN and each batch of keys is read in one pipelined call, so the
+ * tool runs in constant memory whatever the number of mappings, unlike findAll on the
+ * repository. It works for every storage layout, sharded or not, and the embedded engine. The
+ * file is written under a .part name and renamed once complete. SCAN may return a key twice, in
+ * which case it is exported twice; importing it twice is harmless. Mappings that expire or are
+ * created during the export may or may not be included. The file ends with the key counter of
+ * Redis, so that the import can keep the counter strategy from handing out the imported keys.
+ *
+ */
+
+@Component
+@ConditionalOnProperty(name = "url.shortener.tool", havingValue = "export-mappings")
+public class MappingExportTool implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingExportTool.class);
+
+    private static final long PROGRESS_INTERVAL_NANOS = 10_000_000_000L;
+
+    @Autowired
+    private UrlMappingStore urlMappingStore;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Autowired(required = false)
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${url.shortener.storage.engine:redis}")
+    private String storageEngine;
+
+    @Value("${url.shortener.transfer.file:mappings.ndjson.gz}")
+    private Path file;
+
+    @Value("${url.shortener.transfer.format:ndjson}")
+    private MappingFile.Format format;
+
+    @Value("${url.shortener.transfer.batch-size:1000}")
+    private int batchSize;
+
+    private long exported;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        export();
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    /**
+     * Writes the mappings to the file.
+     *
+     * @return the number of mappings written
+     */
+
+    long export() throws IOException {
+        logger.info("Exporting mappings to {} as {}", file, format);
+        Path partFile = file.resolveSibling(file.getFileName() + ".part");
+        long startedAt = System.nanoTime();
+        long[] lastProgressAt = {startedAt};
+        try (OutputStream out = Files.newOutputStream(partFile);
+             MappingFile.Writer writer = new MappingFile.Writer(out, format)) {
+            List<String> shortUrlKeys = new ArrayList<>(batchSize);
+            urlMappingStore.scanKeys(shortUrlKey -> {
+                shortUrlKeys.add(shortUrlKey);
+                if (shortUrlKeys.size() == batchSize) {
+                    exportBatch(writer, shortUrlKeys);
+                    shortUrlKeys.clear();
+                    if (System.nanoTime() - lastProgressAt[0] > PROGRESS_INTERVAL_NANOS) {
+                        lastProgressAt[0] = System.nanoTime();
+                        logger.info("Exported {} mappings so far ({} mappings/s)", exported, rate(exported, startedAt));
+                    }
+                }
+            });
+            exportBatch(writer, shortUrlKeys);
+            // Read after the scan, so it covers the keys of every mapping written
+            writer.writeSequence(readSequence());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logger.info("Exported {} mappings to {} ({} bytes) in {} ms ({} mappings/s)",
+                exported, file, Files.size(file), Math.max(1, (System.nanoTime() - startedAt) / 1_000_000), rate(exported, startedAt));
+        return exported;
+    }
+
+    private long readSequence() {
+        if (redisTemplate == null || "embedded".equals(storageEngine)) {
+            return 0;
+        }
+        return CounterKeyGenerator.readSequence(redisTemplate);
+    }
+
+    private void exportBatch(MappingFile.Writer writer, List<String> shortUrlKeys) {
+        if (shortUrlKeys.isEmpty()) {
+            return;
+        }
+        List<StoredUrl> storedUrls = urlMappingStore.findStoredUrls(shortUrlKeys);
+        try {
+            for (int i = 0; i < shortUrlKeys.size(); i++) {
+                // Expired or removed since the scan found it
+                if (storedUrls.get(i) != null) {
+                    writer.write(shortUrlKeys.get(i), storedUrls.get(i));
+                    exported++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static long rate(long count, long startedAt) {
+        return count * 1000 / Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+}
@@ -0,0 +1,241 @@
+package com.ik.urlshortener.tools;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.ik.urlshortener.repository.StoredUrl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The gzip-compressed file written by {@link MappingExportTool} and read by
+ * {@link MappingImportTool}, one mapping after another so that neither side holds more than one
+ * in memory. Two formats, told apart by the reader from the first bytes:
+ *  - ndjson: one {"key":...,"longUrl":...,"expiresAt":...} object per line, expiresAt (epoch
+ *    millis) only for expiring links, for inspection and processing with other tools, and a
+ *    last {"sequence":...} line
+ *  - binary: a magic header, then per mapping the key and the URL as length-prefixed UTF-8 and
+ *    the expiry as 8 bytes, which skips JSON escaping and parsing, and a length of -1 followed
+ *    by the sequence; compressed, both formats come out about the same size
+ *
+ * The sequence is the key counter of the exported store (see CounterKeyGenerator), written
+ * after the mappings so that it covers keys created while they were read.
+ *
+ */
+
+final class MappingFile {
+
+    enum Format { NDJSON, BINARY }
+
+    private static final byte[] MAGIC = "USMAP1\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private MappingFile() {
+    }
+
+    /**
+     * A mapping as read back from the file.
+     *
+     * @param shortUrlKey
+     * @param storedUrl
+     */
+    record Mapping(String shortUrlKey, StoredUrl storedUrl) {
+    }
+
+    static final class Writer implements Closeable {
+
+        private final Format format;
+
+        private final DataOutputStream binary;
+
+        private final JsonGenerator json;
+
+        Writer(OutputStream out, Format format) throws IOException {
+            this.format = format;
+            OutputStream compressed = new BufferedOutputStream(new GZIPOutputStream(out, BUFFER_SIZE), BUFFER_SIZE);
+            if (format == Format.BINARY) {
+                this.binary = new DataOutputStream(compressed);
+                this.binary.write(MAGIC);
+                this.json = null;
+            } else {
+                this.binary = null;
+                this.json = JSON_FACTORY.createGenerator(compressed);
+                this.json.setRootValueSeparator(null);
+            }
+        }
+
+        /**
+         * Ends the file with the key counter, after the last mapping.
+         *
+         * @param sequence
+         */
+        void writeSequence(long sequence) throws IOException {
+            if (format == Format.BINARY) {
+                binary.writeInt(-1);
+                binary.writeLong(sequence);
+                return;
+            }
+            json.writeStartObject();
+            json.writeNumberField("sequence", sequence);
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        void write(String shortUrlKey, StoredUrl storedUrl) throws IOException {
+            if (format == Format.BINARY) {
+                writeString(shortUrlKey);
+                writeString(storedUrl.longUrl());
+                binary.writeLong(storedUrl.expiresAt());
+                return;
+            }
+            json.writeStartObject();
+            json.writeStringField("key", shortUrlKey);
+            json.writeStringField("longUrl", storedUrl.longUrl());
+            if (storedUrl.expires()) {
+                json.writeNumberField("expiresAt", storedUrl.expiresAt());
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            binary.writeInt(bytes.length);
+            binary.write(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (format == Format.BINARY) {
+                binary.close();
+            } else {
+                json.close();
+            }
+        }
+    }
+
+    static final class Reader implements Closeable {
+
+        private final DataInputStream binary;
+
+        private final JsonParser json;
+
+        private long sequence;
+
+        Reader(InputStream in) throws IOException {
+            BufferedInputStream decompressed = new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+            decompressed.mark(MAGIC.length);
+            if (Arrays.equals(decompressed.readNBytes(MAGIC.length), MAGIC)) {
+                this.binary = new DataInputStream(decompressed);
+                this.json = null;
+            } else {
+                decompressed.reset();
+                this.binary = null;
+                this.json = JSON_FACTORY.createParser(decompressed);
+            }
+        }
+
+        Format getFormat() {
+            return binary != null ? Format.BINARY : Format.NDJSON;
+        }
+
+        /**
+         * The key counter of the exported store, once {@link #read()} has reached the end.
+         *
+         * @return the counter, or 0 if the file has none
+         */
+        long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Reads the next mapping.
+         *
+         * @return the mapping, or null at the end of the file
+         */
+        Mapping read() throws IOException {
+            return binary != null ? readBinary() : readJson();
+        }
+
+        private Mapping readBinary() throws IOException {
+            int length;
+            try {
+                length = binary.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (length == -1) {
+                sequence = binary.readLong();
+                return null;
+            }
+            String shortUrlKey = readString(length);
+            String longUrl = readString(binary.readInt());
+            return new Mapping(shortUrlKey, new StoredUrl(longUrl, binary.readLong()));
+        }
+
+        private String readString(int length) throws IOException {
+            // Fails with an EOFException on a file cut short
+            byte[] bytes = new byte[length];
+            binary.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private Mapping readJson() throws IOException {
+            JsonToken token = json.nextToken();
+            if (token == null) {
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a mapping object at " + json.currentLocation());
+            }
+            String shortUrlKey = null;
+            String longUrl = null;
+            long expiresAt = StoredUrl.NEVER;
+            Long fileSequence = null;
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String field = json.currentName();
+                json.nextToken();
+                switch (field) {
+                    case "key" -> shortUrlKey = json.getText();
+                    case "longUrl" -> longUrl = json.getText();
+                    case "expiresAt" -> expiresAt = json.getLongValue();
+                    case "sequence" -> fileSequence = json.getLongValue();
+                    default -> json.skipChildren();
+                }
+            }
+            if (fileSequence != null && shortUrlKey == null) {
+                sequence = fileSequence;
+                return readJson();
+            }
+            if (shortUrlKey == null || longUrl == null) {
+                throw new IOException("Mapping without key or longUrl before " + json.currentLocation());
+            }
+            return new Mapping(shortUrlKey, new StoredUrl(longUrl, expiresAt));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (binary != null) {
+                binary.close();
+            } else {
+                json.close();
+            }
+        }
+    }
+}
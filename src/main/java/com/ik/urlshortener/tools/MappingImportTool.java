@@ -0,0 +1,242 @@
+package com.ik.urlshortener.tools;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.keygen.CounterKeyGenerator;
+import com.ik.urlshortener.repository.RedisUrlMappingStore;
+import com.ik.urlshortener.repository.StorageLayout;
+import com.ik.urlshortener.repository.UrlClaim;
+import com.ik.urlshortener.repository.UrlMappingStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the mappings of a file made by {@link MappingExportTool} into the configured store:
+ *
+ *   java -jar urlshortener.jar --spring.main.web-application-type=none --url.shortener.tool=import-mappings \
+ *        --url.shortener.transfer.file=mappings.bin.gz --url.shortener.transfer.parallelism=8
+ *
+ * The file is read one mapping at a time and claimed in batches, each one pipelined call, with
+ * up to the given parallelism of batches in flight, so memory stays constant. Every mapping is
+ * claimed under its own key only: written if the key is free, accepted if it already holds the
+ * same URL, and reported as a conflict and left alone otherwise, which makes importing a mapping
+ * twice harmless. Reverse index entries are not written; they are filled in as URLs are
+ * shortened again. Mappings that expired since the export are skipped, and so are expiring ones
+ * when the target is the bucketed layout, which cannot expire them. Once every mapping is in,
+ * the key counter in Redis is raised to at least the one the file was exported with, so that
+ * the counter strategy does not hand out the ids of imported keys again.
+ *
+ * The number of mappings imported without a gap is kept in a checkpoint file next to the file.
+ * Run the tool again after a failure and it skips that many mappings; the checkpoint is removed
+ * once the whole file is imported.
+ *
+ */
+
+@Component
+@ConditionalOnProperty(name = "url.shortener.tool", havingValue = "import-mappings")
+public class MappingImportTool implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingImportTool.class);
+
+    private static final long PROGRESS_INTERVAL_NANOS = 10_000_000_000L;
+
+    @Autowired
+    private UrlMappingStore urlMappingStore;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Autowired(required = false)
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${url.shortener.storage.engine:redis}")
+    private String storageEngine;
+
+    @Value("${url.shortener.transfer.file:mappings.ndjson.gz}")
+    private Path file;
+
+    @Value("${url.shortener.transfer.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${url.shortener.transfer.parallelism:4}")
+    private int parallelism;
+
+    private final AtomicLong imported = new AtomicLong();
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    private long skipped;
+
+    // Batches done, by number, until every batch before them is done too
+    private final Map<Long, Integer> doneBatches = new HashMap<>();
+
+    private long nextCheckpointBatch;
+
+    private long checkpoint;
+
+    private volatile Exception failure;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long conflictCount = importMappings();
+        System.exit(SpringApplication.exit(context, () -> conflictCount == 0 ? 0 : 1));
+    }
+
+    /**
+     * Claims the mappings of the file, from the checkpoint on if there is one.
+     *
+     * @return the number of conflicts
+     */
+
+    long importMappings() throws Exception {
+        Path checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+        long resumeAfter = Files.exists(checkpointFile) ? Long.parseLong(Files.readString(checkpointFile).trim()) : 0;
+        checkpoint = resumeAfter;
+        boolean skipExpiring = urlMappingStore instanceof RedisUrlMappingStore redisStore
+                && redisStore.getLayout() == StorageLayout.BUCKETED;
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        // Bounds the batches read ahead of the ones being claimed
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        long startedAt = System.nanoTime();
+        long lastProgressAt = startedAt;
+        long read = 0;
+        long sequence;
+        try (InputStream in = Files.newInputStream(file);
+             MappingFile.Reader reader = new MappingFile.Reader(in)) {
+            logger.info("Importing mappings from {} ({}) with {} batches in parallel, resuming after {} mappings",
+                    file, reader.getFormat(), parallelism, resumeAfter);
+
+            long now = System.currentTimeMillis();
+            long batch = 0;
+            List<UrlClaim> claims = new ArrayList<>(batchSize);
+            int batchLength = 0;
+            MappingFile.Mapping mapping;
+            while (failure == null && (mapping = reader.read()) != null) {
+                if (read++ < resumeAfter) {
+                    continue;
+                }
+                batchLength++;
+                if (mapping.storedUrl().isExpired(now)) {
+                    skipped++;
+                } else if (skipExpiring && mapping.storedUrl().expires()) {
+                    skipped++;
+                    logger.warn("Skipping short URL key {}: it expires, which the bucketed layout does not support", mapping.shortUrlKey());
+                } else {
+                    claims.add(new UrlClaim(mapping.storedUrl().longUrl(), null, List.of(mapping.shortUrlKey()), mapping.storedUrl().expiresAt()));
+                }
+                if (batchLength == batchSize) {
+                    submit(executor, inFlight, batch++, claims, batchLength, checkpointFile);
+                    claims = new ArrayList<>(batchSize);
+                    batchLength = 0;
+                }
+                if (System.nanoTime() - lastProgressAt > PROGRESS_INTERVAL_NANOS) {
+                    lastProgressAt = System.nanoTime();
+                    logger.info("Imported {} mappings so far ({} mappings/s)", imported.get(), MappingExportTool.rate(imported.get(), startedAt));
+                }
+            }
+            if (batchLength > 0) {
+                submit(executor, inFlight, batch, claims, batchLength, checkpointFile);
+            }
+            sequence = reader.getSequence();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        }
+        if (failure != null) {
+            logger.error("Import failed, run it again to resume after {} mappings", checkpoint);
+            throw failure;
+        }
+        raiseSequence(sequence);
+        Files.deleteIfExists(checkpointFile);
+
+        logger.info("Imported {} of {} mappings with {} conflicts and {} skipped in {} ms ({} mappings/s)",
+                imported.get(), read, conflicts.get(), skipped, Math.max(1, (System.nanoTime() - startedAt) / 1_000_000),
+                MappingExportTool.rate(imported.get(), startedAt));
+        return conflicts.get();
+    }
+
+    private void raiseSequence(long sequence) {
+        if (sequence == 0) {
+            return;
+        }
+        if (redisTemplate == null || "embedded".equals(storageEngine)) {
+            logger.info("Not raising the key counter to {}: the embedded engine has none", sequence);
+            return;
+        }
+        long raised = CounterKeyGenerator.raiseSequence(redisTemplate, sequence);
+        logger.info("Raised the key counter to {} (at least {} from the file)", raised, sequence);
+    }
+
+    private void submit(ExecutorService executor, Semaphore inFlight, long batch, List<UrlClaim> claims,
+                        int batchLength, Path checkpointFile) throws InterruptedException {
+        inFlight.acquire();
+        executor.execute(() -> {
+            try {
+                if (failure == null) {
+                    claimBatch(claims);
+                    markDone(batch, batchLength, checkpointFile);
+                }
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void claimBatch(List<UrlClaim> claims) {
+        if (claims.isEmpty()) {
+            return;
+        }
+        List<String> claimedKeys = urlMappingStore.claimAll(claims);
+        for (int i = 0; i < claimedKeys.size(); i++) {
+            if (claimedKeys.get(i) != null) {
+                imported.incrementAndGet();
+            } else {
+                conflicts.incrementAndGet();
+                logger.warn("Conflict: short URL key {} already maps to a different URL", claims.get(i).candidateKeys().get(0));
+            }
+        }
+    }
+
+    private synchronized void markDone(long batch, int batchLength, Path checkpointFile) throws IOException {
+        doneBatches.put(batch, batchLength);
+        long advancedTo = checkpoint;
+        Integer length;
+        while ((length = doneBatches.remove(nextCheckpointBatch)) != null) {
+            advancedTo += length;
+            nextCheckpointBatch++;
+        }
+        if (advancedTo != checkpoint) {
+            checkpoint = advancedTo;
+            // Replaced in one step, so a crash never leaves half a checkpoint
+            Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            Files.writeString(temporary, Long.toString(checkpoint));
+            Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
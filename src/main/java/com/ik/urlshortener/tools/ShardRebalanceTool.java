@@ -0,0 +1,145 @@
+package com.ik.urlshortener.tools;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.ShardRing;
+import com.ik.urlshortener.repository.ShardedUrlMappingStore;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+import com.ik.urlshortener.repository.UrlMappingShard;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves mappings to their new node after Redis nodes were added to or removed from
+ * url.shortener.sharding.nodes. Roll the service out with the new nodes and the old ones as
+ * previous nodes first, so it finds keys on either node while they move, then run:
+ *
+ *   java -jar urlshortener.jar --spring.main.web-application-type=none --url.shortener.tool=rebalance-shards \
+ *        --url.shortener.sharding.nodes=redis-a:6379,redis-b:6379,redis-c:6379 \
+ *        --url.shortener.sharding.previous-nodes=redis-a:6379,redis-b:6379
+ *
+ * and finally roll the service out again without the previous nodes. Each node of the previous
+ * ring is walked with SCAN; only keys that now belong to another node (about 1/N of them when
+ * adding a node to N-1) are copied, one pipelined read and one pipelined claim per batch, and
+ * removed from the old node once copied. Keys that already exist on the new node with a
+ * different URL are reported as conflicts and left alone. Reverse index entries are not moved;
+ * they are filled in as URLs are shortened again.
+ *
+ */
+
+@Component
+@ConditionalOnProperty(name = "url.shortener.tool", havingValue = "rebalance-shards")
+public class ShardRebalanceTool implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalanceTool.class);
+
+    @Autowired
+    private ShardedUrlMappingStore urlMappingStore;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${url.shortener.rebalance.batch-size:1000}")
+    private int batchSize;
+
+    // Remove the moved mappings from the node they were moved from
+    @Value("${url.shortener.rebalance.delete-source:true}")
+    private boolean deleteSource;
+
+    private long scanned;
+
+    private long moved;
+
+    private long conflicts;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rebalance();
+        System.exit(SpringApplication.exit(context, () -> conflicts == 0 ? 0 : 1));
+    }
+
+    /**
+     * Moves the keys of every previous node that belong elsewhere now.
+     *
+     * @return the number of conflicts
+     */
+
+    long rebalance() {
+        ShardRing ring = urlMappingStore.getRing();
+        ShardRing previousRing = urlMappingStore.getPreviousRing();
+        if (previousRing == null) {
+            throw new IllegalStateException("Set url.shortener.sharding.previous-nodes to the nodes before the change");
+        }
+        logger.info("Moving mappings from {} to {}", previousRing.getNodes(), ring.getNodes());
+
+        long startedAt = System.nanoTime();
+        for (String node : previousRing.getNodes()) {
+            UrlMappingShard source = urlMappingStore.getShard(node);
+            List<String> misplacedKeys = new ArrayList<>(batchSize);
+            source.scanKeys(shortUrlKey -> {
+                scanned++;
+                if (!ring.nodeOf(shortUrlKey).equals(node)) {
+                    misplacedKeys.add(shortUrlKey);
+                    if (misplacedKeys.size() == batchSize) {
+                        moveBatch(source, misplacedKeys);
+                        misplacedKeys.clear();
+                    }
+                }
+            });
+            if (!misplacedKeys.isEmpty()) {
+                moveBatch(source, misplacedKeys);
+            }
+            logger.info("Done with node {}: {} keys scanned, {} moved so far", node, scanned, moved);
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        logger.info("Moved {} of {} mappings with {} conflicts in {} ms ({} mappings/s)",
+                moved, scanned, conflicts, elapsedMillis, moved * 1000 / elapsedMillis);
+        return conflicts;
+    }
+
+    private void moveBatch(UrlMappingShard source, List<String> shortUrlKeys) {
+        List<StoredUrl> storedUrls = source.findStoredUrls(shortUrlKeys);
+
+        // A single candidate per mapping and no URL digest, so each mapping is copied as is, expiry included
+        Map<String, List<UrlClaim>> claimsByNode = new LinkedHashMap<>();
+        for (int i = 0; i < shortUrlKeys.size(); i++) {
+            StoredUrl storedUrl = storedUrls.get(i);
+            if (storedUrl != null) {
+                claimsByNode.computeIfAbsent(urlMappingStore.getRing().nodeOf(shortUrlKeys.get(i)), node -> new ArrayList<>())
+                        .add(new UrlClaim(storedUrl.longUrl(), null, List.of(shortUrlKeys.get(i)), storedUrl.expiresAt()));
+            }
+        }
+
+        List<String> movedKeys = new ArrayList<>(shortUrlKeys.size());
+        claimsByNode.forEach((node, claims) -> {
+            List<String> claimedKeys = urlMappingStore.getShard(node).claimAll(claims);
+            for (int i = 0; i < claimedKeys.size(); i++) {
+                String shortUrlKey = claims.get(i).candidateKeys().get(0);
+                if (claimedKeys.get(i) != null) {
+                    movedKeys.add(shortUrlKey);
+                } else {
+                    conflicts++;
+                    logger.warn("Conflict: short URL key {} already maps to a different URL on {}", shortUrlKey, node);
+                }
+            }
+        });
+        moved += movedKeys.size();
+        if (deleteSource && !movedKeys.isEmpty()) {
+            source.deleteMappings(movedKeys);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ik.urlshortener.tools;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.keygen.Base62;
+import com.ik.urlshortener.keygen.CounterKeyGenerator;
+import com.ik.urlshortener.repository.RedisUrlMappingStore;
+import com.ik.urlshortener.repository.StorageLayout;
+import com.ik.urlshortener.repository.UrlClaim;
+import com.ik.urlshortener.service.UrlNormalizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Measures the Redis memory used per million mappings in each storage layout, by writing
+ * synthetic mappings (with their reverse index entries) and reading {@code used_memory} before and after. It needs an empty,
+ * scratch Redis database, which it flushes between layouts:
+ *
+ *   java -jar urlshortener.jar --spring.main.web-application-type=none \
+ *        --url.shortener.tool=storage-footprint --spring.data.redis.database=15
+ *
+ */
+
+@Component
+@ConditionalOnProperty(name = "url.shortener.tool", havingValue = "storage-footprint")
+public class StorageFootprintTool implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageFootprintTool.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${url.shortener.footprint.mappings:1000000}")
+    private int mappings;
+
+    @Value("${url.shortener.storage.buckets:131072}")
+    private int buckets;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Long size = redisTemplate.execute((RedisCallback<Long>) connection -> connection.serverCommands().dbSize());
+        if (size == null || size > 0) {
+            throw new IllegalStateException("The footprint tool needs an empty scratch database, found " + size + " keys");
+        }
+
+        for (StorageLayout layout : StorageLayout.values()) {
+            RedisUrlMappingStore store = new RedisUrlMappingStore(redisTemplate, layout, buckets);
+            long before = usedMemory();
+            for (int start = 0; start < mappings; start += BATCH_SIZE) {
+                writeBatch(store, start, Math.min(start + BATCH_SIZE, mappings));
+            }
+            long bytesPerMapping = (usedMemory() - before) / mappings;
+            logger.info("{} layout: {} bytes per mapping, {} MB per million mappings",
+                    layout, bytesPerMapping, bytesPerMapping * 1_000_000 / (1024 * 1024));
+            redisTemplate.execute((RedisCallback<Void>) connection -> {
+                connection.serverCommands().flushDb();
+                return null;
+            });
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+
+    private void writeBatch(RedisUrlMappingStore store, int start, int end) {
+        List<UrlClaim> claims = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            // Keys shaped like counter keys, URLs of a typical campaign link length, with reverse index entries
+            String longUrl = "https://www.example.com/articles/" + i + "?utm_source=newsletter&utm_medium=email";
+            String urlDigest = UrlNormalizer.digest(UrlNormalizer.normalize(longUrl));
+            claims.add(new UrlClaim(longUrl, urlDigest, List.of(Base62.encode(CounterKeyGenerator.ID_OFFSET + i))));
+        }
+        store.claimAll(claims);
+    }
+
+    private long usedMemory() {
+        Properties info = redisTemplate.execute((RedisCallback<Properties>) connection -> connection.serverCommands().info("memory"));
+        return Long.parseLong(info.getProperty("used_memory"));
+    }
+}
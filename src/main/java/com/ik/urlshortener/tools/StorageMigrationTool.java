@@ -0,0 +1,170 @@
+package com.ik.urlshortener.tools;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.RedisUrlMappingStore;
+import com.ik.urlshortener.repository.StorageLayout;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Backfills existing {@code UrlMapping:<key>} hashes into the configured compact storage layout.
+ * Run it once, with the target layout configured, before switching the service over:
+ *
+ *   java -jar urlshortener.jar --spring.main.web-application-type=none \
+ *        --url.shortener.tool=migrate-layout --url.shortener.storage.layout=bucketed
+ *
+ * The keyspace is walked with SCAN, and each batch costs one pipelined read and one pipelined
+ * claim, so the tool runs in constant memory. Keys that already exist in the target layout with
+ * a different URL are reported as conflicts and left alone. Reverse index entries are not copied;
+ * they are filled in as URLs are shortened again. Expiring mappings keep their expiry in the
+ * string layout; the bucketed layout cannot expire them, so they are skipped and left in place.
+ *
+ */
+
+@Component
+@ConditionalOnProperty(name = "url.shortener.tool", havingValue = "migrate-layout")
+public class StorageMigrationTool implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageMigrationTool.class);
+
+    private static final String KEYSPACE = "UrlMapping";
+
+    private static final byte[] LONG_URL_FIELD = "longUrl".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] EXPIRES_AT_FIELD = "expiresAt".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisUrlMappingStore urlMappingStore;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${url.shortener.migration.batch-size:1000}")
+    private int batchSize;
+
+    // Remove the migrated hashes and the keyspace set once they are copied
+    @Value("${url.shortener.migration.delete-source:false}")
+    private boolean deleteSource;
+
+    private long migrated;
+
+    private long conflicts;
+
+    private long skipped;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long conflictCount = migrate();
+        System.exit(SpringApplication.exit(context, () -> conflictCount == 0 ? 0 : 1));
+    }
+
+    /**
+     * Copies every hash into the target layout, and removes the copied ones if asked to.
+     *
+     * @return the number of conflicts
+     */
+
+    long migrate() {
+        if (urlMappingStore.getLayout() == StorageLayout.HASH) {
+            throw new IllegalStateException("Set url.shortener.storage.layout to the target layout (string or bucketed)");
+        }
+        logger.info("Migrating {}:* hashes to the {} layout", KEYSPACE, urlMappingStore.getLayout());
+
+        long startedAt = System.nanoTime();
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(KEYSPACE + ":*")
+                .type(DataType.HASH)
+                .count(batchSize)
+                .build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            List<String> sourceKeys = new ArrayList<>(batchSize);
+            while (cursor.hasNext()) {
+                sourceKeys.add(cursor.next());
+                if (sourceKeys.size() == batchSize) {
+                    migrateBatch(sourceKeys);
+                    sourceKeys.clear();
+                }
+            }
+            if (!sourceKeys.isEmpty()) {
+                migrateBatch(sourceKeys);
+            }
+        }
+        if (deleteSource && conflicts == 0 && skipped == 0) {
+            redisTemplate.delete(KEYSPACE);
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        logger.info("Migrated {} mappings with {} conflicts and {} expiring mappings skipped in {} ms ({} mappings/s)",
+                migrated, conflicts, skipped, elapsedMillis, migrated * 1000 / elapsedMillis);
+        return conflicts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void migrateBatch(List<String> sourceKeys) {
+        List<Object> mappings = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String sourceKey : sourceKeys) {
+                connection.hashCommands().hMGet(sourceKey.getBytes(StandardCharsets.UTF_8), LONG_URL_FIELD, EXPIRES_AT_FIELD);
+            }
+            return null;
+        });
+
+        List<UrlClaim> claims = new ArrayList<>(sourceKeys.size());
+        List<String> copiedKeys = new ArrayList<>(sourceKeys.size());
+        for (int i = 0; i < sourceKeys.size(); i++) {
+            List<String> fields = (List<String>) mappings.get(i);
+            if (fields.get(0) == null) {
+                continue;
+            }
+            String shortUrlKey = sourceKeys.get(i).substring(KEYSPACE.length() + 1);
+            long expiresAt = fields.get(1) != null ? Long.parseLong(fields.get(1)) : StoredUrl.NEVER;
+            if (expiresAt != StoredUrl.NEVER && urlMappingStore.getLayout() == StorageLayout.BUCKETED) {
+                skipped++;
+                logger.warn("Skipping short URL key {}: it expires, which the bucketed layout does not support", shortUrlKey);
+                continue;
+            }
+            // A single candidate per mapping: written if free, accepted if it already holds the same URL.
+            // No URL digest, so every mapping is copied as is even if its URL was shortened twice
+            claims.add(new UrlClaim(fields.get(0), null, List.of(shortUrlKey), expiresAt));
+            copiedKeys.add(sourceKeys.get(i));
+        }
+
+        List<String> claimedKeys = urlMappingStore.claimAll(claims);
+        List<String> deletableKeys = new ArrayList<>(claimedKeys.size());
+        for (int i = 0; i < claimedKeys.size(); i++) {
+            if (claimedKeys.get(i) != null) {
+                migrated++;
+                deletableKeys.add(copiedKeys.get(i));
+            } else {
+                conflicts++;
+                logger.warn("Conflict: short URL key {} already maps to a different URL in the target layout",
+                        claims.get(i).candidateKeys().get(0));
+            }
+        }
+        if (deleteSource && !deletableKeys.isEmpty()) {
+            redisTemplate.delete(deletableKeys);
+        }
+        logger.info("Migrated {} mappings so far", migrated);
+    }
+}
@@ -0,0 +1,30 @@
+package com.ik.urlshortener.util;
+
+/**
+ * The 64-bit string hash shared by the in-process structures that need one (the known key
+ * filter, the embedded log index and the shard ring): FNV-1a over the characters, finished with
+ * the MurmurHash3 mixer so that keys differing in one character spread over all 64 bits.
+ *
+ * The result is part of the shard placement, which every instance must agree on, so it must
+ * not change between versions.
+ *
+ */
+
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    public static long hash64(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
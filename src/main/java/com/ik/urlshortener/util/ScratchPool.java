@@ -0,0 +1,77 @@
+package com.ik.urlshortener.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * A small lock-free pool of reusable scratch objects (digests, buffers), in place of a ThreadLocal.
+ * A ThreadLocal cache only pays off on long-lived threads: with virtual threads every request runs
+ * on a new thread, so the cached object would be created once per request and then thrown away.
+ *
+ * The pool holds a fixed number of slots sized to the number of CPUs. A thread starts looking in
+ * the slot picked by a hash of its identity hash code, so platform threads keep getting the same
+ * object back. When the pool is empty a new object is created, and objects released into a full
+ * pool are dropped.
+ *
+ */
+
+public final class ScratchPool<T> {
+
+    // Slots probed before giving up and creating or dropping an object
+    private static final int PROBES = 4;
+
+    private final AtomicReferenceArray<T> slots;
+
+    private final int mask;
+
+    private final Supplier<T> factory;
+
+    public ScratchPool(Supplier<T> factory) {
+        this(Runtime.getRuntime().availableProcessors() * 2, factory);
+    }
+
+    public ScratchPool(int capacity, Supplier<T> factory) {
+        int size = Integer.highestOneBit(Math.max(PROBES, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.factory = factory;
+    }
+
+    /**
+     * Takes an object out of the pool, or creates one if none is free. The caller owns the
+     * object until it is released.
+     *
+     * @return
+     */
+
+    public T acquire() {
+        int start = start();
+        for (int i = 0; i < PROBES; i++) {
+            T pooled = slots.getAndSet((start + i) & mask, null);
+            if (pooled != null) {
+                return pooled;
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Returns an object to the pool. It must not be used by the caller afterwards.
+     *
+     * @param scratch
+     */
+
+    public void release(T scratch) {
+        int start = start();
+        for (int i = 0; i < PROBES; i++) {
+            if (slots.compareAndSet((start + i) & mask, null, scratch)) {
+                return;
+            }
+        }
+    }
+
+    private int start() {
+        // Thread.getId() is deprecated on 21 and threadId() is missing on 17
+        return System.identityHashCode(Thread.currentThread()) * 0x9E3779B9 >>> 16;
+    }
+}
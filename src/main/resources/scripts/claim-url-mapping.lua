@@ -0,0 +1,107 @@
+-- Claims a short URL key for a long URL in a single atomic step, keeping the reverse index
+-- from normalized URL digest to short URL key in step with the mappings.
+--
+-- KEYS[1]      the keyspace set that indexes every short URL key (hash layout only)
+-- KEYS[2]      the reverse index key of the URL digest
+-- KEYS[3..n]   the storage key of each candidate, in probing order
+-- ARGV[1]      the long URL
+-- ARGV[2]      the storage layout: "hash", "string" or "bucketed"
+-- ARGV[3]      the entity type hint stored in the "_class" field (hash layout only)
+-- ARGV[4]      the digest of the normalized long URL, or "" to bypass the reverse index
+-- ARGV[5]      the channel new short URL keys are published on, or "" to not publish them
+-- ARGV[6]      when a new mapping expires, in epoch milliseconds, or 0 for never
+-- ARGV[7..n+4] the candidate short URL keys, matching KEYS[3..n]
+--
+-- Returns the key the reverse index already holds for the URL, else the first candidate that
+-- is free (after writing the mapping) or already maps to the same long URL, or false when
+-- every candidate is taken. A candidate holding the same URL is only reused if it expires
+-- whenever the new mapping would, so that a permanent link never gets an expiring key.
+
+local longUrl = ARGV[1]
+local layout = ARGV[2]
+local digest = ARGV[4]
+local channel = ARGV[5]
+local expiresAt = tonumber(ARGV[6])
+
+local function read(key, shortUrlKey)
+    if layout == 'hash' then
+        return redis.call('HGET', key, 'longUrl')
+    elseif layout == 'string' then
+        return redis.call('GET', key)
+    else
+        return redis.call('HGET', key, shortUrlKey)
+    end
+end
+
+-- Whether the mapping at the key has an expiry; expiring mappings are never bucketed
+local function expires(key)
+    if layout == 'hash' then
+        return redis.call('HEXISTS', key, 'expiresAt') == 1
+    elseif layout == 'string' then
+        return redis.call('PTTL', key) >= 0
+    end
+    return false
+end
+
+local function write(key, shortUrlKey)
+    if layout == 'hash' then
+        if expiresAt > 0 then
+            -- Left out of the keyspace set, which nothing would remove it from
+            redis.call('HSET', key, '_class', ARGV[3], 'id', shortUrlKey, 'longUrl', longUrl, 'expiresAt', ARGV[6])
+            redis.call('PEXPIREAT', key, ARGV[6])
+        else
+            redis.call('HSET', key, '_class', ARGV[3], 'id', shortUrlKey, 'longUrl', longUrl)
+            redis.call('SADD', KEYS[1], shortUrlKey)
+        end
+    elseif layout == 'string' then
+        if expiresAt > 0 then
+            redis.call('SET', key, longUrl, 'PXAT', ARGV[6])
+        else
+            redis.call('SET', key, longUrl)
+        end
+    else
+        redis.call('HSET', key, shortUrlKey, longUrl)
+    end
+end
+
+local function readReverse()
+    if layout == 'bucketed' then
+        return redis.call('HGET', KEYS[2], digest)
+    else
+        return redis.call('GET', KEYS[2])
+    end
+end
+
+local function writeReverse(shortUrlKey)
+    if layout == 'bucketed' then
+        redis.call('HSET', KEYS[2], digest, shortUrlKey)
+    else
+        redis.call('SET', KEYS[2], shortUrlKey)
+    end
+end
+
+if digest ~= '' then
+    local known = readReverse()
+    if known then
+        return known
+    end
+end
+
+for i = 3, #KEYS do
+    local shortUrlKey = ARGV[i + 4]
+    local existing = read(KEYS[i], shortUrlKey)
+    if not existing or (existing == longUrl and expires(KEYS[i]) == (expiresAt > 0)) then
+        if not existing then
+            write(KEYS[i], shortUrlKey)
+            -- Published with the write, so other nodes learn of every new key (see KnownKeyFilter)
+            if channel ~= '' then
+                redis.call('PUBLISH', channel, shortUrlKey)
+            end
+        end
+        if digest ~= '' then
+            writeReverse(shortUrlKey)
+        end
+        return shortUrlKey
+    end
+end
+return false
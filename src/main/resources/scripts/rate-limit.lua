@@ -0,0 +1,30 @@
+-- Token bucket shared by every instance, kept as the theoretical arrival time (GCRA) of the
+-- client's next request: the bucket is full once the clock has caught up with it, and each
+-- request pushes it one emission interval further out.
+--
+-- KEYS[1]  rate limit key of the client
+-- ARGV[1]  emission interval in microseconds (one second divided by the rate)
+-- ARGV[2]  burst, the number of requests a full bucket admits at once
+--
+-- Returns 0 if the request is admitted, otherwise the microseconds until it would be.
+
+local interval = tonumber(ARGV[1])
+local burst = tonumber(ARGV[2])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local arrival = tonumber(redis.call('GET', KEYS[1])) or now
+if arrival < now then
+    arrival = now
+end
+local next_arrival = arrival + interval
+
+local wait = next_arrival - now - burst * interval
+if wait > 0 then
+    return math.ceil(wait)
+end
+
+-- Forgotten once the bucket is full again
+redis.call('SET', KEYS[1], string.format('%d', next_arrival), 'PX', math.ceil((next_arrival - now) / 1000))
+return 0
@@ -0,0 +1,106 @@
+package com.ik.urlshortener.analytics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In this Test we will check how ClickBuffer aggregates, drains and bounds click counts
+ *
+ */
+
+public class ClickBufferTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickBufferTest.class);
+
+    private static final long HOUR = 3_600_000L;
+
+    /**
+     * The test case tests that clicks are aggregated per key, hour and referrer host, and reset by a drain
+     *
+     */
+    @Test
+    public void testRecordAndDrain() {
+        ClickBuffer clickBuffer = new ClickBuffer(true, 100, 1.0);
+        long now = 480_000 * HOUR + 5;
+
+        clickBuffer.record("e149be", "https://News.example.com/article?id=1", now);
+        clickBuffer.record("e149be", "https://news.example.com:443/other", now);
+        clickBuffer.record("e149be", null, now + HOUR);
+        clickBuffer.record("7eebb0", "android-app://com.example", now);
+
+        List<ClickDelta> deltas = clickBuffer.drain();
+        Assertions.assertEquals(2, deltas.size());
+        ClickDelta delta = deltas.stream().filter(d -> d.shortUrlKey().equals("e149be")).findFirst().orElseThrow();
+        Assertions.assertEquals(3, delta.clicks());
+        Assertions.assertEquals(Map.of(480_000L, 2L, 480_001L, 1L), delta.hourlyClicks());
+        Assertions.assertEquals(Map.of("news.example.com", 2L, ClickBuffer.DIRECT, 1L), delta.referrerClicks());
+
+        // Drained counters start again from zero
+        Assertions.assertTrue(clickBuffer.drain().isEmpty());
+        Assertions.assertNull(clickBuffer.pending("7eebb0"));
+        logger.info("Record and drain test passed: {}", deltas);
+    }
+
+    /**
+     * The test case tests that clicks for new keys are dropped once the buffer is full, and that
+     * referrer hosts beyond the limit are counted as other
+     *
+     */
+    @Test
+    public void testBoundedUnderOverload() {
+        ClickBuffer clickBuffer = new ClickBuffer(true, 2, 1.0);
+
+        clickBuffer.record("key1", null);
+        clickBuffer.record("key2", null);
+        clickBuffer.record("key3", null);
+        clickBuffer.record("key1", null);
+        Assertions.assertEquals(1, clickBuffer.getDroppedClicks());
+        Assertions.assertEquals(2, clickBuffer.pending("key1").clicks());
+        Assertions.assertNull(clickBuffer.pending("key3"));
+
+        for (int i = 0; i <= ClickBuffer.MAX_REFERRERS; i++) {
+            clickBuffer.record("key2", "https://site" + i + ".example.com/");
+        }
+        Map<String, Long> referrers = clickBuffer.pending("key2").referrerClicks();
+        Assertions.assertEquals(ClickBuffer.MAX_REFERRERS + 1, referrers.size());
+        Assertions.assertEquals(2L, referrers.get(ClickBuffer.OTHER));
+        logger.info("Overload test passed.");
+    }
+
+    /**
+     * The test case tests that clicks which failed to flush are counted again with the next drain
+     *
+     */
+    @Test
+    public void testRestore() {
+        ClickBuffer clickBuffer = new ClickBuffer(true, 100, 1.0);
+        clickBuffer.record("e149be", "https://news.example.com/", 5);
+
+        List<ClickDelta> failed = clickBuffer.drain();
+        clickBuffer.record("e149be", null, 5);
+        clickBuffer.restore(failed);
+
+        ClickDelta delta = clickBuffer.drain().get(0);
+        Assertions.assertEquals(2, delta.clicks());
+        Assertions.assertEquals(Map.of(0L, 2L), delta.hourlyClicks());
+        Assertions.assertEquals(Map.of("news.example.com", 1L, ClickBuffer.DIRECT, 1L), delta.referrerClicks());
+        logger.info("Restore test passed.");
+    }
+
+    /**
+     * The test case tests that a disabled buffer records nothing
+     *
+     */
+    @Test
+    public void testDisabled() {
+        ClickBuffer clickBuffer = new ClickBuffer(false, 100, 1.0);
+        clickBuffer.record("e149be", null);
+        Assertions.assertTrue(clickBuffer.drain().isEmpty());
+        logger.info("Disabled buffer test passed.");
+    }
+}
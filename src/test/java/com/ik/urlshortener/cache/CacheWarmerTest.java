@@ -0,0 +1,139 @@
+package com.ik.urlshortener.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.InMemoryUrlMappingShard;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+import com.ik.urlshortener.repository.UrlMappingStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * In this Test we will check that CacheWarmer saves the hottest keys of the redirect cache as a
+ * snapshot, loads them back into the cache of a new instance in batches, and always ends warm
+ *
+ */
+
+public class CacheWarmerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmerTest.class);
+
+    @TempDir
+    private Path directory;
+
+    private CacheWarmer cacheWarmer(RedirectCache redirectCache, UrlMappingStore urlMappingStore, int topN) {
+        CacheWarmer cacheWarmer = new CacheWarmer(topN, 10, Duration.ofSeconds(30), "hot-keys", "embedded", directory);
+        ReflectionTestUtils.setField(cacheWarmer, "redirectCache", redirectCache);
+        ReflectionTestUtils.setField(cacheWarmer, "urlMappingStore", urlMappingStore);
+        return cacheWarmer;
+    }
+
+    /**
+     * The test case tests that the snapshot saved by a warm instance holds its cached keys but
+     * not its cached misses, and that a new instance loads those keys in batches before it is warm
+     *
+     */
+    @Test
+    public void testWarmUpFromSnapshot() throws Exception {
+        InMemoryUrlMappingShard urlMappingStore = new InMemoryUrlMappingShard();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            keys.add("key" + i);
+            urlMappingStore.claim(new UrlClaim("https://example.com/" + i, null, List.of("key" + i)));
+        }
+
+        // A warm instance that has served every key, and a miss
+        RedirectCache redirectCache = new RedirectCache(1 << 20, Duration.ofSeconds(30));
+        CacheWarmer warmInstance = cacheWarmer(redirectCache, urlMappingStore, 100);
+        Assertions.assertEquals(0, warmInstance.warmUp());
+        keys.forEach(key -> redirectCache.get(key, urlMappingStore::findStoredUrl));
+        redirectCache.get("unknown", urlMappingStore::findStoredUrl);
+        warmInstance.saveSnapshot();
+        List<String> snapshot = Files.readAllLines(directory.resolve("hot-keys"));
+        logger.info("Snapshot of {} hot keys", snapshot.size());
+        Assertions.assertEquals(new HashSet<>(keys), new HashSet<>(snapshot));
+
+        // A new instance loads them, 10 keys per read
+        RedirectCache newCache = new RedirectCache(1 << 20, Duration.ofSeconds(30));
+        CacheWarmer newInstance = cacheWarmer(newCache, urlMappingStore, 100);
+        Assertions.assertFalse(newInstance.isWarm());
+        int roundTrips = urlMappingStore.getRoundTrips();
+        Assertions.assertEquals(25, newInstance.warmUp());
+        Assertions.assertTrue(newInstance.isWarm());
+        Assertions.assertEquals(3, urlMappingStore.getRoundTrips() - roundTrips);
+        for (int i = 0; i < 25; i++) {
+            Redirect redirect = newCache.getHit("key" + i);
+            Assertions.assertNotNull(redirect);
+            Assertions.assertEquals("https://example.com/" + i, redirect.longUrl());
+        }
+    }
+
+    /**
+     * The test case tests that only the top-n keys of the snapshot are loaded, and that keys
+     * gone since the snapshot was saved are skipped
+     *
+     */
+    @Test
+    public void testWarmUpTopN() throws Exception {
+        InMemoryUrlMappingShard urlMappingStore = new InMemoryUrlMappingShard();
+        urlMappingStore.claim(new UrlClaim("https://example.com/a", null, List.of("a")));
+        urlMappingStore.claim(new UrlClaim("https://example.com/c", null, List.of("c")));
+        Files.writeString(directory.resolve("hot-keys"), "a\nb\nc\nd");
+
+        RedirectCache redirectCache = new RedirectCache(1 << 20, Duration.ofSeconds(30));
+        Assertions.assertEquals(1, cacheWarmer(redirectCache, urlMappingStore, 2).warmUp());
+        Assertions.assertNotNull(redirectCache.getHit("a"));
+        Assertions.assertNull(redirectCache.getHit("b"));
+        Assertions.assertNull(redirectCache.getHit("c"));
+    }
+
+    /**
+     * The test case tests that an instance whose store cannot be reached, or fails otherwise,
+     * starts cold but warm, so it still reports UP
+     *
+     */
+    @Test
+    public void testWarmUpFailure() throws Exception {
+        Files.writeString(directory.resolve("hot-keys"), "a\nb");
+        for (RuntimeException failure : List.of(new RedisConnectionFailureException("Unable to connect to Redis"),
+                new IllegalStateException("The embedded log is closed"))) {
+            UrlMappingStore urlMappingStore = Mockito.mock(UrlMappingStore.class);
+            Mockito.when(urlMappingStore.findStoredUrls(ArgumentMatchers.anyList())).thenThrow(failure);
+
+            RedirectCache redirectCache = new RedirectCache(1 << 20, Duration.ofSeconds(30));
+            CacheWarmer cacheWarmer = cacheWarmer(redirectCache, urlMappingStore, 100);
+            Assertions.assertEquals(0, cacheWarmer.warmUp());
+            Assertions.assertTrue(cacheWarmer.isWarm());
+            Assertions.assertTrue(redirectCache.hottestKeys(100).isEmpty());
+            logger.info("Started cold after {}", failure.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * The test case tests that the hottest keys are limited to the number asked for
+     *
+     */
+    @Test
+    public void testHottestKeysLimit() {
+        RedirectCache redirectCache = new RedirectCache(1 << 20, Duration.ofSeconds(30));
+        for (int i = 0; i < 20; i++) {
+            redirectCache.put("key" + i, StoredUrl.of("https://example.com/" + i));
+        }
+        Assertions.assertEquals(5, redirectCache.hottestKeys(5).size());
+        Assertions.assertEquals(20, redirectCache.hottestKeys(100).size());
+    }
+}
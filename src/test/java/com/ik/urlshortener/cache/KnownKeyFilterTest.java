@@ -0,0 +1,164 @@
+package com.ik.urlshortener.cache;
+
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.keygen.Base62;
+import com.ik.urlshortener.repository.UrlMappingStore;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In this Test we will check the known key filter: no false negatives, a false positive rate
+ * near its target, and answering "maybe" whenever keys may have been missed
+ *
+ */
+
+public class KnownKeyFilterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnownKeyFilterTest.class);
+
+    private static final long FIRST_ID = 56_800_235_584L;
+
+    /**
+     * The test case tests that every stored key passes the filter and that the false positive
+     * rate of unknown keys stays near the configured rate
+     *
+     */
+    @Test
+    public void testNoFalseNegatives() {
+        int keys = 100_000;
+        KnownKeyFilter filter = new KnownKeyFilter(true, keys, 0.01);
+        filter.rebuild(storeWith(keys));
+
+        for (long id = FIRST_ID; id < FIRST_ID + keys; id++) {
+            Assertions.assertTrue(filter.mightContain(Base62.encode(id)));
+        }
+
+        int falsePositives = 0;
+        for (long id = FIRST_ID + keys; id < FIRST_ID + 2 * keys; id++) {
+            if (filter.mightContain(Base62.encode(id))) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / keys;
+        logger.info("False positive rate over {} unknown keys: {}", keys, rate);
+        Assertions.assertTrue(rate < 0.02, "False positive rate too high: " + rate);
+    }
+
+    /**
+     * The test case tests that the filter answers "maybe" until it is built, after it is
+     * invalidated, and that keys added during a rebuild survive the swap
+     *
+     */
+    @Test
+    public void testMaybeUntilRebuilt() {
+        KnownKeyFilter filter = new KnownKeyFilter(true, 1000, 0.01);
+        Assertions.assertTrue(filter.mightContain("e149be"));
+
+        // A key created while the scan runs
+        UrlMappingStore store = Mockito.mock(UrlMappingStore.class);
+        Mockito.doAnswer(invocation -> {
+            Consumer<String> action = invocation.getArgument(0);
+            action.accept("3f94b0");
+            filter.add("7eebb0");
+            return null;
+        }).when(store).scanKeys(ArgumentMatchers.any());
+
+        Assertions.assertEquals(2, filter.rebuild(store));
+        Assertions.assertTrue(filter.isReady());
+        Assertions.assertTrue(filter.mightContain("3f94b0"));
+        Assertions.assertTrue(filter.mightContain("7eebb0"));
+        Assertions.assertFalse(filter.mightContain("e149be"));
+
+        filter.invalidate();
+        Assertions.assertTrue(filter.mightContain("e149be"));
+        logger.info("Readiness test passed.");
+    }
+
+    /**
+     * The test case tests that a rebuild does not mark the filter ready if keys may have been
+     * missed while it ran
+     *
+     */
+    @Test
+    public void testInvalidatedDuringRebuild() {
+        KnownKeyFilter filter = new KnownKeyFilter(true, 1000, 0.01);
+        UrlMappingStore store = Mockito.mock(UrlMappingStore.class);
+        Mockito.doAnswer(invocation -> {
+            filter.invalidate();
+            return null;
+        }).when(store).scanKeys(ArgumentMatchers.any());
+
+        filter.rebuild(store);
+        Assertions.assertFalse(filter.isReady());
+        Assertions.assertTrue(filter.mightContain("e149be"));
+        logger.info("Invalidation test passed.");
+    }
+
+    /**
+     * The test case tests that keys added while rebuilds run, after the scan has passed them,
+     * are never missing from the filter a rebuild swaps in
+     *
+     */
+    @Test
+    public void testAddDuringRebuilds() throws InterruptedException {
+        int keys = 50_000;
+        KnownKeyFilter filter = new KnownKeyFilter(true, 2 * keys, 0.01);
+        AtomicLong claimed = new AtomicLong();
+        AtomicLong added = new AtomicLong();
+
+        // The scan sees the keys claimed before it started, like a SCAN that has passed the slots of later ones
+        UrlMappingStore store = Mockito.mock(UrlMappingStore.class);
+        Mockito.doAnswer(invocation -> {
+            Consumer<String> action = invocation.getArgument(0);
+            long scanned = claimed.get();
+            for (long id = FIRST_ID; id < FIRST_ID + scanned; id++) {
+                action.accept(Base62.encode(id));
+            }
+            return null;
+        }).when(store).scanKeys(ArgumentMatchers.any());
+
+        Thread adder = new Thread(() -> {
+            for (long i = 0; i < keys; i++) {
+                claimed.set(i + 1);
+                filter.add(Base62.encode(FIRST_ID + i));
+                added.set(i + 1);
+            }
+        });
+        adder.start();
+
+        int rebuilds = 0;
+        while (adder.isAlive()) {
+            filter.rebuild(store);
+            rebuilds++;
+            long done = added.get();
+            for (long id = FIRST_ID; id < FIRST_ID + done; id++) {
+                Assertions.assertTrue(filter.mightContain(Base62.encode(id)), "Lost key " + id + " after rebuild " + rebuilds);
+            }
+        }
+        adder.join();
+        for (long id = FIRST_ID; id < FIRST_ID + keys; id++) {
+            Assertions.assertTrue(filter.mightContain(Base62.encode(id)));
+        }
+        logger.info("No key lost over {} rebuilds while {} keys were added", rebuilds, keys);
+    }
+
+    private static UrlMappingStore storeWith(int keys) {
+        UrlMappingStore store = Mockito.mock(UrlMappingStore.class);
+        Mockito.doAnswer(invocation -> {
+            Consumer<String> action = invocation.getArgument(0);
+            for (long id = FIRST_ID; id < FIRST_ID + keys; id++) {
+                action.accept(Base62.encode(id));
+            }
+            return null;
+        }).when(store).scanKeys(ArgumentMatchers.any());
+        return store;
+    }
+}
@@ -0,0 +1,133 @@
+package com.ik.urlshortener.controller;
+
+import org.mockito.Mockito;
+
+import com.ik.urlshortener.analytics.ClickBuffer;
+import com.ik.urlshortener.service.ReactiveUrlShortenerService;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * In this test, we will mock the ReactiveUrlShortenerService and test the ReactiveUrlShortenerController
+ * to ensure that it handles HTTP requests correctly on the WebFlux stack.
+ *
+ */
+
+@WebFluxTest(ReactiveUrlShortenerController.class)
+public class ReactiveUrlShortenerControllerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUrlShortenerControllerTest.class);
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveUrlShortenerService urlShortenerService;
+
+    @MockBean
+    private ClickBuffer clickBuffer;
+
+    @Value("${url.shortener.base-url:http://localhost:8080}")
+    private String baseUrl;
+
+    /**
+     * The test case tests the service to perform URL Shortening
+     *
+     */
+    @Test
+    public void testShortenUrl() {
+        String longUrl = "https://www.example.com";
+        String shortUrlKey = "abc123";
+
+        logger.info("Starting test for reactive URL shortening with longUrl: {}", longUrl);
+
+        // Mock service behavior
+        Mockito.when(urlShortenerService.shortenUrl(longUrl)).thenReturn(Mono.just(shortUrlKey));
+
+        webTestClient.post().uri("/shorten")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("longUrl", longUrl))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.shortUrl").isEqualTo(baseUrl + "/" + shortUrlKey);
+
+        logger.info("Reactive shortened URL test passed.");
+    }
+
+    /**
+     * The test case tests the service to perform correct URL redirecting with short URL
+     *
+     */
+    @Test
+    public void testRedirectToLongUrl() {
+        String shortUrlKey = "xyz123";
+        String longUrl = "https://www.example.com";
+
+        logger.info("Starting test for reactive URL redirect with shortUrlKey: {}", shortUrlKey);
+
+        // Mock service behavior
+        Mockito.when(urlShortenerService.getLongUrl(shortUrlKey)).thenReturn(Mono.just(longUrl));
+
+        webTestClient.get().uri("/" + shortUrlKey)
+                .exchange()
+                .expectStatus().isFound()
+                .expectHeader().location(longUrl);
+        Mockito.verify(clickBuffer, Mockito.times(1)).record(shortUrlKey, null);
+
+        logger.info("Reactive redirect test passed. Short URL key: {} redirects to long URL: {}", shortUrlKey, longUrl);
+    }
+
+    /**
+     * The test case tests the service behavior if an invalid short URL is encountered
+     *
+     */
+    @Test
+    public void testRedirectToLongUrlNotFound() {
+        String shortUrlKey = "invalidKey";
+
+        logger.info("Starting test for reactive URL redirect with invalid shortUrlKey: {}", shortUrlKey);
+
+        // Mock service behavior
+        Mockito.when(urlShortenerService.getLongUrl(shortUrlKey)).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/" + shortUrlKey)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        logger.info("Reactive redirect test for invalid short URL key passed. Expected 404 status.");
+    }
+
+    /**
+     * The test case tests that requests are shed with a 503 while Redis cannot keep up
+     *
+     */
+    @Test
+    public void testRedirectShedWhenOverloaded() {
+        String shortUrlKey = "xyz123";
+
+        logger.info("Starting test for load shedding with shortUrlKey: {}", shortUrlKey);
+
+        // Mock service behavior
+        Mockito.when(urlShortenerService.getLongUrl(shortUrlKey))
+                .thenReturn(Mono.error(new ReactiveUrlShortenerService.OverloadedException("Redis is slow")));
+
+        webTestClient.get().uri("/" + shortUrlKey)
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals("Retry-After", "1");
+
+        logger.info("Load shedding test passed. Expected 503 status.");
+    }
+}
@@ -0,0 +1,55 @@
+package com.ik.urlshortener.controller;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.StoredUrl;
+
+import java.time.Duration;
+
+/**
+ * In this Test we will check the status and Cache-Control header of redirects
+ *
+ */
+
+public class RedirectPolicyTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedirectPolicyTest.class);
+
+    /**
+     * The test case tests the Cache-Control header of permanent and expiring links
+     *
+     */
+    @Test
+    public void testCacheControl() {
+        StoredUrl permanent = StoredUrl.of("https://www.example.com");
+        StoredUrl expiring = new StoredUrl("https://www.example.com", System.currentTimeMillis() + 600_500);
+
+        RedirectPolicy uncached = new RedirectPolicy(302, Duration.ZERO);
+        Assertions.assertEquals(302, uncached.getStatus());
+        Assertions.assertEquals("no-cache", uncached.cacheControl(permanent));
+        Assertions.assertEquals("no-cache", uncached.cacheControl(expiring));
+
+        RedirectPolicy cached = new RedirectPolicy(301, Duration.ofDays(1));
+        Assertions.assertEquals(301, cached.getStatus());
+        Assertions.assertEquals("public, max-age=86400", cached.cacheControl(permanent));
+        // Capped at the 600 seconds the link has left
+        Assertions.assertEquals("public, max-age=600", cached.cacheControl(expiring));
+        Assertions.assertEquals("no-cache", cached.cacheControl(new StoredUrl("https://www.example.com", System.currentTimeMillis() + 500)));
+        logger.info("Cache-Control test passed.");
+    }
+
+    /**
+     * The test case tests that only redirect statuses are accepted
+     *
+     */
+    @Test
+    public void testInvalidStatus() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RedirectPolicy(200, Duration.ZERO));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RedirectPolicy(304, Duration.ZERO));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RedirectPolicy(302, Duration.ofSeconds(-1)));
+        logger.info("Invalid status test passed.");
+    }
+}
@@ -1,25 +1,41 @@
 package com.ik.urlshortener.controller;
 
+import org.hamcrest.Matchers;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ik.urlshortener.analytics.ClickBuffer;
+import com.ik.urlshortener.cache.Redirect;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.resilience.CircuitBreaker;
+import com.ik.urlshortener.resilience.RateLimiter;
+import com.ik.urlshortener.service.ClickStatsService;
 import com.ik.urlshortener.service.UrlShortenerService;
 
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,6 +45,7 @@ import java.util.Map;
  */
 
 @WebMvcTest(UrlShortenerController.class)
+@Import({RedirectPolicy.class, RateLimiter.class})
 public class UrlShortenerControllerTest {
 
     private static final Logger logger = LoggerFactory.getLogger(UrlShortenerControllerTest.class);
@@ -39,9 +56,18 @@ public class UrlShortenerControllerTest {
     @MockBean
     private UrlShortenerService urlShortenerService;
 
+    @MockBean
+    private ClickBuffer clickBuffer;
+
+    @MockBean
+    private ClickStatsService clickStatsService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private UrlShortenerController urlShortenerController;
+
     @Value("${url.shortener.base-url:http://localhost:8080}")
     private String baseUrl;
 
@@ -64,7 +90,7 @@ public class UrlShortenerControllerTest {
         logger.info("Starting test for URL shortening with longUrl: {}", longUrl);
 
         // Mock service behavior
-        Mockito.when(urlShortenerService.shortenUrl(longUrl)).thenReturn(shortUrlKey);
+        Mockito.when(urlShortenerService.shortenUrl(longUrl, null)).thenReturn(shortUrlKey);
 
         // Create JSON request body
         String requestBody = objectMapper.writeValueAsString(Map.of("longUrl", longUrl));
@@ -79,7 +105,63 @@ public class UrlShortenerControllerTest {
         logger.info("Shortened URL test passed. Expected short URL: {}", expectedShortUrl);
 
         // Verify that the service method was called once
-        Mockito.verify(urlShortenerService, Mockito.times(1)).shortenUrl(longUrl);
+        Mockito.verify(urlShortenerService, Mockito.times(1)).shortenUrl(longUrl, null);
+    }
+
+    /**
+     * The test case tests shortening an expiring link, by expiry instant and by lifetime, the
+     * rejection of invalid expiries, and of expiring links the storage layout cannot hold
+     * 
+     */
+    @Test
+    public void testShortenExpiringUrl() throws Exception {
+        String longUrl = "https://www.example.com/sale";
+        Instant expiresAt = Instant.parse("2030-01-01T00:00:00Z");
+
+        logger.info("Starting test for shortening an expiring link with longUrl: {}", longUrl);
+
+        // Mock service behavior
+        Mockito.when(urlShortenerService.shortenUrl(ArgumentMatchers.eq(longUrl), ArgumentMatchers.any(Instant.class))).thenReturn("abc123");
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/shorten")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("longUrl", longUrl, "expiresAt", expiresAt.toString()))))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.shortUrl").value(baseUrl + "/abc123"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.expiresAt").value(expiresAt.toString()));
+        Mockito.verify(urlShortenerService).shortenUrl(longUrl, expiresAt);
+
+        long before = System.currentTimeMillis();
+        mockMvc.perform(MockMvcRequestBuilders.post("/shorten")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("longUrl", longUrl, "expiresIn", "1h"))))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.expiresAt").exists());
+        Mockito.verify(urlShortenerService).shortenUrl(ArgumentMatchers.eq(longUrl), ArgumentMatchers.<Instant>argThat(
+                instant -> instant.toEpochMilli() >= before + 3_600_000 && instant.toEpochMilli() <= System.currentTimeMillis() + 3_600_000));
+
+        // Both fields, an expiry in the past and an unreadable lifetime
+        for (Map<String, String> request : List.of(
+                Map.of("longUrl", longUrl, "expiresAt", expiresAt.toString(), "expiresIn", "1h"),
+                Map.of("longUrl", longUrl, "expiresAt", "2020-01-01T00:00:00Z"),
+                Map.of("longUrl", longUrl, "expiresIn", "soon"))) {
+            mockMvc.perform(MockMvcRequestBuilders.post("/shorten")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.error").value(Matchers.startsWith("Invalid expiry")));
+        }
+        Mockito.verify(urlShortenerService, Mockito.times(2)).shortenUrl(ArgumentMatchers.eq(longUrl), ArgumentMatchers.any(Instant.class));
+
+        // A valid expiry the storage layout cannot hold
+        Mockito.when(urlShortenerService.shortenUrl(ArgumentMatchers.eq(longUrl), ArgumentMatchers.any(Instant.class)))
+                .thenThrow(new IllegalArgumentException("Expiring links need the hash or string storage layout"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/shorten")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("longUrl", longUrl, "expiresIn", "1h"))))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.error").value("Expiring links need the hash or string storage layout"));
+        logger.info("Expiring link test passed.");
     }
 
     /**
@@ -135,17 +217,48 @@ public class UrlShortenerControllerTest {
         logger.info("Starting test for URL redirect with shortUrlKey: {}", shortUrlKey);
 
         // Mock service behavior
-        Mockito.when(urlShortenerService.getLongUrl(shortUrlKey)).thenReturn(longUrl);
+        Mockito.when(urlShortenerService.getRedirect(shortUrlKey)).thenReturn(Redirect.of(StoredUrl.of(longUrl)));
 
         // Perform GET request and assert redirection
-        mockMvc.perform(MockMvcRequestBuilders.get("/" + shortUrlKey))
+        mockMvc.perform(MockMvcRequestBuilders.get("/" + shortUrlKey).header("Referer", "https://news.example.com/"))
                 .andExpect(MockMvcResultMatchers.status().isFound())
-                .andExpect(MockMvcResultMatchers.header().string("Location", longUrl));
+                .andExpect(MockMvcResultMatchers.header().string("Location", longUrl))
+                .andExpect(MockMvcResultMatchers.header().string("Cache-Control", "no-cache"));
 
         logger.info("Redirect test passed. Short URL key: {} redirects to long URL: {}", shortUrlKey, longUrl);
 
-        // Verify that the service method was called once
-        Mockito.verify(urlShortenerService, Mockito.times(1)).getLongUrl(shortUrlKey);
+        // Verify that the service method was called once and the click was counted
+        Mockito.verify(urlShortenerService, Mockito.times(1)).getRedirect(shortUrlKey);
+        Mockito.verify(clickBuffer, Mockito.times(1)).record(shortUrlKey, "https://news.example.com/");
+    }
+
+    /**
+     * The test case tests that a key held by the redirect cache is answered by the fast path
+     * filter, without reaching the controller, and that other paths go on to the controller
+     * 
+     */
+    @Test
+    public void testRedirectFastPath() throws Exception {
+        String shortUrlKey = "xyz123";
+        String longUrl = "https://www.example.com/caf\u00e9";
+
+        logger.info("Starting test for the redirect fast path with shortUrlKey: {}", shortUrlKey);
+
+        // Mock service behavior: the key is cached
+        Mockito.when(urlShortenerService.getCachedRedirect(shortUrlKey)).thenReturn(Redirect.of(StoredUrl.of(longUrl)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/" + shortUrlKey).header("Referer", "https://news.example.com/"))
+                .andExpect(MockMvcResultMatchers.status().isFound())
+                .andExpect(MockMvcResultMatchers.header().string("Location", "https://www.example.com/caf%C3%A9"))
+                .andExpect(MockMvcResultMatchers.header().string("Cache-Control", "no-cache"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/ping"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        logger.info("Fast path test passed. Short URL key: {} redirects to long URL: {}", shortUrlKey, longUrl);
+
+        Mockito.verify(urlShortenerService, Mockito.never()).getRedirect(shortUrlKey);
+        Mockito.verify(urlShortenerService, Mockito.times(1)).getCachedRedirect("ping");
+        Mockito.verify(clickBuffer, Mockito.times(1)).record(shortUrlKey, "https://news.example.com/");
     }
 
     /**
@@ -159,7 +272,7 @@ public class UrlShortenerControllerTest {
         logger.info("Starting test for URL redirect with invalid shortUrlKey: {}", shortUrlKey);
 
         // Mock service behavior
-        Mockito.when(urlShortenerService.getLongUrl(shortUrlKey)).thenReturn(null);
+        Mockito.when(urlShortenerService.getRedirect(shortUrlKey)).thenReturn(null);
 
         // Perform GET request and assert 404 status
         mockMvc.perform(MockMvcRequestBuilders.get("/" + shortUrlKey))
@@ -167,7 +280,234 @@ public class UrlShortenerControllerTest {
 
         logger.info("Redirect test for invalid short URL key passed. Expected 404 status.");
 
-        // Verify that the service method was called once
-        Mockito.verify(urlShortenerService, Mockito.times(1)).getLongUrl(shortUrlKey);
+        // Verify that the service method was called once and no click was counted
+        Mockito.verify(urlShortenerService, Mockito.times(1)).getRedirect(shortUrlKey);
+        Mockito.verify(clickBuffer, Mockito.never()).record(ArgumentMatchers.anyString(), ArgumentMatchers.any());
+    }
+
+    /**
+     * The test case tests the click stats url, for a known and an unknown short URL
+     * 
+     */
+    @Test
+    public void testClickStats() throws Exception {
+        String shortUrlKey = "xyz123";
+
+        logger.info("Starting test for click stats with shortUrlKey: {}", shortUrlKey);
+
+        // Mock service behavior
+        Mockito.when(clickBuffer.isEnabled()).thenReturn(true);
+        Mockito.when(urlShortenerService.getLongUrl(shortUrlKey)).thenReturn("https://www.example.com");
+        Mockito.when(clickStatsService.getClickStats(shortUrlKey)).thenReturn(Map.of("shortUrlKey", shortUrlKey, "clicks", 42L));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/" + shortUrlKey + "/stats"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.clicks").value(42));
+        mockMvc.perform(MockMvcRequestBuilders.get("/invalidKey/stats"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        logger.info("Test for click stats passed");
+        Mockito.verify(clickStatsService, Mockito.never()).getClickStats("invalidKey");
+    }
+
+    /**
+     * The test case tests that the click stats url is not found while analytics is disabled,
+     * without asking the click stats store
+     * 
+     */
+    @Test
+    public void testClickStatsDisabled() throws Exception {
+        String shortUrlKey = "xyz123";
+
+        logger.info("Starting test for click stats with analytics disabled");
+
+        Mockito.when(clickBuffer.isEnabled()).thenReturn(false);
+        Mockito.when(urlShortenerService.getLongUrl(shortUrlKey)).thenReturn("https://www.example.com");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/" + shortUrlKey + "/stats"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        Mockito.verify(clickStatsService, Mockito.never()).getClickStats(ArgumentMatchers.anyString());
+        logger.info("Test for click stats with analytics disabled passed");
+    }
+
+    /**
+     * The test case tests the redirect cache stats url
+     * 
+     */
+    @Test
+    public void testCacheStats() throws Exception {
+        logger.info("Starting test for cache stats");
+
+        // Mock service behavior
+        Mockito.when(urlShortenerService.getCacheStats()).thenReturn(Map.of("hitCount", 3L, "missCount", 1L));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/cache/stats"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.hitCount").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.missCount").value(1));
+
+        logger.info("Test for cache stats passed");
+    }
+
+    /**
+     * The test case tests batch shortening with a JSON array, including an item without a URL
+     * 
+     */
+    @Test
+    public void testShortenUrlsJsonArray() throws Exception {
+        logger.info("Starting test for batch URL shortening with a JSON array");
+
+        // Mock service behavior
+        Mockito.when(urlShortenerService.shortenUrls(List.of("https://www.example.com", "https://www.example.org")))
+                .thenReturn(Arrays.asList("e149be", null));
+
+        String requestBody = "[{\"longUrl\":\"https://www.example.com\"},{\"url\":\"typo\"},{\"longUrl\":\"https://www.example.org\"}]";
+
+        String response = mockMvc.perform(MockMvcRequestBuilders.post("/shorten/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(requestBody))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        // One NDJSON line per input item, in order
+        String[] lines = response.split("\n");
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertEquals(baseUrl + "/e149be", objectMapper.readTree(lines[0]).get("shortUrl").asText());
+        Assertions.assertEquals("Missing longUrl", objectMapper.readTree(lines[1]).get("error").asText());
+        Assertions.assertEquals("https://www.example.org", objectMapper.readTree(lines[2]).get("longUrl").asText());
+        Assertions.assertTrue(objectMapper.readTree(lines[2]).has("error"));
+
+        logger.info("Batch shortening test with a JSON array passed: {}", response);
+    }
+
+    /**
+     * The test case tests batch shortening with NDJSON input
+     * 
+     */
+    @Test
+    public void testShortenUrlsNdjson() throws Exception {
+        logger.info("Starting test for batch URL shortening with NDJSON");
+
+        // Mock service behavior
+        Mockito.when(urlShortenerService.shortenUrls(List.of("https://www.example.com", "https://www.example.org")))
+                .thenReturn(List.of("e149be", "a1b2c3"));
+
+        String requestBody = "{\"longUrl\":\"https://www.example.com\"}\n{\"longUrl\":\"https://www.example.org\"}\n";
+
+        String response = mockMvc.perform(MockMvcRequestBuilders.post("/shorten/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(requestBody))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.split("\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals(baseUrl + "/a1b2c3", objectMapper.readTree(lines[1]).get("shortUrl").asText());
+
+        logger.info("Batch shortening test with NDJSON passed: {}", response);
+
+        // The whole batch goes to the service in one call
+        Mockito.verify(urlShortenerService, Mockito.times(1)).shortenUrls(ArgumentMatchers.anyList());
+    }
+
+    /**
+     * The test case tests that a batch takes a rate limit token for each chunk after the first,
+     * and ends with a rate limit line once the client has none left
+     *
+     */
+    @Test
+    public void testShortenUrlsRateLimited() throws Exception {
+        logger.info("Starting test for a rate limited batch");
+
+        RateLimiter rateLimiter = Mockito.mock(RateLimiter.class);
+        // One token for the second chunk, then 1.5 s until the next
+        Mockito.when(rateLimiter.tryAcquire(ArgumentMatchers.anyString())).thenReturn(0L, 1_500_000_000L);
+        Object batchSize = ReflectionTestUtils.getField(urlShortenerController, "batchSize");
+        Object admittingRateLimiter = ReflectionTestUtils.getField(urlShortenerController, "rateLimiter");
+        ReflectionTestUtils.setField(urlShortenerController, "batchSize", 2);
+        ReflectionTestUtils.setField(urlShortenerController, "rateLimiter", rateLimiter);
+        try {
+            Mockito.when(urlShortenerService.shortenUrls(ArgumentMatchers.anyList())).thenReturn(List.of("e149be", "a1b2c3"));
+
+            StringBuilder requestBody = new StringBuilder();
+            for (int i = 0; i < 7; i++) {
+                requestBody.append("{\"longUrl\":\"https://www.example.com/").append(i).append("\"}\n");
+            }
+            String response = mockMvc.perform(MockMvcRequestBuilders.post("/shorten/batch")
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .content(requestBody.toString()))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            // Two chunks shortened, the third turned away
+            String[] lines = response.split("\n");
+            Assertions.assertEquals(5, lines.length);
+            Assertions.assertEquals(baseUrl + "/a1b2c3", objectMapper.readTree(lines[3]).get("shortUrl").asText());
+            Assertions.assertEquals("Rate limit exceeded", objectMapper.readTree(lines[4]).get("error").asText());
+            Assertions.assertEquals("2", objectMapper.readTree(lines[4]).get("retryAfter").asText());
+            Mockito.verify(urlShortenerService, Mockito.times(2)).shortenUrls(ArgumentMatchers.anyList());
+            Mockito.verify(rateLimiter, Mockito.times(2)).tryAcquire("ip:127.0.0.1");
+
+            logger.info("Rate limited batch test passed: {}", response);
+        } finally {
+            ReflectionTestUtils.setField(urlShortenerController, "batchSize", batchSize);
+            ReflectionTestUtils.setField(urlShortenerController, "rateLimiter", admittingRateLimiter);
+        }
+    }
+
+    /**
+     * The test case tests resolving many short URL keys at once
+     * 
+     */
+    @Test
+    public void testResolveShortUrlKeys() throws Exception {
+        logger.info("Starting test for bulk resolve");
+
+        // Mock service behavior
+        Map<String, String> longUrls = new LinkedHashMap<>();
+        longUrls.put("e149be", "https://www.example.com");
+        longUrls.put("invalidKey", null);
+        Mockito.when(urlShortenerService.getLongUrls(ArgumentMatchers.anyCollection())).thenReturn(longUrls);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/resolve")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of("e149be", "invalidKey"))))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.e149be").value("https://www.example.com"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.invalidKey").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$").value(Matchers.hasKey("invalidKey")));
+
+        // More keys than url.shortener.resolve.max-keys are refused without a lookup
+        List<String> tooManyKeys = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            tooManyKeys.add("k" + i);
+        }
+        mockMvc.perform(MockMvcRequestBuilders.post("/resolve")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(tooManyKeys)))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.error").value("At most 1000 keys can be resolved at once"));
+        Mockito.verify(urlShortenerService, Mockito.times(1)).getLongUrls(ArgumentMatchers.anyCollection());
+
+        logger.info("Bulk resolve test passed");
+    }
+
+    /**
+     * The test case tests that requests fail fast with a 503 and a Retry-After while the Redis circuit is open
+     *
+     */
+    @Test
+    public void testRedirectWhileCircuitOpen() throws Exception {
+        logger.info("Starting test for redirects while the Redis circuit is open");
+
+        Mockito.when(urlShortenerService.getRedirect("abc123")).thenThrow(new CircuitBreaker.OpenException("The Redis circuit is open"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/abc123"))
+                .andExpect(MockMvcResultMatchers.status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "5"));
+
+        logger.info("Open circuit test passed");
     }
 }
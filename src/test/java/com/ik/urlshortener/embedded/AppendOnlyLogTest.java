@@ -0,0 +1,235 @@
+package com.ik.urlshortener.embedded;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In this Test we will check the append-only log: lookups, replay on reopen, recovery from a
+ * torn record, removal, compaction and the lock against a second process
+ *
+ */
+
+public class AppendOnlyLogTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppendOnlyLogTest.class);
+
+    private static final byte MAPPING = 1;
+
+    private static final byte REVERSE = 2;
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * The test case tests that appended records are found by type and key, and that the latest
+     * record of a key wins
+     *
+     */
+    @Test
+    public void testAppendAndGet() {
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            log.append(List.of(new AppendOnlyLog.Record(MAPPING, "3f94b0", "https://www.example.com"),
+                    new AppendOnlyLog.Record(REVERSE, "digest", "3f94b0")));
+            log.append(List.of(new AppendOnlyLog.Record(MAPPING, "3f94b0", "https://www.example.com/updated")));
+
+            Assertions.assertEquals("https://www.example.com/updated", log.get(MAPPING, "3f94b0"));
+            Assertions.assertEquals("3f94b0", log.get(REVERSE, "digest"));
+            Assertions.assertNull(log.get(REVERSE, "3f94b0"));
+            Assertions.assertNull(log.get(MAPPING, "unknown"));
+            Assertions.assertEquals(1, log.size(MAPPING));
+            Assertions.assertTrue(log.getDeadBytes() > 0);
+        }
+        logger.info("Appended records are found, and the latest record of a key wins");
+    }
+
+    /**
+     * The test case tests that a reopened log replays its records, across index growth
+     *
+     */
+    @Test
+    public void testReopenReplaysRecords() {
+        int keys = 5_000;
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            for (int i = 0; i < keys; i++) {
+                log.append(List.of(new AppendOnlyLog.Record(MAPPING, "key" + i, "https://www.example.com/" + i)));
+            }
+        }
+
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            Assertions.assertEquals(keys, log.size(MAPPING));
+            for (int i = 0; i < keys; i++) {
+                Assertions.assertEquals("https://www.example.com/" + i, log.get(MAPPING, "key" + i));
+            }
+            List<String> scanned = new ArrayList<>();
+            log.forEachKey(MAPPING, scanned::add);
+            Assertions.assertEquals(keys, scanned.size());
+        }
+        logger.info("Reopened log replayed {} records", keys);
+    }
+
+    /**
+     * The test case tests that a record cut short by a crash is discarded on reopen, and that the
+     * log keeps working after it
+     *
+     */
+    @Test
+    public void testTornRecordIsDiscarded() throws IOException {
+        long end;
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            log.append(List.of(new AppendOnlyLog.Record(MAPPING, "3f94b0", "https://www.example.com")));
+            end = log.getLogBytes();
+        }
+
+        // Half of a record header, with a checksum that cannot match
+        try (FileChannel channel = FileChannel.open(directory.resolve("urls-0.log"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, MAPPING, 0, 6}), end);
+        }
+
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            Assertions.assertEquals(end, log.getLogBytes());
+            Assertions.assertEquals("https://www.example.com", log.get(MAPPING, "3f94b0"));
+            log.append(List.of(new AppendOnlyLog.Record(MAPPING, "e149be", "https://www.example.com/abc")));
+        }
+
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            Assertions.assertEquals("https://www.example.com/abc", log.get(MAPPING, "e149be"));
+            Assertions.assertEquals(2, log.size(MAPPING));
+        }
+        logger.info("Torn record at offset {} discarded", end);
+    }
+
+    /**
+     * The test case tests that compaction drops superseded records and keeps the latest ones,
+     * also after a reopen
+     *
+     */
+    @Test
+    public void testCompactionDropsSupersededRecords() {
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            for (int i = 0; i < 100; i++) {
+                log.append(List.of(new AppendOnlyLog.Record(MAPPING, "3f94b0", "https://www.example.com/" + i)));
+            }
+            log.append(List.of(new AppendOnlyLog.Record(REVERSE, "digest", "3f94b0")));
+            long before = log.getLogBytes();
+
+            log.compact();
+
+            Assertions.assertTrue(log.getLogBytes() < before);
+            Assertions.assertEquals(0, log.getDeadBytes());
+            Assertions.assertEquals("https://www.example.com/99", log.get(MAPPING, "3f94b0"));
+            Assertions.assertEquals("3f94b0", log.get(REVERSE, "digest"));
+            log.append(List.of(new AppendOnlyLog.Record(MAPPING, "e149be", "https://www.example.com/abc")));
+        }
+
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            Assertions.assertEquals("https://www.example.com/99", log.get(MAPPING, "3f94b0"));
+            Assertions.assertEquals("https://www.example.com/abc", log.get(MAPPING, "e149be"));
+            Assertions.assertEquals("3f94b0", log.get(REVERSE, "digest"));
+        }
+        logger.info("Compaction kept the latest record of every key");
+    }
+
+    /**
+     * The test case tests that records straddling two chunks of the mapping are read from the
+     * mapping, so that a reader still holding the generation that compaction replaced can read
+     * them after its file channel is closed
+     *
+     */
+    @Test
+    public void testStraddlingRecordsReadableAfterCompaction() {
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2, 4096)) {
+            List<long[]> straddling = new ArrayList<>();
+            long offset = 0;
+            for (int i = 0; i < 500; i++) {
+                AppendOnlyLog.Record record = new AppendOnlyLog.Record(MAPPING, "k" + i, "https://www.example.com/" + "x".repeat(i % 97));
+                log.append(List.of(record));
+                if (offset / 4096 != (offset + record.size() - 1) / 4096) {
+                    straddling.add(new long[] {offset, record.size()});
+                }
+                offset += record.size();
+            }
+            Assertions.assertFalse(straddling.isEmpty());
+            Object replaced = ReflectionTestUtils.getField(log, "generation");
+
+            log.compact();
+
+            for (long[] record : straddling) {
+                ByteBuffer bytes = ReflectionTestUtils.invokeMethod(replaced, "read", record[0], (int) record[1]);
+                Assertions.assertEquals(record[1], bytes.remaining());
+            }
+            for (int i = 0; i < 500; i++) {
+                Assertions.assertEquals("https://www.example.com/" + "x".repeat(i % 97), log.get(MAPPING, "k" + i));
+            }
+            logger.info("Read {} straddling records from the replaced generation", straddling.size());
+        }
+    }
+
+    /**
+     * The test case tests that removed keys are no longer found or listed, that the index keeps
+     * finding the other keys past them and through growth, and that compaction drops them
+     *
+     */
+    @Test
+    public void testRemove() {
+        int keys = 3_000;
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            List<AppendOnlyLog.Record> records = new ArrayList<>(keys);
+            for (int i = 0; i < keys; i++) {
+                records.add(new AppendOnlyLog.Record(MAPPING, "key" + i, "https://www.example.com/" + i));
+            }
+            log.append(records);
+            for (int i = 0; i < keys; i += 2) {
+                Assertions.assertTrue(log.remove(MAPPING, "key" + i));
+            }
+            Assertions.assertFalse(log.remove(MAPPING, "key0"));
+            Assertions.assertFalse(log.remove(REVERSE, "key1"));
+
+            // Removed slots are reused and the table grows past them
+            for (int i = keys; i < 2 * keys; i++) {
+                log.append(List.of(new AppendOnlyLog.Record(MAPPING, "key" + i, "https://www.example.com/" + i)));
+            }
+            List<String> listed = new ArrayList<>();
+            log.forEachKey(MAPPING, listed::add);
+            Assertions.assertEquals(keys + keys / 2, listed.size());
+            for (int i = 0; i < 2 * keys; i++) {
+                String expected = i < keys && i % 2 == 0 ? null : "https://www.example.com/" + i;
+                Assertions.assertEquals(expected, log.get(MAPPING, "key" + i));
+            }
+
+            log.compact();
+            Assertions.assertNull(log.get(MAPPING, "key0"));
+            Assertions.assertEquals("https://www.example.com/1", log.get(MAPPING, "key1"));
+        }
+
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            Assertions.assertNull(log.get(MAPPING, "key0"));
+            Assertions.assertEquals("https://www.example.com/1", log.get(MAPPING, "key1"));
+        }
+        logger.info("Removed keys are gone from the index and from the compacted log");
+    }
+
+    /**
+     * The test case tests that a log cannot be opened twice at the same time
+     *
+     */
+    @Test
+    public void testLogIsLocked() {
+        try (AppendOnlyLog log = AppendOnlyLog.open(directory, false, 2)) {
+            Assertions.assertThrows(IllegalStateException.class, () -> AppendOnlyLog.open(directory, false, 2));
+        }
+        AppendOnlyLog.open(directory, false, 2).close();
+        logger.info("The log directory is locked while open");
+    }
+}
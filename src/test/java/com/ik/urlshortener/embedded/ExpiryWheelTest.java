@@ -0,0 +1,70 @@
+package com.ik.urlshortener.embedded;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In this Test we will check that the expiry wheel hands over keys once their tick has passed,
+ * across turns of the wheel and after long pauses
+ *
+ */
+
+public class ExpiryWheelTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiryWheelTest.class);
+
+    /**
+     * The test case tests that keys are handed over in the tick after they expire, and keys a
+     * full turn ahead in the same slot are kept
+     *
+     */
+    @Test
+    public void testKeysExpireByTick() {
+        ExpiryWheel wheel = new ExpiryWheel(Duration.ofMillis(100), 10, 0);
+        wheel.schedule("3f94b0", 250);
+        wheel.schedule("e149be", 550);
+        // Same slot as 3f94b0, one turn later
+        wheel.schedule("7eebb0", 1_250);
+        Assertions.assertEquals(3, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        Assertions.assertEquals(0, wheel.advance(299, (key, expiresAt) -> expired.add(key)));
+        Assertions.assertEquals(1, wheel.advance(300, (key, expiresAt) -> expired.add(key)));
+        Assertions.assertEquals(List.of("3f94b0"), expired);
+
+        Assertions.assertEquals(1, wheel.advance(1_000, (key, expiresAt) -> expired.add(key)));
+        Assertions.assertEquals(1, wheel.advance(1_300, (key, expiresAt) -> expired.add(key)));
+        Assertions.assertEquals(List.of("3f94b0", "e149be", "7eebb0"), expired);
+        Assertions.assertEquals(0, wheel.size());
+        logger.info("Keys expired in order: {}", expired);
+    }
+
+    /**
+     * The test case tests that a pause of more than a full turn hands over every due key once,
+     * and that expiries in the past are handed over by the next advance
+     *
+     */
+    @Test
+    public void testLongPauseAndPastExpiries() {
+        ExpiryWheel wheel = new ExpiryWheel(Duration.ofMillis(10), 8, 1_000);
+        for (int i = 0; i < 1_000; i++) {
+            wheel.schedule("key" + i, 1_000 + i * 10L);
+        }
+        wheel.schedule("past", 500);
+
+        List<Long> expiries = new ArrayList<>();
+        Assertions.assertEquals(501, wheel.advance(6_000, (key, expiresAt) -> expiries.add(expiresAt)));
+        Assertions.assertTrue(expiries.stream().allMatch(expiresAt -> expiresAt < 6_000));
+        Assertions.assertEquals(500, wheel.size());
+
+        Assertions.assertEquals(500, wheel.advance(20_000, (key, expiresAt) -> expiries.add(expiresAt)));
+        Assertions.assertEquals(0, wheel.size());
+        logger.info("Handed over {} keys after long pauses", expiries.size());
+    }
+}
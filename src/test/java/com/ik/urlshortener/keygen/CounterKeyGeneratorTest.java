@@ -0,0 +1,79 @@
+package com.ik.urlshortener.keygen;
+
+import org.mockito.Mockito;
+
+import org.junit.jupiter.api.Assertions;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In this Test we will mock the Redis counter and test the block leasing in CounterKeyGenerator
+ * 
+ */
+
+public class CounterKeyGeneratorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CounterKeyGeneratorTest.class);
+
+    private static final int BLOCK_SIZE = 100;
+
+    private ValueOperations<String, String> valueOperations;
+
+    private CounterKeyGenerator keyGenerator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+        valueOperations = Mockito.mock(ValueOperations.class);
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        // Mocking the Redis counter
+        AtomicLong counter = new AtomicLong();
+        Mockito.when(valueOperations.increment(CounterKeyGenerator.SEQUENCE_KEY, BLOCK_SIZE))
+                .thenAnswer(invocation -> counter.addAndGet(BLOCK_SIZE));
+
+        keyGenerator = new CounterKeyGenerator(redisTemplate, BLOCK_SIZE);
+        logger.info("Test setup complete. CounterKeyGenerator is initialized with block size {}.", BLOCK_SIZE);
+    }
+
+    /**
+     * The test case tests that keys are unique and that the counter is only hit once per block
+     * 
+     */
+    @Test
+    public void testKeysAreUniqueAndLeasedInBlocks() {
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 250; i++) {
+            List<String> candidateKeys = keyGenerator.candidateKeys("https://www.example.com");
+            Assertions.assertEquals(1, candidateKeys.size());
+            keys.add(candidateKeys.get(0));
+        }
+
+        Assertions.assertEquals(250, keys.size());
+        Mockito.verify(valueOperations, Mockito.times(3)).increment(CounterKeyGenerator.SEQUENCE_KEY, BLOCK_SIZE);
+        logger.info("Block leasing test passed. Generated {} unique keys.", keys.size());
+    }
+
+    /**
+     * The test case tests that counter keys never fall into the 6-character hash key space
+     * 
+     */
+    @Test
+    public void testKeysDoNotShadowHashKeys() {
+        String firstKey = keyGenerator.candidateKeys("https://www.example.com").get(0);
+
+        Assertions.assertEquals("1000000", firstKey);
+        logger.info("First counter key is {}", firstKey);
+    }
+}
@@ -0,0 +1,100 @@
+package com.ik.urlshortener.keygen;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In this Test we will check the keys produced by HashKeyGenerator against a plain
+ * MessageDigest/String based reference implementation
+ * 
+ */
+
+public class HashKeyGeneratorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashKeyGeneratorTest.class);
+
+    /**
+     * The test case tests that the default hex keys are unchanged, including the collision candidates
+     * 
+     */
+    @Test
+    public void testHexCandidateKeys() throws Exception {
+        HashKeyGenerator keyGenerator = new HashKeyGenerator(HashKeyGenerator.KeyEncoding.HEX, 6);
+        String longUrl = "https://www.example.com";
+
+        List<String> candidateKeys = keyGenerator.candidateKeys(longUrl);
+
+        Assertions.assertEquals(HashKeyGenerator.MAX_ATTEMPTS, candidateKeys.size());
+        Assertions.assertEquals("e149be", candidateKeys.get(0));
+        for (int attempts = 1; attempts < candidateKeys.size(); attempts++) {
+            Assertions.assertEquals(referenceHex(longUrl + attempts, 6), candidateKeys.get(attempts));
+        }
+        logger.info("Hex candidate keys test passed: {}", candidateKeys);
+    }
+
+    /**
+     * The test case tests that non-ASCII URLs are hashed from the same UTF-8 bytes as String.getBytes
+     * 
+     */
+    @Test
+    public void testNonAsciiUrl() throws Exception {
+        HashKeyGenerator keyGenerator = new HashKeyGenerator(HashKeyGenerator.KeyEncoding.HEX, 32);
+        String longUrl = "https://例え.jp/päth?q=😀&broken=\uD800";
+
+        Assertions.assertEquals(referenceHex(longUrl, 32), keyGenerator.getShortUrlKey(longUrl));
+        logger.info("Non-ASCII URL test passed.");
+    }
+
+    /**
+     * The test case tests the base62 encoding of the first 64 bits of the hash
+     * 
+     */
+    @Test
+    public void testBase62Keys() throws Exception {
+        HashKeyGenerator keyGenerator = new HashKeyGenerator(HashKeyGenerator.KeyEncoding.BASE62, 8);
+        String longUrl = "https://www.example.com";
+
+        // Reference: the first 8 bytes of the hash as an unsigned number, last 8 base62 digits
+        byte[] hash = MessageDigest.getInstance("MD5").digest(longUrl.getBytes(StandardCharsets.UTF_8));
+        BigInteger value = new BigInteger(1, Arrays.copyOf(hash, 8));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            BigInteger[] divided = value.divideAndRemainder(BigInteger.valueOf(62));
+            expected.insert(0, Base62.ALPHABET[divided[1].intValue()]);
+            value = divided[0];
+        }
+
+        String shortUrlKey = keyGenerator.getShortUrlKey(longUrl);
+        Assertions.assertEquals(expected.toString(), shortUrlKey);
+        logger.info("Base62 key test passed: {}", shortUrlKey);
+    }
+
+    /**
+     * The test case tests that key lengths beyond what the encoding can supply are rejected
+     * 
+     */
+    @Test
+    public void testInvalidLength() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new HashKeyGenerator(HashKeyGenerator.KeyEncoding.BASE62, 11));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new HashKeyGenerator(HashKeyGenerator.KeyEncoding.HEX, 0));
+    }
+
+    private static String referenceHex(String input, int length) throws Exception {
+        byte[] hash = MessageDigest.getInstance("MD5").digest(input.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hash) {
+            hexString.append(String.format("%02x", b));
+        }
+        return hexString.substring(0, length);
+    }
+}
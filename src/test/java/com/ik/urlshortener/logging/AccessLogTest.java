@@ -0,0 +1,47 @@
+package com.ik.urlshortener.logging;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In this Test we will test the format and sampling of the access log lines
+ *
+ */
+
+public class AccessLogTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessLogTest.class);
+
+    /**
+     * The test case tests the key=value line of a request
+     *
+     */
+    @Test
+    public void testFormat() {
+        String line = AccessLog.format("GET", "/e149be", 302, 412_345, "10.0.0.7", "https://news.example.com/a b");
+        logger.info("Formatted access log line: {}", line);
+
+        Assertions.assertEquals("method=GET path=/e149be status=302 duration_ms=0.412 client=10.0.0.7 "
+                + "referer=https://news.example.com/a%20b", line);
+        Assertions.assertEquals("method=POST path=/shorten status=200 duration_ms=12.005 client=- referer=-",
+                AccessLog.format("POST", "/shorten", 200, 12_005_000, null, ""));
+    }
+
+    /**
+     * The test case tests that server errors are always logged and other requests are sampled
+     *
+     */
+    @Test
+    public void testSampling() {
+        AccessLog none = new AccessLog(0.0);
+        AccessLog all = new AccessLog(1.0);
+
+        Assertions.assertFalse(none.sampled(302));
+        Assertions.assertTrue(none.sampled(503));
+        Assertions.assertTrue(all.sampled(404));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AccessLog(1.5));
+        logger.info("Sampling test passed.");
+    }
+}
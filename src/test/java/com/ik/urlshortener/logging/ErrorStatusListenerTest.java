@@ -0,0 +1,53 @@
+package com.ik.urlshortener.logging;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.core.ContextBase;
+import ch.qos.logback.core.status.ErrorStatus;
+import ch.qos.logback.core.status.InfoStatus;
+import ch.qos.logback.core.status.WarnStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * In this Test we will check that the logback status listener prints errors and nothing else
+ *
+ */
+
+public class ErrorStatusListenerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ErrorStatusListenerTest.class);
+
+    /**
+     * The test case tests that errors raised before and after the listener starts are printed,
+     * while warnings and info messages are not
+     *
+     */
+    @Test
+    public void testPrintsOnlyErrors() {
+        ContextBase context = new ContextBase();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ErrorStatusListener listener = new ErrorStatusListener();
+        listener.setContext(context);
+        listener.setPrintStream(new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        context.getStatusManager().add(new WarnStatus("[converterClass] attribute is deprecated", this));
+        context.getStatusManager().add(new ErrorStatus("Could not create appender", this));
+        context.getStatusManager().add(listener);
+        listener.start();
+        context.getStatusManager().add(new InfoStatus("End of configuration.", this));
+        context.getStatusManager().add(new ErrorStatus("Failed to write to the console", this));
+
+        String printed = out.toString(StandardCharsets.UTF_8);
+        logger.info("Printed status: {}", printed);
+        Assertions.assertTrue(printed.contains("Could not create appender"));
+        Assertions.assertTrue(printed.contains("Failed to write to the console"));
+        Assertions.assertFalse(printed.contains("deprecated"));
+        Assertions.assertFalse(printed.contains("End of configuration"));
+    }
+}
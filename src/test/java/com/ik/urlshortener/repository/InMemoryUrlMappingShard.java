@@ -0,0 +1,137 @@
+package com.ik.urlshortener.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * In-process stand-in for one Redis node of a sharded store. It emulates the claim script over
+ * maps, expiring mappings lazily, and counts the calls made to it, each of which would be one
+ * round trip to Redis
+ * 
+ */
+
+public class InMemoryUrlMappingShard implements UrlMappingShard {
+
+    private final Map<String, String> storedMappings = new HashMap<>();
+
+    private final Map<String, Long> expiries = new HashMap<>();
+
+    private final Map<String, String> reverseIndex = new HashMap<>();
+
+    private int roundTrips;
+
+    public synchronized int getRoundTrips() {
+        return roundTrips;
+    }
+
+    public synchronized Map<String, String> getStoredMappings() {
+        expireAll();
+        return new HashMap<>(storedMappings);
+    }
+
+    @Override
+    public synchronized String claim(UrlClaim claim) {
+        roundTrips++;
+        return claimAgainstMaps(claim);
+    }
+
+    @Override
+    public synchronized List<String> claimAll(List<UrlClaim> claims) {
+        roundTrips++;
+        List<String> claimedKeys = new ArrayList<>(claims.size());
+        for (UrlClaim claim : claims) {
+            claimedKeys.add(claimAgainstMaps(claim));
+        }
+        return claimedKeys;
+    }
+
+    private String claimAgainstMaps(UrlClaim claim) {
+        if (claim.urlDigest() != null && reverseIndex.containsKey(claim.urlDigest())) {
+            return reverseIndex.get(claim.urlDigest());
+        }
+        for (String candidateKey : claim.candidateKeys()) {
+            expire(candidateKey);
+            String existing = storedMappings.putIfAbsent(candidateKey, claim.longUrl());
+            if (existing == null && claim.expires()) {
+                expiries.put(candidateKey, claim.expiresAt());
+            }
+            if (existing == null || (existing.equals(claim.longUrl()) && expiries.containsKey(candidateKey) == claim.expires())) {
+                if (claim.urlDigest() != null) {
+                    reverseIndex.put(claim.urlDigest(), candidateKey);
+                }
+                return candidateKey;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized StoredUrl findStoredUrl(String shortUrlKey) {
+        roundTrips++;
+        return find(shortUrlKey);
+    }
+
+    @Override
+    public synchronized List<StoredUrl> findStoredUrls(List<String> shortUrlKeys) {
+        roundTrips++;
+        return shortUrlKeys.stream().map(this::find).toList();
+    }
+
+    private StoredUrl find(String shortUrlKey) {
+        expire(shortUrlKey);
+        String longUrl = storedMappings.get(shortUrlKey);
+        return longUrl != null ? new StoredUrl(longUrl, expiries.getOrDefault(shortUrlKey, StoredUrl.NEVER)) : null;
+    }
+
+    private void expire(String shortUrlKey) {
+        Long expiresAt = expiries.get(shortUrlKey);
+        if (expiresAt != null && expiresAt <= System.currentTimeMillis()) {
+            storedMappings.remove(shortUrlKey);
+            expiries.remove(shortUrlKey);
+        }
+    }
+
+    private void expireAll() {
+        new ArrayList<>(expiries.keySet()).forEach(this::expire);
+    }
+
+    @Override
+    public void scanKeys(Consumer<String> action) {
+        List<String> keys;
+        synchronized (this) {
+            roundTrips++;
+            expireAll();
+            keys = new ArrayList<>(storedMappings.keySet());
+        }
+        keys.forEach(action);
+    }
+
+    @Override
+    public synchronized List<String> findKeysForDigests(List<String> urlDigests) {
+        roundTrips++;
+        return urlDigests.stream().map(reverseIndex::get).toList();
+    }
+
+    @Override
+    public synchronized List<String> putKeysForDigests(List<String> urlDigests, List<String> shortUrlKeys) {
+        roundTrips++;
+        List<String> pointedKeys = new ArrayList<>(urlDigests.size());
+        for (int i = 0; i < urlDigests.size(); i++) {
+            String existing = reverseIndex.putIfAbsent(urlDigests.get(i), shortUrlKeys.get(i));
+            pointedKeys.add(existing != null ? existing : shortUrlKeys.get(i));
+        }
+        return pointedKeys;
+    }
+
+    @Override
+    public synchronized void deleteMappings(List<String> shortUrlKeys) {
+        roundTrips++;
+        shortUrlKeys.forEach(shortUrlKey -> {
+            storedMappings.remove(shortUrlKey);
+            expiries.remove(shortUrlKey);
+        });
+    }
+}
@@ -0,0 +1,30 @@
+package com.ik.urlshortener.repository;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In this Test we will check the hour fields under which RedisClickStatsStore keeps hourly clicks
+ *
+ */
+
+public class RedisClickStatsStoreTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisClickStatsStoreTest.class);
+
+    /**
+     * The test case tests that hours since the epoch are written as UTC yyyyMMddHH and read back
+     *
+     */
+    @Test
+    public void testHourFields() {
+        long hour = 1_760_684_400L / 3600; // 2025-10-17T07:00:00Z
+
+        Assertions.assertEquals("2025101707", RedisClickStatsStore.toField(hour));
+        Assertions.assertEquals(hour, RedisClickStatsStore.toHour("2025101707"));
+        Assertions.assertEquals("1970010100", RedisClickStatsStore.toField(0));
+        logger.info("Hour fields test passed.");
+    }
+}
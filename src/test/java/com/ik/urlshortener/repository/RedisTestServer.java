@@ -0,0 +1,73 @@
+package com.ik.urlshortener.repository;
+
+import org.junit.jupiter.api.Assumptions;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+
+/**
+ * A real Redis for the tests of the Lua scripts and the tools, at redis.test.host and
+ * redis.test.port (localhost:6379 unless given as system properties). The tests use database
+ * redis.test.database (15), which is flushed on connect, so they leave other data alone. Tests
+ * that connect are skipped when no Redis answers there
+ * 
+ */
+
+public class RedisTestServer implements AutoCloseable {
+
+    private final LettuceConnectionFactory connectionFactory;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private RedisTestServer(LettuceConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+        this.redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    /**
+     * Connects to the test Redis and flushes its database, or skips the calling test if it cannot
+     * be reached.
+     *
+     * @return
+     */
+
+    public static RedisTestServer connect() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("redis.test.host", "localhost"),
+                Integer.getInteger("redis.test.port", 6379));
+        configuration.setDatabase(Integer.getInteger("redis.test.database", 15));
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration,
+                LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(2)).build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        RedisTestServer server = new RedisTestServer(connectionFactory);
+        try {
+            server.redisTemplate.execute((RedisCallback<Object>) connection -> {
+                connection.serverCommands().flushDb();
+                return null;
+            });
+        } catch (RuntimeException e) {
+            server.close();
+            Assumptions.abort("No Redis reachable at " + configuration.getHostName() + ":" + configuration.getPort() + ": " + e.getMessage());
+        }
+        return server;
+    }
+
+    public StringRedisTemplate getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    public LettuceConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    @Override
+    public void close() {
+        connectionFactory.destroy();
+    }
+}
@@ -0,0 +1,207 @@
+package com.ik.urlshortener.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.model.UrlMapping;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In this Test we will run the claim script (claim-url-mapping.lua) of RedisUrlMappingStore
+ * against a real Redis, for each storage layout: free, taken and known candidates, the reverse
+ * index, the published keys and native expiry. It is skipped when no Redis is reachable, see
+ * {@link RedisTestServer}
+ * 
+ */
+
+public class RedisUrlMappingStoreIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisUrlMappingStoreIntegrationTest.class);
+
+    private static final String CHANNEL = "url-shortener-test:keys";
+
+    private RedisTestServer server;
+
+    private StringRedisTemplate redisTemplate;
+
+    private RedisConnection subscription;
+
+    private final BlockingQueue<String> publishedKeys = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    public void setUp() {
+        server = RedisTestServer.connect();
+        redisTemplate = server.getRedisTemplate();
+        subscription = server.getConnectionFactory().getConnection();
+        subscription.subscribe((message, pattern) -> publishedKeys.add(new String(message.getBody(), StandardCharsets.UTF_8)),
+                CHANNEL.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (subscription != null) {
+            subscription.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private RedisUrlMappingStore store(StorageLayout layout) {
+        RedisUrlMappingStore store = new RedisUrlMappingStore(redisTemplate, layout, 16);
+        store.keyChannel = CHANNEL;
+        return store;
+    }
+
+    private List<String> published(int count) throws InterruptedException {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String key = publishedKeys.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(key, "Only " + keys + " were published");
+            keys.add(key);
+        }
+        Assertions.assertNull(publishedKeys.poll(200, TimeUnit.MILLISECONDS));
+        return keys;
+    }
+
+    /**
+     * The test case tests that a claim writes the first free candidate in the layout's format,
+     * skips taken candidates, answers a known URL from the reverse index, fails when every
+     * candidate is taken, and publishes only the keys it wrote
+     * 
+     */
+    @ParameterizedTest
+    @EnumSource(StorageLayout.class)
+    public void testClaim(StorageLayout layout) throws InterruptedException {
+        RedisUrlMappingStore store = store(layout);
+
+        Assertions.assertEquals("aaaaaa", store.claim(new UrlClaim("https://www.example.com", "digest1", List.of("aaaaaa", "bbbbbb"))));
+        // Known from the reverse index, whatever the candidates
+        Assertions.assertEquals("aaaaaa", store.claim(new UrlClaim("https://www.example.com", "digest1", List.of("dddddd"))));
+        // The first candidate is taken by another URL
+        Assertions.assertEquals("cccccc", store.claim(new UrlClaim("https://www.example.org", "digest2", List.of("aaaaaa", "cccccc"))));
+        Assertions.assertNull(store.claim(new UrlClaim("https://www.example.net", "digest3", List.of("aaaaaa", "cccccc"))));
+
+        Assertions.assertEquals(StoredUrl.of("https://www.example.com"), store.findStoredUrl("aaaaaa"));
+        Assertions.assertEquals(StoredUrl.of("https://www.example.org"), store.findStoredUrl("cccccc"));
+        Assertions.assertNull(store.findStoredUrl("bbbbbb"));
+        Assertions.assertNull(store.findStoredUrl("dddddd"));
+        Assertions.assertEquals(Arrays.asList("aaaaaa", "cccccc", null), store.findKeysForDigests(List.of("digest1", "digest2", "digest3")));
+
+        switch (layout) {
+            case HASH:
+                Assertions.assertEquals(UrlMapping.class.getName(), redisTemplate.opsForHash().get("UrlMapping:aaaaaa", "_class"));
+                Assertions.assertEquals("aaaaaa", redisTemplate.opsForHash().get("UrlMapping:aaaaaa", "id"));
+                Assertions.assertEquals(2L, redisTemplate.opsForSet().size("UrlMapping"));
+                Assertions.assertEquals("aaaaaa", redisTemplate.opsForValue().get("UrlMapping:idx:digest1"));
+                break;
+            case STRING:
+                Assertions.assertEquals("https://www.example.com", redisTemplate.opsForValue().get("u:aaaaaa"));
+                Assertions.assertEquals("aaaaaa", redisTemplate.opsForValue().get("r:digest1"));
+                Assertions.assertFalse(redisTemplate.hasKey("UrlMapping"));
+                break;
+            default:
+                Assertions.assertEquals("https://www.example.com", redisTemplate.opsForHash().get(store.storageKey("aaaaaa"), "aaaaaa"));
+                Assertions.assertEquals("aaaaaa", redisTemplate.opsForHash().get(store.reverseKey("digest1"), "digest1"));
+                Assertions.assertFalse(redisTemplate.hasKey("UrlMapping"));
+        }
+
+        Assertions.assertEquals(List.of("aaaaaa", "cccccc"), published(2));
+        logger.info("Claims in the {} layout passed", layout);
+    }
+
+    /**
+     * The test case tests that the pipelined batch claim gives the same answers as single claims,
+     * also once Redis has dropped the cached script, and that the claimed keys are scanned back
+     * 
+     */
+    @ParameterizedTest
+    @EnumSource(StorageLayout.class)
+    public void testClaimAll(StorageLayout layout) throws InterruptedException {
+        RedisUrlMappingStore store = store(layout);
+        store.claim(new UrlClaim("https://www.example.com", "digest1", List.of("aaaaaa")));
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+
+        List<String> claimed = store.claimAll(List.of(
+                new UrlClaim("https://www.example.com", "digest1", List.of("eeeeee")),
+                new UrlClaim("https://www.example.org", "digest2", List.of("aaaaaa", "bbbbbb")),
+                new UrlClaim("https://www.example.net", null, List.of("cccccc")),
+                new UrlClaim("https://www.example.edu", null, List.of("aaaaaa", "bbbbbb"))));
+
+        Assertions.assertEquals(Arrays.asList("aaaaaa", "bbbbbb", "cccccc", null), claimed);
+        List<String> keys = new ArrayList<>();
+        store.scanKeys(keys::add);
+        keys.sort(null);
+        Assertions.assertEquals(List.of("aaaaaa", "bbbbbb", "cccccc"), keys);
+        Assertions.assertEquals(List.of("aaaaaa", "bbbbbb", "cccccc"), published(3));
+        logger.info("Batch claims in the {} layout passed", layout);
+    }
+
+    /**
+     * The test case tests that an expiring claim gets a native expiry (PEXPIREAT for the hash
+     * layout, SET PXAT for the string layout), stays out of the keyspace set and the reverse
+     * index, is not reused for a permanent link, and is gone once it expires
+     * 
+     */
+    @ParameterizedTest
+    @EnumSource(value = StorageLayout.class, names = {"HASH", "STRING"})
+    public void testExpiringClaim(StorageLayout layout) throws InterruptedException {
+        RedisUrlMappingStore store = store(layout);
+        long expiresAt = System.currentTimeMillis() + 60_000;
+
+        Assertions.assertEquals("aaaaaa", store.claim(new UrlClaim("https://www.example.com", null, List.of("aaaaaa"), expiresAt)));
+        long ttl = redisTemplate.getExpire(store.storageKey("aaaaaa"), TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(ttl > 50_000 && ttl <= 60_000, "Unexpected expiry in " + ttl + " ms");
+        StoredUrl storedUrl = store.findStoredUrl("aaaaaa");
+        Assertions.assertEquals("https://www.example.com", storedUrl.longUrl());
+        Assertions.assertTrue(Math.abs(storedUrl.expiresAt() - expiresAt) < 1_000, "Unexpected expiry at " + storedUrl.expiresAt());
+        if (layout == StorageLayout.HASH) {
+            Assertions.assertEquals(String.valueOf(expiresAt), redisTemplate.opsForHash().get("UrlMapping:aaaaaa", "expiresAt"));
+            Assertions.assertFalse(redisTemplate.opsForSet().isMember("UrlMapping", "aaaaaa"));
+        }
+
+        // The same URL for good does not take the expiring key
+        Assertions.assertEquals("bbbbbb", store.claim(new UrlClaim("https://www.example.com", "digest1", List.of("aaaaaa", "bbbbbb"))));
+        Assertions.assertEquals(-1L, redisTemplate.getExpire(store.storageKey("bbbbbb"), TimeUnit.MILLISECONDS));
+
+        Assertions.assertEquals("cccccc", store.claim(new UrlClaim("https://www.example.org", null, List.of("cccccc"), System.currentTimeMillis() + 100)));
+        Thread.sleep(300);
+        Assertions.assertNull(store.findStoredUrl("cccccc"));
+        Assertions.assertFalse(redisTemplate.hasKey(store.storageKey("cccccc")));
+
+        Assertions.assertEquals(List.of("aaaaaa", "bbbbbb", "cccccc"), published(3));
+        logger.info("Expiring claims in the {} layout passed", layout);
+    }
+
+    /**
+     * The test case tests that the bucketed layout refuses expiring claims without writing anything
+     * 
+     */
+    @Test
+    public void testBucketedRejectsExpiringClaim() {
+        RedisUrlMappingStore store = store(StorageLayout.BUCKETED);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> store.claim(new UrlClaim("https://www.example.com", null, List.of("aaaaaa"), System.currentTimeMillis() + 60_000)));
+        Assertions.assertNull(store.findStoredUrl("aaaaaa"));
+        logger.info("Bucketed expiry test passed");
+    }
+}
@@ -0,0 +1,67 @@
+package com.ik.urlshortener.repository;
+
+import org.mockito.Mockito;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.keygen.Base62;
+import com.ik.urlshortener.keygen.CounterKeyGenerator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In this Test we will check where RedisUrlMappingStore places mappings for each storage layout
+ * 
+ */
+
+public class RedisUrlMappingStoreTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisUrlMappingStoreTest.class);
+
+    private final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+
+    /**
+     * The test case tests the Redis key of a mapping in each layout
+     * 
+     */
+    @Test
+    public void testStorageKeys() {
+        String shortUrlKey = "e149be";
+
+        Assertions.assertEquals("UrlMapping:e149be", new RedisUrlMappingStore(redisTemplate, StorageLayout.HASH, 16).storageKey(shortUrlKey));
+        Assertions.assertEquals("u:e149be", new RedisUrlMappingStore(redisTemplate, StorageLayout.STRING, 16).storageKey(shortUrlKey));
+
+        RedisUrlMappingStore bucketedStore = new RedisUrlMappingStore(redisTemplate, StorageLayout.BUCKETED, 16);
+        Assertions.assertEquals("ub:" + bucketedStore.bucket(shortUrlKey), bucketedStore.storageKey(shortUrlKey));
+        logger.info("Storage key test passed.");
+    }
+
+    /**
+     * The test case tests that consecutive keys spread evenly over the buckets
+     * 
+     */
+    @Test
+    public void testBucketsAreBalanced() {
+        int buckets = 64;
+        int keys = 64_000;
+        RedisUrlMappingStore store = new RedisUrlMappingStore(redisTemplate, StorageLayout.BUCKETED, buckets);
+
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (long id = 0; id < keys; id++) {
+            int bucket = store.bucket(Base62.encode(CounterKeyGenerator.ID_OFFSET + id));
+            Assertions.assertTrue(bucket >= 0 && bucket < buckets);
+            counts.merge(bucket, 1, Integer::sum);
+        }
+
+        // Every bucket within 25% of the mean
+        int mean = keys / buckets;
+        counts.values().forEach(count -> Assertions.assertTrue(Math.abs(count - mean) < mean / 4, "Unbalanced bucket: " + count));
+        Assertions.assertEquals(buckets, counts.size());
+        logger.info("Bucket balance test passed: {}", counts.values());
+    }
+}
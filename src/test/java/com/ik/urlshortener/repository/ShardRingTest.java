@@ -0,0 +1,91 @@
+package com.ik.urlshortener.repository;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.keygen.Base62;
+
+import java.util.List;
+
+/**
+ * In this Test we will check how the consistent hash ring places keys on nodes
+ * 
+ */
+
+public class ShardRingTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRingTest.class);
+
+    private static final long FIRST_ID = 56_800_235_584L;
+
+    private static final List<String> NODES = List.of("redis-a:6379", "redis-b:6379", "redis-c:6379", "redis-d:6379");
+
+    /**
+     * The test case tests that consecutive keys spread evenly over the nodes
+     * 
+     */
+    @Test
+    public void testKeysAreBalanced() {
+        int keys = 100_000;
+        ShardRing ring = new ShardRing(NODES, 160);
+
+        int[] counts = new int[NODES.size()];
+        for (long id = FIRST_ID; id < FIRST_ID + keys; id++) {
+            counts[ring.shardOf(Base62.encode(id))]++;
+        }
+
+        // Every node within 20% of the mean
+        int mean = keys / NODES.size();
+        for (int count : counts) {
+            Assertions.assertTrue(Math.abs(count - mean) < mean / 5, "Unbalanced node: " + count);
+        }
+        logger.info("Node balance test passed: {}", counts);
+    }
+
+    /**
+     * The test case tests that adding a node only moves keys to the new node, and about the
+     * share of keys it takes over
+     * 
+     */
+    @Test
+    public void testAddingNodeMovesFewKeys() {
+        int keys = 100_000;
+        ShardRing ring = new ShardRing(NODES.subList(0, 3), 160);
+        ShardRing grownRing = new ShardRing(NODES, 160);
+
+        int movedKeys = 0;
+        for (long id = FIRST_ID; id < FIRST_ID + keys; id++) {
+            String shortUrlKey = Base62.encode(id);
+            String node = ring.nodeOf(shortUrlKey);
+            String newNode = grownRing.nodeOf(shortUrlKey);
+            if (!node.equals(newNode)) {
+                Assertions.assertEquals("redis-d:6379", newNode);
+                movedKeys++;
+            }
+        }
+
+        // About a quarter of the keys move to the fourth node
+        Assertions.assertTrue(Math.abs(movedKeys - keys / 4) < keys / 20, "Moved keys: " + movedKeys);
+        logger.info("Adding a fourth node moved {} of {} keys", movedKeys, keys);
+    }
+
+    /**
+     * The test case tests that placement depends only on the node names, not on their order
+     * 
+     */
+    @Test
+    public void testPlacementIsStable() {
+        ShardRing ring = new ShardRing(NODES, 160);
+        ShardRing reordered = new ShardRing(List.of(NODES.get(3), NODES.get(1), NODES.get(0), NODES.get(2)), 160);
+
+        for (long id = FIRST_ID; id < FIRST_ID + 10_000; id++) {
+            String shortUrlKey = Base62.encode(id);
+            Assertions.assertEquals(ring.nodeOf(shortUrlKey), reordered.nodeOf(shortUrlKey));
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ShardRing(List.of(), 160));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ShardRing(List.of("a:1", "a:1"), 160));
+        logger.info("Placement stability test passed.");
+    }
+}
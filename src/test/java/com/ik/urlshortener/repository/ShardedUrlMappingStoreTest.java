@@ -0,0 +1,155 @@
+package com.ik.urlshortener.repository;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.keygen.Base62;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In this Test we will check how ShardedUrlMappingStore routes claims and lookups over
+ * in-process stand-ins for the Redis nodes
+ * 
+ */
+
+public class ShardedUrlMappingStoreTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedUrlMappingStoreTest.class);
+
+    private static final long FIRST_ID = 56_800_235_584L;
+
+    private static final List<String> NODES = List.of("redis-a:6379", "redis-b:6379", "redis-c:6379");
+
+    private final Map<String, InMemoryUrlMappingShard> shards = new LinkedHashMap<>();
+
+    private ShardedUrlMappingStore store(List<String> nodes, List<String> previousNodes) {
+        Map<String, UrlMappingShard> nodeShards = new LinkedHashMap<>();
+        for (String node : nodes) {
+            nodeShards.put(node, shards.computeIfAbsent(node, name -> new InMemoryUrlMappingShard()));
+        }
+        for (String node : previousNodes) {
+            nodeShards.put(node, shards.computeIfAbsent(node, name -> new InMemoryUrlMappingShard()));
+        }
+        return new ShardedUrlMappingStore(nodeShards, nodes, previousNodes, 160);
+    }
+
+    /**
+     * The test case tests that mappings land on the node of their key and that a batch lookup
+     * costs one round trip per node
+     * 
+     */
+    @Test
+    public void testBatchIsPipelinedPerNode() {
+        ShardedUrlMappingStore store = store(NODES, List.of());
+        List<UrlClaim> claims = new ArrayList<>();
+        List<String> shortUrlKeys = new ArrayList<>();
+        for (long id = FIRST_ID; id < FIRST_ID + 300; id++) {
+            String shortUrlKey = Base62.encode(id);
+            shortUrlKeys.add(shortUrlKey);
+            claims.add(new UrlClaim("https://www.example.com/" + id, null, List.of(shortUrlKey)));
+        }
+
+        Assertions.assertEquals(shortUrlKeys, store.claimAll(claims));
+        shards.forEach((node, shard) -> {
+            Assertions.assertFalse(shard.getStoredMappings().isEmpty());
+            shard.getStoredMappings().keySet().forEach(key -> Assertions.assertEquals(node, store.getRing().nodeOf(key)));
+            Assertions.assertEquals(1, shard.getRoundTrips());
+        });
+
+        List<String> longUrls = store.findLongUrls(shortUrlKeys);
+        for (int i = 0; i < claims.size(); i++) {
+            Assertions.assertEquals(claims.get(i).longUrl(), longUrls.get(i));
+        }
+        shards.values().forEach(shard -> Assertions.assertEquals(2, shard.getRoundTrips()));
+        logger.info("Batch of {} claims and lookups sent as one pipeline per node", claims.size());
+    }
+
+    /**
+     * The test case tests a claim whose URL digest and candidate keys live on different nodes:
+     * taken candidates are skipped, and the URL gets its key back when shortened again
+     * 
+     */
+    @Test
+    public void testClaimAcrossNodes() {
+        ShardedUrlMappingStore store = store(NODES, List.of());
+        List<String> candidateKeys = candidatesOnDifferentNodes(store.getRing());
+        String urlDigest = "digest";
+
+        // The first candidate is taken by another URL
+        Assertions.assertEquals(candidateKeys.get(0),
+                store.claim(new UrlClaim("https://www.example.com/other", null, List.of(candidateKeys.get(0)))));
+
+        UrlClaim claim = new UrlClaim("https://www.example.com", urlDigest, candidateKeys);
+        Assertions.assertEquals(candidateKeys.get(1), store.claim(claim));
+        Assertions.assertEquals(candidateKeys.get(1), store.claim(claim));
+        Assertions.assertEquals("https://www.example.com", store.findLongUrl(candidateKeys.get(1)));
+        Assertions.assertEquals(candidateKeys.get(1),
+                shards.get(store.getRing().nodeOf(urlDigest)).findKeysForDigests(List.of(urlDigest)).get(0));
+
+        // Every candidate taken
+        Assertions.assertNull(store.claim(new UrlClaim("https://www.example.com/third", "digest3", candidateKeys.subList(0, 2))));
+        logger.info("Claim across nodes resolved to {}", candidateKeys.get(1));
+    }
+
+    /**
+     * The test case tests that while keys are being moved to a new node, lookups find keys still
+     * on their old node and claims do not take them for another URL
+     * 
+     */
+    @Test
+    public void testLookupsWhileMoving() {
+        ShardedUrlMappingStore before = store(NODES, List.of());
+        List<String> shortUrlKeys = new ArrayList<>();
+        for (long id = FIRST_ID; id < FIRST_ID + 300; id++) {
+            shortUrlKeys.add(Base62.encode(id));
+            before.claim(new UrlClaim("https://www.example.com/" + id, null, List.of(Base62.encode(id))));
+        }
+
+        List<String> grownNodes = new ArrayList<>(NODES);
+        grownNodes.add("redis-d:6379");
+        ShardedUrlMappingStore moving = store(grownNodes, NODES);
+        String movedKey = shortUrlKeys.stream()
+                .filter(key -> moving.getRing().nodeOf(key).equals("redis-d:6379"))
+                .findFirst().orElseThrow();
+        Assertions.assertTrue(shards.get("redis-d:6379").getStoredMappings().isEmpty());
+
+        String movedUrl = "https://www.example.com/" + (FIRST_ID + shortUrlKeys.indexOf(movedKey));
+        Assertions.assertEquals(movedUrl, moving.findLongUrl(movedKey));
+        List<String> longUrls = moving.findLongUrls(shortUrlKeys);
+        for (int i = 0; i < shortUrlKeys.size(); i++) {
+            Assertions.assertEquals("https://www.example.com/" + (FIRST_ID + i), longUrls.get(i));
+        }
+
+        Assertions.assertNull(moving.claim(new UrlClaim("https://www.example.com/other", null, List.of(movedKey))));
+        Assertions.assertEquals(movedKey, moving.claim(new UrlClaim(movedUrl, null, List.of(movedKey))));
+
+        Set<String> scanned = new HashSet<>();
+        moving.scanKeys(scanned::add);
+        Assertions.assertEquals(new HashSet<>(shortUrlKeys), scanned);
+        logger.info("Key {} found on its previous node while moving", movedKey);
+    }
+
+    /**
+     * Two keys on different nodes, both different from the node of the "digest" digest
+     */
+    private static List<String> candidatesOnDifferentNodes(ShardRing ring) {
+        int digestShard = ring.shardOf("digest");
+        List<String> candidateKeys = new ArrayList<>();
+        Set<Integer> usedShards = new HashSet<>(Set.of(digestShard));
+        for (long id = FIRST_ID; candidateKeys.size() < 2; id++) {
+            String shortUrlKey = Base62.encode(id);
+            if (usedShards.add(ring.shardOf(shortUrlKey))) {
+                candidateKeys.add(shortUrlKey);
+            }
+        }
+        return candidateKeys;
+    }
+}
@@ -0,0 +1,124 @@
+package com.ik.urlshortener.resilience;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In this Test we will check that AdmissionFilter rate limits shortens per client and keeps
+ * redirects and shortens within their bulkheads, without calling the service for rejected requests
+ *
+ */
+
+public class AdmissionFilterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionFilterTest.class);
+
+    private final AtomicInteger served = new AtomicInteger();
+
+    private AdmissionFilter filter(int redirectMaxConcurrent, int shortenMaxConcurrent, RateLimiter rateLimiter) {
+        AdmissionFilter filter = new AdmissionFilter(redirectMaxConcurrent, shortenMaxConcurrent, "X-API-Key", new String[] {"partner"});
+        ReflectionTestUtils.setField(filter, "rateLimiter", rateLimiter);
+        return filter;
+    }
+
+    private MockHttpServletResponse perform(AdmissionFilter filter, MockHttpServletRequest request, HttpServlet servlet) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        return response;
+    }
+
+    private HttpServlet countingServlet() {
+        return new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                served.incrementAndGet();
+            }
+        };
+    }
+
+    private static MockHttpServletRequest shorten(String remoteAddr, String apiKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/shorten");
+        request.setRemoteAddr(remoteAddr);
+        if (apiKey != null) {
+            request.addHeader("X-API-Key", apiKey);
+        }
+        return request;
+    }
+
+    /**
+     * The test case tests that a client past its burst gets a 429 with Retry-After, while other
+     * clients and redirects go through
+     *
+     */
+    @Test
+    public void testRateLimit() throws Exception {
+        AdmissionFilter filter = filter(0, 0, new RateLimiter(true, RateLimiter.Scope.LOCAL, 0.5, 2, 1000));
+
+        Assertions.assertEquals(200, perform(filter, shorten("10.0.0.1", null), countingServlet()).getStatus());
+        Assertions.assertEquals(200, perform(filter, shorten("10.0.0.1", null), countingServlet()).getStatus());
+        MockHttpServletResponse rejected = perform(filter, shorten("10.0.0.1", null), countingServlet());
+        Assertions.assertEquals(429, rejected.getStatus());
+        Assertions.assertEquals("2", rejected.getHeader("Retry-After"));
+
+        // A configured key from the same address, and redirects, are not limited
+        MockHttpServletRequest partner = shorten("10.0.0.1", "partner");
+        Assertions.assertEquals(200, perform(filter, partner, countingServlet()).getStatus());
+        Assertions.assertEquals("key:partner", partner.getAttribute(AdmissionFilter.CLIENT_ATTRIBUTE));
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(200, perform(filter, new MockHttpServletRequest("GET", "/e149be"), countingServlet()).getStatus());
+        }
+        // A key that is not configured counts against the address
+        Assertions.assertEquals(429, perform(filter, shorten("10.0.0.1", "made-up"), countingServlet()).getStatus());
+        Assertions.assertEquals(8, served.get());
+        logger.info("Rate limit test passed");
+    }
+
+    /**
+     * The test case tests that a request finding its bulkhead full gets a 503, and that the
+     * other bulkhead still has room
+     *
+     */
+    @Test
+    public void testBulkheads() throws Exception {
+        AdmissionFilter filter = filter(1, 1, new RateLimiter(false, RateLimiter.Scope.LOCAL, 1, 1, 1000));
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[2];
+
+        // While a shorten is in progress, a second shorten is turned away and a redirect is not
+        MockHttpServletResponse response = perform(filter, shorten("10.0.0.1", null), new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                try {
+                    nested[0] = perform(filter, shorten("10.0.0.2", null), countingServlet());
+                    nested[1] = perform(filter, new MockHttpServletRequest("GET", "/e149be"), countingServlet());
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+        });
+
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals(503, nested[0].getStatus());
+        Assertions.assertEquals("1", nested[0].getHeader("Retry-After"));
+        Assertions.assertEquals(200, nested[1].getStatus());
+        Assertions.assertEquals(1, served.get());
+        Assertions.assertEquals(1, filter.getShortenBulkhead().getRejected());
+        Assertions.assertEquals(0, filter.getShortenBulkhead().getActive());
+
+        // Other requests are not counted against either bulkhead
+        Assertions.assertEquals(200, perform(filter, new MockHttpServletRequest("GET", "/cache/stats"), countingServlet()).getStatus());
+        logger.info("Bulkhead test passed");
+    }
+}
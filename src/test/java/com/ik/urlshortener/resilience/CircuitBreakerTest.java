@@ -0,0 +1,113 @@
+package com.ik.urlshortener.resilience;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * In this Test we will check when CircuitBreaker opens, rejects, probes and closes again
+ *
+ */
+
+public class CircuitBreakerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerTest.class);
+
+    /**
+     * The test case tests that the circuit opens once half of a full window failed and then rejects calls
+     *
+     */
+    @Test
+    public void testOpensOnFailureRate() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(true, 4, 0.5, Duration.ofSeconds(1), Duration.ofMinutes(1));
+
+        Assertions.assertEquals("ok", circuitBreaker.call(() -> "ok"));
+        fail(circuitBreaker);
+        Assertions.assertEquals("ok", circuitBreaker.call(() -> "ok"));
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        fail(circuitBreaker);
+
+        // Verify: 2 of the last 4 calls failed, so the next call never runs
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assertions.assertThrows(CircuitBreaker.OpenException.class, () -> circuitBreaker.call(() -> Assertions.fail("Called while open")));
+        logger.info("Failure rate test passed");
+    }
+
+    /**
+     * The test case tests that errors that are not Redis failures do not count against the circuit
+     *
+     */
+    @Test
+    public void testIgnoresApplicationErrors() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(true, 2, 0.5, Duration.ofSeconds(1), Duration.ofMinutes(1));
+
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> circuitBreaker.call(() -> {
+                throw new IllegalArgumentException("Invalid URL");
+            }));
+        }
+
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        logger.info("Application error test passed");
+    }
+
+    /**
+     * The test case tests that slow calls open the circuit and that a successful probe closes it after the open duration
+     *
+     */
+    @Test
+    public void testSlowCallsAndProbe() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(true, 2, 1.0, Duration.ofMillis(5), Duration.ofMillis(50));
+
+        for (int i = 0; i < 2; i++) {
+            circuitBreaker.call(() -> {
+                sleep(20);
+                return "slow";
+            });
+        }
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // A failed probe reopens the circuit, a successful one closes it
+        sleep(80);
+        fail(circuitBreaker);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assertions.assertThrows(CircuitBreaker.OpenException.class, () -> circuitBreaker.call(() -> "rejected"));
+        sleep(80);
+        Assertions.assertEquals("probe", circuitBreaker.call(() -> "probe"));
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        logger.info("Slow call and probe test passed");
+    }
+
+    /**
+     * The test case tests that a disabled circuit never opens
+     *
+     */
+    @Test
+    public void testDisabled() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(false, 1, 0.5, Duration.ofSeconds(1), Duration.ofMinutes(1));
+
+        fail(circuitBreaker);
+        fail(circuitBreaker);
+
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assertions.assertEquals("ok", circuitBreaker.call(() -> "ok"));
+    }
+
+    private static void fail(CircuitBreaker circuitBreaker) {
+        Assertions.assertThrows(QueryTimeoutException.class, () -> circuitBreaker.call(() -> {
+            throw new QueryTimeoutException("Redis command timed out");
+        }));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
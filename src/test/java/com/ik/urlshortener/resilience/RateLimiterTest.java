@@ -0,0 +1,149 @@
+package com.ik.urlshortener.resilience;
+
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.RedisTestServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In this Test we will check that RateLimiter admits a burst per client, refills at its rate,
+ * and shares its buckets through Redis when asked to
+ *
+ */
+
+public class RateLimiterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiterTest.class);
+
+    /**
+     * The test case tests the burst, the wait until the next token and the refill of a client's bucket
+     *
+     */
+    @Test
+    public void testBurstAndRefill() {
+        RateLimiter rateLimiter = new RateLimiter(true, RateLimiter.Scope.LOCAL, 10, 3, 1000);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(0, rateLimiter.tryAcquireLocally("ip:10.0.0.1", now));
+        }
+        // Empty: the next token comes in 100 ms, one emission interval
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), rateLimiter.tryAcquireLocally("ip:10.0.0.1", now));
+        Assertions.assertEquals(0, rateLimiter.tryAcquireLocally("ip:10.0.0.2", now));
+
+        Assertions.assertEquals(0, rateLimiter.tryAcquireLocally("ip:10.0.0.1", now + TimeUnit.MILLISECONDS.toNanos(100)));
+        Assertions.assertTrue(rateLimiter.tryAcquireLocally("ip:10.0.0.1", now + TimeUnit.MILLISECONDS.toNanos(100)) > 0);
+
+        // Full again after a long pause, but not fuller than the burst
+        long later = now + TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(0, rateLimiter.tryAcquireLocally("ip:10.0.0.1", later));
+        }
+        Assertions.assertTrue(rateLimiter.tryAcquireLocally("ip:10.0.0.1", later) > 0);
+        logger.info("Burst and refill test passed");
+    }
+
+    /**
+     * The test case tests that a disabled limiter admits everything
+     *
+     */
+    @Test
+    public void testDisabled() {
+        RateLimiter rateLimiter = new RateLimiter(false, RateLimiter.Scope.LOCAL, 1, 1, 1000);
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(0, rateLimiter.tryAcquire("ip:10.0.0.1"));
+        }
+        logger.info("Disabled rate limit test passed");
+    }
+
+    /**
+     * The test case tests that the redis scope runs the script and falls back to the local
+     * buckets while Redis cannot be reached
+     *
+     */
+    @Test
+    public void testRedisScope() {
+        StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+        RateLimiter rateLimiter = new RateLimiter(true, RateLimiter.Scope.REDIS, 10, 1, 1000);
+        ReflectionTestUtils.setField(rateLimiter, "redisTemplate", redisTemplate);
+
+        Mockito.when(redisTemplate.execute(ArgumentMatchers.eq(RateLimiter.RATE_LIMIT_SCRIPT), ArgumentMatchers.anyList(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(0L, 25_000L);
+        Assertions.assertEquals(0, rateLimiter.tryAcquire("key:partner"));
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(25), rateLimiter.tryAcquire("key:partner"));
+        Mockito.verify(redisTemplate, Mockito.times(2)).execute(RateLimiter.RATE_LIMIT_SCRIPT, List.of("rl:key:partner"), "100000", "1");
+
+        // Redis is down: one token locally, then empty
+        Mockito.when(redisTemplate.execute(ArgumentMatchers.eq(RateLimiter.RATE_LIMIT_SCRIPT), ArgumentMatchers.anyList(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"));
+        Assertions.assertEquals(0, rateLimiter.tryAcquire("key:partner"));
+        Assertions.assertTrue(rateLimiter.tryAcquire("key:partner") > 0);
+        logger.info("Redis scope test passed");
+    }
+
+    /**
+     * The test case tests the rate limit script (rate-limit.lua) against a real Redis: the burst,
+     * the wait until the next token, per client buckets and the expiry of a bucket once it would
+     * be full again. It is skipped when no Redis is reachable
+     *
+     */
+    @Test
+    public void testRateLimitScript() throws InterruptedException {
+        try (RedisTestServer server = RedisTestServer.connect()) {
+            RateLimiter rateLimiter = new RateLimiter(true, RateLimiter.Scope.REDIS, 10, 3, 1000);
+            ReflectionTestUtils.setField(rateLimiter, "redisTemplate", server.getRedisTemplate());
+
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertEquals(0, rateLimiter.tryAcquire("key:partner"));
+            }
+            long waitNanos = rateLimiter.tryAcquire("key:partner");
+            Assertions.assertTrue(waitNanos > 0 && waitNanos <= TimeUnit.MILLISECONDS.toNanos(100), "Unexpected wait of " + waitNanos + " ns");
+            Assertions.assertEquals(0, rateLimiter.tryAcquire("key:other"));
+
+            // Kept no longer than it takes the bucket to fill up, 300 ms
+            long ttl = server.getRedisTemplate().getExpire("rl:key:partner", TimeUnit.MILLISECONDS);
+            Assertions.assertTrue(ttl > 0 && ttl <= 300, "Unexpected expiry in " + ttl + " ms");
+
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 20);
+            Assertions.assertEquals(0, rateLimiter.tryAcquire("key:partner"));
+            Assertions.assertTrue(rateLimiter.tryAcquire("key:partner") > 0);
+            logger.info("Rate limit script test passed");
+        }
+    }
+
+    /**
+     * The test case tests that the script runs behind the circuit breaker, so that once the
+     * circuit opens the local buckets decide without calling Redis
+     *
+     */
+    @Test
+    public void testRedisScopeBehindCircuitBreaker() {
+        StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+        RateLimiter rateLimiter = new RateLimiter(true, RateLimiter.Scope.REDIS, 10, 5, 1000);
+        ReflectionTestUtils.setField(rateLimiter, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(rateLimiter, "circuitBreaker", new CircuitBreaker(true, 2, 0.5, Duration.ofSeconds(1), Duration.ofMinutes(1)));
+
+        Mockito.when(redisTemplate.execute(ArgumentMatchers.eq(RateLimiter.RATE_LIMIT_SCRIPT), ArgumentMatchers.anyList(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenThrow(new RedisConnectionFailureException("Connection refused"));
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(0, rateLimiter.tryAcquire("key:partner"));
+        }
+        Assertions.assertTrue(rateLimiter.tryAcquire("key:partner") > 0);
+
+        // Two failures opened the circuit, and the later calls did not reach Redis
+        Mockito.verify(redisTemplate, Mockito.times(2)).execute(ArgumentMatchers.eq(RateLimiter.RATE_LIMIT_SCRIPT), ArgumentMatchers.anyList(), ArgumentMatchers.any(), ArgumentMatchers.any());
+        logger.info("Circuit breaker test passed");
+    }
+}
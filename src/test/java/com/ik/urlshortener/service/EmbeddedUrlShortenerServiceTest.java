@@ -0,0 +1,73 @@
+package com.ik.urlshortener.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.repository.EmbeddedUrlMappingStore;
+import com.ik.urlshortener.repository.UrlClaim;
+import com.ik.urlshortener.repository.UrlMappingStore;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In this Test we will run every UrlShortenerService test against the embedded storage engine,
+ * with its log in a temporary directory, and check how it sweeps expired mappings
+ * 
+ */
+
+public class EmbeddedUrlShortenerServiceTest extends UrlShortenerServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedUrlShortenerServiceTest.class);
+
+    @TempDir
+    private Path directory;
+
+    private EmbeddedUrlMappingStore embeddedStore;
+
+    @Override
+    protected UrlMappingStore createStore() {
+        embeddedStore = new EmbeddedUrlMappingStore(directory, false, 0.5, 100, 600);
+        return embeddedStore;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        embeddedStore.close();
+    }
+
+    /**
+     * The test case tests that the sweeper removes expired mappings from the index, and that a
+     * mapping keeps its expiry across a reopen
+     * 
+     */
+    @Test
+    public void testSweepExpired() throws InterruptedException {
+        long expiresAt = System.currentTimeMillis() + 300;
+        embeddedStore.claim(new UrlClaim("https://www.example.com/a", null, List.of("3f94b0"), expiresAt));
+        embeddedStore.claim(new UrlClaim("https://www.example.com/b", null, List.of("e149be"), expiresAt + 60_000));
+        embeddedStore.claim(new UrlClaim("https://www.example.com/c", null, List.of("7eebb0")));
+        Assertions.assertEquals(2, embeddedStore.getPendingExpiries());
+
+        // Reopening schedules the expiries again from the log
+        embeddedStore.close();
+        embeddedStore = new EmbeddedUrlMappingStore(directory, false, 0.5, 100, 600);
+        Assertions.assertEquals(2, embeddedStore.getPendingExpiries());
+        Assertions.assertEquals(expiresAt + 60_000, embeddedStore.findStoredUrl("e149be").expiresAt());
+
+        Thread.sleep(Math.max(0, expiresAt - System.currentTimeMillis()) + 200);
+        embeddedStore.sweepExpired();
+
+        List<String> storedKeys = new ArrayList<>();
+        embeddedStore.scanKeys(storedKeys::add);
+        Assertions.assertEquals(List.of("7eebb0", "e149be"), storedKeys.stream().sorted().toList());
+        Assertions.assertEquals(1, embeddedStore.getPendingExpiries());
+        Assertions.assertNull(embeddedStore.findStoredUrl("3f94b0"));
+        logger.info("Sweep test passed. Keys left: {}", storedKeys);
+    }
+}
@@ -0,0 +1,112 @@
+package com.ik.urlshortener.service;
+
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ik.urlshortener.cache.KnownKeyFilter;
+import com.ik.urlshortener.cache.RedirectCache;
+import com.ik.urlshortener.keygen.HashKeyGenerator;
+import com.ik.urlshortener.metrics.UrlShortenerMetrics;
+import com.ik.urlshortener.repository.ReactiveRedisUrlMappingStore;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+/**
+ * In this Test we will mock the ReactiveRedisUrlMappingStore and test the business logic in
+ * ReactiveUrlShortenerService, including the backpressure towards Redis
+ *
+ */
+
+public class ReactiveUrlShortenerServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUrlShortenerServiceTest.class);
+
+    private ReactiveRedisUrlMappingStore urlMappingStore;
+
+    private ReactiveUrlShortenerService urlShortenerService;
+
+    @BeforeEach
+    public void setUp() {
+        urlMappingStore = Mockito.mock(ReactiveRedisUrlMappingStore.class);
+        urlShortenerService = new ReactiveUrlShortenerService(urlMappingStore,
+                new RedirectCache(1 << 20, Duration.ofSeconds(30)),
+                new HashKeyGenerator(HashKeyGenerator.KeyEncoding.HEX, 6),
+                new UrlShortenerMetrics(new SimpleMeterRegistry(), "hash"), new KnownKeyFilter(true, 1000, 0.01),
+                1, Duration.ofMillis(100));
+        logger.info("Test setup complete. ReactiveRedisUrlMappingStore and ReactiveUrlShortenerService are initialized.");
+    }
+
+    /**
+     * The test case tests the logic for shortening the URL, and running out of candidate keys
+     *
+     */
+    @Test
+    public void testShortenUrl() {
+        Mockito.when(urlMappingStore.claim(ArgumentMatchers.any(UrlClaim.class))).thenReturn(Mono.just("e149be"));
+        StepVerifier.create(urlShortenerService.shortenUrl("https://www.example.com"))
+                .expectNext("e149be")
+                .verifyComplete();
+
+        Mockito.when(urlMappingStore.claim(ArgumentMatchers.any(UrlClaim.class))).thenReturn(Mono.empty());
+        StepVerifier.create(urlShortenerService.shortenUrl("https://www.example.com"))
+                .verifyError(IllegalStateException.class);
+        logger.info("Reactive shortening test passed.");
+    }
+
+    /**
+     * The test case tests that found and unknown keys are both served from the cache afterwards
+     *
+     */
+    @Test
+    public void testGetLongUrlCached() {
+        Mockito.when(urlMappingStore.findStoredUrl("e149be")).thenReturn(Mono.just(StoredUrl.of("https://www.example.com")));
+        Mockito.when(urlMappingStore.findStoredUrl("invalidKey")).thenReturn(Mono.empty());
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(urlShortenerService.getLongUrl("e149be"))
+                    .expectNext("https://www.example.com")
+                    .verifyComplete();
+            StepVerifier.create(urlShortenerService.getLongUrl("invalidKey"))
+                    .verifyComplete();
+        }
+
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrl("e149be");
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrl("invalidKey");
+        logger.info("Reactive cached lookup test passed.");
+    }
+
+    /**
+     * The test case tests that lookups beyond the in-flight limit fail fast, and that a slow
+     * Redis call is given up after the timeout
+     *
+     */
+    @Test
+    public void testBackpressure() {
+        Mockito.when(urlMappingStore.findStoredUrl(ArgumentMatchers.anyString())).thenReturn(Mono.never());
+
+        // The first lookup holds the only in-flight slot until it times out
+        StepVerifier.create(urlShortenerService.getLongUrl("slowKey"))
+                .then(() -> StepVerifier.create(urlShortenerService.getLongUrl("otherKey"))
+                        .verifyError(ReactiveUrlShortenerService.OverloadedException.class))
+                .verifyError(ReactiveUrlShortenerService.OverloadedException.class);
+
+        // The slot is released again and nothing was cached for the slow key
+        Mockito.when(urlMappingStore.findStoredUrl("slowKey")).thenReturn(Mono.just(StoredUrl.of("https://www.example.com")));
+        StepVerifier.create(urlShortenerService.getLongUrl("slowKey"))
+                .expectNext("https://www.example.com")
+                .verifyComplete();
+        logger.info("Backpressure test passed.");
+    }
+}
@@ -0,0 +1,30 @@
+package com.ik.urlshortener.service;
+
+import com.ik.urlshortener.repository.InMemoryUrlMappingShard;
+import com.ik.urlshortener.repository.ShardedUrlMappingStore;
+import com.ik.urlshortener.repository.UrlMappingShard;
+import com.ik.urlshortener.repository.UrlMappingStore;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In this Test we will run every UrlShortenerService test against a store sharded over three
+ * in-process stand-ins for Redis nodes
+ * 
+ */
+
+public class ShardedUrlShortenerServiceTest extends UrlShortenerServiceTest {
+
+    private static final List<String> NODES = List.of("redis-a:6379", "redis-b:6379", "redis-c:6379");
+
+    @Override
+    protected UrlMappingStore createStore() {
+        Map<String, UrlMappingShard> shards = new LinkedHashMap<>();
+        for (String node : NODES) {
+            shards.put(node, new InMemoryUrlMappingShard());
+        }
+        return new ShardedUrlMappingStore(shards, NODES, List.of(), 160);
+    }
+}
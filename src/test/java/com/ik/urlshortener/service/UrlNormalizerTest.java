@@ -0,0 +1,60 @@
+package com.ik.urlshortener.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In this Test we will check which spellings of a URL UrlNormalizer treats as the same URL
+ *
+ */
+
+public class UrlNormalizerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(UrlNormalizerTest.class);
+
+    /**
+     * The test case tests that scheme and host case, default ports and trailing slashes are normalized away
+     *
+     */
+    @Test
+    public void testEquivalentSpellings() {
+        String expected = "https://www.example.com/path?q=A#Top";
+
+        Assertions.assertEquals(expected, UrlNormalizer.normalize("https://www.example.com/path?q=A#Top"));
+        Assertions.assertEquals(expected, UrlNormalizer.normalize("HTTPS://WWW.Example.COM/path?q=A#Top"));
+        Assertions.assertEquals(expected, UrlNormalizer.normalize("https://www.example.com:443/path/?q=A#Top"));
+        Assertions.assertEquals(expected, UrlNormalizer.normalize("  https://www.example.com/path?q=A#Top "));
+        Assertions.assertEquals("http://www.example.com", UrlNormalizer.normalize("http://www.example.com:80/"));
+        Assertions.assertEquals(UrlNormalizer.digest(expected),
+                UrlNormalizer.digest(UrlNormalizer.normalize("HTTPS://www.example.com:443/path/?q=A#Top")));
+        logger.info("Equivalent spellings test passed.");
+    }
+
+    /**
+     * The test case tests that parts which can change the meaning of the URL are kept as they are
+     *
+     */
+    @Test
+    public void testSignificantDifferencesKept() {
+        Assertions.assertEquals("https://www.example.com:8443/Path", UrlNormalizer.normalize("https://www.example.com:8443/Path"));
+        Assertions.assertEquals("http://www.example.com:443", UrlNormalizer.normalize("http://www.example.com:443"));
+        Assertions.assertEquals("https://www.example.com/a%2Fb?q=%20", UrlNormalizer.normalize("https://www.example.com/a%2Fb?q=%20"));
+        Assertions.assertNotEquals(UrlNormalizer.digest("https://www.example.com/path"),
+                UrlNormalizer.digest("https://www.example.com/Path"));
+        logger.info("Significant differences test passed.");
+    }
+
+    /**
+     * The test case tests that strings which are not hierarchical URLs are only trimmed
+     *
+     */
+    @Test
+    public void testUnparsableUrls() {
+        Assertions.assertEquals("mailto:Someone@Example.com", UrlNormalizer.normalize(" mailto:Someone@Example.com"));
+        Assertions.assertEquals("not a url", UrlNormalizer.normalize("not a url"));
+        Assertions.assertEquals(32, UrlNormalizer.digest("not a url").length());
+        logger.info("Unparsable URLs test passed.");
+    }
+}
@@ -5,23 +5,44 @@ import org.mockito.Mockito;
 
 import org.junit.jupiter.api.Assertions;
 
-import java.security.NoSuchAlgorithmException;
-import java.util.Optional;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
-import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
-
-import com.ik.urlshortener.model.UrlMapping;
-import com.ik.urlshortener.repository.UrlMappingRepository;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ik.urlshortener.cache.KnownKeyFilter;
+import com.ik.urlshortener.cache.Redirect;
+import com.ik.urlshortener.cache.RedirectCache;
+import com.ik.urlshortener.keygen.HashKeyGenerator;
+import com.ik.urlshortener.keygen.KeyGenerator;
+import com.ik.urlshortener.metrics.UrlShortenerMetrics;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+import com.ik.urlshortener.resilience.CircuitBreaker;
+import com.ik.urlshortener.repository.UrlMappingStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 /**
- * In this Test we will mock the UrlMappingRepository and test the business logic in UrlShortenerService
+ * In this Test we will test the business logic in UrlShortenerService against a spied UrlMappingStore.
+ * Here the store emulates the Redis claim script over in-memory maps; subclasses run every test
+ * against another storage backend
  * 
  */
 
@@ -30,8 +51,24 @@ public class UrlShortenerServiceTest {
 
     private static final Logger logger = LoggerFactory.getLogger(UrlShortenerServiceTest.class);
 
-    @Mock
-    private UrlMappingRepository urlMappingRepository;
+    private UrlMappingStore urlMappingStore;
+
+    @Spy
+    private RedirectCache redirectCache = new RedirectCache(1 << 20, Duration.ofSeconds(30));
+
+    @Spy
+    private KeyGenerator keyGenerator = new HashKeyGenerator(HashKeyGenerator.KeyEncoding.HEX, 6);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private UrlShortenerMetrics metrics = new UrlShortenerMetrics(meterRegistry, "hash");
+
+    @Spy
+    private KnownKeyFilter keyFilter = new KnownKeyFilter(true, 1000, 0.01);
+
+    @Spy
+    private CircuitBreaker circuitBreaker = new CircuitBreaker(true, 10, 0.5, Duration.ofSeconds(1), Duration.ofSeconds(5));
 
     @InjectMocks
     private UrlShortenerService urlShortenerService;
@@ -39,7 +76,26 @@ public class UrlShortenerServiceTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        logger.info("Test setup complete. UrlMappingRepository and UrlShortenerService are initialized.");
+        urlMappingStore = Mockito.spy(createStore());
+        ReflectionTestUtils.setField(urlShortenerService, "urlMappingStore", urlMappingStore);
+        logger.info("Test setup complete. UrlMappingStore and UrlShortenerService are initialized.");
+    }
+
+    /**
+     * The storage backend the service runs against
+     * 
+     */
+    protected UrlMappingStore createStore() {
+        return new EmulatedRedisStore();
+    }
+
+    /**
+     * Stores a mapping before the test, without counting it as an invocation of the store
+     * 
+     */
+    private void givenMapping(String shortUrlKey, String longUrl) {
+        Assertions.assertEquals(shortUrlKey, urlMappingStore.claim(new UrlClaim(longUrl, null, List.of(shortUrlKey))));
+        Mockito.clearInvocations(urlMappingStore);
     }
 
     /**
@@ -47,23 +103,21 @@ public class UrlShortenerServiceTest {
      * 
      */
     @Test
-    public void testShortenUrl() throws NoSuchAlgorithmException {
+    public void testShortenUrl() {
         String longUrl = "https://www.example.com";
         String expectedShortUrlKey = "e149be";
 
         logger.info("Starting test for URL shortening with longUrl: {}", longUrl);
 
-        // Mocking repository save
-        Mockito.when(urlMappingRepository.save(ArgumentMatchers.any(UrlMapping.class))).thenReturn(new UrlMapping());
-
-        // Calling the service method
+        // Calling the service method against an empty store
         String actualShortUrlKey = urlShortenerService.shortenUrl(longUrl);
 
         // Verify
         Assertions.assertEquals(expectedShortUrlKey, actualShortUrlKey);
+        Assertions.assertEquals(longUrl, urlMappingStore.findLongUrl(expectedShortUrlKey));
         logger.info("Shortened URL test passed. Expected short URL key: {}, Actual short URL key: {}", expectedShortUrlKey, actualShortUrlKey);
 
-        Mockito.verify(urlMappingRepository, Mockito.times(1)).save(ArgumentMatchers.any(UrlMapping.class));
+        Mockito.verify(urlMappingStore, Mockito.times(1)).claim(ArgumentMatchers.argThat(claim -> claim.longUrl().equals(longUrl)));
     }
 
     /**
@@ -71,32 +125,46 @@ public class UrlShortenerServiceTest {
      * 
      */
     @Test
-    public void testCollisionWhileShorteningURL() throws NoSuchAlgorithmException {
+    public void testCollisionWhileShorteningURL() {
         String shortUrlKey = "3f94b0";
         String longUrl = "https://www.example.com";
 
         logger.info("Starting test for URL shortening with collision. Existing short URL key: {}", shortUrlKey);
 
-        // Mocking repository find
-        UrlMapping urlMapping = new UrlMapping();
-        urlMapping.setId(shortUrlKey);
-        urlMapping.setLongUrl(longUrl);
-        Mockito.when(urlMappingRepository.findById(shortUrlKey)).thenReturn(Optional.of(urlMapping));
+        // A store where the first candidate is taken
+        givenMapping(shortUrlKey, longUrl);
 
         String longUrlWithCollision = "https://www.example.com/abc";
         String expectedShortUrlKeyAfterCollision = "7eebb0";
 
-        // Mocking repository save
-        Mockito.when(urlMappingRepository.save(ArgumentMatchers.any(UrlMapping.class))).thenReturn(new UrlMapping());
-
         // Calling the service method
         String actualShortUrlKey = urlShortenerService.shortenUrl(longUrlWithCollision);
 
         // Verify
         Assertions.assertEquals(expectedShortUrlKeyAfterCollision, actualShortUrlKey);
+        Assertions.assertEquals(longUrl, urlMappingStore.findLongUrl(shortUrlKey));
         logger.info("Collision handling test passed. Expected short URL key after collision: {}, Actual short URL key: {}", expectedShortUrlKeyAfterCollision, actualShortUrlKey);
 
-        Mockito.verify(urlMappingRepository, Mockito.times(1)).save(ArgumentMatchers.any(UrlMapping.class));
+        // A single call to the store covers all the probing
+        Mockito.verify(urlMappingStore, Mockito.times(1)).claim(ArgumentMatchers.argThat(claim -> claim.longUrl().equals(longUrlWithCollision)));
+    }
+
+    /**
+     * The test case tests the logic when every candidate key is taken by a different URL
+     * 
+     */
+    @Test
+    public void testShortenUrlAttemptsExhausted() {
+        String longUrl = "https://www.example.com";
+
+        logger.info("Starting test for URL shortening with all candidate keys taken. Long URL: {}", longUrl);
+
+        // Mocking the atomic claim finding no usable candidate
+        Mockito.doReturn(null).when(urlMappingStore).claim(ArgumentMatchers.any(UrlClaim.class));
+
+        // Calling the service method
+        Assertions.assertThrows(IllegalStateException.class, () -> urlShortenerService.shortenUrl(longUrl));
+        logger.info("Exhausted attempts test passed.");
     }
 
     /**
@@ -110,11 +178,7 @@ public class UrlShortenerServiceTest {
 
         logger.info("Starting test for converting short URL key to long URL. Short URL key: {}", shortUrlKey);
 
-        // Mocking repository find
-        UrlMapping urlMapping = new UrlMapping();
-        urlMapping.setId(shortUrlKey);
-        urlMapping.setLongUrl(longUrl);
-        Mockito.when(urlMappingRepository.findById(shortUrlKey)).thenReturn(Optional.of(urlMapping));
+        givenMapping(shortUrlKey, longUrl);
 
         // Calling the service method
         String actualLongUrl = urlShortenerService.getLongUrl(shortUrlKey);
@@ -123,7 +187,7 @@ public class UrlShortenerServiceTest {
         Assertions.assertEquals(longUrl, actualLongUrl);
         logger.info("URL retrieval test passed. Expected long URL: {}, Actual long URL: {}", longUrl, actualLongUrl);
 
-        Mockito.verify(urlMappingRepository, Mockito.times(1)).findById(shortUrlKey);
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrl(shortUrlKey);
     }
 
     /**
@@ -136,9 +200,6 @@ public class UrlShortenerServiceTest {
 
         logger.info("Starting test for retrieving long URL with invalid short URL key: {}", shortUrlKey);
 
-        // Mocking repository find with empty result
-        Mockito.when(urlMappingRepository.findById(shortUrlKey)).thenReturn(Optional.empty());
-
         // Calling the service method
         String actualLongUrl = urlShortenerService.getLongUrl(shortUrlKey);
 
@@ -146,6 +207,366 @@ public class UrlShortenerServiceTest {
         Assertions.assertNull(actualLongUrl);
         logger.info("URL retrieval test for invalid key passed. Expected null long URL.");
 
-        Mockito.verify(urlMappingRepository, Mockito.times(1)).findById(shortUrlKey);
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrl(shortUrlKey);
+    }
+
+    /**
+     * The test case tests that repeated lookups of the same key are served from the local cache
+     * 
+     */
+    @Test
+    public void testGetLongUrlServedFromCache() {
+        String shortUrlKey = "e149be";
+        String longUrl = "https://www.example.com";
+
+        logger.info("Starting test for cached long URL lookups. Short URL key: {}", shortUrlKey);
+
+        givenMapping(shortUrlKey, longUrl);
+
+        // Calling the service method twice
+        Assertions.assertEquals(longUrl, urlShortenerService.getLongUrl(shortUrlKey));
+        Assertions.assertEquals(longUrl, urlShortenerService.getLongUrl(shortUrlKey));
+        logger.info("Cached lookup test passed. Cache stats: {}", urlShortenerService.getCacheStats());
+
+        // Only the first lookup reaches the repository
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrl(shortUrlKey);
+        Assertions.assertEquals(1L, urlShortenerService.getCacheStats().get("hitCount"));
+    }
+
+    /**
+     * The test case tests that the redirect fast path finds only keys cached as hits, without
+     * counting anything for the others
+     * 
+     */
+    @Test
+    public void testGetCachedRedirect() {
+        String shortUrlKey = "e149be";
+        String longUrl = "https://www.example.com";
+
+        logger.info("Starting test for cached redirects. Short URL key: {}", shortUrlKey);
+
+        givenMapping(shortUrlKey, longUrl);
+
+        // Not cached yet, then cached as a miss and as a hit
+        Assertions.assertNull(urlShortenerService.getCachedRedirect(shortUrlKey));
+        Assertions.assertNull(urlShortenerService.getLongUrl("7eebb0"));
+        Assertions.assertNull(urlShortenerService.getCachedRedirect("7eebb0"));
+        Assertions.assertEquals(longUrl, urlShortenerService.getLongUrl(shortUrlKey));
+        Redirect redirect = urlShortenerService.getCachedRedirect(shortUrlKey);
+
+        // Verify: the location is ready, and only the two loads and the one hit are counted
+        Assertions.assertEquals(longUrl, redirect.location());
+        Assertions.assertEquals(1L, urlShortenerService.getCacheStats().get("hitCount"));
+        Assertions.assertEquals(2L, urlShortenerService.getCacheStats().get("missCount"));
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrl(shortUrlKey);
+        logger.info("Cached redirect test passed. Cache stats: {}", urlShortenerService.getCacheStats());
+    }
+
+    /**
+     * The test case tests that unknown keys are cached as misses and that shortening replaces the miss
+     * 
+     */
+    @Test
+    public void testNegativeCacheReplacedOnShorten() {
+        String longUrl = "https://www.example.com";
+        String shortUrlKey = "e149be";
+
+        logger.info("Starting test for negative caching. Short URL key: {}", shortUrlKey);
+
+        // Both lookups miss, but only the first one reaches the repository
+        Assertions.assertNull(urlShortenerService.getLongUrl(shortUrlKey));
+        Assertions.assertNull(urlShortenerService.getLongUrl(shortUrlKey));
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrl(shortUrlKey);
+
+        // Shortening the URL creates the key, after which the cached miss must not be served
+        Assertions.assertEquals(shortUrlKey, urlShortenerService.shortenUrl(longUrl));
+        Assertions.assertEquals(longUrl, urlShortenerService.getLongUrl(shortUrlKey));
+        logger.info("Negative caching test passed.");
+    }
+
+    /**
+     * The test case tests that a batch of URLs is claimed through a single call to the store
+     * 
+     */
+    @Test
+    public void testShortenUrls() {
+        List<String> longUrls = List.of("https://www.example.com", "https://www.example.com/abc");
+
+        logger.info("Starting test for batch URL shortening with longUrls: {}", longUrls);
+
+        // Mocking the batch claim, where every candidate of the second URL is taken
+        Mockito.doReturn(Arrays.asList("e149be", null)).when(urlMappingStore).claimAll(ArgumentMatchers.anyList());
+
+        // Calling the service method
+        List<String> shortUrlKeys = urlShortenerService.shortenUrls(longUrls);
+
+        // Verify
+        Assertions.assertEquals(Arrays.asList("e149be", null), shortUrlKeys);
+        logger.info("Batch shortening test passed. Short URL keys: {}", shortUrlKeys);
+
+        Mockito.verify(urlMappingStore, Mockito.times(1)).claimAll(ArgumentMatchers.argThat(claims ->
+                claims.stream().map(UrlClaim::longUrl).toList().equals(longUrls)));
+    }
+
+    /**
+     * The test case tests bulk lookups: cached keys are served locally, the rest in one store call
+     * 
+     */
+    @Test
+    public void testGetLongUrls() {
+        String cachedKey = "e149be";
+        String longUrl = "https://www.example.com";
+
+        logger.info("Starting test for bulk long URL lookups");
+
+        givenMapping(cachedKey, longUrl);
+        givenMapping("7eebb0", "https://www.example.com/abc");
+
+        // Warm the cache with one of the keys
+        urlShortenerService.getLongUrl(cachedKey);
+
+        // Calling the service method
+        Map<String, String> longUrls = urlShortenerService.getLongUrls(List.of("7eebb0", cachedKey, "invalidKey"));
+
+        // Verify: request order is kept and the miss is explicit
+        Assertions.assertEquals(List.of("7eebb0", cachedKey, "invalidKey"), List.copyOf(longUrls.keySet()));
+        Assertions.assertEquals("https://www.example.com/abc", longUrls.get("7eebb0"));
+        Assertions.assertEquals(longUrl, longUrls.get(cachedKey));
+        Assertions.assertTrue(longUrls.containsKey("invalidKey"));
+        Assertions.assertNull(longUrls.get("invalidKey"));
+        logger.info("Bulk lookup test passed: {}", longUrls);
+
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrls(List.of("7eebb0", "invalidKey"));
+
+        // All three keys are now cached, including the miss
+        urlShortenerService.getLongUrls(List.of("7eebb0", cachedKey, "invalidKey"));
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrls(ArgumentMatchers.anyList());
+    }
+
+    /**
+     * The test case tests that spellings of the same URL are shortened to the key created first,
+     * without probing candidate keys again
+     * 
+     */
+    @Test
+    public void testShortenUrlReturnsExistingKey() {
+        String longUrl = "https://www.example.com/path";
+        String respelledUrl = "HTTPS://WWW.Example.com:443/path/";
+
+        logger.info("Starting test for re-shortening a URL. Long URL: {}, respelled URL: {}", longUrl, respelledUrl);
+
+        // Calling the service method with both spellings
+        String shortUrlKey = urlShortenerService.shortenUrl(longUrl);
+        String respelledShortUrlKey = urlShortenerService.shortenUrl(respelledUrl);
+
+        // Verify: one mapping, holding the URL as first given
+        List<String> storedKeys = new ArrayList<>();
+        urlMappingStore.scanKeys(storedKeys::add);
+        Assertions.assertEquals(shortUrlKey, respelledShortUrlKey);
+        Assertions.assertEquals(List.of(shortUrlKey), storedKeys);
+        Assertions.assertEquals(longUrl, urlMappingStore.findLongUrl(shortUrlKey));
+        logger.info("Re-shortening test passed. Short URL key: {}", shortUrlKey);
+    }
+
+    /**
+     * The test case tests that an expiring link redirects until its expiry and is gone afterwards,
+     * also from the local cache, and that it never shares a key with a permanent link
+     * 
+     */
+    @Test
+    public void testExpiringLink() throws InterruptedException {
+        String longUrl = "https://www.example.com/sale";
+        Instant expiresAt = Instant.ofEpochMilli(System.currentTimeMillis() + 500);
+
+        logger.info("Starting test for an expiring link. Long URL: {}, expires at: {}", longUrl, expiresAt);
+
+        // Calling the service method for the expiring link twice and for a permanent one
+        String shortUrlKey = urlShortenerService.shortenUrl(longUrl, expiresAt);
+        Assertions.assertEquals(shortUrlKey, urlShortenerService.shortenUrl(longUrl, expiresAt));
+        String permanentShortUrlKey = urlShortenerService.shortenUrl(longUrl);
+        Assertions.assertNotEquals(shortUrlKey, permanentShortUrlKey);
+
+        // Verify: redirects, from the cache on the second lookup, until the expiry
+        Assertions.assertEquals(longUrl, urlShortenerService.getLongUrl(shortUrlKey));
+        Assertions.assertEquals(longUrl, urlShortenerService.getLongUrl(shortUrlKey));
+        Mockito.verify(urlMappingStore, Mockito.times(1)).findStoredUrl(shortUrlKey);
+
+        Thread.sleep(Math.max(0, expiresAt.toEpochMilli() - System.currentTimeMillis()) + 50);
+        Assertions.assertNull(urlShortenerService.getLongUrl(shortUrlKey));
+        Assertions.assertEquals(longUrl, urlShortenerService.getLongUrl(permanentShortUrlKey));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> urlShortenerService.shortenUrl(longUrl, expiresAt));
+        logger.info("Expiring link test passed. Short URL key: {}, permanent short URL key: {}", shortUrlKey, permanentShortUrlKey);
+    }
+
+    /**
+     * The test case tests the shortening and lookup metrics: outcomes, the claimed candidate key
+     * and exhausted attempts
+     * 
+     */
+    @Test
+    public void testShortenAndLookupMetrics() {
+        logger.info("Starting test for the shortening and lookup metrics");
+
+        // The first candidate key of the second URL is taken, so it is claimed on the second attempt
+        givenMapping("3f94b0", "https://www.example.com");
+        Mockito.doCallRealMethod().doCallRealMethod().doReturn(null)
+                .when(urlMappingStore).claim(ArgumentMatchers.any(UrlClaim.class));
+
+        urlShortenerService.shortenUrl("https://www.example.com");
+        urlShortenerService.shortenUrl("https://www.example.com/abc");
+        Assertions.assertThrows(IllegalStateException.class, () -> urlShortenerService.shortenUrl("https://www.example.com/xyz"));
+        urlShortenerService.getLongUrl("3f94b0");
+        urlShortenerService.getLongUrl("unknown");
+
+        // Verify
+        Assertions.assertEquals(2, meterRegistry.get("urlshortener.shorten").tag("outcome", "created").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("urlshortener.shorten").tag("outcome", "exhausted").timer().count());
+        Assertions.assertEquals(3.0, meterRegistry.get("urlshortener.shorten.attempts").summary().totalAmount());
+        Assertions.assertEquals(1.0, meterRegistry.get("urlshortener.shorten.exhausted").counter().count());
+        Assertions.assertEquals(3, meterRegistry.get("urlshortener.keygen").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("urlshortener.lookup").tag("result", "found").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("urlshortener.lookup").tag("result", "not_found").timer().count());
+        logger.info("Metrics test passed.");
+    }
+
+    /**
+     * The test case tests that a batch records the outcome and claimed candidate key of each of
+     * its URLs, and an error for each URL of a batch whose claim fails
+     * 
+     */
+    @Test
+    public void testShortenUrlsMetrics() {
+        logger.info("Starting test for the batch shortening metrics");
+
+        // The second URL of the batch takes its second candidate key, the third runs out of keys
+        Mockito.doAnswer(invocation -> {
+            List<UrlClaim> claims = invocation.getArgument(0);
+            return Arrays.asList(claims.get(0).candidateKeys().get(0), claims.get(1).candidateKeys().get(1), null);
+        }).when(urlMappingStore).claimAll(ArgumentMatchers.anyList());
+        urlShortenerService.shortenUrls(List.of("https://www.example.com", "https://www.example.com/abc", "https://www.example.com/xyz"));
+
+        Mockito.doThrow(new RedisConnectionFailureException("Connection refused")).when(urlMappingStore).claimAll(ArgumentMatchers.anyList());
+        Assertions.assertThrows(RedisConnectionFailureException.class,
+                () -> urlShortenerService.shortenUrls(List.of("https://www.example.org", "https://www.example.org/abc")));
+
+        // Verify
+        Assertions.assertEquals(2, meterRegistry.get("urlshortener.shorten").tag("outcome", "created").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("urlshortener.shorten").tag("outcome", "exhausted").timer().count());
+        Assertions.assertEquals(2, meterRegistry.get("urlshortener.shorten").tag("outcome", "error").timer().count());
+        Assertions.assertEquals(3.0, meterRegistry.get("urlshortener.shorten.attempts").summary().totalAmount());
+        Assertions.assertEquals(1.0, meterRegistry.get("urlshortener.shorten.exhausted").counter().count());
+        logger.info("Batch metrics test passed.");
+    }
+
+    /**
+     * The test case tests that once the known key filter is built, unknown keys are rejected
+     * without a data store call while created keys are still found
+     * 
+     */
+    @Test
+    public void testGetLongUrlRejectedByKeyFilter() {
+        logger.info("Starting test for lookups through the known key filter");
+
+        givenMapping("3f94b0", "https://www.example.com");
+
+        keyFilter.rebuild(urlMappingStore);
+        String shortUrlKey = urlShortenerService.shortenUrl("https://www.example.com/abc");
+
+        // Verify: stored and newly created keys are found, the unknown key never reaches the store
+        Assertions.assertEquals("https://www.example.com", urlShortenerService.getLongUrl("3f94b0"));
+        Assertions.assertEquals("https://www.example.com/abc", urlShortenerService.getLongUrl(shortUrlKey));
+        Assertions.assertNull(urlShortenerService.getLongUrl("favicon.ico"));
+        Mockito.verify(urlMappingStore, Mockito.never()).findStoredUrl("favicon.ico");
+        logger.info("Known key filter test passed.");
+    }
+
+    /**
+     * The test case tests that once the data store keeps failing, lookups and shortening fail fast
+     * without calling it while cached keys are still served
+     * 
+     */
+    @Test
+    public void testCircuitOpensWhenStoreFails() {
+        logger.info("Starting test for the circuit breaker around the data store");
+
+        givenMapping("e149be", "https://www.example.com");
+        Assertions.assertEquals("https://www.example.com", urlShortenerService.getLongUrl("e149be"));
+
+        Mockito.doThrow(new RedisConnectionFailureException("Unable to connect to Redis"))
+                .when(urlMappingStore).findStoredUrl(ArgumentMatchers.anyString());
+        // The successful lookup and nine failures fill the window of ten calls
+        for (int i = 0; i < 9; i++) {
+            String shortUrlKey = "key" + i;
+            Assertions.assertThrows(RedisConnectionFailureException.class, () -> urlShortenerService.getLongUrl(shortUrlKey));
+        }
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Mockito.clearInvocations(urlMappingStore);
+
+        // Verify: calls are rejected without reaching the store, the cached key still redirects
+        Assertions.assertThrows(CircuitBreaker.OpenException.class, () -> urlShortenerService.getLongUrl("key10"));
+        Assertions.assertThrows(CircuitBreaker.OpenException.class, () -> urlShortenerService.shortenUrl("https://www.example.com/abc"));
+        Assertions.assertEquals("https://www.example.com", urlShortenerService.getLongUrl("e149be"));
+        Mockito.verifyNoInteractions(urlMappingStore);
+        logger.info("Circuit breaker test passed.");
+    }
+
+    /**
+     * Emulates the atomic claim script of the Redis store over in-memory maps of short URL key
+     * to long URL and of URL digest to short URL key, expiring mappings lazily
+     * 
+     */
+    static class EmulatedRedisStore implements UrlMappingStore {
+
+        private final Map<String, String> storedMappings = new HashMap<>();
+
+        private final Map<String, Long> expiries = new HashMap<>();
+
+        private final Map<String, String> reverseIndex = new HashMap<>();
+
+        @Override
+        public String claim(UrlClaim claim) {
+            if (claim.urlDigest() != null && reverseIndex.containsKey(claim.urlDigest())) {
+                return reverseIndex.get(claim.urlDigest());
+            }
+            for (String candidateKey : claim.candidateKeys()) {
+                expire(candidateKey);
+                String existing = storedMappings.putIfAbsent(candidateKey, claim.longUrl());
+                if (existing == null && claim.expires()) {
+                    expiries.put(candidateKey, claim.expiresAt());
+                }
+                if (existing == null || (existing.equals(claim.longUrl()) && expiries.containsKey(candidateKey) == claim.expires())) {
+                    if (claim.urlDigest() != null) {
+                        reverseIndex.put(claim.urlDigest(), candidateKey);
+                    }
+                    return candidateKey;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public StoredUrl findStoredUrl(String shortUrlKey) {
+            expire(shortUrlKey);
+            String longUrl = storedMappings.get(shortUrlKey);
+            return longUrl != null ? new StoredUrl(longUrl, expiries.getOrDefault(shortUrlKey, StoredUrl.NEVER)) : null;
+        }
+
+        @Override
+        public List<StoredUrl> findStoredUrls(List<String> shortUrlKeys) {
+            return shortUrlKeys.stream().map(this::findStoredUrl).toList();
+        }
+
+        private void expire(String shortUrlKey) {
+            Long expiresAt = expiries.get(shortUrlKey);
+            if (expiresAt != null && expiresAt <= System.currentTimeMillis()) {
+                storedMappings.remove(shortUrlKey);
+                expiries.remove(shortUrlKey);
+            }
+        }
+
+        @Override
+        public void scanKeys(Consumer<String> action) {
+            storedMappings.keySet().forEach(action);
+        }
     }
 }
@@ -0,0 +1,164 @@
+package com.ik.urlshortener.tools;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.slf4j.Logger;
+import org.mockito.Mockito;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ik.urlshortener.keygen.Base62;
+import com.ik.urlshortener.keygen.CounterKeyGenerator;
+import com.ik.urlshortener.repository.InMemoryUrlMappingShard;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In this Test we will export the mappings of an in-process stand-in for Redis to a file and
+ * import them into another one
+ *
+ */
+
+public class MappingTransferToolTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingTransferToolTest.class);
+
+    private static final long FIRST_ID = CounterKeyGenerator.ID_OFFSET;
+
+    @TempDir
+    private Path directory;
+
+    private InMemoryUrlMappingShard source(int keys) {
+        InMemoryUrlMappingShard source = new InMemoryUrlMappingShard();
+        List<UrlClaim> claims = new ArrayList<>();
+        for (long id = FIRST_ID; id < FIRST_ID + keys; id++) {
+            claims.add(new UrlClaim("https://www.example.com/" + id + "?q=ü", null, List.of(Base62.encode(id))));
+        }
+        source.claimAll(claims);
+        return source;
+    }
+
+    private MappingExportTool exportTool(InMemoryUrlMappingShard source, Path file, MappingFile.Format format) {
+        MappingExportTool tool = new MappingExportTool();
+        ReflectionTestUtils.setField(tool, "urlMappingStore", source);
+        ReflectionTestUtils.setField(tool, "file", file);
+        ReflectionTestUtils.setField(tool, "format", format);
+        ReflectionTestUtils.setField(tool, "batchSize", 100);
+        return tool;
+    }
+
+    private MappingImportTool importTool(InMemoryUrlMappingShard target, Path file) {
+        MappingImportTool tool = new MappingImportTool();
+        ReflectionTestUtils.setField(tool, "urlMappingStore", target);
+        ReflectionTestUtils.setField(tool, "file", file);
+        ReflectionTestUtils.setField(tool, "batchSize", 100);
+        ReflectionTestUtils.setField(tool, "parallelism", 4);
+        return tool;
+    }
+
+    /**
+     * The test case tests that every mapping, expiry included, comes back the same after an
+     * export and an import in either format
+     *
+     */
+    @ParameterizedTest
+    @EnumSource(MappingFile.Format.class)
+    public void testExportAndImport(MappingFile.Format format) throws Exception {
+        InMemoryUrlMappingShard source = source(2_550);
+        long expiresAt = System.currentTimeMillis() + 3_600_000;
+        source.claim(new UrlClaim("https://www.example.com/expiring", null, List.of("expiring"), expiresAt));
+
+        Path file = directory.resolve("mappings.gz");
+        Assertions.assertEquals(2_551, exportTool(source, file, format).export());
+        Assertions.assertFalse(Files.exists(directory.resolve("mappings.gz.part")));
+        logger.info("Exported 2551 mappings as {} in {} bytes", format, Files.size(file));
+
+        InMemoryUrlMappingShard target = new InMemoryUrlMappingShard();
+        Assertions.assertEquals(0, importTool(target, file).importMappings());
+        Assertions.assertEquals(source.getStoredMappings(), target.getStoredMappings());
+        Assertions.assertEquals(new StoredUrl("https://www.example.com/expiring", expiresAt), target.findStoredUrl("expiring"));
+        Assertions.assertFalse(Files.exists(directory.resolve("mappings.gz.checkpoint")));
+    }
+
+    /**
+     * The test case tests that the import skips the mappings before the checkpoint, and reports
+     * keys that already map to a different URL as conflicts without overwriting them
+     *
+     */
+    @Test
+    public void testImportResumesFromCheckpoint() throws Exception {
+        InMemoryUrlMappingShard source = source(1_000);
+        Path file = directory.resolve("mappings.ndjson.gz");
+        exportTool(source, file, MappingFile.Format.NDJSON).export();
+
+        // The first 600 mappings were imported by an earlier, interrupted run
+        Files.writeString(directory.resolve("mappings.ndjson.gz.checkpoint"), "600");
+        InMemoryUrlMappingShard target = new InMemoryUrlMappingShard();
+        List<String> keys = new ArrayList<>();
+        source.scanKeys(keys::add);
+        String conflictingKey = keys.get(999);
+        target.claim(new UrlClaim("https://www.example.com/other", null, List.of(conflictingKey)));
+
+        Assertions.assertEquals(1, importTool(target, file).importMappings());
+        Map<String, String> imported = target.getStoredMappings();
+        Assertions.assertEquals(400, imported.size());
+        Assertions.assertEquals("https://www.example.com/other", imported.get(conflictingKey));
+        for (String key : keys.subList(600, 999)) {
+            Assertions.assertEquals(source.findLongUrl(key), imported.get(key));
+        }
+    }
+
+    /**
+     * The test case tests that the key counter travels with the file and is raised on import,
+     * so that the counter strategy does not hand out imported keys again, and that a counter
+     * already past it is left alone
+     *
+     */
+    @ParameterizedTest
+    @EnumSource(MappingFile.Format.class)
+    public void testImportRaisesKeySequence(MappingFile.Format format) throws Exception {
+        InMemoryUrlMappingShard source = source(500);
+        Path file = directory.resolve("mappings.gz");
+        MappingExportTool exportTool = exportTool(source, file, format);
+        ValueOperations<String, String> sourceCounter = counter(exportTool, "1000");
+        Assertions.assertEquals(500, exportTool.export());
+        Mockito.verify(sourceCounter).get(CounterKeyGenerator.SEQUENCE_KEY);
+
+        // A fresh environment whose counter has barely moved
+        InMemoryUrlMappingShard target = new InMemoryUrlMappingShard();
+        MappingImportTool importTool = importTool(target, file);
+        ValueOperations<String, String> targetCounter = counter(importTool, "20");
+        Mockito.when(targetCounter.increment(CounterKeyGenerator.SEQUENCE_KEY, 980)).thenReturn(1000L);
+        Assertions.assertEquals(0, importTool.importMappings());
+        Assertions.assertEquals(500, target.getStoredMappings().size());
+        Mockito.verify(targetCounter).increment(CounterKeyGenerator.SEQUENCE_KEY, 980);
+
+        // An environment whose counter is already further along
+        MappingImportTool againTool = importTool(new InMemoryUrlMappingShard(), file);
+        ValueOperations<String, String> aheadCounter = counter(againTool, "5000");
+        Assertions.assertEquals(0, againTool.importMappings());
+        Mockito.verify(aheadCounter, Mockito.never()).increment(Mockito.anyString(), Mockito.anyLong());
+        logger.info("Key counter carried over in {}", format);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ValueOperations<String, String> counter(Object tool, String sequence) {
+        StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = Mockito.mock(ValueOperations.class);
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        Mockito.when(valueOperations.get(CounterKeyGenerator.SEQUENCE_KEY)).thenReturn(sequence);
+        ReflectionTestUtils.setField(tool, "redisTemplate", redisTemplate);
+        return valueOperations;
+    }
+}
@@ -0,0 +1,75 @@
+package com.ik.urlshortener.tools;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ik.urlshortener.keygen.Base62;
+import com.ik.urlshortener.repository.InMemoryUrlMappingShard;
+import com.ik.urlshortener.repository.ShardedUrlMappingStore;
+import com.ik.urlshortener.repository.UrlClaim;
+import com.ik.urlshortener.repository.UrlMappingShard;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In this Test we will move mappings after adding a node to a sharded store of in-process
+ * stand-ins for the Redis nodes
+ * 
+ */
+
+public class ShardRebalanceToolTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalanceToolTest.class);
+
+    private static final long FIRST_ID = 56_800_235_584L;
+
+    /**
+     * The test case tests that every key ends up on its node of the grown ring, only once, and
+     * still maps to its URL
+     * 
+     */
+    @Test
+    public void testRebalanceMovesKeysToNewNode() {
+        List<String> nodes = List.of("redis-a:6379", "redis-b:6379");
+        List<String> grownNodes = List.of("redis-a:6379", "redis-b:6379", "redis-c:6379");
+        Map<String, UrlMappingShard> shards = new LinkedHashMap<>();
+        grownNodes.forEach(node -> shards.put(node, new InMemoryUrlMappingShard()));
+
+        int keys = 3_000;
+        ShardedUrlMappingStore before = new ShardedUrlMappingStore(shards, nodes, List.of(), 160);
+        List<UrlClaim> claims = new ArrayList<>();
+        for (long id = FIRST_ID; id < FIRST_ID + keys; id++) {
+            claims.add(new UrlClaim("https://www.example.com/" + id, null, List.of(Base62.encode(id))));
+        }
+        before.claimAll(claims);
+
+        ShardedUrlMappingStore moving = new ShardedUrlMappingStore(shards, grownNodes, nodes, 160);
+        ShardRebalanceTool tool = new ShardRebalanceTool();
+        ReflectionTestUtils.setField(tool, "urlMappingStore", moving);
+        ReflectionTestUtils.setField(tool, "batchSize", 100);
+        ReflectionTestUtils.setField(tool, "deleteSource", true);
+
+        Assertions.assertEquals(0, tool.rebalance());
+
+        int stored = 0;
+        for (Map.Entry<String, UrlMappingShard> node : shards.entrySet()) {
+            Map<String, String> mappings = ((InMemoryUrlMappingShard) node.getValue()).getStoredMappings();
+            Assertions.assertFalse(mappings.isEmpty());
+            mappings.keySet().forEach(key -> Assertions.assertEquals(node.getKey(), moving.getRing().nodeOf(key)));
+            stored += mappings.size();
+        }
+        Assertions.assertEquals(keys, stored);
+
+        ShardedUrlMappingStore after = new ShardedUrlMappingStore(shards, grownNodes, List.of(), 160);
+        for (UrlClaim claim : claims) {
+            Assertions.assertEquals(claim.longUrl(), after.findLongUrl(claim.candidateKeys().get(0)));
+        }
+        logger.info("Moved {} of {} keys to the new node", ((InMemoryUrlMappingShard) shards.get("redis-c:6379")).getStoredMappings().size(), keys);
+    }
+}
@@ -0,0 +1,153 @@
+package com.ik.urlshortener.tools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ik.urlshortener.repository.RedisTestServer;
+import com.ik.urlshortener.repository.RedisUrlMappingStore;
+import com.ik.urlshortener.repository.StorageLayout;
+import com.ik.urlshortener.repository.StoredUrl;
+import com.ik.urlshortener.repository.UrlClaim;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In this Test we will migrate mappings from the hash layout to the string and bucketed layouts
+ * of a real Redis, with conflicts and expiring mappings among them. It is skipped when no Redis
+ * is reachable, see {@link RedisTestServer}
+ * 
+ */
+
+public class StorageMigrationToolTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageMigrationToolTest.class);
+
+    private static final int KEYS = 25;
+
+    private RedisTestServer server;
+
+    private StringRedisTemplate redisTemplate;
+
+    private RedisUrlMappingStore source;
+
+    @BeforeEach
+    public void setUp() {
+        server = RedisTestServer.connect();
+        redisTemplate = server.getRedisTemplate();
+        source = new RedisUrlMappingStore(redisTemplate, StorageLayout.HASH, 16);
+        for (int i = 0; i < KEYS; i++) {
+            source.claim(new UrlClaim("https://www.example.com/" + i, "digest" + i, List.of("key" + i)));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private RedisUrlMappingStore target(StorageLayout layout) {
+        return new RedisUrlMappingStore(redisTemplate, layout, 16);
+    }
+
+    private StorageMigrationTool tool(RedisUrlMappingStore target, boolean deleteSource) {
+        StorageMigrationTool tool = new StorageMigrationTool();
+        ReflectionTestUtils.setField(tool, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(tool, "urlMappingStore", target);
+        // Several batches, the last one partial
+        ReflectionTestUtils.setField(tool, "batchSize", 10);
+        ReflectionTestUtils.setField(tool, "deleteSource", deleteSource);
+        return tool;
+    }
+
+    /**
+     * The test case tests a migration to the string layout: expiring mappings keep their expiry,
+     * a key that maps to another URL in the target is a conflict left alone, and a key that
+     * already maps to the same URL counts as migrated. Only the hashes that were copied are
+     * deleted, and the keyspace set stays while there are conflicts
+     * 
+     */
+    @Test
+    public void testMigrateToStringLayout() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        source.claim(new UrlClaim("https://www.example.com/expiring", null, List.of("expiring"), expiresAt));
+        RedisUrlMappingStore target = target(StorageLayout.STRING);
+        target.claim(new UrlClaim("https://www.example.com/0", null, List.of("key0")));
+        target.claim(new UrlClaim("https://www.example.com/other", null, List.of("key1")));
+
+        Assertions.assertEquals(1, tool(target, true).migrate());
+
+        for (int i = 2; i < KEYS; i++) {
+            Assertions.assertEquals(StoredUrl.of("https://www.example.com/" + i), target.findStoredUrl("key" + i));
+            Assertions.assertFalse(redisTemplate.hasKey("UrlMapping:key" + i));
+        }
+        Assertions.assertEquals(StoredUrl.of("https://www.example.com/0"), target.findStoredUrl("key0"));
+        Assertions.assertFalse(redisTemplate.hasKey("UrlMapping:key0"));
+        long ttl = redisTemplate.getExpire("u:expiring", TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(ttl > 50_000 && ttl <= 60_000, "Unexpected expiry in " + ttl + " ms");
+        Assertions.assertFalse(redisTemplate.hasKey("UrlMapping:expiring"));
+
+        // The conflict keeps both its target mapping and its source hash, and with it the keyspace set
+        Assertions.assertEquals(StoredUrl.of("https://www.example.com/other"), target.findStoredUrl("key1"));
+        Assertions.assertEquals(StoredUrl.of("https://www.example.com/1"), source.findStoredUrl("key1"));
+        Assertions.assertTrue(redisTemplate.hasKey("UrlMapping"));
+        logger.info("Migration to the string layout passed");
+    }
+
+    /**
+     * The test case tests a migration to the bucketed layout, which skips expiring mappings and
+     * leaves them in place, and that the source is kept unless delete-source is set
+     * 
+     */
+    @Test
+    public void testMigrateToBucketedLayout() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        source.claim(new UrlClaim("https://www.example.com/expiring", null, List.of("expiring"), expiresAt));
+        RedisUrlMappingStore target = target(StorageLayout.BUCKETED);
+
+        Assertions.assertEquals(0, tool(target, false).migrate());
+        for (int i = 0; i < KEYS; i++) {
+            Assertions.assertEquals(StoredUrl.of("https://www.example.com/" + i), target.findStoredUrl("key" + i));
+            Assertions.assertTrue(redisTemplate.hasKey("UrlMapping:key" + i));
+        }
+        Assertions.assertNull(target.findStoredUrl("expiring"));
+
+        // Again, deleting what was copied; the skipped mapping and the keyspace set stay
+        Assertions.assertEquals(0, tool(target, true).migrate());
+        for (int i = 0; i < KEYS; i++) {
+            Assertions.assertFalse(redisTemplate.hasKey("UrlMapping:key" + i));
+        }
+        Assertions.assertEquals(new StoredUrl("https://www.example.com/expiring", expiresAt), source.findStoredUrl("expiring"));
+        Assertions.assertTrue(redisTemplate.hasKey("UrlMapping"));
+        logger.info("Migration to the bucketed layout passed");
+    }
+
+    /**
+     * The test case tests that a clean migration with delete-source removes every hash and the
+     * keyspace set, and that the hash layout is refused as a target
+     * 
+     */
+    @Test
+    public void testMigrateAndDeleteSource() {
+        RedisUrlMappingStore target = target(StorageLayout.BUCKETED);
+
+        Assertions.assertEquals(0, tool(target, true).migrate());
+
+        for (int i = 0; i < KEYS; i++) {
+            Assertions.assertEquals(StoredUrl.of("https://www.example.com/" + i), target.findStoredUrl("key" + i));
+        }
+        Assertions.assertTrue(redisTemplate.keys("UrlMapping:key*").isEmpty());
+        Assertions.assertFalse(redisTemplate.hasKey("UrlMapping"));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> tool(source, true).migrate());
+        logger.info("Migration with delete-source passed");
+    }
+}